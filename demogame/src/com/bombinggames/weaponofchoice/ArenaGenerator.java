@@ -9,17 +9,10 @@ import java.util.Random;
  */
 public class ArenaGenerator implements Generator {
 
-	private long seed = 0;
-	private Random generator;
+	private final long seed = (long) (Math.random()*Long.MAX_VALUE);
 
 	@Override
 	public int generate(int x, int y, int z) {
-		//initailize seed
-		if (seed == 0) {
-			seed = (long) (Math.random()*Long.MAX_VALUE);
-			generator = new Random(seed);
-		}
-
 		if (z == 0) {//ground level covered with sand
 			return 8;
 		} else if (z == 1 && getRandom(x, y, z) < 0.05f) { //every twentiest block is a pillar 
@@ -33,6 +26,21 @@ public class ArenaGenerator implements Generator {
 		}
 	}
 
+	@Override
+	public void generateColumn(int x, int y, int[] column, int offset, int height) {
+		for (int z = 0; z < height; z++) {
+			if (z == 0) {
+				column[offset] = 8;
+			} else if (z == 1) {
+				column[offset + 1] = getRandom(x, y, z) < 0.05f ? 2 : 0;
+			} else if (z == 2) {
+				column[offset + 2] = column[offset + 1] == 2 ? 1 : 0;//pillar below
+			} else {
+				column[offset + z] = 0;
+			}
+		}
+	}
+
 	/**
 	 * Returns a random number for each field using the seed.
 	 *
@@ -45,7 +53,7 @@ public class ArenaGenerator implements Generator {
 		//generate hash
 		int field = x * y * z;//fastes way to generate id for every coodinate
 
-		generator.setSeed(seed);
+		Random generator = new Random(seed);
 		float output = 0;
 		for (int i = 0; i < field; i++) {
 			output = generator.nextFloat();
@@ -58,4 +66,9 @@ public class ArenaGenerator implements Generator {
 	@Override
 	public void spawnEntities(int x, int y, int z) {
 	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
 }
@@ -3,6 +3,8 @@ package com.bombinggames.weaponofchoice;
 import com.bombinggames.weaponofchoice.mainmenu.MainMenuScreen;
 import com.bombinggames.wurfelengine.WE;
 import com.bombinggames.wurfelengine.core.WorkingDirectory;
+import com.bombinggames.wurfelengine.core.benchmark.GenerationBenchmark;
+import com.bombinggames.wurfelengine.core.console.BenchmarkCommand;
 import com.bombinggames.wurfelengine.core.gameobjects.AbstractEntity;
 import com.bombinggames.wurfelengine.core.gameobjects.AbstractGameObject;
 
@@ -18,6 +20,7 @@ public class WeaponOfChoice {
     public static void main(String[] args) {
         WE.setMainMenu(new MainMenuScreen());
 		AbstractEntity.registerEntity("Evil Lizard", Enemy.class);
+		BenchmarkCommand.registerBenchmark(new GenerationBenchmark("generationarena", new ArenaGenerator()));
 		WorkingDirectory.setApplicationName("WeaponOfChoice");
 		AbstractGameObject.setCustomSpritesheet("com/bombinggames/weaponofchoice/sprites/Spritesheet");
         WE.launch("Weapon of Choice - Made with WE V" + WE.VERSION, args);
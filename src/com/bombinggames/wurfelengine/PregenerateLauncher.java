@@ -0,0 +1,138 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine;
+
+import com.bombinggames.wurfelengine.core.cvar.CVarSystemMap;
+import com.bombinggames.wurfelengine.core.map.Chunk;
+import com.bombinggames.wurfelengine.core.map.Generator;
+import com.bombinggames.wurfelengine.core.map.Generators.IslandGenerator;
+import com.bombinggames.wurfelengine.core.map.Pregenerator;
+import com.bombinggames.wurfelengine.core.map.RegionFile;
+import java.io.File;
+
+/**
+ * Pregenerates chunks of a map from the command line without starting the
+ * engine or a window.
+ * <pre>
+ * PregenerateLauncher &lt;map directory&gt; &lt;left&gt; &lt;top&gt; &lt;right&gt; &lt;bottom&gt;
+ *	[-threads n] [-regions] [-uncompressed] [-generator class]
+ * </pre> The chunk size is read from the meta file of the map. The generator
+ * needs a constructor without parameters, default is
+ * {@link IslandGenerator}.
+ *
+ * @author Benedikt Vogler
+ */
+public class PregenerateLauncher {
+
+	/**
+	 * @param args the command line arguments
+	 */
+	public static void main(String[] args) {
+		if (args.length < 5) {
+			System.out.println("Usage: <map directory> <left> <top> <right> <bottom> [-threads n] [-regions] [-uncompressed] [-generator class]");
+			System.exit(1);
+		}
+		File directory = new File(args[0]);
+		int left = Integer.parseInt(args[1]);
+		int top = Integer.parseInt(args[2]);
+		int right = Integer.parseInt(args[3]);
+		int bottom = Integer.parseInt(args[4]);
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		boolean regions = false;
+		boolean compress = true;
+		String generatorClass = null;
+		for (int i = 5; i < args.length; i++) {
+			switch (args[i]) {
+				case "-threads":
+					threads = Integer.parseInt(args[++i]);
+					break;
+				case "-regions":
+					regions = true;
+					break;
+				case "-uncompressed":
+					compress = false;
+					break;
+				case "-generator":
+					generatorClass = args[++i];
+					break;
+				default:
+					System.out.println("Unknown option " + args[i]);
+					System.exit(1);
+			}
+		}
+
+		directory.mkdirs();
+		CVarSystemMap mapCVars = new CVarSystemMap(new File(directory, "meta.wecvar"));
+		mapCVars.load();
+		int blocksX = mapCVars.getValueI("chunkBlocksX");
+		int blocksY = mapCVars.getValueI("chunkBlocksY");
+		int blocksZ = mapCVars.getValueI("chunkBlocksZ");
+		//the generators read the chunk size
+		Chunk.setDimensions(blocksX, blocksY, blocksZ);
+
+		Generator generator = new IslandGenerator();
+		if (generatorClass != null) {
+			try {
+				generator = (Generator) Class.forName(generatorClass).getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | ClassCastException ex) {
+				System.out.println("Could not create generator " + generatorClass + ": " + ex);
+				System.exit(1);
+			}
+		}
+
+		Pregenerator pregenerator = new Pregenerator(directory, generator, blocksX, blocksY, blocksZ);
+		pregenerator.setThreads(threads);
+		pregenerator.setRegions(regions);
+		pregenerator.setCompression(compress);
+		System.out.println("Pregenerating " + directory + " with " + generator.getClass().getSimpleName() + " on " + threads + " threads…");
+		int[] reported = new int[1];
+		try {
+			Pregenerator.Result result = pregenerator.run(left, top, right, bottom, (long done, long total) -> {
+				synchronized (reported) {
+					int percent = (int) (done * 100 / total);
+					if (percent >= reported[0] + 5 || done == total) {
+						reported[0] = percent;
+						System.out.println(done + "/" + total + " chunks (" + percent + "%)");
+					}
+				}
+			});
+			RegionFile.closeAll(directory);
+			System.out.println(result);
+			for (String failure : result.getFailures()) {
+				System.out.println("Failed " + failure);
+			}
+			System.exit(result.getFailures().isEmpty() ? 0 : 2);
+		} catch (InterruptedException ex) {
+			System.exit(1);
+		}
+	}
+}
@@ -43,14 +43,16 @@ import com.bombinggames.wurfelengine.core.gameobjects.AbstractEntity;
 import com.bombinggames.wurfelengine.core.gameobjects.AbstractGameObject;
 import com.bombinggames.wurfelengine.core.gameobjects.Renderable;
 import com.bombinggames.wurfelengine.core.map.Chunk;
-import com.bombinggames.wurfelengine.core.map.Iterators.CameraSpaceIterator;
 import com.bombinggames.wurfelengine.core.map.Map;
 import com.bombinggames.wurfelengine.core.map.Point;
 import com.bombinggames.wurfelengine.core.map.Position;
+import com.bombinggames.wurfelengine.core.map.rendering.DepthListBuilder;
 import com.bombinggames.wurfelengine.core.map.rendering.RenderCell;
+import com.bombinggames.wurfelengine.core.map.rendering.RenderChunk;
+import com.bombinggames.wurfelengine.core.map.rendering.RenderStorage;
 import com.bombinggames.wurfelengine.core.map.rendering.SideSprite;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Creates a virtual camera wich displays the game world on the viewport. A camer acan be locked to an entity.
@@ -115,16 +117,20 @@ public class Camera {
 	 * true if camera is currently rendering
 	 */
 	private boolean active = false;
-	private final LinkedList<Renderable> depthlist = new LinkedList<>();
-	/**
-	 * amount of objects to be rendered, used as an index during filling
-	 */
-	private int objectsToBeRendered = 0;
 	private int renderResWidth;
-	private int maxsprites;
 	private final Point center = new Point(0, 0, 0);
-	private final ArrayList<RenderCell> modifiedCells = new ArrayList<>(30);
-	private final LinkedList<AbstractEntity> renderAppendix = new LinkedList<>();
+	/**
+	 * builds the objects in the order of rendering
+	 */
+	private final DepthListBuilder depthListBuilder = new DepthListBuilder();
+	/**
+	 * the build of the depthlist running on the worker pool, null if built on the calling thread
+	 */
+	private ForkJoinTask<?> depthListTask;
+	/**
+	 * true if the depthlist of this frame was started
+	 */
+	private boolean depthListStarted;
 	/**
 	 * The radius which is used for loading the chunks around the center. May be reduced after the first time to a smaller value.
 	 */
@@ -321,6 +327,10 @@ public class Camera {
 			
 			//recalculate the center position
 			updateCenter();
+			//keep the loaded area in memory
+			if (Controller.getMap() != null) {
+				Controller.getMap().pinChunks(centerChunkX, centerChunkY, loadingRadius);
+			}
 
 			//don't know what this does
 			//Gdx.gl20.glMatrixMode(GL20.GL_PROJECTION);
@@ -451,7 +461,7 @@ public class Camera {
 			);
 
 			//render map
-			createDepthList();
+			finishDepthList();
 
 			Gdx.gl20.glEnable(GL_BLEND); // Enable the OpenGL Blending functionality
 			//Gdx.gl20.glBlendFunc(GL_SRC_ALPHA, GL20.GL_CONSTANT_COLOR);
@@ -500,8 +510,10 @@ public class Camera {
 			SideSprite.setAO(WE.getCVars().getValueF("ambientOcclusion"));
 			
 			//render vom bottom to top
-			for (Renderable obj : depthlist) {
-				obj.render(view, camera);
+			Renderable[] depthlist = depthListBuilder.getDepthList();
+			int objectsToBeRendered = depthListBuilder.size();
+			for (int i = 0; i < objectsToBeRendered; i++) {
+				depthlist[i].render(view, camera);
 			}
 			view.getSpriteBatch().end();
 
@@ -510,8 +522,8 @@ public class Camera {
 				view.setDebugRendering(true);
 				view.getSpriteBatch().begin();
 				//render vom bottom to top
-				for (Renderable obj : depthlist) {
-					obj.render(view, camera);
+				for (int i = 0; i < objectsToBeRendered; i++) {
+					depthlist[i].render(view, camera);
 				}
 				view.getSpriteBatch().end();
 			}
@@ -520,100 +532,103 @@ public class Camera {
 			if (WE.getCVars().getValueB("DevDebugRendering")) {
 				drawDebug(view, camera);
 			}
+			depthListStarted = false;
 		}
 	}
 
 	/**
-	 * Fills the cameracontent plus entities into a list and sorts it in the order of the rendering,
-	 * called the "depthlist". This is done every frame.
+	 * Starts the creation of the depthlist of this frame. Must be called on
+	 * the main thread.
 	 *
-	 * @return the depthlist
+	 * @param parallel if true the list is built on the worker pool, else on
+	 * the calling thread
+	 * @see #finishDepthList()
 	 */
-	private void createDepthList() {
-		depthlist.clear();
-		maxsprites = WE.getCVars().getValueI("MaxSprites");
+	public void startDepthList(boolean parallel) {
+		if (active && Controller.getMap() != null) {
+			prepareDepthList();
+			if (parallel) {
+				depthListTask = ForkJoinTask.adapt(depthListBuilder::build).fork();
+			} else {
+				depthListBuilder.build();
+			}
+			depthListStarted = true;
+		}
+	}
+
+	/**
+	 * Waits until the depthlist of this frame is built. Builds it on the
+	 * calling thread if it was not started. The list is consumed by the next
+	 * {@link #render(GameView, Camera) }.
+	 */
+	public void finishDepthList() {
+		if (!depthListStarted) {
+			startDepthList(false);
+		}
+		if (depthListTask != null) {
+			depthListTask.join();
+			depthListTask = null;
+		}
+	}
+
+	/**
+	 * Collects the cameracontent plus entities so that the builder can put
+	 * them in the order of the rendering, called the "depthlist". This is
+	 * done every frame. The cells are already sorted by the render chunks so
+	 * only the entities are sorted and merged.
+	 *
+	 * @see RenderChunk#getDepthOrder()
+	 */
+	private void prepareDepthList() {
+		RenderStorage renderStorage = gameView.getRenderStorage();
+		float zRenderingLimit = renderStorage.getZRenderingLimit();
+		DepthListBuilder builder = depthListBuilder;
+		builder.begin(
+			this,
+			position.x,
+			position.y,
+			widthProj,
+			heightProj,
+			zRenderingLimit,
+			WE.getCVars().getValueI("MaxSprites")
+		);
 
-		//inverse dirty flag
-		AbstractGameObject.inverseMarkedFlag(id);
-		
 		//add entitys which should be rendered
 		ArrayList<AbstractEntity> ents = Controller.getMap().getEntities();
-				
-		//add entities to renderstorage
-		ArrayList<RenderCell> modifiedCells = this.modifiedCells;
-		modifiedCells.clear();
-		modifiedCells.ensureCapacity(ents.size());
-		LinkedList<AbstractEntity> renderAppendix = this.renderAppendix;
-		renderAppendix.clear();
-		
-		//this should be made parallel via streams //ents.stream().parallel().forEach(action);?
 		for (AbstractEntity ent : ents) {
 			if (ent.hasPosition()
 				&& !ent.isHidden()
 				&& inViewFrustum(ent.getPosition())
-				&& ent.getPosition().getZ() < gameView.getRenderStorage().getZRenderingLimit()
+				&& ent.getPosition().getZ() < zRenderingLimit
 			) {
-				RenderCell cell = gameView.getRenderStorage().getCell(ent.getPosition().add(0, 0, RenderCell.GAME_EDGELENGTH));//add in cell above
+				RenderCell cell = renderStorage.getCell(ent.getPosition().add(0, 0, RenderCell.GAME_EDGELENGTH));//add in cell above
 				ent.getPosition().add(0, 0, -RenderCell.GAME_EDGELENGTH);//reverse change from line above
 				if (cell != null) {
-					cell.addCoveredEnts(ent);
-					modifiedCells.add(cell);
+					builder.addEntity(ent, RenderChunk.getDepthKey(cell.getPosition().getY(), cell.getPosition().getZ()));
 				} else {
 					//add at end of renderList
-					renderAppendix.add(ent);
+					builder.addUnsorted(ent);
 				}
 			}
 		}
-		
-		//iterate over every block in renderstorage
-		objectsToBeRendered = 0;
-		CameraSpaceIterator iterator = new CameraSpaceIterator(
-			gameView.getRenderStorage(),
-			centerChunkX,
-			centerChunkY,
-			0,
-			(int) (gameView.getRenderStorage().getZRenderingLimit()/RenderCell.GAME_EDGELENGTH)
-		);
-		//check/visit every visible cell
-		while (iterator.hasNext()) {
-			RenderCell cell = iterator.next();
 
-			if (cell != null && inViewFrustum(cell.getPosition())) {
-				visit(cell);
+		//collect the sorted cells of the visible chunks
+		for (int y = -1; y <= 1; y++) {
+			for (int x = -1; x <= 1; x++) {
+				RenderChunk chunk = renderStorage.getChunk(centerChunkX + x, centerChunkY + y);
+				if (chunk != null) {
+					builder.addChunk(chunk);
+				}
 			}
 		}
-		//remove ents from modified blocks
-		for (RenderCell modifiedCell : modifiedCells) {
-			modifiedCell.clearCoveredEnts();
-		}
-		depthlist.addAll(renderAppendix);//render every entity which has no parent block at the end of the list
 	}
-	
+
 	/**
-	 * topological sort
-	 * @param n root node
-	 */
-	private void visit(AbstractGameObject n) {
-		if (!n.isMarkedDS(id)) {
-			LinkedList<AbstractGameObject> covered = n.getCovered(gameView.getRenderStorage());
-			n.markPermanentDS(id);
-			if (covered.size() > 0) {
-				for (AbstractGameObject m : covered) {
-					if (inViewFrustum(m.getPosition())) {
-						visit(m);
-					}
-				}
-			}
-			if (
-				n.shouldBeRendered(this)
-				&& n.getPosition().getZPoint() < gameView.getRenderStorage().getZRenderingLimit()
-				&& objectsToBeRendered < maxsprites
-			) {
-				//fill only up to available size
-				depthlist.add(n);
-				objectsToBeRendered++;
-			}
-		}
+	 *
+	 * @return duration of the last build of the depthlist in ns
+	 */
+	public long getDepthListTime() {
+		return depthListBuilder.getBuildTime();
 	}
 
 	/**
@@ -623,20 +638,7 @@ public class Camera {
 	 * @return
 	 */
 	public boolean inViewFrustum(Position pos){
-		int vspY = pos.getViewSpcY();
-		if (!(
-				(position.y + (heightProj>>1))
-				>
-				(vspY - (RenderCell.VIEW_HEIGHT<<1))//bottom of sprite
-			&&
-				(vspY + RenderCell.VIEW_HEIGHT2 + RenderCell.VIEW_DEPTH)//top of sprite
-				>
-				position.y - (heightProj>>1))
-		)
-			return false;
-		int dist = (int) (pos.getViewSpcX()-position.x); //left side of sprite
-		//left and right check in one clause by using distance via squaring
-		return dist * dist < ( (widthProj >> 1) + RenderCell.VIEW_WIDTH2) * ((widthProj >> 1) + RenderCell.VIEW_WIDTH2);
+		return DepthListBuilder.inViewFrustum(pos, position.x, position.y, widthProj, heightProj);
 	}
 
 	/**
@@ -35,6 +35,7 @@ import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.bombinggames.wurfelengine.core.gameobjects.AbstractGameObject;
+import com.bombinggames.wurfelengine.core.map.ChunkLoadingService;
 import com.bombinggames.wurfelengine.mapeditor.EditorView;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
@@ -109,6 +110,12 @@ public class DevTools {
             //draw FPS-String
             view.drawString("FPS: "+ Gdx.graphics.getFramesPerSecond(), 15, 15,true);
             view.drawString("Drawcalls: "+ AbstractGameObject.getDrawCalls(), 15, 30,true);
+			if (Controller.getMap() != null) {
+				ChunkLoadingService loading = Controller.getMap().getLoadingService();
+				view.drawString("Chunk queue: " + loading.getQueueDepth() + " (" + loading.getInFlight() + " loading), latency: "
+					+ loading.getAverageLatency() / 1000000 + " ms", 15, 45, true);
+			}
+			view.drawString("Depth lists: " + view.getDepthListTime() / 1000 / 1000f + " ms", 15, 60, true);
             
             //draw diagramm
             ShapeRenderer shr = view.getShapeRenderer();
@@ -106,7 +106,14 @@ public enum Events {
 	/**
 	 *
 	 */
-	mapReloaded(24)
+	mapReloaded(24),
+
+	/**
+	 * blocks of a chunk changed, extra information is a
+	 * {@link com.bombinggames.wurfelengine.core.map.ChunkChange}. Edits in a
+	 * transaction are sent as one message per chunk.
+	 */
+	blocksChanged(25)
 
 	;
 	
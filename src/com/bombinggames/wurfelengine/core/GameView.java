@@ -127,6 +127,10 @@ public class GameView implements GameManager {
 	private boolean useDefaultShader;
 	
 	private RenderStorage renderstorage;
+	/**
+	 * duration of building the depthlists of every camera in the last frame in ns
+	 */
+	private long depthListTime;
     
 	/**
 	 * Loades some files and set up everything. This should be done after
@@ -168,6 +172,7 @@ public class GameView implements GameManager {
 
 		renderstorage = new RenderStorage();
 		MessageManager.getInstance().addListener(renderstorage, Events.mapChanged.getId());
+		MessageManager.getInstance().addListener(renderstorage, Events.blocksChanged.getId());
 		initalized = true;
 	}
 	
@@ -317,6 +322,14 @@ public class GameView implements GameManager {
 		keyF5isUp = !Gdx.input.isKeyPressed(Keys.F5);
 	}
 
+	/**
+	 *
+	 * @return duration of building the depthlists of every camera in the last frame in ns
+	 */
+	public long getDepthListTime() {
+		return depthListTime;
+	}
+
 	/**
 	 *
 	 * @return
@@ -332,6 +345,7 @@ public class GameView implements GameManager {
 	public void setRenderStorage(RenderStorage renderstorage) {
 		if (this.renderstorage != null) {
 			MessageManager.getInstance().removeListener(this.renderstorage, Events.mapChanged.getId());
+			MessageManager.getInstance().removeListener(this.renderstorage, Events.blocksChanged.getId());
 		}
 		this.renderstorage = renderstorage;
 	}
@@ -355,6 +369,16 @@ public class GameView implements GameManager {
             drawString("No camera set up", Gdx.graphics.getWidth()/2, Gdx.graphics.getHeight()/2, Color.BLACK.cpy());
         } else {
 			setShader(getShader());
+			long start = System.nanoTime();
+			//build the depthlists of the other cameras on the worker pool while the first one is built here
+			boolean parallel = WE.getCVars().getValueB("renderParallelDepthLists") && cameras.size() > 1;
+			for (int i = cameras.size() - 1; i >= 0; i--) {
+				cameras.get(i).startDepthList(parallel && i > 0);
+			}
+			for (Camera camera : cameras) {
+				camera.finishDepthList();
+			}
+			depthListTime = System.nanoTime() - start;
             for (Camera camera : cameras) {
                 camera.render(this, camera);
             }
@@ -657,8 +681,10 @@ public class GameView implements GameManager {
 		for (Camera camera : cameras) {
 			camera.dispose();
 		}
-		if (this.renderstorage != null)
-			MessageManager.getInstance().removeListener(this.renderstorage, Events.mapChanged.getId());	
+		if (this.renderstorage != null) {
+			MessageManager.getInstance().removeListener(this.renderstorage, Events.mapChanged.getId());
+			MessageManager.getInstance().removeListener(this.renderstorage, Events.blocksChanged.getId());
+		}
 		renderstorage.dispose();
 		shRenderer.dispose();
 		spriteBatch.dispose();
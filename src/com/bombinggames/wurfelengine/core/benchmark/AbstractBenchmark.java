@@ -0,0 +1,139 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.benchmark;
+
+import java.util.Locale;
+
+/**
+ * A micro benchmark which can be run from the console with the
+ * <i>benchmark</i> command. Benchmarks should not depend on a running game so
+ * that they can also be run without a GL context.
+ *
+ * @author Benedikt Vogler
+ * @see com.bombinggames.wurfelengine.core.console.BenchmarkCommand
+ */
+public abstract class AbstractBenchmark {
+
+	/**
+	 * the amount of runs before the measurement starts
+	 */
+	protected static final int WARMUPS = 5;
+	/**
+	 * the amount of measured runs
+	 */
+	protected static final int RUNS = 10;
+
+	/**
+	 * Is used to prevent the JIT from removing the measured code.
+	 */
+	private long sink;
+
+	/**
+	 * always lowercase. The name is the identifier of this benchmark.
+	 *
+	 * @return
+	 */
+	public abstract String getName();
+
+	/**
+	 *
+	 * @return
+	 */
+	public abstract String getDescription();
+
+	/**
+	 * Runs the benchmark. May take some seconds.
+	 *
+	 * @return the report, can have multiple lines
+	 */
+	public abstract String run();
+
+	/**
+	 * Runs a task several times and returns the fastest run.
+	 *
+	 * @param task the measured code. The returned value is consumed so that it
+	 * can not be optimized away.
+	 * @return time of the fastest run in nano seconds
+	 */
+	protected long measure(Task task) {
+		for (int i = 0; i < WARMUPS; i++) {
+			sink += task.run();
+		}
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.nanoTime();
+			sink += task.run();
+			long time = System.nanoTime() - start;
+			if (time < best) {
+				best = time;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Formats a line of the report.
+	 *
+	 * @param label
+	 * @param nanos time of the run
+	 * @param operations amount of operations in the run
+	 * @return
+	 */
+	protected static String line(String label, long nanos, long operations) {
+		return String.format(
+			Locale.ROOT,
+			"%-32s %10.3f ms %10.2f ns/op%n",
+			label,
+			nanos / 1e6,
+			nanos / (double) operations
+		);
+	}
+
+	/**
+	 * Use this to make sure that the result of the measurement is used.
+	 *
+	 * @return
+	 */
+	protected long getSink() {
+		return sink;
+	}
+
+	/**
+	 * The measured code.
+	 */
+	protected interface Task {
+
+		/**
+		 * @return some value derived from the work
+		 */
+		long run();
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.benchmark;
+
+import com.bombinggames.wurfelengine.WE;
+import com.bombinggames.wurfelengine.core.Controller;
+import com.bombinggames.wurfelengine.core.map.BlockAccessor;
+import com.bombinggames.wurfelengine.core.map.Chunk;
+import com.bombinggames.wurfelengine.core.map.Coordinate;
+import com.bombinggames.wurfelengine.core.map.Map;
+
+/**
+ * Compares reading the cells around every cell of a chunk with a chunk lookup
+ * per read against the {@link BlockAccessor}. The cells below and the eight
+ * neighbours are read like the ambient occlusion and collision checks do. The
+ * lookup per read is the previous implementation of
+ * {@link Map#getBlock(int, int, int)}. Needs a running game with a loaded map.
+ *
+ * @author Benedikt Vogler
+ */
+public class BlockAccessorBenchmark extends AbstractBenchmark {
+
+	private static final int SWEEPS = 20;
+
+	@Override
+	public String getName() {
+		return "blockaccessor";
+	}
+
+	@Override
+	public String getDescription() {
+		return "block reads with a chunk lookup per read vs. the block accessor";
+	}
+
+	@Override
+	public String run() {
+		Map map = Controller.getMap();
+		if (map == null || map.getLoadedChunks().isEmpty()) {
+			return "needs a running game with a loaded map";
+		}
+		Chunk chunk = map.getLoadedChunks().get(0);
+		int left = chunk.getTopLeftCoordinateX();
+		int top = chunk.getTopLeftCoordinateY();
+		long operations = (long) SWEEPS * Chunk.getBlocksX() * Chunk.getBlocksY() * Chunk.getBlocksZ() * 9;
+		Coordinate coord = new Coordinate(0, 0, 0);
+
+		StringBuilder report = new StringBuilder(256);
+		report.append(map.getData().size()).append(" loaded chunks, ")
+			.append(operations).append(" reads\n");
+		long time = measure(() -> {
+			long sum = 0;
+			for (int sweep = 0; sweep < SWEEPS; sweep++) {
+				for (int x = left; x < left + Chunk.getBlocksX(); x++) {
+					for (int y = top; y < top + Chunk.getBlocksY(); y++) {
+						for (int z = 0; z < Chunk.getBlocksZ(); z++) {
+							sum += lookup(map, x, y, z - 1);
+							for (int side = 0; side < 8; side++) {
+								coord.set(x, y, z).goToNeighbour(side);
+								sum += lookup(map, coord.getX(), coord.getY(), coord.getZ());
+							}
+						}
+					}
+				}
+			}
+			return sum;
+		});
+		report.append(line("chunk lookup per read", time, operations));
+		BlockAccessor blocks = new BlockAccessor(map);
+		time = measure(() -> {
+			long sum = 0;
+			for (int sweep = 0; sweep < SWEEPS; sweep++) {
+				for (int x = left; x < left + Chunk.getBlocksX(); x++) {
+					for (int y = top; y < top + Chunk.getBlocksY(); y++) {
+						for (int z = 0; z < Chunk.getBlocksZ(); z++) {
+							sum += blocks.getBlock(x, y, z - 1);
+							for (int side = 0; side < 8; side++) {
+								sum += blocks.getBlock(coord.set(x, y, z).goToNeighbour(side));
+							}
+						}
+					}
+				}
+			}
+			return sum;
+		});
+		report.append(line("block accessor", time, operations));
+		report.append("checksum ").append(getSink());
+		return report.toString();
+	}
+
+	/**
+	 * The previous {@link Map#getBlock(int, int, int)}.
+	 *
+	 * @param map
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return
+	 */
+	private static int lookup(Map map, int x, int y, int z) {
+		if (z < 0) {
+			return (byte) WE.getCVars().getValueI("groundBlockID");
+		}
+		Chunk chunk = map.getChunkContaining(x, y);
+		if (chunk == null) {
+			return 0;
+		}
+		return chunk.getBlock(x, y, z);
+	}
+}
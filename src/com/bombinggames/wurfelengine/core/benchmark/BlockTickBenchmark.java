@@ -0,0 +1,148 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.benchmark;
+
+import com.bombinggames.wurfelengine.core.map.AbstractBlockLogicExtension;
+import com.bombinggames.wurfelengine.core.map.BlockTickScheduler;
+import com.bombinggames.wurfelengine.core.map.Coordinate;
+
+/**
+ * Compares updating every logic block each frame with the
+ * {@link BlockTickScheduler} when only a few logic blocks are active. The
+ * active logic blocks request a tick every 100 ms.
+ *
+ * @author Benedikt Vogler
+ */
+public class BlockTickBenchmark extends AbstractBenchmark {
+
+	private static final int LOGIC_BLOCKS = 50000;
+	/**
+	 * every n-th logic block is active
+	 */
+	private static final int ACTIVE_EVERY = 100;
+	private static final int FRAMES = 60;
+	private static final float FRAME_TIME = 16.6f;
+	private static final float TICK_INTERVAL = 100;
+
+	@Override
+	public String getName() {
+		return "blockticks";
+	}
+
+	@Override
+	public String getDescription() {
+		return "logic block updates every frame vs. scheduled ticks";
+	}
+
+	@Override
+	public String run() {
+		BlockTickScheduler scheduler = new BlockTickScheduler();
+		Logic[] polled = new Logic[LOGIC_BLOCKS];
+		for (int i = 0; i < LOGIC_BLOCKS; i++) {
+			polled[i] = new Logic(new Coordinate(i % 100, i / 100, 0), null, i % ACTIVE_EVERY == 0);
+			scheduler.schedule(new Logic(new Coordinate(i % 100, i / 100, 0), scheduler, i % ACTIVE_EVERY == 0), 0);
+		}
+
+		StringBuilder report = new StringBuilder(256);
+		report.append(LOGIC_BLOCKS).append(" logic blocks, ")
+			.append(LOGIC_BLOCKS / ACTIVE_EVERY).append(" active, ")
+			.append(FRAMES).append(" frames\n");
+		long time = measure(() -> {
+			long sum = 0;
+			for (int frame = 0; frame < FRAMES; frame++) {
+				for (Logic logic : polled) {
+					if (logic.isValid()) {
+						logic.update(FRAME_TIME);
+					}
+				}
+			}
+			for (Logic logic : polled) {
+				sum += logic.work;
+			}
+			return sum;
+		});
+		report.append(line("update every frame", time, FRAMES));
+		time = measure(() -> {
+			long sum = 0;
+			for (int frame = 0; frame < FRAMES; frame++) {
+				sum += scheduler.update(FRAME_TIME, 0);
+			}
+			return sum;
+		});
+		report.append(line("scheduled ticks", time, FRAMES));
+		report.append("checksum ").append(getSink());
+		return report.toString();
+	}
+
+	private static class Logic extends AbstractBlockLogicExtension {
+
+		/**
+		 * null if polled
+		 */
+		private final BlockTickScheduler scheduler;
+		private final boolean active;
+		private float timer;
+		private long work;
+
+		Logic(Coordinate coord, BlockTickScheduler scheduler, boolean active) {
+			super((byte) 1, coord);
+			this.scheduler = scheduler;
+			this.active = active;
+		}
+
+		@Override
+		public boolean isValid() {
+			return true;
+		}
+
+		@Override
+		public boolean isPolled() {
+			return scheduler == null;
+		}
+
+		@Override
+		public void update(float dt) {
+			//a polled logic block has to check itself if there is something to do
+			timer += dt;
+			if (active && timer >= TICK_INTERVAL) {
+				timer = 0;
+				work++;
+			}
+			if (active && scheduler != null) {
+				scheduler.schedule(this, TICK_INTERVAL - timer);
+			}
+		}
+
+		@Override
+		public void dispose() {
+		}
+	}
+}
@@ -0,0 +1,284 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.benchmark;
+
+import com.bombinggames.wurfelengine.core.map.ChunkFiles;
+import com.bombinggames.wurfelengine.core.map.ChunkFormat;
+import com.bombinggames.wurfelengine.core.map.ChunkSnapshot;
+import com.bombinggames.wurfelengine.core.map.ChunkStorage;
+import com.bombinggames.wurfelengine.core.map.FlatChunkStorage;
+import com.bombinggames.wurfelengine.core.map.RegionFile;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Save and load throughput of the chunk file format version 5 compared to the
+ * old format and of single chunk files compared to region files. The chunks look like a terrain: filled ground, some hills and
+ * plants and air above.
+ *
+ * @author Benedikt Vogler
+ */
+public class ChunkFormatBenchmark extends AbstractBenchmark {
+
+	private static final int BLOCKS_X = 10;
+	private static final int BLOCKS_Y = 40;
+	private static final int BLOCKS_Z = 10;
+	private static final int CHUNKS = 64;
+
+	@Override
+	public String getName() {
+		return "chunkformat";
+	}
+
+	@Override
+	public String getDescription() {
+		return "encoding, decoding and file throughput of the chunk format v5 vs. the old format";
+	}
+
+	@Override
+	public String run() {
+		Random random = new Random(1);
+		ChunkSnapshot[] raw = new ChunkSnapshot[CHUNKS];
+		ChunkSnapshot[] deflate = new ChunkSnapshot[CHUNKS];
+		for (int c = 0; c < CHUNKS; c++) {
+			ChunkStorage storage = new FlatChunkStorage(BLOCKS_X, BLOCKS_Y, BLOCKS_Z);
+			for (int x = 0; x < BLOCKS_X; x++) {
+				for (int y = 0; y < BLOCKS_Y; y++) {
+					int height = 3 + random.nextInt(3);
+					for (int z = 0; z < height; z++) {
+						storage.setCell(x, y, z, (byte) (z < 2 ? 2 : 1), (byte) 0, (byte) 100);
+					}
+					if (random.nextInt(10) == 0) {
+						storage.setCell(x, y, height, (byte) 8, (byte) random.nextInt(4), (byte) 100);
+					}
+				}
+			}
+			storage.setHealth(1, 1, 0, (byte) 50);
+			raw[c] = new ChunkSnapshot(c, 0, storage, null, null, false);
+			deflate[c] = new ChunkSnapshot(c, 0, storage, null, null, true);
+		}
+		byte[][] legacyFiles = new byte[CHUNKS][];
+		byte[][] rawFiles = new byte[CHUNKS][];
+		byte[][] deflateFiles = new byte[CHUNKS][];
+		long legacySize = 0;
+		long rawSize = 0;
+		long deflateSize = 0;
+		for (int c = 0; c < CHUNKS; c++) {
+			legacyFiles[c] = ChunkFormat.writeLegacy(raw[c]);
+			rawFiles[c] = ChunkFormat.write(raw[c]);
+			deflateFiles[c] = ChunkFormat.write(deflate[c]);
+			legacySize += legacyFiles[c].length;
+			rawSize += rawFiles[c].length;
+			deflateSize += deflateFiles[c].length;
+		}
+
+		StringBuilder report = new StringBuilder(1024);
+		report.append("chunk ").append(BLOCKS_X).append('x').append(BLOCKS_Y).append('x').append(BLOCKS_Z)
+			.append(", ").append(CHUNKS).append(" chunks, ns/op is per chunk\n");
+		report.append("bytes per chunk: old ").append(legacySize / CHUNKS)
+			.append(", v5 ").append(rawSize / CHUNKS)
+			.append(", v5 deflate ").append(deflateSize / CHUNKS).append('\n');
+
+		report.append(line("encode old", measure(() -> {
+			long sum = 0;
+			for (ChunkSnapshot snapshot : raw) {
+				sum += ChunkFormat.writeLegacy(snapshot).length;
+			}
+			return sum;
+		}), CHUNKS));
+		report.append(line("encode v5", measure(() -> {
+			long sum = 0;
+			for (ChunkSnapshot snapshot : raw) {
+				sum += ChunkFormat.write(snapshot).length;
+			}
+			return sum;
+		}), CHUNKS));
+		report.append(line("encode v5 deflate", measure(() -> {
+			long sum = 0;
+			for (ChunkSnapshot snapshot : deflate) {
+				sum += ChunkFormat.write(snapshot).length;
+			}
+			return sum;
+		}), CHUNKS));
+
+		ChunkStorage target = new FlatChunkStorage(BLOCKS_X, BLOCKS_Y, BLOCKS_Z);
+		report.append(line("decode old", measure(() -> {
+			long sum = 0;
+			for (byte[] file : legacyFiles) {
+				sum += ChunkFormat.readLegacyBlocks(file, target);
+			}
+			return sum;
+		}), CHUNKS));
+		report.append(line("decode v5", measure(() -> {
+			long sum = 0;
+			for (byte[] file : rawFiles) {
+				sum += decode(file, target);
+			}
+			return sum;
+		}), CHUNKS));
+		report.append(line("decode v5 deflate", measure(() -> {
+			long sum = 0;
+			for (byte[] file : deflateFiles) {
+				sum += decode(file, target);
+			}
+			return sum;
+		}), CHUNKS));
+
+		//file system
+		File dir;
+		try {
+			dir = Files.createTempDirectory("wurfelchunks").toFile();
+		} catch (IOException ex) {
+			return report.append("could not create temp directory: ").append(ex).toString();
+		}
+		File regionDir = new File(dir, "regions");
+		try {
+			File[] legacyPaths = new File[CHUNKS];
+			File[] v5Paths = new File[CHUNKS];
+			Files.createDirectories(regionDir.toPath());
+			for (int c = 0; c < CHUNKS; c++) {
+				legacyPaths[c] = new File(dir, "old" + c + ".wec");
+				v5Paths[c] = ChunkFiles.getSingleFile(dir, c, 0);
+				try (FileOutputStream out = new FileOutputStream(legacyPaths[c])) {
+					out.write(legacyFiles[c]);
+				}
+			}
+			report.append(line("save v5 deflate files", measure(() -> {
+				long sum = 0;
+				for (int c = 0; c < CHUNKS; c++) {
+					try {
+						sum += deflate[c].write(dir, false);
+					} catch (IOException ex) {
+						throw new UncheckedIOException(ex);
+					}
+				}
+				return sum;
+			}), CHUNKS));
+			report.append(line("save v5 deflate region", measure(() -> {
+				long sum = 0;
+				for (int c = 0; c < CHUNKS; c++) {
+					try {
+						sum += deflate[c].write(regionDir, true);
+					} catch (IOException ex) {
+						throw new UncheckedIOException(ex);
+					}
+				}
+				return sum;
+			}), CHUNKS));
+			report.append(line("load old files byte by byte", measure(() -> {
+				long sum = 0;
+				for (File path : legacyPaths) {
+					//like the old loader, one read call per byte
+					try (FileInputStream in = new FileInputStream(path)) {
+						ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+						int b;
+						while ((b = in.read()) != -1) {
+							bytes.write(b);
+						}
+						sum += ChunkFormat.readLegacyBlocks(bytes.toByteArray(), target);
+					} catch (IOException ex) {
+						throw new UncheckedIOException(ex);
+					}
+				}
+				return sum;
+			}), CHUNKS));
+			report.append(line("load v5 deflate files", measure(() -> {
+				long sum = 0;
+				for (File path : v5Paths) {
+					try {
+						sum += decode(Files.readAllBytes(path.toPath()), target);
+					} catch (IOException ex) {
+						throw new UncheckedIOException(ex);
+					}
+				}
+				return sum;
+			}), CHUNKS));
+			report.append(line("load v5 deflate region", measure(() -> {
+				long sum = 0;
+				for (int c = 0; c < CHUNKS; c++) {
+					try {
+						sum += decode(ChunkFiles.read(regionDir, c, 0), target);
+					} catch (IOException ex) {
+						throw new UncheckedIOException(ex);
+					}
+				}
+				return sum;
+			}), CHUNKS));
+		} catch (IOException | UncheckedIOException ex) {
+			report.append("file test failed: ").append(ex).append('\n');
+		} finally {
+			RegionFile.closeAll(regionDir);
+			for (File directory : new File[]{regionDir, dir}) {
+				File[] files = directory.listFiles();
+				if (files != null) {
+					for (File file : files) {
+						file.delete();
+					}
+				}
+				directory.delete();
+			}
+		}
+
+		report.append("checksum ").append(getSink());
+		return report.toString();
+	}
+
+	/**
+	 * Reads the blocks and the health of a file in the current format.
+	 *
+	 * @param file
+	 * @param target
+	 * @return some value derived from the content
+	 */
+	private static long decode(byte[] file, ChunkStorage target) {
+		try {
+			ByteBuffer payload = ChunkFormat.readPayload(file, BLOCKS_X, BLOCKS_Y, BLOCKS_Z);
+			ByteBuffer section;
+			while ((section = ChunkFormat.nextSection(payload)) != null) {
+				if (ChunkFormat.getType(section) == ChunkFormat.SECTION_BLOCKS) {
+					ChunkFormat.readBlocks(section, target);
+				} else if (ChunkFormat.getType(section) == ChunkFormat.SECTION_HEALTH) {
+					ChunkFormat.readHealth(section, target);
+				}
+			}
+			return target.getCell(0);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.benchmark;
+
+import com.bombinggames.wurfelengine.core.map.ChunkIndex;
+import java.util.Random;
+
+/**
+ * Compares the lookup of the chunk containing a block in the {@link ChunkIndex}
+ * with the former fixed array of 500x250 chunks. Block reads walk through a 9x9
+ * chunk area like the renderer does, chunk reads jump randomly.
+ *
+ * @author Benedikt Vogler
+ */
+public class ChunkIndexBenchmark extends AbstractBenchmark {
+
+	private static final int BLOCKS_X = 10;
+	private static final int BLOCKS_Y = 40;
+	private static final int AREA = 9;
+	/**
+	 * the former default of "mapIndexSpaceSize"
+	 */
+	private static final int INDEX_SPACE = 500;
+	private static final int RANDOM_READS = 1 << 20;
+	private static final int WALKS = 16;
+
+	@Override
+	public String getName() {
+		return "chunkindex";
+	}
+
+	@Override
+	public String getDescription() {
+		return "chunk lookup in the sparse chunk index vs. the fixed chunk array";
+	}
+
+	@Override
+	public String run() {
+		//a chunk is represented by its coordinate
+		int[][][] array = new int[INDEX_SPACE][INDEX_SPACE / 2][];
+		ChunkIndex<int[]> index = new ChunkIndex<>(64);
+		for (int x = -AREA / 2; x <= AREA / 2; x++) {
+			for (int y = -AREA / 2; y <= AREA / 2; y++) {
+				int[] chunk = new int[]{x, y};
+				array[x + INDEX_SPACE / 2][y + INDEX_SPACE / 4] = chunk;
+				index.put(x, y, chunk);
+			}
+		}
+		Random random = new Random(1);
+		int[] rx = new int[RANDOM_READS];
+		int[] ry = new int[RANDOM_READS];
+		for (int i = 0; i < RANDOM_READS; i++) {
+			rx[i] = random.nextInt(AREA) - AREA / 2;
+			ry[i] = random.nextInt(AREA) - AREA / 2;
+		}
+		int minX = -AREA / 2 * BLOCKS_X;
+		int minY = -AREA / 2 * BLOCKS_Y;
+		int maxX = (AREA / 2 + 1) * BLOCKS_X;
+		int maxY = (AREA / 2 + 1) * BLOCKS_Y;
+		long blocks = (long) (maxX - minX) * (maxY - minY) * WALKS;
+
+		StringBuilder report = new StringBuilder(512);
+		report.append(AREA * AREA).append(" chunks, references array ")
+			.append(INDEX_SPACE * (INDEX_SPACE / 2) * 4 / 1024).append(" KB, index ")
+			.append(index.size()).append(" chunks\n");
+		long time = measure(() -> {
+			long sum = 0;
+			for (int walk = 0; walk < WALKS; walk++) {
+				for (int y = minY; y < maxY; y++) {
+					for (int x = minX; x < maxX; x++) {
+						sum += array[Math.floorDiv(x, BLOCKS_X) + INDEX_SPACE / 2][Math.floorDiv(y, BLOCKS_Y) + INDEX_SPACE / 4][0];
+					}
+				}
+			}
+			return sum;
+		});
+		report.append(line("block walk array", time, blocks));
+		time = measure(() -> {
+			long sum = 0;
+			for (int walk = 0; walk < WALKS; walk++) {
+				for (int y = minY; y < maxY; y++) {
+					for (int x = minX; x < maxX; x++) {
+						sum += index.get(Math.floorDiv(x, BLOCKS_X), Math.floorDiv(y, BLOCKS_Y))[0];
+					}
+				}
+			}
+			return sum;
+		});
+		report.append(line("block walk index", time, blocks));
+		time = measure(() -> {
+			long sum = 0;
+			for (int i = 0; i < RANDOM_READS; i++) {
+				sum += array[rx[i] + INDEX_SPACE / 2][ry[i] + INDEX_SPACE / 4][1];
+			}
+			return sum;
+		});
+		report.append(line("random chunk array", time, RANDOM_READS));
+		time = measure(() -> {
+			long sum = 0;
+			for (int i = 0; i < RANDOM_READS; i++) {
+				sum += index.get(rx[i], ry[i])[1];
+			}
+			return sum;
+		});
+		report.append(line("random chunk index", time, RANDOM_READS));
+		report.append("checksum ").append(getSink());
+		return report.toString();
+	}
+}
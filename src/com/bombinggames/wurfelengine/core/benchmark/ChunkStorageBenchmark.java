@@ -0,0 +1,240 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.benchmark;
+
+import com.bombinggames.wurfelengine.core.map.ChunkStorage;
+import com.bombinggames.wurfelengine.core.map.FlatChunkStorage;
+import com.bombinggames.wurfelengine.core.map.PaletteChunkStorage;
+import java.util.Random;
+
+/**
+ * Compares the {@link FlatChunkStorage} and the {@link PaletteChunkStorage}
+ * with the former layout of a chunk which used a jagged array
+ * <i>byte[x][y][z*3]</i>. The chunks contain 12 different blocks and some
+ * damaged cells.
+ *
+ * @author Benedikt Vogler
+ */
+public class ChunkStorageBenchmark extends AbstractBenchmark {
+
+	private static final int BLOCKS_X = 10;
+	private static final int BLOCKS_Y = 40;
+	private static final int BLOCKS_Z = 10;
+	/**
+	 * amount of chunks, a 9x9 area
+	 */
+	private static final int CHUNKS = 81;
+	private static final int RANDOM_READS = 1 << 20;
+	private static final int ARRAY_HEADER_ESTIMATE = 16;
+
+	@Override
+	public String getName() {
+		return "chunkstorage";
+	}
+
+	@Override
+	public String getDescription() {
+		return "cell access and memory of the flat and palette chunk storage vs. the jagged layout";
+	}
+
+	@Override
+	public String run() {
+		Random random = new Random(1);
+		byte[][][][] jagged = new byte[CHUNKS][][][];
+		ChunkStorage[] flat = new ChunkStorage[CHUNKS];
+		ChunkStorage[] palette = new ChunkStorage[CHUNKS];
+		for (int c = 0; c < CHUNKS; c++) {
+			jagged[c] = new byte[BLOCKS_X][BLOCKS_Y][BLOCKS_Z * 3];
+			flat[c] = new FlatChunkStorage(BLOCKS_X, BLOCKS_Y, BLOCKS_Z);
+			palette[c] = new PaletteChunkStorage(BLOCKS_X, BLOCKS_Y, BLOCKS_Z);
+			for (int x = 0; x < BLOCKS_X; x++) {
+				for (int y = 0; y < BLOCKS_Y; y++) {
+					for (int z = 0; z < BLOCKS_Z; z++) {
+						byte id = (byte) random.nextInt(6);
+						byte value = (byte) random.nextInt(2);
+						byte health = random.nextInt(100) == 0 ? (byte) 50 : (byte) 100;
+						jagged[c][x][y][z * 3] = id;
+						jagged[c][x][y][z * 3 + 1] = value;
+						jagged[c][x][y][z * 3 + 2] = health;
+						flat[c].setCell(x, y, z, id, value, health);
+						palette[c].setCell(x, y, z, id, value, health);
+					}
+				}
+			}
+		}
+
+		//random positions
+		int[] rc = new int[RANDOM_READS];
+		int[] rx = new int[RANDOM_READS];
+		int[] ry = new int[RANDOM_READS];
+		int[] rz = new int[RANDOM_READS];
+		for (int i = 0; i < RANDOM_READS; i++) {
+			rc[i] = random.nextInt(CHUNKS);
+			rx[i] = random.nextInt(BLOCKS_X);
+			ry[i] = random.nextInt(BLOCKS_Y);
+			rz[i] = random.nextInt(BLOCKS_Z);
+		}
+		int cells = CHUNKS * BLOCKS_X * BLOCKS_Y * BLOCKS_Z;
+
+		StringBuilder report = new StringBuilder(512);
+		report.append("chunk ").append(BLOCKS_X).append('x').append(BLOCKS_Y).append('x').append(BLOCKS_Z)
+			.append(", ").append(CHUNKS).append(" chunks\n");
+		report.append("memory per chunk jagged ").append(BLOCKS_X * (ARRAY_HEADER_ESTIMATE + BLOCKS_Y * (ARRAY_HEADER_ESTIMATE + BLOCKS_Z * 3)))
+			.append(" B, flat ").append(flat[0].getMemoryUsage())
+			.append(" B, palette ").append(palette[0].getMemoryUsage()).append(" B\n");
+
+		long time = measure(() -> {
+			long sum = 0;
+			for (int i = 0; i < RANDOM_READS; i++) {
+				byte[] cell = jagged[rc[i]][rx[i]][ry[i]];
+				int z = rz[i] * 3;
+				sum += cell[z] + (cell[z + 1] << 8) + (cell[z + 2] << 16);
+			}
+			return sum;
+		});
+		report.append(line("random read jagged", time, RANDOM_READS));
+		time = measure(() -> {
+			long sum = 0;
+			for (int i = 0; i < RANDOM_READS; i++) {
+				sum += flat[rc[i]].getCell(rx[i], ry[i], rz[i]);
+			}
+			return sum;
+		});
+		report.append(line("random read flat", time, RANDOM_READS));
+		time = measure(() -> {
+			long sum = 0;
+			for (int i = 0; i < RANDOM_READS; i++) {
+				sum += palette[rc[i]].getCell(rx[i], ry[i], rz[i]);
+			}
+			return sum;
+		});
+		report.append(line("random read palette", time, RANDOM_READS));
+
+		time = measure(() -> {
+			long sum = 0;
+			for (int c = 0; c < CHUNKS; c++) {
+				byte[][][] chunk = jagged[c];
+				for (int x = 0; x < BLOCKS_X; x++) {
+					for (int y = 0; y < BLOCKS_Y; y++) {
+						byte[] column = chunk[x][y];
+						for (int z = 0; z < BLOCKS_Z * 3; z += 3) {
+							sum += column[z] + (column[z + 1] << 8) + (column[z + 2] << 16);
+						}
+					}
+				}
+			}
+			return sum;
+		});
+		report.append(line("sequential read jagged", time, cells));
+		time = measure(() -> {
+			long sum = 0;
+			for (int c = 0; c < CHUNKS; c++) {
+				ChunkStorage chunk = flat[c];
+				for (int z = 0; z < BLOCKS_Z; z++) {
+					for (int y = 0; y < BLOCKS_Y; y++) {
+						for (int x = 0; x < BLOCKS_X; x++) {
+							sum += chunk.getCell(x, y, z);
+						}
+					}
+				}
+			}
+			return sum;
+		});
+		report.append(line("sequential read flat", time, cells));
+		time = measure(() -> {
+			long sum = 0;
+			for (int c = 0; c < CHUNKS; c++) {
+				ChunkStorage chunk = palette[c];
+				for (int z = 0; z < BLOCKS_Z; z++) {
+					for (int y = 0; y < BLOCKS_Y; y++) {
+						for (int x = 0; x < BLOCKS_X; x++) {
+							sum += chunk.getCell(x, y, z);
+						}
+					}
+				}
+			}
+			return sum;
+		});
+		report.append(line("sequential read palette", time, cells));
+
+		byte[] ids = new byte[BLOCKS_X * BLOCKS_Y];
+		time = measure(() -> {
+			long sum = 0;
+			for (int c = 0; c < CHUNKS; c++) {
+				for (int z = 0; z < BLOCKS_Z; z++) {
+					flat[c].getLayer(z, ids, null);
+					sum += ids[z];
+				}
+			}
+			return sum;
+		});
+		report.append(line("layer copy flat", time, cells));
+		time = measure(() -> {
+			long sum = 0;
+			for (int c = 0; c < CHUNKS; c++) {
+				for (int z = 0; z < BLOCKS_Z; z++) {
+					palette[c].getLayer(z, ids, null);
+					sum += ids[z];
+				}
+			}
+			return sum;
+		});
+		report.append(line("layer copy palette", time, cells));
+
+		time = measure(() -> {
+			for (int i = 0; i < RANDOM_READS; i++) {
+				byte[] cell = jagged[rc[i]][rx[i]][ry[i]];
+				int z = rz[i] * 3;
+				cell[z] = (byte) (i % 6);
+				cell[z + 1] = 0;
+				cell[z + 2] = 100;
+			}
+			return 0;
+		});
+		report.append(line("random write jagged", time, RANDOM_READS));
+		time = measure(() -> {
+			for (int i = 0; i < RANDOM_READS; i++) {
+				flat[rc[i]].setCell(rx[i], ry[i], rz[i], (byte) (i % 6), (byte) 0, (byte) 100);
+			}
+			return 0;
+		});
+		report.append(line("random write flat", time, RANDOM_READS));
+		time = measure(() -> {
+			for (int i = 0; i < RANDOM_READS; i++) {
+				palette[rc[i]].setCell(rx[i], ry[i], rz[i], (byte) (i % 6), (byte) 0, (byte) 100);
+			}
+			return 0;
+		});
+		report.append(line("random write palette", time, RANDOM_READS));
+		report.append("checksum ").append(getSink());
+		return report.toString();
+	}
+}
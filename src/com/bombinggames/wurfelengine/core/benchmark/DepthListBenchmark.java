@@ -0,0 +1,237 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.benchmark;
+
+import com.bombinggames.wurfelengine.core.gameobjects.AbstractEntity;
+import com.bombinggames.wurfelengine.core.gameobjects.SimpleEntity;
+import com.bombinggames.wurfelengine.core.map.Chunk;
+import com.bombinggames.wurfelengine.core.map.ChunkStorage;
+import com.bombinggames.wurfelengine.core.map.Coordinate;
+import com.bombinggames.wurfelengine.core.map.rendering.DepthListBuilder;
+import com.bombinggames.wurfelengine.core.map.rendering.RenderChunk;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Builds the depthlists of 1, 2 and 4 cameras one after another and in
+ * parallel like {@link com.bombinggames.wurfelengine.core.GameView#render() }
+ * does. The render chunks are created from 3x3 hilly chunks which are not
+ * added to a map and the entities are spread randomly over them. The views
+ * are placed around the center of the area.
+ *
+ * @author Benedikt Vogler
+ */
+public class DepthListBenchmark extends AbstractBenchmark {
+
+	private static final int WIDTH = 1920;
+	private static final int HEIGHT = 1080;
+	static final int AREA = 3;
+	private static final int ENTITIES = 500;
+
+	@Override
+	public String getName() {
+		return "depthlists";
+	}
+
+	@Override
+	public String getDescription() {
+		return "depthlist building of 1, 2 and 4 cameras, serial vs. worker pool";
+	}
+
+	@Override
+	public String run() {
+		RenderChunk[] chunks = createChunks();
+		ArrayList<AbstractEntity> entities = createEntities(new Random(1));
+		//the middle chunk is at the origin
+		Coordinate center = new Coordinate(Chunk.getBlocksX() / 2, Chunk.getBlocksY() / 2, 0);
+
+		StringBuilder report = new StringBuilder(256);
+		report.append(chunks.length).append(" render chunks, ")
+			.append(entities.size()).append(" entities, ")
+			.append(ForkJoinPool.commonPool().getParallelism())
+			.append(" workers\n");
+		try {
+			for (int cameras = 1; cameras <= 4; cameras *= 2) {
+				report.append(run(entities, chunks, center, cameras));
+			}
+		} finally {
+			for (RenderChunk chunk : chunks) {
+				chunk.dispose();
+			}
+		}
+		report.append("checksum ").append(getSink());
+		return report.toString();
+	}
+
+	/**
+	 * Creates render chunks of 3x3 chunks around the origin which are not
+	 * added to a map. Must be disposed.
+	 *
+	 * @return
+	 */
+	static RenderChunk[] createChunks() {
+		int blocksX = Chunk.getBlocksX();
+		int blocksY = Chunk.getBlocksY();
+		int blocksZ = Chunk.getBlocksZ();
+		RenderChunk[] chunks = new RenderChunk[AREA * AREA];
+		for (int i = 0; i < chunks.length; i++) {
+			int chunkX = i % AREA - AREA / 2;
+			int chunkY = i / AREA - AREA / 2;
+			ChunkStorage storage = ChunkStorage.create(blocksX, blocksY, blocksZ, false);
+			for (int x = 0; x < blocksX; x++) {
+				for (int y = 0; y < blocksY; y++) {
+					int height = getHeight(chunkX * blocksX + x, chunkY * blocksY + y, blocksZ);
+					for (int z = 0; z < height; z++) {
+						storage.setCell(x, y, z, (byte) (z == height - 1 ? 1 : 2), (byte) 0, (byte) 100);
+					}
+				}
+			}
+			chunks[i] = new RenderChunk(null, new Chunk(null, chunkX, chunkY, storage));
+		}
+		return chunks;
+	}
+
+	/**
+	 * Creates entities standing on the chunks of {@link #createChunks() }.
+	 *
+	 * @param random
+	 * @return
+	 */
+	static ArrayList<AbstractEntity> createEntities(Random random) {
+		int blocksX = Chunk.getBlocksX();
+		int blocksY = Chunk.getBlocksY();
+		ArrayList<AbstractEntity> entities = new ArrayList<>(ENTITIES);
+		for (int i = 0; i < ENTITIES; i++) {
+			int x = -AREA / 2 * blocksX + random.nextInt(AREA * blocksX);
+			int y = -AREA / 2 * blocksY + random.nextInt(AREA * blocksY);
+			SimpleEntity ent = new SimpleEntity((byte) 1);
+			ent.setPosition(new Coordinate(x, y, getHeight(x, y, Chunk.getBlocksZ())).toPoint());
+			entities.add(ent);
+		}
+		return entities;
+	}
+
+	/**
+	 * A hill in every chunk.
+	 *
+	 * @param x coordinate
+	 * @param y coordinate
+	 * @param blocksZ
+	 * @return amount of solid cells in the column
+	 */
+	private static int getHeight(int x, int y, int blocksZ) {
+		int dx = Math.abs(Math.floorMod(x, Chunk.getBlocksX()) - Chunk.getBlocksX() / 2);
+		int dy = Math.abs(Math.floorMod(y, Chunk.getBlocksY()) - Chunk.getBlocksY() / 2) / 2;
+		return Math.max(1, blocksZ - 2 - dx - dy);
+	}
+
+	/**
+	 *
+	 * @param entities
+	 * @param chunks
+	 * @param center
+	 * @param cameras amount of views
+	 * @return the lines of the report
+	 */
+	private String run(ArrayList<AbstractEntity> entities, RenderChunk[] chunks, Coordinate center, int cameras) {
+		DepthListBuilder[] builders = new DepthListBuilder[cameras];
+		float[] viewX = new float[cameras];
+		float[] viewY = new float[cameras];
+		for (int i = 0; i < cameras; i++) {
+			builders[i] = new DepthListBuilder();
+			//split screen like placement around the center
+			viewX[i] = center.getViewSpcX() + (i % 2 == 0 ? -1 : 1) * (cameras > 1 ? WIDTH / 4 : 0);
+			viewY[i] = center.getViewSpcY() + (i / 2 == 0 ? -1 : 1) * (cameras > 2 ? HEIGHT / 4 : 0);
+		}
+		//build once to fill the depth orders
+		prepare(entities, chunks, builders, viewX, viewY);
+		int objects = 0;
+		for (DepthListBuilder builder : builders) {
+			builder.build();
+			objects += builder.size();
+		}
+
+		String label = cameras + (cameras == 1 ? " camera, " : " cameras, ");
+		long time = measure(() -> {
+			prepare(entities, chunks, builders, viewX, viewY);
+			long sum = 0;
+			for (DepthListBuilder builder : builders) {
+				builder.build();
+				sum += builder.size();
+			}
+			return sum;
+		});
+		String lines = line(label + "serial", time, objects);
+		time = measure(() -> {
+			prepare(entities, chunks, builders, viewX, viewY);
+			ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[builders.length];
+			for (int i = builders.length - 1; i > 0; i--) {
+				tasks[i] = ForkJoinTask.adapt(builders[i]::build).fork();
+			}
+			builders[0].build();
+			long sum = builders[0].size();
+			for (int i = 1; i < builders.length; i++) {
+				tasks[i].join();
+				sum += builders[i].size();
+			}
+			return sum;
+		});
+		return lines + line(label + "parallel", time, objects);
+	}
+
+	/**
+	 * Collects the content like
+	 * {@link com.bombinggames.wurfelengine.core.Camera#startDepthList(boolean) }.
+	 *
+	 * @param entities
+	 * @param chunks
+	 * @param builders
+	 * @param viewX
+	 * @param viewY
+	 */
+	private static void prepare(ArrayList<AbstractEntity> entities, RenderChunk[] chunks, DepthListBuilder[] builders, float[] viewX, float[] viewY) {
+		for (int i = 0; i < builders.length; i++) {
+			DepthListBuilder builder = builders[i];
+			builder.begin(null, viewX[i], viewY[i], WIDTH, HEIGHT, Float.POSITIVE_INFINITY, Integer.MAX_VALUE);
+			for (AbstractEntity ent : entities) {
+				if (ent.hasPosition() && DepthListBuilder.inViewFrustum(ent.getPosition(), viewX[i], viewY[i], WIDTH, HEIGHT)) {
+					Coordinate coord = ent.getPosition().toCoord();
+					builder.addEntity(ent, RenderChunk.getDepthKey(coord.getY(), coord.getZ() + 1));
+				}
+			}
+			for (RenderChunk chunk : chunks) {
+				builder.addChunk(chunk);
+			}
+		}
+	}
+}
@@ -0,0 +1,549 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.benchmark;
+
+import com.bombinggames.wurfelengine.core.gameobjects.AbstractEntity;
+import com.bombinggames.wurfelengine.core.gameobjects.Renderable;
+import com.bombinggames.wurfelengine.core.map.Chunk;
+import com.bombinggames.wurfelengine.core.map.Coordinate;
+import com.bombinggames.wurfelengine.core.map.PackedCoordinate;
+import com.bombinggames.wurfelengine.core.map.Position;
+import com.bombinggames.wurfelengine.core.map.rendering.DepthListBuilder;
+import com.bombinggames.wurfelengine.core.map.rendering.RenderCell;
+import com.bombinggames.wurfelengine.core.map.rendering.RenderChunk;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Random;
+
+/**
+ * Checks the {@link DepthListBuilder} against the depth-first search over the
+ * cover graph which built the depthlist before. The search is a copy of the
+ * former <i>Camera.visit</i> with the relations of the deprecated
+ * {@link RenderCell#getCovered} and {@link AbstractEntity#getCovered}. It
+ * uses an explicit stack and keeps the graph in int arrays.<br>
+ * The orders are not identical because the builder sorts by
+ * {@link RenderChunk#getDepthKey(int, int)}. Every list must draw every
+ * object after the objects it covers, also through cells which are not
+ * rendered like air. Without a sprite limit it must contain
+ * the same cells as the search and at least its entities. The builder also
+ * renders entities whose covering cell is outside of the view, the search
+ * never reaches them.<br>
+ * Uses the chunks and entities of the {@link DepthListBenchmark} with random
+ * hidden cells and random views, rendering limits and sprite limits.
+ *
+ * @author Benedikt Vogler
+ */
+public class DepthListCheck extends AbstractBenchmark {
+
+	private static final int VIEWS = 1000;
+	/**
+	 * returned by {@link #getChild(int, int) } after the last child
+	 */
+	private static final int END = -2;
+
+	private int blocksX, blocksY, blocksZ;
+	private int minX, minY, width, height;
+	/**
+	 * every cell of the area, air included
+	 */
+	private RenderCell[] cells;
+	private ArrayList<AbstractEntity> entities;
+	/**
+	 * the covered cells of cell n are at coverFrom[n] until coverFrom[n+1]
+	 */
+	private int[] coverFrom, cover;
+	/**
+	 * the cell an entity covers, -1 if none
+	 */
+	private int[] entCover;
+	/**
+	 * the entities added to a cell sorted by depth, linked by entNext
+	 */
+	private int[] entHead, entNext;
+	private int[] marks;
+	private int mark;
+	private int[] stackNodes, stackChildren;
+	/**
+	 * the result of the search
+	 */
+	private int[] order;
+	private int orderSize;
+	/**
+	 * the index of a node in the depthlist of the builder, -1 if not in it
+	 */
+	private int[] listIndex;
+	/**
+	 * the highest {@link #listIndex} of the objects covered by a node
+	 */
+	private int[] lastCovered;
+
+	@Override
+	public String getName() {
+		return "depthlistcheck";
+	}
+
+	@Override
+	public String getDescription() {
+		return "compares the depthlists with the former depth-first search, reports violations";
+	}
+
+	@Override
+	public String run() {
+		RenderChunk[] chunks = DepthListBenchmark.createChunks();
+		Random random = new Random(1);
+		entities = DepthListBenchmark.createEntities(random);
+		ArrayList<RenderCell> hidden = new ArrayList<>();
+		for (RenderChunk chunk : chunks) {
+			for (RenderCell cell : chunk.getDepthOrder()) {
+				if (random.nextInt(20) == 0) {
+					cell.setHidden(true);
+					hidden.add(cell);
+				}
+			}
+		}
+		int coverViolations = 0;
+		int missing = 0;
+		int sameOrder = 0;
+		long objects = 0;
+		String first = null;
+		try {
+			buildGraph(chunks);
+			IdentityHashMap<Renderable, Integer> nodes = new IdentityHashMap<>(entities.size() * 2);
+			for (int i = 0; i < entities.size(); i++) {
+				nodes.put(entities.get(i), cells.length + i);
+			}
+			DepthListBuilder builder = new DepthListBuilder();
+			for (int view = 0; view < VIEWS; view++) {
+				float x = random.nextFloat() * 5000 - 2500;
+				float y = random.nextFloat() * 6000 - 4000;
+				int widthProj = 200 + random.nextInt(3000);
+				int heightProj = 200 + random.nextInt(2000);
+				float zLimit = random.nextInt(4) == 0
+					? Float.POSITIVE_INFINITY
+					: random.nextFloat() * blocksZ * RenderCell.GAME_EDGELENGTH;
+				int maxSprites = random.nextInt(4) == 0 ? 50 + random.nextInt(400) : Integer.MAX_VALUE;
+
+				//collect like Camera
+				builder.begin(null, x, y, widthProj, heightProj, zLimit, maxSprites);
+				Arrays.fill(entHead, -1);
+				for (int i = 0; i < entities.size(); i++) {
+					AbstractEntity ent = entities.get(i);
+					if (!ent.isHidden()
+						&& DepthListBuilder.inViewFrustum(ent.getPosition(), x, y, widthProj, heightProj)
+						&& ent.getPosition().getZ() < zLimit) {
+						Coordinate coord = ent.getPosition().toCoord();
+						int cell = getCellIndex(coord.getX(), coord.getY(), coord.getZ() + 1);
+						if (cell >= 0) {
+							builder.addEntity(ent, RenderChunk.getDepthKey(coord.getY(), coord.getZ() + 1));
+							addCoveredEnt(cell, i);
+						} else {
+							builder.addUnsorted(ent);
+						}
+					}
+				}
+				for (RenderChunk chunk : chunks) {
+					builder.addChunk(chunk);
+				}
+				builder.build();
+				search(chunks, x, y, widthProj, heightProj, zLimit, maxSprites);
+
+				Arrays.fill(listIndex, -1);
+				Renderable[] list = builder.getDepthList();
+				int[] listNodes = new int[builder.size()];
+				boolean same = builder.size() == orderSize;
+				for (int i = 0; i < builder.size(); i++) {
+					int node = list[i] instanceof RenderCell
+						? getCellIndex(list[i].getCoord())
+						: nodes.get(list[i]);
+					listNodes[i] = node;
+					listIndex[node] = i;
+					same &= i < orderSize && order[i] == node;
+				}
+				if (same) {
+					sameOrder++;
+				}
+				objects += builder.size();
+
+				//every object after the objects it covers, also through cells which are not rendered
+				computeLastCovered();
+				for (int i = 0; i < builder.size(); i++) {
+					if (lastCovered[listNodes[i]] > i) {
+						coverViolations++;
+						if (first == null) {
+							first = "view " + view + ": " + list[i] + " drawn before the covered " + list[lastCovered[listNodes[i]]];
+						}
+					}
+				}
+				//the same cells and at least the entities of the search
+				boolean complete = builder.size() >= orderSize && builder.size() <= maxSprites;
+				if (maxSprites == Integer.MAX_VALUE) {
+					int cellsInList = 0;
+					for (int i = 0; i < builder.size(); i++) {
+						if (listNodes[i] < cells.length) {
+							cellsInList++;
+						}
+					}
+					int cellsInOrder = 0;
+					for (int i = 0; i < orderSize; i++) {
+						if (order[i] < cells.length) {
+							cellsInOrder++;
+						}
+						complete &= listIndex[order[i]] >= 0;
+					}
+					complete &= cellsInList == cellsInOrder;
+				}
+				if (!complete) {
+					missing++;
+					if (first == null) {
+						first = "view " + view + ": " + builder.size() + " objects, the search found " + orderSize;
+					}
+				}
+			}
+		} finally {
+			for (RenderCell cell : hidden) {
+				cell.setHidden(false);
+			}
+			for (RenderChunk chunk : chunks) {
+				chunk.dispose();
+			}
+		}
+		StringBuilder report = new StringBuilder(256);
+		report.append(VIEWS).append(" views, ")
+			.append(objects / VIEWS).append(" objects per list\n")
+			.append(coverViolations).append(" objects drawn before an object they cover\n")
+			.append(missing).append(" lists with other objects than the search\n")
+			.append(sameOrder).append(" lists in the order of the search\n");
+		if (first != null) {
+			report.append("first ").append(first).append('\n');
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Collects the cells of the chunks and their cover relations.
+	 *
+	 * @param chunks in the order of {@link DepthListBenchmark#createChunks() }
+	 */
+	private void buildGraph(RenderChunk[] chunks) {
+		blocksX = Chunk.getBlocksX();
+		blocksY = Chunk.getBlocksY();
+		blocksZ = Chunk.getBlocksZ();
+		minX = chunks[0].getTopLeftCoordinateX();
+		minY = chunks[0].getTopLeftCoordinateY();
+		width = blocksX * DepthListBenchmark.AREA;
+		height = blocksY * DepthListBenchmark.AREA;
+		cells = new RenderCell[width * height * blocksZ];
+		for (RenderChunk chunk : chunks) {
+			RenderCell[][][] data = chunk.getData();
+			for (int x = 0; x < blocksX; x++) {
+				for (int y = 0; y < blocksY; y++) {
+					for (int z = 0; z < blocksZ; z++) {
+						cells[getCellIndex(chunk.getTopLeftCoordinateX() + x, chunk.getTopLeftCoordinateY() + y, z)] = data[x][y][z];
+					}
+				}
+			}
+		}
+		coverFrom = new int[cells.length + 1];
+		cover = new int[cells.length * 9];
+		int edges = 0;
+		for (int n = 0; n < cells.length; n++) {
+			coverFrom[n] = edges;
+			//the walk of the deprecated RenderCell.getCovered
+			long nghb = cells[n].getPosition().pack();
+			if (PackedCoordinate.getZ(nghb) > 0) {
+				nghb = PackedCoordinate.add(nghb, 0, 0, -1);//go down
+				edges = addCover(edges, nghb);
+				nghb = PackedCoordinate.neighbour(nghb, 1);//back right
+				edges = addCover(edges, nghb);
+				nghb = PackedCoordinate.neighbour(nghb, 6);//back left
+				edges = addCover(edges, nghb);
+				nghb = PackedCoordinate.neighbour(nghb, 1);//back
+				edges = addCover(edges, nghb);
+				nghb = PackedCoordinate.add(nghb, 0, 2, 1);//go back to origin
+			}
+			nghb = PackedCoordinate.neighbour(nghb, 0);//back
+			edges = addCover(edges, nghb);
+			nghb = PackedCoordinate.neighbour(nghb, 3);//back right
+			edges = addCover(edges, nghb);
+			nghb = PackedCoordinate.neighbour(nghb, 6);//back left
+			edges = addCover(edges, nghb);
+			if (PackedCoordinate.getZ(nghb) < blocksZ - 1) {
+				nghb = PackedCoordinate.add(nghb, 0, 0, 1);//back left above
+				edges = addCover(edges, nghb);
+				nghb = PackedCoordinate.neighbour(nghb, 2);//back right above
+				edges = addCover(edges, nghb);
+			}
+		}
+		coverFrom[cells.length] = edges;
+
+		entCover = new int[entities.size()];
+		for (int i = 0; i < entities.size(); i++) {
+			//the relation of the deprecated AbstractEntity.getCovered
+			Coordinate coord = entities.get(i).getCoord();
+			coord.add(0, 0, -1);
+			if (coord.getZ() < 1) {
+				entCover[i] = getCellIndex(coord);
+			} else {
+				entCover[i] = getCellIndex(coord.add(0, 0, -1).goToNeighbour(4));
+			}
+		}
+		entHead = new int[cells.length];
+		entNext = new int[entities.size()];
+		int nodes = cells.length + entities.size();
+		marks = new int[nodes];
+		stackNodes = new int[nodes];
+		stackChildren = new int[nodes];
+		order = new int[nodes];
+		listIndex = new int[nodes];
+		lastCovered = new int[nodes];
+	}
+
+	/**
+	 *
+	 * @param edges amount of relations
+	 * @param packed the covered cell
+	 * @return the new amount of relations
+	 */
+	private int addCover(int edges, long packed) {
+		int cell = getCellIndex(PackedCoordinate.getX(packed), PackedCoordinate.getY(packed), PackedCoordinate.getZ(packed));
+		if (cell >= 0) {
+			cover[edges++] = cell;
+		}
+		return edges;
+	}
+
+	/**
+	 * Inserts after the entities with the same depth like the former sort.
+	 *
+	 * @param cell
+	 * @param ent
+	 */
+	private void addCoveredEnt(int cell, int ent) {
+		float depth = entities.get(ent).getDepth();
+		int prev = -1;
+		int next = entHead[cell];
+		while (next >= 0 && entities.get(next).getDepth() <= depth) {
+			prev = next;
+			next = entNext[next];
+		}
+		entNext[ent] = next;
+		if (prev < 0) {
+			entHead[cell] = ent;
+		} else {
+			entNext[prev] = ent;
+		}
+	}
+
+	/**
+	 * The covered objects in the order of the former getCovered: the entities
+	 * of a cell before the cells.
+	 *
+	 * @param node a cell or an entity
+	 * @param k index of the child
+	 * @return the node, -1 if there is none, {@link #END} after the last
+	 */
+	private int getChild(int node, int k) {
+		if (node >= cells.length) {
+			if (k > 0) {
+				return END;
+			}
+			return entCover[node - cells.length];
+		}
+		int ent = entHead[node];
+		while (ent >= 0) {
+			if (k == 0) {
+				return cells.length + ent;
+			}
+			k--;
+			ent = entNext[ent];
+		}
+		int edge = coverFrom[node] + k;
+		return edge < coverFrom[node + 1] ? cover[edge] : END;
+	}
+
+	/**
+	 * The depth-first search of the former Camera.visit starting at every
+	 * cell in the order of the former CameraSpaceIterator.
+	 *
+	 * @param chunks
+	 * @param x
+	 * @param y
+	 * @param widthProj
+	 * @param heightProj
+	 * @param zLimit
+	 * @param maxSprites
+	 */
+	private void search(RenderChunk[] chunks, float x, float y, int widthProj, int heightProj, float zLimit, int maxSprites) {
+		mark++;
+		orderSize = 0;
+		int topLevel = Math.min((int) (zLimit / RenderCell.GAME_EDGELENGTH), blocksZ - 1);
+		for (RenderChunk chunk : chunks) {
+			for (int yInd = 0; yInd < blocksY; yInd++) {
+				for (int xInd = 0; xInd < blocksX; xInd++) {
+					for (int z = 0; z <= topLevel; z++) {
+						int root = getCellIndex(chunk.getTopLeftCoordinateX() + xInd, chunk.getTopLeftCoordinateY() + yInd, z);
+						if (marks[root] != mark && DepthListBuilder.inViewFrustum(cells[root].getPosition(), x, y, widthProj, heightProj)) {
+							marks[root] = mark;
+							int top = 0;
+							stackNodes[0] = root;
+							stackChildren[0] = 0;
+							while (top >= 0) {
+								int node = stackNodes[top];
+								int child = getChild(node, stackChildren[top]++);
+								if (child == END) {
+									top--;
+									emit(node, zLimit, maxSprites);
+								} else if (child >= 0
+									&& marks[child] != mark
+									&& DepthListBuilder.inViewFrustum(getPosition(child), x, y, widthProj, heightProj)) {
+									marks[child] = mark;
+									top++;
+									stackNodes[top] = child;
+									stackChildren[top] = 0;
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		//entities without a covering cell at the end
+		for (int i = 0; i < entities.size(); i++) {
+			AbstractEntity ent = entities.get(i);
+			Coordinate coord = ent.getPosition().toCoord();
+			if (!ent.isHidden()
+				&& DepthListBuilder.inViewFrustum(ent.getPosition(), x, y, widthProj, heightProj)
+				&& ent.getPosition().getZ() < zLimit
+				&& getCellIndex(coord.getX(), coord.getY(), coord.getZ() + 1) < 0) {
+				order[orderSize++] = cells.length + i;
+			}
+		}
+	}
+
+	/**
+	 * Fills {@link #lastCovered} by a depth-first search over the whole cover
+	 * graph. The graph has no cycles.
+	 */
+	private void computeLastCovered() {
+		mark++;
+		for (int start = 0; start < marks.length; start++) {
+			if (marks[start] == mark) {
+				continue;
+			}
+			marks[start] = mark;
+			lastCovered[start] = -1;
+			int top = 0;
+			stackNodes[0] = start;
+			stackChildren[0] = 0;
+			while (top >= 0) {
+				int node = stackNodes[top];
+				int child = getChild(node, stackChildren[top]++);
+				if (child == END) {
+					top--;
+					if (top >= 0) {
+						int parent = stackNodes[top];
+						lastCovered[parent] = Math.max(lastCovered[parent], Math.max(lastCovered[node], listIndex[node]));
+					}
+				} else if (child >= 0) {
+					if (marks[child] == mark) {
+						lastCovered[node] = Math.max(lastCovered[node], Math.max(lastCovered[child], listIndex[child]));
+					} else {
+						marks[child] = mark;
+						lastCovered[child] = -1;
+						top++;
+						stackNodes[top] = child;
+						stackChildren[top] = 0;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds a visited node like the former Camera.visit.
+	 *
+	 * @param node
+	 * @param zLimit
+	 * @param maxSprites
+	 */
+	private void emit(int node, float zLimit, int maxSprites) {
+		boolean render;
+		if (node < cells.length) {
+			RenderCell cell = cells[node];
+			render = cell.getId() != 0 && !cell.isClipped() && !cell.isHidden();
+		} else {
+			render = true;
+		}
+		if (render
+			&& getPosition(node).getZPoint() < zLimit
+			&& orderSize < maxSprites) {
+			order[orderSize++] = node;
+		}
+	}
+
+	/**
+	 *
+	 * @param node
+	 * @return
+	 */
+	private Position getPosition(int node) {
+		if (node < cells.length) {
+			return cells[node].getPosition();
+		}
+		return entities.get(node - cells.length).getPosition();
+	}
+
+	/**
+	 *
+	 * @param coord
+	 * @return -1 if outside of the chunks
+	 */
+	private int getCellIndex(Coordinate coord) {
+		return getCellIndex(coord.getX(), coord.getY(), coord.getZ());
+	}
+
+	/**
+	 *
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return -1 if outside of the chunks
+	 */
+	private int getCellIndex(int x, int y, int z) {
+		x -= minX;
+		y -= minY;
+		if (x < 0 || x >= width || y < 0 || y >= height || z < 0 || z >= blocksZ) {
+			return -1;
+		}
+		return (x * height + y) * blocksZ + z;
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.benchmark;
+
+import com.bombinggames.wurfelengine.core.gameobjects.AbstractEntity;
+import com.bombinggames.wurfelengine.core.gameobjects.BenchmarkBall;
+import com.bombinggames.wurfelengine.core.gameobjects.EntityCodec;
+import com.bombinggames.wurfelengine.core.map.Point;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Writing and reading the entities of a chunk with the {@link EntityCodec}
+ * compared to java serialization like in chunk files before.
+ *
+ * @author Benedikt Vogler
+ */
+public class EntityCodecBenchmark extends AbstractBenchmark {
+
+	private static final int ENTITIES = 200;
+
+	@Override
+	public String getName() {
+		return "entitycodec";
+	}
+
+	@Override
+	public String getDescription() {
+		return "entity codec vs. java serialization for " + ENTITIES + " entities";
+	}
+
+	@Override
+	public String run() {
+		if (AbstractEntity.getRegisteredName(BenchmarkBall.class) == null) {
+			AbstractEntity.registerEngineEntities();
+		}
+		Random random = new Random(1);
+		ArrayList<AbstractEntity> entities = new ArrayList<>(ENTITIES);
+		for (int i = 0; i < ENTITIES; i++) {
+			BenchmarkBall ball = new BenchmarkBall();
+			ball.setPosition(new Point(random.nextFloat() * 2000, random.nextFloat() * 2000, random.nextFloat() * 500));
+			ball.setHealth(random.nextInt(100));
+			entities.add(ball);
+		}
+
+		byte[] serialized;
+		byte[] encoded;
+		try {
+			serialized = serialize(entities);
+			encoded = EntityCodec.write(entities);
+			if (EntityCodec.read(encoded).size() != ENTITIES) {
+				return "entity codec lost entities";
+			}
+		} catch (IOException ex) {
+			return "benchmark failed: " + ex;
+		}
+
+		StringBuilder report = new StringBuilder(512);
+		report.append(ENTITIES).append(" entities, ns/op is per entity\n");
+		report.append("bytes per entity: serialization ").append(serialized.length / ENTITIES)
+			.append(", codec ").append(encoded.length / ENTITIES).append('\n');
+		report.append(line("write serialization", measure(() -> {
+			try {
+				return serialize(entities).length;
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}), ENTITIES));
+		report.append(line("write codec", measure(() -> {
+			try {
+				return EntityCodec.write(entities).length;
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}), ENTITIES));
+		report.append(line("read serialization", measure(() -> {
+			try {
+				return deserialize(serialized).size();
+			} catch (IOException | ClassNotFoundException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}), ENTITIES));
+		report.append(line("read codec", measure(() -> {
+			try {
+				return EntityCodec.read(encoded).size();
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}), ENTITIES));
+		report.append("checksum ").append(getSink());
+		return report.toString();
+	}
+
+	/**
+	 * The way entities were stored before.
+	 *
+	 * @param entities
+	 * @return
+	 * @throws IOException
+	 */
+	private static byte[] serialize(ArrayList<AbstractEntity> entities) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeInt(entities.size());
+			for (AbstractEntity entity : entities) {
+				out.writeObject(entity);
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	private static ArrayList<AbstractEntity> deserialize(byte[] data) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+			int count = in.readInt();
+			ArrayList<AbstractEntity> entities = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				entities.add((AbstractEntity) in.readObject());
+			}
+			return entities;
+		}
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.benchmark;
+
+import com.bombinggames.wurfelengine.core.map.GenerationTask;
+import com.bombinggames.wurfelengine.core.map.Generator;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Generation throughput of a generator cell by cell, column by column and
+ * with the columns split across the fork join pool. Checks that every way
+ * gives the same blocks.
+ *
+ * @author Benedikt Vogler
+ */
+public class GenerationBenchmark extends AbstractBenchmark {
+
+	private static final int BLOCKS_X = 10;
+	private static final int BLOCKS_Y = 40;
+	private static final int BLOCKS_Z = 10;
+	/**
+	 * a 9x9 area
+	 */
+	private static final int AREA = 9;
+
+	private final String name;
+	private final Generator generator;
+
+	/**
+	 *
+	 * @param name the name of the benchmark, lowercase
+	 * @param generator the measured generator
+	 */
+	public GenerationBenchmark(String name, Generator generator) {
+		this.name = name;
+		this.generator = generator;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String getDescription() {
+		return "cell, column and parallel generation of " + AREA + "x" + AREA + " chunks with " + generator.getClass().getSimpleName();
+	}
+
+	@Override
+	public String run() {
+		int chunks = AREA * AREA;
+		int[][] cells = new int[chunks][BLOCKS_X * BLOCKS_Y * BLOCKS_Z];
+		int[][] serial = new int[chunks][BLOCKS_X * BLOCKS_Y * BLOCKS_Z];
+		int[][] parallel = new int[chunks][BLOCKS_X * BLOCKS_Y * BLOCKS_Z];
+
+		StringBuilder report = new StringBuilder(512);
+		report.append(generator.getClass().getSimpleName())
+			.append(", thread safe: ").append(generator.isThreadSafe())
+			.append(", pool parallelism: ").append(ForkJoinPool.commonPool().getParallelism())
+			.append(", ns/op is per chunk\n");
+		long cellTime = measure(() -> generateCells(cells));
+		long serialTime = measure(() -> generateArea(serial, false));
+		long parallelTime = measure(() -> generateArea(parallel, true));
+		report.append(line("cell by cell", cellTime, chunks));
+		report.append(line("columns", serialTime, chunks));
+		report.append(line("columns parallel", parallelTime, chunks));
+		report.append(String.format(
+			java.util.Locale.ROOT,
+			"chunks/s cells %.1f, columns %.1f, parallel %.1f%n",
+			chunks * 1e9 / cellTime,
+			chunks * 1e9 / serialTime,
+			chunks * 1e9 / parallelTime
+		));
+		report.append("identical: ").append((Arrays.deepEquals(cells, serial) && Arrays.deepEquals(serial, parallel))).append('\n');
+		report.append("checksum ").append(getSink());
+		return report.toString();
+	}
+
+	/**
+	 * The way chunks were generated before the column API.
+	 *
+	 * @param target
+	 * @return
+	 */
+	private long generateCells(int[][] target) {
+		long sum = 0;
+		int i = 0;
+		for (int chunkX = -AREA / 2; chunkX <= AREA / 2; chunkX++) {
+			for (int chunkY = -AREA / 2; chunkY <= AREA / 2; chunkY++) {
+				int cell = 0;
+				for (int x = 0; x < BLOCKS_X; x++) {
+					for (int y = 0; y < BLOCKS_Y; y++) {
+						for (int z = 0; z < BLOCKS_Z; z++) {
+							target[i][cell++] = generator.generate(chunkX * BLOCKS_X + x, chunkY * BLOCKS_Y + y, z);
+						}
+					}
+				}
+				sum += target[i][target[i].length / 2];
+				i++;
+			}
+		}
+		return sum;
+	}
+
+	private long generateArea(int[][] target, boolean parallel) {
+		long sum = 0;
+		int i = 0;
+		for (int chunkX = -AREA / 2; chunkX <= AREA / 2; chunkX++) {
+			for (int chunkY = -AREA / 2; chunkY <= AREA / 2; chunkY++) {
+				GenerationTask.generate(
+					generator,
+					chunkX * BLOCKS_X,
+					chunkY * BLOCKS_Y,
+					BLOCKS_X,
+					BLOCKS_Y,
+					BLOCKS_Z,
+					target[i],
+					parallel
+				);
+				sum += target[i][target[i].length / 2];
+				i++;
+			}
+		}
+		return sum;
+	}
+}
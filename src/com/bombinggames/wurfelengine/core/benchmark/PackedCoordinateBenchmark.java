@@ -0,0 +1,144 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.benchmark;
+
+import com.bombinggames.wurfelengine.core.map.Chunk;
+import com.bombinggames.wurfelengine.core.map.Coordinate;
+import com.bombinggames.wurfelengine.core.map.PackedCoordinate;
+import com.bombinggames.wurfelengine.core.map.Point;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares the neighbour walk of {@link Coordinate} objects with
+ * {@link PackedCoordinate}. A frame converts points to coordinates and visits
+ * the eight neighbours of each, like the entity and rendering code does. The
+ * visited coordinates are kept in a small ring buffer like lists of covered
+ * cells or paths do, so the JIT can not remove the allocations. The report
+ * contains the allocated bytes per frame if the JVM can measure them.
+ *
+ * @author Benedikt Vogler
+ */
+public class PackedCoordinateBenchmark extends AbstractBenchmark {
+
+	private static final int POINTS = 10000;
+	private static final int FRAMES = 10;
+	private static final int KEPT = 64;
+
+	@Override
+	public String getName() {
+		return "packedcoords";
+	}
+
+	@Override
+	public String getDescription() {
+		return "neighbour walk with coordinate objects vs. packed coordinates, allocations per frame";
+	}
+
+	@Override
+	public String run() {
+		Random random = new Random(1);
+		Point[] points = new Point[POINTS];
+		for (int i = 0; i < POINTS; i++) {
+			points[i] = new Point(
+				random.nextFloat() * 20000 - 10000,
+				random.nextFloat() * 20000 - 10000,
+				random.nextFloat() * 2000
+			);
+		}
+		long operations = (long) POINTS * 8 * FRAMES;
+		Coordinate[] keptCoords = new Coordinate[KEPT];
+		long[] keptPacked = new long[KEPT];
+
+		StringBuilder report = new StringBuilder(256);
+		report.append(POINTS).append(" points, 8 neighbours, ").append(FRAMES).append(" frames\n");
+		Task objects = () -> {
+			long sum = 0;
+			for (int frame = 0; frame < FRAMES; frame++) {
+				for (Point point : points) {
+					Coordinate coord = point.toCoord();
+					for (int side = 0; side < 8; side++) {
+						Coordinate neighbour = coord.cpy().goToNeighbour(side);
+						keptCoords[(int) (sum & (KEPT - 1))] = neighbour;
+						sum += neighbour.getChunkX() + neighbour.getChunkY()
+							+ Math.floorMod(neighbour.getX(), Chunk.getBlocksX())
+							+ Math.floorMod(neighbour.getY(), Chunk.getBlocksY());
+					}
+				}
+			}
+			return sum;
+		};
+		Task packed = () -> {
+			long sum = 0;
+			for (int frame = 0; frame < FRAMES; frame++) {
+				for (Point point : points) {
+					long coord = PackedCoordinate.fromPoint(point);
+					for (int side = 0; side < 8; side++) {
+						long neighbour = PackedCoordinate.neighbour(coord, side);
+						keptPacked[(int) (sum & (KEPT - 1))] = neighbour;
+						sum += PackedCoordinate.getChunkX(neighbour) + PackedCoordinate.getChunkY(neighbour)
+							+ Math.floorMod(PackedCoordinate.getX(neighbour), Chunk.getBlocksX())
+							+ Math.floorMod(PackedCoordinate.getY(neighbour), Chunk.getBlocksY());
+					}
+				}
+			}
+			return sum;
+		};
+		report.append(line("coordinate objects", measure(objects), operations));
+		report.append(allocations("coordinate objects", objects));
+		report.append(line("packed coordinates", measure(packed), operations));
+		report.append(allocations("packed coordinates", packed));
+		report.append("checksum ").append(getSink());
+		return report.toString();
+	}
+
+	/**
+	 * Runs a task once and reports the allocated bytes per frame.
+	 *
+	 * @param label
+	 * @param task
+	 * @return a line of the report
+	 */
+	private String allocations(String label, Task task) {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			return label + " allocations can not be measured on this JVM\n";
+		}
+		com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+		long threadId = Thread.currentThread().getId();
+		long start = allocationBean.getThreadAllocatedBytes(threadId);
+		task.run();
+		long bytes = allocationBean.getThreadAllocatedBytes(threadId) - start;
+		return String.format(Locale.ROOT, "%-32s %10d bytes/frame%n", label, bytes / FRAMES);
+	}
+}
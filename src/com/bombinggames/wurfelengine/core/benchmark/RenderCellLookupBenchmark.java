@@ -0,0 +1,168 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.benchmark;
+
+import com.bombinggames.wurfelengine.core.Controller;
+import com.bombinggames.wurfelengine.core.map.Chunk;
+import com.bombinggames.wurfelengine.core.map.ChunkIndex;
+import com.bombinggames.wurfelengine.core.map.Map;
+import com.bombinggames.wurfelengine.core.map.rendering.RenderCell;
+import com.bombinggames.wurfelengine.core.map.rendering.RenderChunk;
+import com.bombinggames.wurfelengine.core.map.rendering.RenderStorage;
+import java.util.LinkedList;
+import java.util.Random;
+
+/**
+ * Compares the cell lookup of the {@link RenderStorage} with 9 and 25 render
+ * chunks. The previous lookup scanned a list of the render chunks and rotated
+ * it on every hit, the current one uses a {@link ChunkIndex}. The coordinates
+ * are random inside the loaded area. The render chunks are created from empty
+ * chunks which are not added to the map. Needs a running game with a loaded
+ * map because the chunk size is a map setting.
+ *
+ * @author Benedikt Vogler
+ */
+public class RenderCellLookupBenchmark extends AbstractBenchmark {
+
+	private static final int LOOKUPS = 100000;
+
+	@Override
+	public String getName() {
+		return "rendercells";
+	}
+
+	@Override
+	public String getDescription() {
+		return "render cell lookup with a list scan vs. the chunk index, 9 and 25 render chunks";
+	}
+
+	@Override
+	public String run() {
+		Map map = Controller.getMap();
+		if (map == null) {
+			return "needs a running game with a loaded map";
+		}
+		StringBuilder report = new StringBuilder(256);
+		report.append(LOOKUPS).append(" lookups\n");
+		report.append(run(map, 1));
+		report.append(run(map, 2));
+		report.append("checksum ").append(getSink());
+		return report.toString();
+	}
+
+	/**
+	 *
+	 * @param map
+	 * @param radius chunks around the center
+	 * @return the lines of the report
+	 */
+	private String run(Map map, int radius) {
+		LinkedList<RenderChunk> list = new LinkedList<>();
+		ChunkIndex<RenderChunk> index = new ChunkIndex<>(16);
+		for (int x = -radius; x <= radius; x++) {
+			for (int y = -radius; y <= radius; y++) {
+				RenderChunk rChunk = new RenderChunk(null, new Chunk(map, x, y));
+				list.add(rChunk);
+				index.put(x, y, rChunk);
+			}
+		}
+		int width = (radius * 2 + 1);
+		Random random = new Random(1);
+		int[] coords = new int[LOOKUPS * 3];
+		for (int i = 0; i < LOOKUPS; i++) {
+			coords[i * 3] = random.nextInt(width * Chunk.getBlocksX()) - radius * Chunk.getBlocksX();
+			coords[i * 3 + 1] = random.nextInt(width * Chunk.getBlocksY()) - radius * Chunk.getBlocksY();
+			coords[i * 3 + 2] = random.nextInt(Chunk.getBlocksZ());
+		}
+
+		String label = list.size() + " chunks, ";
+		long time = measure(() -> {
+			long sum = 0;
+			for (int i = 0; i < coords.length; i += 3) {
+				RenderCell cell = scan(list, coords[i], coords[i + 1], coords[i + 2]);
+				sum += cell == null ? 0 : cell.getId();
+			}
+			return sum;
+		});
+		String lines = line(label + "list scan", time, LOOKUPS);
+		time = measure(() -> {
+			long sum = 0;
+			for (int i = 0; i < coords.length; i += 3) {
+				RenderCell cell = lookup(index, coords[i], coords[i + 1], coords[i + 2]);
+				sum += cell == null ? 0 : cell.getId();
+			}
+			return sum;
+		});
+		return lines + line(label + "chunk index", time, LOOKUPS);
+	}
+
+	/**
+	 * The previous {@link RenderStorage#getCell(int, int, int)}.
+	 *
+	 * @param data
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return
+	 */
+	private static RenderCell scan(LinkedList<RenderChunk> data, int x, int y, int z) {
+		for (RenderChunk chunk : data) {
+			int left = chunk.getTopLeftCoordinateX();
+			int top = chunk.getTopLeftCoordinateY();
+			if (x >= left
+				&& x < left + Chunk.getBlocksX()
+				&& y >= top
+				&& y < top + Chunk.getBlocksY()
+			) {
+				data.addFirst(data.removeLast());
+				return chunk.getData()[x - left][y - top][z];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The lookup of {@link RenderStorage#getCell(int, int, int)}.
+	 *
+	 * @param index
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return
+	 */
+	private static RenderCell lookup(ChunkIndex<RenderChunk> index, int x, int y, int z) {
+		RenderChunk chunk = index.get(Math.floorDiv(x, Chunk.getBlocksX()), Math.floorDiv(y, Chunk.getBlocksY()));
+		if (chunk == null) {
+			return null;
+		}
+		return chunk.getData()[x - chunk.getTopLeftCoordinateX()][y - chunk.getTopLeftCoordinateY()][z];
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.benchmark;
+
+import com.bombinggames.wurfelengine.WE;
+import com.bombinggames.wurfelengine.core.GameView;
+import com.bombinggames.wurfelengine.core.map.Chunk;
+import com.bombinggames.wurfelengine.core.map.ChunkChange;
+import com.bombinggames.wurfelengine.core.map.rendering.RenderChunk;
+import com.bombinggames.wurfelengine.core.map.rendering.RenderStorage;
+
+/**
+ * Compares the update of the {@link RenderStorage} after a single block edit.
+ * The complete update reinitializes every loaded cell, the incremental update
+ * only the changed cell and its neighbourhood. Unlike the other benchmarks this
+ * one needs a running game with a loaded map because it measures the render
+ * storage of the game.
+ *
+ * @author Benedikt Vogler
+ */
+public class RenderUpdateBenchmark extends AbstractBenchmark {
+
+	private static final int EDITS = 1000;
+
+	@Override
+	public String getName() {
+		return "renderupdate";
+	}
+
+	@Override
+	public String getDescription() {
+		return "complete vs. incremental render storage update after a block edit";
+	}
+
+	@Override
+	public String run() {
+		GameView view = WE.getGameplay() == null ? null : WE.getGameplay().getView();
+		RenderStorage rS = view == null ? null : view.getRenderStorage();
+		if (rS == null || rS.getData().isEmpty()) {
+			return "needs a running game with a loaded map";
+		}
+		RenderChunk rChunk = rS.getData().getFirst();
+		Chunk chunk = rChunk.getChunk();
+		int x = rChunk.getTopLeftCoordinateX() + Chunk.getBlocksX() / 2;
+		int y = rChunk.getTopLeftCoordinateY() + Chunk.getBlocksY() / 2;
+		int z = Chunk.getBlocksZ() / 2;
+		long cells = (long) rS.getData().size() * Chunk.getBlocksX() * Chunk.getBlocksY() * Chunk.getBlocksZ();
+
+		StringBuilder report = new StringBuilder(256);
+		report.append(rS.getData().size()).append(" render chunks, ")
+			.append(cells).append(" loaded cells\n");
+		long time = measure(() -> {
+			rS.reinitChunks();
+			return cells;
+		});
+		report.append(line("complete update", time, 1));
+		time = measure(() -> {
+			for (int i = 0; i < EDITS; i++) {
+				rS.refresh(new ChunkChange(chunk, x, y, z));
+			}
+			return EDITS;
+		});
+		report.append(line("incremental update", time, EDITS));
+		report.append("checksum ").append(getSink());
+		return report.toString();
+	}
+}
@@ -5,10 +5,26 @@
  */
 package com.bombinggames.wurfelengine.core.console;
 
+import com.bombinggames.wurfelengine.WE;
 import com.bombinggames.wurfelengine.core.Controller;
 import com.bombinggames.wurfelengine.core.gameobjects.BenchmarkBall;
 import com.bombinggames.wurfelengine.core.GameplayScreen;
+import com.bombinggames.wurfelengine.core.benchmark.AbstractBenchmark;
+import com.bombinggames.wurfelengine.core.benchmark.BlockAccessorBenchmark;
+import com.bombinggames.wurfelengine.core.benchmark.BlockTickBenchmark;
+import com.bombinggames.wurfelengine.core.benchmark.ChunkFormatBenchmark;
+import com.bombinggames.wurfelengine.core.benchmark.ChunkIndexBenchmark;
+import com.bombinggames.wurfelengine.core.benchmark.ChunkStorageBenchmark;
+import com.bombinggames.wurfelengine.core.benchmark.DepthListBenchmark;
+import com.bombinggames.wurfelengine.core.benchmark.DepthListCheck;
+import com.bombinggames.wurfelengine.core.benchmark.EntityCodecBenchmark;
+import com.bombinggames.wurfelengine.core.benchmark.GenerationBenchmark;
+import com.bombinggames.wurfelengine.core.benchmark.PackedCoordinateBenchmark;
+import com.bombinggames.wurfelengine.core.benchmark.RenderCellLookupBenchmark;
+import com.bombinggames.wurfelengine.core.benchmark.RenderUpdateBenchmark;
 import com.bombinggames.wurfelengine.core.map.Chunk;
+import com.bombinggames.wurfelengine.core.map.Generators.IslandGenerator;
+import java.util.ArrayList;
 import java.util.StringTokenizer;
 
 /**
@@ -17,6 +33,40 @@ import java.util.StringTokenizer;
  */
 public class BenchmarkCommand implements ConsoleCommand {
 
+	private static final ArrayList<AbstractBenchmark> BENCHMARKS = new ArrayList<>(4);
+
+	static {
+		registerBenchmark(new ChunkStorageBenchmark());
+		registerBenchmark(new ChunkFormatBenchmark());
+		registerBenchmark(new EntityCodecBenchmark());
+		registerBenchmark(new ChunkIndexBenchmark());
+		registerBenchmark(new GenerationBenchmark("generation", new IslandGenerator()));
+		registerBenchmark(new RenderUpdateBenchmark());
+		registerBenchmark(new BlockTickBenchmark());
+		registerBenchmark(new PackedCoordinateBenchmark());
+		registerBenchmark(new BlockAccessorBenchmark());
+		registerBenchmark(new RenderCellLookupBenchmark());
+		registerBenchmark(new DepthListBenchmark());
+		registerBenchmark(new DepthListCheck());
+	}
+
+	/**
+	 * Adds a benchmark which can then be run via "benchmark &lt;name&gt;".
+	 *
+	 * @param benchmark
+	 */
+	public static void registerBenchmark(AbstractBenchmark benchmark) {
+		BENCHMARKS.add(benchmark);
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public static ArrayList<AbstractBenchmark> getRegisteredBenchmarks() {
+		return BENCHMARKS;
+	}
+
 	@Override
 	public String getCommandName() {
 		return "benchmark";
@@ -25,6 +75,23 @@ public class BenchmarkCommand implements ConsoleCommand {
 
 	@Override
 	public boolean perform(StringTokenizer par1, GameplayScreen gameplay) {
+		if (par1.hasMoreTokens()) {
+			String name = par1.nextToken().toLowerCase();
+			if ("list".equals(name)) {
+				for (AbstractBenchmark benchmark : BENCHMARKS) {
+					WE.getConsole().add(benchmark.getName() + ": " + benchmark.getDescription() + "\n");
+				}
+				return true;
+			}
+			for (AbstractBenchmark benchmark : BENCHMARKS) {
+				if (benchmark.getName().equals(name)) {
+					WE.getConsole().add(benchmark.run() + "\n", "Benchmark");
+					return true;
+				}
+			}
+			WE.getConsole().add("Benchmark " + name + " not found.\n");
+			return false;
+		}
 		new BenchmarkBall().spawn(Controller.getMap().getCenter(Chunk.getGameHeight()));
             //add("Spawned a benchmark ball.", "System");
         return true;
@@ -36,7 +103,7 @@ public class BenchmarkCommand implements ConsoleCommand {
 	 */
 	@Override
 	public String getManual() {
-		return "spawns a benchmark ball";
+		return "spawns a benchmark ball. \"benchmark list\" lists the micro benchmarks, \"benchmark <name>\" runs one";
 	}
 	
 }
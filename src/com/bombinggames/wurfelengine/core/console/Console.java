@@ -138,6 +138,7 @@ public class Console {
 		//register engine commands
 		registeredCommands.add(new BenchmarkCommand());
 		registeredCommands.add(new CdCommand());
+		registeredCommands.add(new ConvertRegionsCommand());
 		registeredCommands.add(new LECommand());
 		registeredCommands.add(new CreditsCommand());
 		registeredCommands.add(new EditorCommand());
@@ -150,6 +151,7 @@ public class Console {
 		registeredCommands.add(new ReloadShadersCommand());
 		registeredCommands.add(new SaveCommand());
 		registeredCommands.add(new PrintmapCommand());
+		registeredCommands.add(new PregenerateCommand());
 		registeredCommands.add(new MenuCommand());
 		registeredCommands.add(new LsCommand());
 		registeredCommands.add(new FullscreenCommand());
@@ -0,0 +1,55 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.bombinggames.wurfelengine.core.console;
+
+import com.bombinggames.wurfelengine.WE;
+import com.bombinggames.wurfelengine.core.Controller;
+import com.bombinggames.wurfelengine.core.GameplayScreen;
+import com.bombinggames.wurfelengine.core.map.Chunk;
+import com.bombinggames.wurfelengine.core.map.ChunkFiles;
+import com.bombinggames.wurfelengine.core.map.Map;
+import java.io.File;
+import java.io.IOException;
+import java.util.StringTokenizer;
+
+/**
+ * Moves the single chunk files of the loaded map into region files.
+ *
+ * @author Benedikt Vogler
+ */
+public class ConvertRegionsCommand implements ConsoleCommand {
+
+	@Override
+	public String getCommandName() {
+		return "convertregions";
+	}
+
+	@Override
+	public boolean perform(StringTokenizer parameters, GameplayScreen gameplay) {
+		Map map = Controller.getMap();
+		map.getSaveService().flush();
+		try {
+			int count = ChunkFiles.convertToRegions(map.getPath());
+			for (int slot = 0; slot < map.getSavesCount(); slot++) {
+				count += ChunkFiles.convertToRegions(Chunk.getSaveDirectory(map.getPath(), slot));
+			}
+			WE.getConsole().add("Moved " + count + " chunk files into region files.\n");
+			return true;
+		} catch (IOException ex) {
+			WE.getConsole().add("Converting failed: " + ex + "\n", "Warning");
+			return false;
+		}
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	@Override
+	public String getManual() {
+		return "moves every chunk file of the loaded map and its save slots into region files";
+	}
+}
@@ -7,6 +7,7 @@ package com.bombinggames.wurfelengine.core.console;
 
 import com.bombinggames.wurfelengine.core.Controller;
 import com.bombinggames.wurfelengine.core.GameplayScreen;
+import com.bombinggames.wurfelengine.core.map.Chunk;
 import com.bombinggames.wurfelengine.core.map.Generators.AirGenerator;
 import java.util.StringTokenizer;
 
@@ -19,10 +20,12 @@ public class FillWithAirCommand implements ConsoleCommand {
 	@Override
 	public boolean perform(StringTokenizer parameters, GameplayScreen gameplay) {
 		if (parameters.hasMoreElements()) {
-			Controller.getMap().getChunk(
+			Chunk chunk = Controller.getMap().getChunk(
 				Integer.valueOf(parameters.nextToken()),
 				Integer.valueOf(parameters.nextToken())
-			).fill(new AirGenerator());
+			);
+			chunk.fill(new AirGenerator());
+			chunk.spawnGeneratedEntities();
 			return true;
 		}
 		return false;
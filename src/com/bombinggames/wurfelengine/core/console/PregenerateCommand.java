@@ -0,0 +1,145 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.console;
+
+import com.badlogic.gdx.Gdx;
+import com.bombinggames.wurfelengine.WE;
+import com.bombinggames.wurfelengine.core.Controller;
+import com.bombinggames.wurfelengine.core.GameplayScreen;
+import com.bombinggames.wurfelengine.core.map.Chunk;
+import com.bombinggames.wurfelengine.core.map.Map;
+import com.bombinggames.wurfelengine.core.map.Pregenerator;
+import java.util.StringTokenizer;
+
+/**
+ * Generates a rectangle of chunks into the map directory in the background.
+ * The save slots read them from there.
+ *
+ * @author Benedikt Vogler
+ * @see Pregenerator
+ */
+public class PregenerateCommand implements ConsoleCommand {
+
+	private Pregenerator running;
+
+	@Override
+	public String getCommandName() {
+		return "pregenerate";
+	}
+
+	@Override
+	public boolean perform(StringTokenizer parameters, GameplayScreen gameplay) {
+		if (!parameters.hasMoreTokens()) {
+			WE.getConsole().add("Expected parameters: <left> <top> <right> <bottom> [threads]\n", "System");
+			return false;
+		}
+		String first = parameters.nextToken();
+		if ("cancel".equals(first)) {
+			if (running == null) {
+				WE.getConsole().add("Nothing is pregenerated.\n");
+				return false;
+			}
+			running.cancel();
+			return true;
+		}
+		if (running != null) {
+			WE.getConsole().add("Pregeneration is already running.\n");
+			return false;
+		}
+
+		int[] values = new int[5];
+		int count = 0;
+		try {
+			values[count++] = Integer.parseInt(first);
+			while (parameters.hasMoreTokens() && count < values.length) {
+				values[count++] = Integer.parseInt(parameters.nextToken());
+			}
+		} catch (NumberFormatException ex) {
+			count = 0;
+		}
+		if (count < 4) {
+			WE.getConsole().add("Expected parameters: <left> <top> <right> <bottom> [threads]\n", "System");
+			return false;
+		}
+
+		Map map = Controller.getMap();
+		map.getSaveService().flush();
+		Pregenerator pregenerator = new Pregenerator(
+			map.getPath(),
+			map.getGenerator(),
+			Chunk.getBlocksX(),
+			Chunk.getBlocksY(),
+			Chunk.getBlocksZ()
+		);
+		pregenerator.setRegions(WE.getCVars().getValueB("mapRegionFiles"));
+		pregenerator.setCompression(WE.getCVars().getValueB("mapCompression"));
+		if (count > 4) {
+			pregenerator.setThreads(values[4]);
+		}
+		running = pregenerator;
+		int left = values[0], top = values[1], right = values[2], bottom = values[3];
+		Thread thread = new Thread(() -> {
+			String report;
+			try {
+				int[] reported = new int[1];
+				report = pregenerator.run(left, top, right, bottom, (long done, long total) -> {
+					int percent = (int) (done * 10 / total);
+					synchronized (reported) {
+						if (percent > reported[0]) {
+							reported[0] = percent;
+							Gdx.app.postRunnable(() -> WE.getConsole().add("Pregenerated " + done + "/" + total + " chunks\n"));
+						}
+					}
+				}).toString();
+			} catch (InterruptedException ex) {
+				report = "Pregeneration interrupted.";
+			}
+			String message = report;
+			Gdx.app.postRunnable(() -> {
+				running = null;
+				WE.getConsole().add(message + "\n", "System");
+			});
+		}, "Pregenerate");
+		thread.setDaemon(true);
+		thread.start();
+		WE.getConsole().add("Pregenerating chunks " + left + "," + top + " to " + right + "," + bottom + "…\n");
+		return true;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	@Override
+	public String getManual() {
+		return "generates the chunks from <left> <top> to <right> <bottom> into the map directory in the background using [threads] threads, existing chunks are kept. Reports chunks/s, bytes written and peak heap. \"pregenerate cancel\" stops it";
+	}
+}
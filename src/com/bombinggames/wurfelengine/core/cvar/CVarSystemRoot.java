@@ -132,9 +132,19 @@ public class CVarSystemRoot extends AbstractCVarSystem {
 		register(new StringCVar(""),"loadedMap", CVarFlags.VOlATILE); 
 		register(new StringCVar(""), "lastConsoleCommand");
 		register(new IntCVar(20), "undohistorySize");
-		register(new IntCVar(500), "mapIndexSpaceSize");
 		register(new IntCVar(536870912), "mapMaxMemoryUse");//bytes, 512MB->17,9km^2
+		register(new BooleanCVar(true), "mapPaletteStorage");//palette compressed chunks
+		register(new BooleanCVar(true), "mapCompression");//deflate chunk files
+		register(new BooleanCVar(true), "mapRegionFiles");//store chunks in region files
+		register(new IntCVar(0), "mapLoadingThreads");//0: one less than cores
+		register(new IntCVar(6), "mapLoadingCancelRadius");//chunks
+		register(new IntCVar(0), "mapAutosaveInterval");//seconds, 0 disables autosave
+		register(new BooleanCVar(true), "mapParallelGeneration");//split the generation of a chunk across cores
+		register(new BooleanCVar(true), "mapJournal");//write block edits into a journal
+		register(new IntCVar(10000), "mapJournalCheckpoint");//edits, saves the map when reached
+		register(new IntCVar(2000), "mapTickBudget");//scheduled logic block ticks per frame, 0: no limit
 		register(new BooleanCVar(false), "showMiniMapChunk");
+		register(new BooleanCVar(true), "renderParallelDepthLists");//build the depthlists of multiple cameras on the worker pool
 	}
 
 	/**
@@ -40,6 +40,9 @@ import com.bombinggames.wurfelengine.core.map.rendering.RenderCell;
 import static com.bombinggames.wurfelengine.core.map.rendering.RenderCell.GAME_DIAGLENGTH2;
 import static com.bombinggames.wurfelengine.core.map.rendering.RenderCell.GAME_EDGELENGTH;
 import com.bombinggames.wurfelengine.core.map.rendering.RenderStorage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedList;
 
@@ -52,6 +55,8 @@ public abstract class AbstractEntity extends AbstractGameObject implements Teleg
 
 	private static final long serialVersionUID = 2L;
 	private static java.util.HashMap<String, Class<? extends AbstractEntity>> entityMap = new java.util.HashMap<>(10);//map string to class
+	private static final java.util.HashMap<Class<? extends AbstractEntity>, String> entityNames = new java.util.HashMap<>(10);//map class to string
+	private static final java.util.HashSet<Class<? extends AbstractEntity>> explicitEntities = new java.util.HashSet<>(10);//classes saved with writeData
 
 	/**
 	 *
@@ -62,8 +67,8 @@ public abstract class AbstractEntity extends AbstractGameObject implements Teleg
 	 * Registers engine entities in a map.
 	 */
 	public static void registerEngineEntities() {
-		entityMap.put("Explosion", Explosion.class);
-		entityMap.put("Benchmarkball", BenchmarkBall.class);
+		registerEntity("Explosion", Explosion.class, true);
+		registerEntity("Benchmarkball", BenchmarkBall.class, true);
 	}
 	
 	/**
@@ -72,7 +77,34 @@ public abstract class AbstractEntity extends AbstractGameObject implements Teleg
 	 * @param entityClass the class you want to register
 	 */
 	public static void registerEntity(String name, Class<? extends AbstractEntity> entityClass){
+		registerEntity(name, entityClass, false);
+	}
+
+	/**
+	 * Register a class of entities. The class must have a constructor without parameters.
+	 * @param name the name of the entitie. e.g. "Ball"
+	 * @param entityClass the class you want to register
+	 * @param explicit true if {@link #writeData(DataOutput)} and {@link #readData(DataInput, int)} of the class save its whole state, else java serialization is used
+	 * @see EntityCodec
+	 */
+	public static void registerEntity(String name, Class<? extends AbstractEntity> entityClass, boolean explicit){
 		entityMap.put(name, entityClass);	
+		entityNames.put(entityClass, name);
+		if (explicit) {
+			explicitEntities.add(entityClass);
+		} else {
+			explicitEntities.remove(entityClass);
+		}
+	}
+
+	/**
+	 *
+	 * @param entityClass
+	 * @return true if the class was registered to save its state with {@link #writeData(DataOutput)}
+	 * @see #registerEntity(String, Class, boolean)
+	 */
+	public static boolean isExplicitlyWritten(Class<? extends AbstractEntity> entityClass) {
+		return explicitEntities.contains(entityClass);
 	}
 	
 	/**
@@ -82,6 +114,17 @@ public abstract class AbstractEntity extends AbstractGameObject implements Teleg
 	public static java.util.HashMap<String, Class<? extends AbstractEntity>> getRegisteredEntities() {
 		return entityMap;
 	}
+
+	/**
+	 * Get the name under which a class of entities is registered.
+	 *
+	 * @param entityClass
+	 * @return null if not registered
+	 * @see #registerEntity(String, Class)
+	 */
+	public static String getRegisteredName(Class<? extends AbstractEntity> entityClass) {
+		return entityNames.get(entityClass);
+	}
 	
 	private float lightlevelG;
 	private float lightlevelR;
@@ -105,8 +148,11 @@ public abstract class AbstractEntity extends AbstractGameObject implements Teleg
 	private transient String[] damageSounds;
 	private char spriteCategory = 'e';
 	private boolean useRawDelta = false;
+	/**
+	 * if true the chunks around the entity are kept in memory
+	 */
+	private boolean pinChunks = false;
 	private float mass = 0.4f;
-	private final LinkedList<AbstractGameObject> covered = new LinkedList<>();
 	private final LinkedList<Component> components = new LinkedList<>();
 	private byte value;
 	private byte id;
@@ -476,6 +522,26 @@ public abstract class AbstractEntity extends AbstractGameObject implements Teleg
 		return useRawDelta;
 	}
 
+	/**
+	 * If enabled the chunks around this entity are never evicted from memory.
+	 * Use it for entities which must be simulated when no camera is near, e.g.
+	 * players.
+	 *
+	 * @param pinChunks
+	 * @see com.bombinggames.wurfelengine.core.map.Map#pinChunks(int, int, int)
+	 */
+	public void setPinningChunks(boolean pinChunks) {
+		this.pinChunks = pinChunks;
+	}
+
+	/**
+	 *
+	 * @return true if the chunks around this entity are kept in memory
+	 */
+	public boolean isPinningChunks() {
+		return pinChunks;
+	}
+
 	/**
 	 * loads the chunk at the position
 	 */
@@ -546,50 +612,31 @@ public abstract class AbstractEntity extends AbstractGameObject implements Teleg
 		return getPosition().distanceToSquared(ent) < (colissionRadius + ent.colissionRadius) * (colissionRadius + ent.colissionRadius);
 	}
 
-	
+	/**
+	 * @param rs
+	 * @return the cell in front two layers below
+	 * @deprecated the depthlist is sorted by
+	 * {@link com.bombinggames.wurfelengine.core.map.rendering.RenderChunk#getDepthKey(int, int)}
+	 * and no longer asks for the covered objects. Will be removed in a future
+	 * version.
+	 */
+	@Deprecated
 	@Override
 	public LinkedList<AbstractGameObject> getCovered(RenderStorage rs) {
-		covered.clear();
+		LinkedList<AbstractGameObject> covered = new LinkedList<>();
 		if (position != null) {
 			Coordinate coord = getCoord();
 			coord.add(0, 0, -1);//go one down because the ents are added one too high
 			RenderCell block;
-//			block = rs.getCell(coord);//draw block in this cell first
-//			if (block != null) {
-//				covered.add(block);
-//			}
-//			block = rs.getCell(coord.goToNeighbour(7));//block behind left
-//			if (block != null) {
-//				covered.add(block);
-//			}
-//			block = rs.getCell(coord.goToNeighbour(1));//block behind
-//			if (block != null) {
-//				covered.add(block);
-//			}
-//			block = rs.getCell(coord.goToNeighbour(3));//block behind right
-//			if (block != null) {
-//				covered.add(block);
-//			}
-//			coord.goToNeighbour(5);
-
 			//render this ent before blocks below
-			if (coord.getZ()<1){
+			if (coord.getZ() < 1) {
 				block = rs.getCell(coord);//front
-				if (block != null) {
-					covered.add(block);
-				}
 			} else {
-				if (coord.getZ() > 0) {
-	//				if (block != null) {
-	//					covered.add(block);
-	//				}
-					block = rs.getCell(coord.add(0, 0, -1).goToNeighbour(4));//front
-					if (block != null) {
-						covered.add(block);
-					}
-				}
+				block = rs.getCell(coord.add(0, 0, -1).goToNeighbour(4));//front
+			}
+			if (block != null) {
+				covered.add(block);
 			}
-				
 		}
 		return covered;
 	}
@@ -604,6 +651,98 @@ public abstract class AbstractEntity extends AbstractGameObject implements Teleg
 		return position.toCoord();
 	}
 
+	/**
+	 * The version of the data written by {@link #writeData(DataOutput)}. Change
+	 * it when the layout changes so that {@link #readData(DataInput, int)} can
+	 * still read old files.
+	 *
+	 * @return
+	 * @see EntityCodec
+	 */
+	protected int getSchemaVersion() {
+		return 1;
+	}
+
+	/**
+	 * Writes the state of a subclass when the entity is saved with the
+	 * {@link EntityCodec}. The general state of an entity e.g. the position is
+	 * already written. A class is only saved with the codec if it was
+	 * registered as explicit, else java serialization is used.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	protected void writeData(DataOutput out) throws IOException {
+	}
+
+	/**
+	 * Reads what was written by {@link #writeData(DataOutput)}. Called on a
+	 * new instance created with the constructor without parameters.
+	 *
+	 * @param in
+	 * @param version the schema version the data was written with
+	 * @throws IOException
+	 * @see #getSchemaVersion()
+	 */
+	protected void readData(DataInput in, int version) throws IOException {
+	}
+
+	/**
+	 * Writes the state every entity has.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	void writeState(DataOutput out) throws IOException {
+		out.writeBoolean(position != null);
+		if (position != null) {
+			out.writeFloat(position.getX());
+			out.writeFloat(position.getY());
+			out.writeFloat(position.getZ());
+		}
+		out.writeByte(id);
+		out.writeByte(value);
+		out.writeFloat(health);
+		out.writeUTF(name);
+		out.writeChar(spriteCategory);
+		out.writeInt(dimensionZ);
+		out.writeFloat(mass);
+		out.writeBoolean(obstacle);
+		out.writeBoolean(indestructible);
+		out.writeBoolean(useRawDelta);
+		out.writeBoolean(pinChunks);
+		out.writeBoolean(isHidden());
+		out.writeFloat(getRotation());
+		out.writeFloat(getScaling());
+	}
+
+	/**
+	 * Reads the state every entity has.
+	 *
+	 * @param in
+	 * @param version the version of the codec
+	 * @throws IOException
+	 */
+	void readState(DataInput in, int version) throws IOException {
+		if (in.readBoolean()) {
+			position = new Point(in.readFloat(), in.readFloat(), in.readFloat());
+		}
+		id = in.readByte();
+		value = in.readByte();
+		health = in.readFloat();
+		name = in.readUTF();
+		spriteCategory = in.readChar();
+		dimensionZ = in.readInt();
+		mass = in.readFloat();
+		obstacle = in.readBoolean();
+		indestructible = in.readBoolean();
+		useRawDelta = in.readBoolean();
+		pinChunks = in.readBoolean();
+		setHidden(in.readBoolean());
+		setRotation(in.readFloat());
+		setScaling(in.readFloat());
+	}
+
 	/**
 	 *
 	 * @param component
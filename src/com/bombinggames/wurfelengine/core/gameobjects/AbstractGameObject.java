@@ -226,7 +226,10 @@ public abstract class AbstractGameObject implements Serializable, Renderable {
 	 * inverses the dirty flag comparison so everything marked is now unmarked.
 	 * used to mark the visited obejcts with depthsort.
 	 * @param id
+	 * @deprecated the depthlist is no longer built by a depth-first search.
+	 * Will be removed in a future version.
 	 */
+	@Deprecated
 	public static void inverseMarkedFlag(int id) {
 		currentMarkedFlag ^= 1 << id;
 	}
@@ -247,7 +250,6 @@ public abstract class AbstractGameObject implements Serializable, Renderable {
 	 *
 	 */
 	protected AbstractGameObject() {
-		//markPermanent();//create as marked
 	}
 
 	/**
@@ -518,7 +520,10 @@ public abstract class AbstractGameObject implements Serializable, Renderable {
 	 * Check if it is marked in this frame. Used for depth sorting.
 	 * @param id camera id
 	 * @return 
+	 * @deprecated the depthlist is no longer built by a depth-first search.
+	 * Will be removed in a future version.
 	 */
+	@Deprecated
 	public final boolean isMarkedDS(final int id) {
 		return ((marked>>id)&1) == ((AbstractGameObject.currentMarkedFlag >> id) & 1);
 	}
@@ -526,8 +531,10 @@ public abstract class AbstractGameObject implements Serializable, Renderable {
 	/**
 	 * Marks as visited in the depth sorting algorithm.
 	 * @param id camera id
-	 * @see com.bombinggames.wurfelengine.core.Camera#visit(com.bombinggames.wurfelengine.core.gameobjects.AbstractGameObject) 
+	 * @deprecated the depthlist is no longer built by a depth-first search.
+	 * Will be removed in a future version.
 	 */
+	@Deprecated
 	public void markPermanentDS(final int id) {
 		marked ^= (-((AbstractGameObject.currentMarkedFlag >> id) & 1) ^ marked) & (1 << id);
 	}
@@ -0,0 +1,333 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.gameobjects;
+
+import com.badlogic.gdx.Gdx;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Writes and reads entities in a compact binary format. Entities are
+ * identified by the name they are registered with via
+ * {@link AbstractEntity#registerEntity(String, Class, boolean)}. Classes
+ * registered as explicit write their state with
+ * {@link AbstractEntity#writeData(java.io.DataOutput)}, other entities fall
+ * back to java serialization.<br>
+ * The format is a version byte, a table of the used types with their schema
+ * version, the int count of entities, the serialized entities in one object
+ * stream and then per entity the type index and the length of the record, so
+ * that records of unknown types can be skipped. Serialized entities have an
+ * empty record and are read from the object stream in the same order.
+ *
+ * @author Benedikt Vogler
+ * @see AbstractEntity#getSchemaVersion()
+ */
+public final class EntityCodec {
+
+	/**
+	 * the version of the format and of the general entity state
+	 */
+	public static final byte VERSION = 2;
+	/**
+	 * the type name of entities saved with java serialization
+	 */
+	private static final String SERIALIZED = "";
+
+	private EntityCodec() {
+	}
+
+	/**
+	 * Checks if the entity can be written with its explicit write method.
+	 *
+	 * @param entity
+	 * @return the registered name or null if it must be serialized
+	 * @see AbstractEntity#isExplicitlyWritten(Class)
+	 */
+	private static String getTypeName(AbstractEntity entity) {
+		Class<? extends AbstractEntity> type = entity.getClass();
+		if (!AbstractEntity.isExplicitlyWritten(type)) {
+			return null;
+		}
+		return AbstractEntity.getRegisteredName(type);
+	}
+
+	/**
+	 * Writes many entities in one go.
+	 *
+	 * @param entities
+	 * @return null if there is nothing to write
+	 * @throws IOException
+	 */
+	public static byte[] write(Collection<? extends AbstractEntity> entities) throws IOException {
+		if (entities.isEmpty()) {
+			return null;
+		}
+		//type table
+		ArrayList<String> typeNames = new ArrayList<>(4);
+		ArrayList<Integer> typeVersions = new ArrayList<>(4);
+		int[] types = new int[entities.size()];
+		int i = 0;
+		for (AbstractEntity entity : entities) {
+			String name = getTypeName(entity);
+			int version = name == null ? 0 : entity.getSchemaVersion();
+			if (name == null) {
+				name = SERIALIZED;
+			}
+			int type = typeNames.indexOf(name);
+			if (type < 0) {
+				type = typeNames.size();
+				typeNames.add(name);
+				typeVersions.add(version);
+			}
+			types[i++] = type;
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + entities.size() * 64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(VERSION);
+		out.writeShort(typeNames.size());
+		for (int t = 0; t < typeNames.size(); t++) {
+			out.writeUTF(typeNames.get(t));
+			out.writeShort(typeVersions.get(t));
+		}
+
+		//one stream for every serialized entity so that the class descriptors are written once
+		boolean[] failed = new boolean[types.length];
+		ByteArrayOutputStream serialized = writeObjects(entities, types, typeNames, failed);
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream(entities.size() * 64);
+		DataOutputStream bodyOut = new DataOutputStream(body);
+		ByteArrayOutputStream record = new ByteArrayOutputStream(128);
+		DataOutputStream recordOut = new DataOutputStream(record);
+		int count = 0;
+		i = 0;
+		for (AbstractEntity entity : entities) {
+			int type = types[i];
+			if (failed[i++]) {
+				continue;
+			}
+			record.reset();
+			if (!SERIALIZED.equals(typeNames.get(type))) {
+				entity.writeState(recordOut);
+				entity.writeData(recordOut);
+			}
+			bodyOut.writeShort(type);
+			bodyOut.writeInt(record.size());
+			record.writeTo(bodyOut);
+			count++;
+		}
+		out.writeInt(count);
+		out.writeInt(serialized.size());
+		serialized.writeTo(out);
+		body.writeTo(out);
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes the entities which are not written explicitly into one object
+	 * stream. A failed entity would break the stream for the following ones,
+	 * so the stream is written again without it.
+	 *
+	 * @param entities
+	 * @param types the type index of every entity
+	 * @param typeNames
+	 * @param failed set to true for the entities which could not be written
+	 * @return empty if every entity is written explicitly
+	 * @throws IOException
+	 */
+	private static ByteArrayOutputStream writeObjects(
+		Collection<? extends AbstractEntity> entities,
+		int[] types,
+		ArrayList<String> typeNames,
+		boolean[] failed
+	) throws IOException {
+		ByteArrayOutputStream serialized = new ByteArrayOutputStream(0);
+		retry:
+		while (true) {
+			serialized.reset();
+			ObjectOutputStream objects = null;
+			int i = 0;
+			for (AbstractEntity entity : entities) {
+				if (failed[i] || !SERIALIZED.equals(typeNames.get(types[i]))) {
+					i++;
+					continue;
+				}
+				if (objects == null) {
+					objects = new ObjectOutputStream(serialized);
+				}
+				try {
+					objects.writeObject(entity);
+				} catch (java.io.NotSerializableException ex) {
+					Gdx.app.error("EntityCodec", "Something is not NotSerializable: " + ex.getMessage() + ":" + ex.toString());
+					failed[i] = true;
+					continue retry;
+				}
+				i++;
+			}
+			if (objects != null) {
+				objects.close();
+			}
+			return serialized;
+		}
+	}
+
+	/**
+	 * Reads many entities in one go. Records which can not be read are
+	 * skipped. Creates the entities so call it on the main thread.
+	 *
+	 * @param data
+	 * @return the entities, not spawned but with a position
+	 * @throws IOException if the data is corrupt
+	 */
+	public static ArrayList<AbstractEntity> read(byte[] data) throws IOException {
+		if (data.length < 1 + 2 + 4) {
+			throw new IOException("Entity data too short.");
+		}
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		int version = in.readByte();
+		if (version > VERSION) {
+			throw new IOException("Entity data version " + version + " is newer than " + VERSION + ".");
+		}
+		int typeCount = in.readUnsignedShort();
+		String[] typeNames = new String[typeCount];
+		int[] typeVersions = new int[typeCount];
+		for (int t = 0; t < typeCount; t++) {
+			typeNames[t] = in.readUTF();
+			typeVersions[t] = in.readUnsignedShort();
+		}
+		int count = in.readInt();
+		if (count < 0) {
+			throw new IOException("Entity count " + count + " is invalid.");
+		}
+		byte[] serialized = null;
+		if (version >= 2) {
+			int length = in.readInt();
+			if (length < 0 || length > in.available()) {
+				throw new IOException("Serialized entities are corrupt.");
+			}
+			serialized = new byte[length];
+			in.readFully(serialized);
+		}
+
+		ArrayList<AbstractEntity> entities = new ArrayList<>(count);
+		ObjectInputStream objects = null;
+		boolean objectsBroken = false;
+		for (int i = 0; i < count; i++) {
+			int type = in.readUnsignedShort();
+			int length = in.readInt();
+			if (type >= typeCount || length < 0 || length > in.available()) {
+				throw new IOException("Entity record " + i + " is corrupt.");
+			}
+			byte[] record = new byte[length];
+			in.readFully(record);
+			AbstractEntity entity = null;
+			if (serialized != null && SERIALIZED.equals(typeNames[type])) {
+				if (!objectsBroken) {
+					try {
+						if (objects == null) {
+							objects = new ObjectInputStream(new ByteArrayInputStream(serialized));
+						}
+						entity = readObject(objects);
+					} catch (IOException ex) {
+						//the following serialized entities can not be read either
+						Gdx.app.error("EntityCodec", "Serialized entities could not be loaded: " + ex);
+						objectsBroken = true;
+					}
+				}
+			} else {
+				entity = readRecord(typeNames[type], typeVersions[type], version, record);
+			}
+			if (entity != null) {
+				entities.add(entity);
+			}
+		}
+		if (objects != null) {
+			objects.close();
+		}
+		return entities;
+	}
+
+	/**
+	 * Reads the next entity of the shared object stream.
+	 *
+	 * @param objects
+	 * @return null if it could not be read
+	 * @throws IOException if the stream can not be read any further
+	 */
+	private static AbstractEntity readObject(ObjectInputStream objects) throws IOException {
+		try {
+			return (AbstractEntity) objects.readObject();
+		} catch (ClassNotFoundException | ClassCastException ex) {
+			//the rest of the stream is still readable
+			Gdx.app.error("EntityCodec", "An entity could not be loaded: " + ex);
+			return null;
+		}
+	}
+
+	/**
+	 *
+	 * @param typeName
+	 * @param schemaVersion
+	 * @param version
+	 * @param record for serialized entities an own object stream, written by
+	 * version 1
+	 * @return null if it could not be read
+	 */
+	private static AbstractEntity readRecord(String typeName, int schemaVersion, int version, byte[] record) {
+		try {
+			if (SERIALIZED.equals(typeName)) {
+				try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(record))) {
+					return (AbstractEntity) ois.readObject();
+				}
+			}
+			Class<? extends AbstractEntity> type = AbstractEntity.getRegisteredEntities().get(typeName);
+			if (type == null) {
+				Gdx.app.error("EntityCodec", "Entity type \"" + typeName + "\" is not registered.");
+				return null;
+			}
+			AbstractEntity entity = type.getDeclaredConstructor().newInstance();
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+			entity.readState(in, version);
+			entity.readData(in, schemaVersion);
+			return entity;
+		} catch (IOException | ReflectiveOperationException | ClassCastException ex) {
+			Gdx.app.error("EntityCodec", "An entity could not be loaded: " + ex);
+			return null;
+		}
+	}
+}
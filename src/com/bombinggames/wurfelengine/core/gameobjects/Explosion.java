@@ -8,8 +8,12 @@ import com.bombinggames.wurfelengine.core.Camera;
 import com.bombinggames.wurfelengine.core.Controller;
 import com.bombinggames.wurfelengine.core.Events;
 import com.bombinggames.wurfelengine.core.map.Coordinate;
+import com.bombinggames.wurfelengine.core.map.PackedCoordinate;
 import com.bombinggames.wurfelengine.core.map.Point;
 import com.bombinggames.wurfelengine.core.map.rendering.RenderCell;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.LinkedList;
 
 /**
@@ -21,8 +25,8 @@ public class Explosion extends AbstractEntity implements Telegraph {
 	private static final long serialVersionUID = 1L;
 	private static String explosionsound;
 
-	private final int radius;
-	private final int damage;
+	private int radius;
+	private int damage;
 	private transient Camera camera;
 
 	/**
@@ -64,57 +68,65 @@ public class Explosion extends AbstractEntity implements Telegraph {
 	@Override
 	public AbstractEntity spawn(Point point) {
 		super.spawn(point);
-		//replace blocks by air
-		for (int x = -radius; x < radius; x++) {
-			for (int y = -radius * 2; y < radius * 2; y++) {
-				for (int z = -radius; z < radius; z++) {
-					Coordinate coord = point.toCoord().add(x, y, z);
-   					int intdamage = (int) (damage
-						* (1 - getPosition().distanceToSquared(coord)
-						/ (radius * radius * RenderCell.GAME_EDGELENGTH * RenderCell.GAME_EDGELENGTH)));
-					if (intdamage > 0) {
-						if (intdamage > 100) {
-							intdamage = 100; //clamp so it's under 127 to avoid byte overflow
+		//replace blocks by air, one change message per chunk
+		Controller.getMap().beginEdits();
+		try {
+			long center = PackedCoordinate.fromPoint(point);
+			Coordinate coord = new Coordinate(0, 0, 0);
+			for (int x = -radius; x < radius; x++) {
+				for (int y = -radius * 2; y < radius * 2; y++) {
+					for (int z = -radius; z < radius; z++) {
+						PackedCoordinate.unpack(PackedCoordinate.add(center, x, y, z), coord);
+	   					int intdamage = (int) (damage
+							* (1 - getPosition().distanceToSquared(coord)
+							/ (radius * radius * RenderCell.GAME_EDGELENGTH * RenderCell.GAME_EDGELENGTH)));
+						if (intdamage > 0) {
+							if (intdamage > 100) {
+								intdamage = 100; //clamp so it's under 127 to avoid byte overflow
+							}
+							//copy because the events may keep the coordinate
+							coord.cpy().damage(
+								(byte) intdamage
+							);
 						}
-						coord.damage(
-							(byte) intdamage
-						);
-					}
 					
-					//get every entity which is attacked
-					LinkedList<MovableEntity> list
-						= Controller.getMap().getEntitysOnCoord(
-							coord,
-							MovableEntity.class
-						);
+						//get every entity which is attacked
+						LinkedList<MovableEntity> list
+							= Controller.getMap().getEntitysOnCoord(
+								coord,
+								MovableEntity.class
+							);
 
-					for (MovableEntity ent : list) {
-						intdamage = (int) (damage
-						* (1 - getPosition().distanceToSquared(ent)
-						/ (radius * radius * RenderCell.GAME_EDGELENGTH * RenderCell.GAME_EDGELENGTH)));
-						intdamage*=1.2;//entities should break a little easier
-						if (intdamage > 100) {
-							intdamage = 100; //clamp so it's under 127 to avoid byte overflow
+						for (MovableEntity ent : list) {
+							intdamage = (int) (damage
+							* (1 - getPosition().distanceToSquared(ent)
+							/ (radius * radius * RenderCell.GAME_EDGELENGTH * RenderCell.GAME_EDGELENGTH)));
+							intdamage*=1.2;//entities should break a little easier
+							if (intdamage > 100) {
+								intdamage = 100; //clamp so it's under 127 to avoid byte overflow
+							}
+							MessageManager.getInstance().dispatchMessage(
+								this,
+								(Telegraph) ent,
+								Events.damage.getId(),
+								(byte) intdamage
+							);
 						}
-						MessageManager.getInstance().dispatchMessage(
-							this,
-							(Telegraph) ent,
-							Events.damage.getId(),
-							(byte) intdamage
-						);
-					}
 
-					Particle dust = (Particle) new Particle(
-						(byte) 22,
-						1700
-					).spawn(point.cpy().add((float) Math.random()*20f, (float) Math.random()*20f, (float) Math.random()*20f));//spawn at center
-					dust.getColor().set(0.6f, 0.55f, 0.4f, 1f);
-					dust.setType(ParticleType.FIRE);
-					dust.addMovement(
-						coord.toPoint().sub(point).nor().scl(4f)
-					);//move from center to outside
+						Particle dust = (Particle) new Particle(
+							(byte) 22,
+							1700
+						).spawn(point.cpy().add((float) Math.random()*20f, (float) Math.random()*20f, (float) Math.random()*20f));//spawn at center
+						dust.getColor().set(0.6f, 0.55f, 0.4f, 1f);
+						dust.setType(ParticleType.FIRE);
+						dust.addMovement(
+							coord.toPoint().sub(point).nor().scl(4f)
+						);//move from center to outside
+					}
 				}
 			}
+		} finally {
+			Controller.getMap().commitEdits();
 		}
 
 		if (camera != null) {
@@ -127,6 +139,18 @@ public class Explosion extends AbstractEntity implements Telegraph {
 		return this;
 	}
 
+	@Override
+	protected void writeData(DataOutput out) throws IOException {
+		out.writeInt(radius);
+		out.writeInt(damage);
+	}
+
+	@Override
+	protected void readData(DataInput in, int version) throws IOException {
+		radius = in.readInt();
+		damage = in.readInt();
+	}
+
 	@Override
 	public boolean handleMessage(Telegram msg) {
 		return true;
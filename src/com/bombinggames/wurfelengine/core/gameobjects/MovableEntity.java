@@ -42,6 +42,9 @@ import com.bombinggames.wurfelengine.core.map.Point;
 import com.bombinggames.wurfelengine.core.map.rendering.RenderCell;
 import static com.bombinggames.wurfelengine.core.map.rendering.RenderCell.GAME_EDGELENGTH;
 import com.bombinggames.wurfelengine.extension.AimBand;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 /**
  *A clas used mainly for characters or object which can walk around. To control the character you should use a {@link Controllable} or modify the movemnet via {@link #setMovement(com.badlogic.gdx.math.Vector3) }.
@@ -165,6 +168,32 @@ public class MovableEntity extends AbstractEntity  {
 		return this;
 	}
 	
+	@Override
+	protected void writeData(DataOutput out) throws IOException {
+		out.writeFloat(movement.x);
+		out.writeFloat(movement.y);
+		out.writeFloat(movement.z);
+		out.writeFloat(friction);
+		out.writeBoolean(collider);
+		out.writeBoolean(floating);
+		out.writeFloat(walkOnTheSpot);
+		out.writeBoolean(stepMode);
+		out.writeBoolean(walkingPaused);
+		out.writeBoolean(cycleAnimation);
+	}
+
+	@Override
+	protected void readData(DataInput in, int version) throws IOException {
+		movement.set(in.readFloat(), in.readFloat(), in.readFloat());
+		friction = in.readFloat();
+		collider = in.readBoolean();
+		floating = in.readBoolean();
+		walkOnTheSpot = in.readFloat();
+		stepMode = in.readBoolean();
+		walkingPaused = in.readBoolean();
+		cycleAnimation = in.readBoolean();
+	}
+	
 	@Override
 	public void dispose() {
 		super.dispose();
@@ -81,7 +81,14 @@ public interface Renderable {
 	/**
 	 * get the stuff which must be rendered before
 	 * @param rs
-	 * @return 
+	 * @return empty if not overwritten
+	 * @deprecated the depthlist is sorted by
+	 * {@link com.bombinggames.wurfelengine.core.map.rendering.RenderChunk#getDepthKey(int, int)}
+	 * and no longer asks for the covered objects. Will be removed in a future
+	 * version.
 	 */
-	public LinkedList<AbstractGameObject> getCovered(RenderStorage rs);
+	@Deprecated
+	public default LinkedList<AbstractGameObject> getCovered(RenderStorage rs) {
+		return new LinkedList<>();
+	}
 }
@@ -30,9 +30,10 @@
  */
 package com.bombinggames.wurfelengine.core.lightengine;
 
+import com.bombinggames.wurfelengine.core.Controller;
+import com.bombinggames.wurfelengine.core.map.BlockAccessor;
 import com.bombinggames.wurfelengine.core.map.Chunk;
 import com.bombinggames.wurfelengine.core.map.Coordinate;
-import com.bombinggames.wurfelengine.core.map.Iterators.DataIterator;
 import com.bombinggames.wurfelengine.core.map.rendering.RenderCell;
 import com.bombinggames.wurfelengine.core.map.rendering.RenderChunk;
 
@@ -48,134 +49,185 @@ public class AmbientOcclusionCalculator {
 	 * @param chunk
 	 */
 	public static void calcAO(RenderChunk chunk) {
+		calcAO(chunk, 0, 0, 0, Chunk.getBlocksX() - 1, Chunk.getBlocksY() - 1, Chunk.getBlocksZ() - 1);
+	}
+
+	/**
+	 * calculates the ambient occlusion for a part of a chunk. A changed block
+	 * changes the ambient occlusion of the cells in x±1, y±2 and z±1.
+	 *
+	 * @param chunk
+	 * @param minX index, inclusive
+	 * @param minY index, inclusive
+	 * @param minZ index, inclusive
+	 * @param maxX index, inclusive
+	 * @param maxY index, inclusive
+	 * @param maxZ index, inclusive
+	 */
+	public static void calcAO(RenderChunk chunk, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
 		if (chunk==null) throw new IllegalArgumentException("Chunk can not be null.");
-		//iterate over every block in chunk
 		Coordinate coord = new Coordinate(0, 0, 0);
-		DataIterator<RenderCell> iterator = chunk.getIterator(0, Chunk.getBlocksZ() - 1);
-		while (iterator.hasNext()) {
-			RenderCell next = iterator.next();
-			//skip air and blocks without sides
-			if (next != null && next.hasSides()) {
-				//analyze top side
-				coord = coord.set(
-					chunk.getTopLeftCoordinateX() + iterator.getCurrentIndex()[0],
-					chunk.getTopLeftCoordinateY() + iterator.getCurrentIndex()[1],
-					iterator.getCurrentIndex()[2] + 1
-				);
-
-				int aoFlags = 0;
-				//first check 0,2,4,6 then check 1,3,5,7
-				for (int side = 0; side < 9; side += 2) {//first round even sides
-					//second round odd sides
-					if (side == 8) {
-						side = 1;
+		BlockAccessor blocks = Controller.getMap().getBlockAccessor();
+		RenderCell[][][] data = chunk.getData();
+		minX = Math.max(minX, 0);
+		minY = Math.max(minY, 0);
+		minZ = Math.max(minZ, 0);
+		maxX = Math.min(maxX, Chunk.getBlocksX() - 1);
+		maxY = Math.min(maxY, Chunk.getBlocksY() - 1);
+		maxZ = Math.min(maxZ, Chunk.getBlocksZ() - 1);
+		for (int x = minX; x <= maxX; x++) {
+			for (int y = minY; y <= maxY; y++) {
+				for (int z = minZ; z <= maxZ; z++) {
+					RenderCell next = data[x][y][z];
+					//skip air and blocks without sides
+					if (next != null && next.hasSides()) {
+						calcAO(chunk, blocks, coord, next, x, y, z);
 					}
-					byte neighborId = coord.goToNeighbour(side).getBlockId();
-					byte neighborValue = coord.getBlockValue();
-					if (neighborId != 0 && !RenderCell.isTransparent(neighborId, neighborValue) && RenderCell.hasSides(neighborId, neighborValue)) {
-						aoFlags |= 1 << (side + 8);
-						//don't double draw the sides in between
-						if (side % 2 == 1) {
-							aoFlags &= ~(1 << (((side + 1) % 8) + 8));//set next to false
-							aoFlags &= ~(1 << (((side + 7) % 8) + 8));//Set previous to false
-						}
-					} else {
-						aoFlags &= ~(1 << (side + 8));
-					}
-					coord.goToNeighbour((side+4) % 8);//go back to center
 				}
+			}
+		}
+	}
 
-				//right side, side 2
-				//check right half, which is equivalent to top right at pos 1
-				coord = coord.set(
-					chunk.getTopLeftCoordinateX() + iterator.getCurrentIndex()[0],
-					chunk.getTopLeftCoordinateY() + iterator.getCurrentIndex()[1],
-					iterator.getCurrentIndex()[2]
-				);//get current coordinate
-
-				//left side, side 0
-				//right corner
-				byte neighborId = coord.add(0, 2, -1).getBlockId();
-				byte neighborValue = coord.getBlockValue();
-				if (!RenderCell.isTransparent(neighborId, neighborValue)&& RenderCell.hasSides(neighborId, neighborValue)) {
-					aoFlags |= 1 << 3;//first byte position 3
-				}
-				coord.add(0, -2, 1);//revert
+	/**
+	 * calculates the ambient occlusion of one cell
+	 *
+	 * @param chunk
+	 * @param blocks reads the neighbours
+	 * @param coord a coordinate used for the calculation
+	 * @param next the cell
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 */
+	private static void calcAO(RenderChunk chunk, BlockAccessor blocks, Coordinate coord, RenderCell next, int x, int y, int z) {
+		//analyze top side
+		coord = coord.set(
+			chunk.getTopLeftCoordinateX() + x,
+			chunk.getTopLeftCoordinateY() + y,
+			z + 1
+		);
 
-				//check bottom left
-				neighborId = coord.add(-1, 0, -1).getBlockId();
-				neighborValue = coord.getBlockValue();
-				if (neighborId != 0 && !RenderCell.isTransparent(neighborId, neighborValue) && RenderCell.hasSides(neighborId, neighborValue)) {
-					aoFlags |= 1 << 5;//first byte position 5
-				}
-				coord.add(1, 0, 1);
-
-				//check left half, which is equivalent to top right at pos 7
-				neighborId = coord.add(-1, 0, 0).getBlockId();//go to left
-				neighborValue = coord.getBlockValue();
-				if (neighborId != 0 && !RenderCell.isTransparent(neighborId, neighborValue) && RenderCell.hasSides(neighborId, neighborValue)) {
-					aoFlags |= 1 << 6;//first byte position 6
-					aoFlags &= ~(1 << 5);//set next to false
-					aoFlags &= ~(1 << 7);//Set previous to false
-				}
-				coord.add(1, 0, 0);//revert
-
-				//check bottom side, which is equivalent ot top right at pos 5
-				neighborId = coord.add(0, 0, -1).goToNeighbour(5).getBlockId();//revert changes and go to neighbor
-				neighborValue = coord.getBlockValue();
-				if (neighborId != 0 && !RenderCell.isTransparent(neighborId, neighborValue) && RenderCell.hasSides(neighborId, neighborValue)) {
-					aoFlags |= 1 << 4;//first byte position 4
-					aoFlags &= ~(1 << 5);//set next to false
-					aoFlags &= ~(1 << 3);//Set previous to false
-				}
-				coord.goToNeighbour(1).add(0, 0, 1);//revert
-
-				//right side, side 2
-				//check bottom left
-				neighborId = coord.add(1, 0, -1).getBlockId();
-				neighborValue = coord.getBlockValue();
-				if (neighborId != 0 && !RenderCell.isTransparent(neighborId, neighborValue) && RenderCell.hasSides(neighborId, neighborValue)) {
-					aoFlags |= 1 << 19;//third byte position 3
+		int aoFlags = 0;
+		//first check 0,2,4,6 then check 1,3,5,7
+		for (int side = 0; side < 9; side += 2) {//first round even sides
+			//second round odd sides
+			if (side == 8) {
+				side = 1;
+			}
+			int neighbor = blocks.getBlock(coord.goToNeighbour(side));
+			byte neighborId = (byte) (neighbor & 255);
+			byte neighborValue = (byte) ((neighbor >> 8) & 255);
+			if (neighborId != 0 && !RenderCell.isTransparent(neighborId, neighborValue) && RenderCell.hasSides(neighborId, neighborValue)) {
+				aoFlags |= 1 << (side + 8);
+				//don't double draw the sides in between
+				if (side % 2 == 1) {
+					aoFlags &= ~(1 << (((side + 1) % 8) + 8));//set next to false
+					aoFlags &= ~(1 << (((side + 7) % 8) + 8));//Set previous to false
 				}
-				coord.add(-1, 0, 1);
+			} else {
+				aoFlags &= ~(1 << (side + 8));
+			}
+			coord.goToNeighbour((side+4) % 8);//go back to center
+		}
 
-				//check left corner
-				neighborId = coord.add(0, 2, -1).getBlockId();//revert changes and go to neighbor
-				neighborValue = coord.getBlockValue();
-				if (neighborId != 0 && !RenderCell.isTransparent(neighborId, neighborValue) && RenderCell.hasSides(neighborId, neighborValue)) {
-					aoFlags |= 1 << 21;//third byte position 5
-				}
-				coord.add(0, -2, 1);
-
-				//right
-				neighborId = coord.add(1, 0, 0).getBlockId();
-				neighborValue = coord.getBlockValue();
-				if (neighborId != 0 && !RenderCell.isTransparent(neighborId, neighborValue) && RenderCell.hasSides(neighborId, neighborValue)) {
-					aoFlags |= 1 << 18;//third byte position 2
-					aoFlags &= ~(1 << 17);//set next to false
-					aoFlags &= ~(1 << 19);//Set previous to false
-				}
-				coord.add(-1, 0, 0);
-
-				//check bottom side, which is equivalent to top right at pos 3
-				neighborId = coord.add(0, 0, -1).goToNeighbour(3).getBlockId();//revert changes and go to neighbor
-				neighborValue = coord.getBlockValue();
-				if (neighborId != 0 && !RenderCell.isTransparent(neighborId, neighborValue) && RenderCell.hasSides(neighborId, neighborValue)) {
-					aoFlags |= 1 << 20;//third byte position 4
-					aoFlags &= ~(1 << 21);//set next to false
-					aoFlags &= ~(1 << 19);//Set previous to false
-				}
-				coord.goToNeighbour(7).add(0, 0, 1);
+		//right side, side 2
+		//check right half, which is equivalent to top right at pos 1
+		coord = coord.set(
+			chunk.getTopLeftCoordinateX() + x,
+			chunk.getTopLeftCoordinateY() + y,
+			z
+		);//get current coordinate
 
-				neighborId = coord.add(0, 2, 0).getBlockId();//revert changes and go to neighbor
-				neighborValue = coord.getBlockValue();
-				if (neighborId != 0 && !RenderCell.isTransparent(neighborId, neighborValue) && RenderCell.hasSides(neighborId, neighborValue)) {
-					aoFlags |= 1 << 2;//first byte position 2
-					aoFlags |= 1 << 22;//third byte position 6
-				}
-				next.setAoFlags(aoFlags);
-			}
+		//left side, side 0
+		//right corner
+		int neighbor = blocks.getBlock(coord.add(0, 2, -1));
+		byte neighborId = (byte) (neighbor & 255);
+		byte neighborValue = (byte) ((neighbor >> 8) & 255);
+		if (!RenderCell.isTransparent(neighborId, neighborValue)&& RenderCell.hasSides(neighborId, neighborValue)) {
+			aoFlags |= 1 << 3;//first byte position 3
+		}
+		coord.add(0, -2, 1);//revert
+
+		//check bottom left
+		neighbor = blocks.getBlock(coord.add(-1, 0, -1));
+		neighborId = (byte) (neighbor & 255);
+		neighborValue = (byte) ((neighbor >> 8) & 255);
+		if (neighborId != 0 && !RenderCell.isTransparent(neighborId, neighborValue) && RenderCell.hasSides(neighborId, neighborValue)) {
+			aoFlags |= 1 << 5;//first byte position 5
+		}
+		coord.add(1, 0, 1);
+
+		//check left half, which is equivalent to top right at pos 7
+		neighbor = blocks.getBlock(coord.add(-1, 0, 0));//go to left
+		neighborId = (byte) (neighbor & 255);
+		neighborValue = (byte) ((neighbor >> 8) & 255);
+		if (neighborId != 0 && !RenderCell.isTransparent(neighborId, neighborValue) && RenderCell.hasSides(neighborId, neighborValue)) {
+			aoFlags |= 1 << 6;//first byte position 6
+			aoFlags &= ~(1 << 5);//set next to false
+			aoFlags &= ~(1 << 7);//Set previous to false
+		}
+		coord.add(1, 0, 0);//revert
+
+		//check bottom side, which is equivalent ot top right at pos 5
+		neighbor = blocks.getBlock(coord.add(0, 0, -1).goToNeighbour(5));//revert changes and go to neighbor
+		neighborId = (byte) (neighbor & 255);
+		neighborValue = (byte) ((neighbor >> 8) & 255);
+		if (neighborId != 0 && !RenderCell.isTransparent(neighborId, neighborValue) && RenderCell.hasSides(neighborId, neighborValue)) {
+			aoFlags |= 1 << 4;//first byte position 4
+			aoFlags &= ~(1 << 5);//set next to false
+			aoFlags &= ~(1 << 3);//Set previous to false
+		}
+		coord.goToNeighbour(1).add(0, 0, 1);//revert
+
+		//right side, side 2
+		//check bottom left
+		neighbor = blocks.getBlock(coord.add(1, 0, -1));
+		neighborId = (byte) (neighbor & 255);
+		neighborValue = (byte) ((neighbor >> 8) & 255);
+		if (neighborId != 0 && !RenderCell.isTransparent(neighborId, neighborValue) && RenderCell.hasSides(neighborId, neighborValue)) {
+			aoFlags |= 1 << 19;//third byte position 3
+		}
+		coord.add(-1, 0, 1);
+
+		//check left corner
+		neighbor = blocks.getBlock(coord.add(0, 2, -1));//revert changes and go to neighbor
+		neighborId = (byte) (neighbor & 255);
+		neighborValue = (byte) ((neighbor >> 8) & 255);
+		if (neighborId != 0 && !RenderCell.isTransparent(neighborId, neighborValue) && RenderCell.hasSides(neighborId, neighborValue)) {
+			aoFlags |= 1 << 21;//third byte position 5
+		}
+		coord.add(0, -2, 1);
+
+		//right
+		neighbor = blocks.getBlock(coord.add(1, 0, 0));
+		neighborId = (byte) (neighbor & 255);
+		neighborValue = (byte) ((neighbor >> 8) & 255);
+		if (neighborId != 0 && !RenderCell.isTransparent(neighborId, neighborValue) && RenderCell.hasSides(neighborId, neighborValue)) {
+			aoFlags |= 1 << 18;//third byte position 2
+			aoFlags &= ~(1 << 17);//set next to false
+			aoFlags &= ~(1 << 19);//Set previous to false
+		}
+		coord.add(-1, 0, 0);
+
+		//check bottom side, which is equivalent to top right at pos 3
+		neighbor = blocks.getBlock(coord.add(0, 0, -1).goToNeighbour(3));//revert changes and go to neighbor
+		neighborId = (byte) (neighbor & 255);
+		neighborValue = (byte) ((neighbor >> 8) & 255);
+		if (neighborId != 0 && !RenderCell.isTransparent(neighborId, neighborValue) && RenderCell.hasSides(neighborId, neighborValue)) {
+			aoFlags |= 1 << 20;//third byte position 4
+			aoFlags &= ~(1 << 21);//set next to false
+			aoFlags &= ~(1 << 19);//Set previous to false
+		}
+		coord.goToNeighbour(7).add(0, 0, 1);
+
+		neighbor = blocks.getBlock(coord.add(0, 2, 0));//revert changes and go to neighbor
+		neighborId = (byte) (neighbor & 255);
+		neighborValue = (byte) ((neighbor >> 8) & 255);
+		if (neighborId != 0 && !RenderCell.isTransparent(neighborId, neighborValue) && RenderCell.hasSides(neighborId, neighborValue)) {
+			aoFlags |= 1 << 2;//first byte position 2
+			aoFlags |= 1 << 22;//third byte position 6
 		}
+		next.setAoFlags(aoFlags);
 	}
 
 }
@@ -1,5 +1,7 @@
 package com.bombinggames.wurfelengine.core.map;
 
+import com.bombinggames.wurfelengine.core.Controller;
+
 /**
  * Manages the game logic for a block. The instances are not saved in the map
  * save file therfore every data saved in the fields are lost after
@@ -8,7 +10,10 @@ package com.bombinggames.wurfelengine.core.map;
  * changes it will be removed via
  * {@link  com.bombinggames.wurfelengine.core.map.Map}. Check if is about to be
  * removed via {@link #isValid() }.<br> If you want to save information in the
- * save file you have to use and spawn an {@link com.bombinggames.wurfelengine.core.gameobjects.AbstractEntity}.
+ * save file you have to use and spawn an {@link com.bombinggames.wurfelengine.core.gameobjects.AbstractEntity}.<br>
+ * By default {@link #update(float)} is called every frame. Logic blocks which
+ * are idle most of the time should return false in {@link #isPolled()} and
+ * request their updates with {@link #scheduleTick(float)}.
  *
  * @author Benedikt Vogler
  */
@@ -23,6 +28,14 @@ public abstract class AbstractBlockLogicExtension {
 	 * Is only used for validity check.
 	 */
 	private final byte id;
+	/**
+	 * game time of the scheduled tick, NaN if there is none
+	 */
+	double tickTime = Double.NaN;
+	/**
+	 * game time of the last tick
+	 */
+	double lastTick = Double.NaN;
 
 	/**
 	 * Called when spawned. Should not access the map because during map
@@ -59,9 +72,39 @@ public abstract class AbstractBlockLogicExtension {
 		return coord.getBlockId() == id;
 	}
 
+	/**
+	 * If true {@link #update(float)} is called every frame. If false it is only
+	 * called when a tick is due which was requested with
+	 * {@link #scheduleTick(float)}, when a neighbour cell changed or after the
+	 * chunk was loaded.
+	 *
+	 * @return true by default
+	 * @see BlockTickScheduler
+	 */
+	public boolean isPolled() {
+		return true;
+	}
+
+	/**
+	 * Requests a call of {@link #update(float)}. If there is already an
+	 * earlier tick scheduled nothing changes.
+	 *
+	 * @param delay game time in ms
+	 */
+	public void scheduleTick(float delay) {
+		Controller.getMap().getTickScheduler().schedule(this, delay);
+	}
+
+	/**
+	 * Removes the scheduled tick.
+	 */
+	public void cancelTick() {
+		tickTime = Double.NaN;
+	}
+
 	/**
 	 *
-	 * @param dt
+	 * @param dt if not polled the game time since the last tick
 	 */
 	public abstract void update(float dt);
 
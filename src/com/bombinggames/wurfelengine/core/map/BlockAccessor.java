@@ -0,0 +1,189 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import com.bombinggames.wurfelengine.WE;
+import com.bombinggames.wurfelengine.core.cvar.IntCVar;
+
+/**
+ * A cursor for reading blocks from the map. Remembers the chunk of the last
+ * lookup and its bounds so that following reads in the same chunk skip the
+ * chunk lookup. Neighbouring cells are read most of the time, e.g. by
+ * collision checks, ambient occlusion and raycasts. The cursor is invalidated
+ * when a chunk is added or removed from the map.<br>
+ * Not thread safe. Every thread needs an own accessor.
+ *
+ * @author Benedikt Vogler
+ * @see Map#getBlockAccessor()
+ */
+public class BlockAccessor {
+
+	private final ChunkIndex<Chunk> index;
+	/**
+	 * the {@link ChunkIndex#getModCount()} when the cursor was set
+	 */
+	private int modCount;
+	/**
+	 * storage of the cached chunk, null if the chunk is not loaded
+	 */
+	private ChunkStorage storage;
+	/**
+	 * top left coordinate of the cached chunk
+	 */
+	private int left, top;
+	/**
+	 * dimensions of the cached chunk, read when seeking because the map may
+	 * change them when its cvars are loaded
+	 */
+	private int blocksX, blocksY, blocksZ;
+	private IntCVar groundBlock;
+
+	/**
+	 *
+	 * @param map
+	 */
+	public BlockAccessor(Map map) {
+		this.index = map.getData();
+		reset();
+	}
+
+	/**
+	 * Forgets the cached chunk.
+	 */
+	public final void reset() {
+		modCount = index.getModCount() - 1;
+		storage = null;
+	}
+
+	/**
+	 * Moves the cursor to the chunk containing the coordinate.
+	 *
+	 * @param x grid coordinate
+	 * @param y grid coordinate
+	 */
+	private void seek(int x, int y) {
+		int chunkX = Math.floorDiv(x, Chunk.getBlocksX());
+		int chunkY = Math.floorDiv(y, Chunk.getBlocksY());
+		Chunk chunk = index.get(chunkX, chunkY);
+		if (chunk == null) {
+			storage = null;
+			blocksX = Chunk.getBlocksX();
+			blocksY = Chunk.getBlocksY();
+			blocksZ = Chunk.getBlocksZ();
+		} else {
+			storage = chunk.getData();
+			blocksX = storage.getBlocksX();
+			blocksY = storage.getBlocksY();
+			blocksZ = storage.getBlocksZ();
+		}
+		left = chunkX * blocksX;
+		top = chunkY * blocksY;
+		modCount = index.getModCount();
+	}
+
+	/**
+	 * The block below the map.
+	 *
+	 * @return the id of the ground block
+	 */
+	public int getGroundBlock() {
+		if (groundBlock == null) {
+			groundBlock = (IntCVar) WE.getCVars().get("groundBlockID");
+		}
+		return (byte) groundBlock.getValue().intValue();
+	}
+
+	/**
+	 * id, value and health
+	 *
+	 * @param x grid coordinate
+	 * @param y grid coordinate
+	 * @param z grid coordinate
+	 * @return 0 if not loaded or above the map
+	 */
+	public int getBlock(int x, int y, int z) {
+		if (z < 0) {
+			return getGroundBlock();
+		}
+		int xIndex = x - left;
+		int yIndex = y - top;
+		if (xIndex < 0 || xIndex >= blocksX || yIndex < 0 || yIndex >= blocksY
+			|| modCount != index.getModCount()) {
+			seek(x, y);
+			xIndex = x - left;
+			yIndex = y - top;
+		}
+		if (storage == null || z >= blocksZ) {
+			return 0;
+		}
+		return storage.getCell(xIndex, yIndex, z);
+	}
+
+	/**
+	 * id, value and health
+	 *
+	 * @param coord not altered
+	 * @return 0 if not loaded or above the map
+	 */
+	public int getBlock(Coordinate coord) {
+		return getBlock(coord.getX(), coord.getY(), coord.getZ());
+	}
+
+	/**
+	 * id, value and health
+	 *
+	 * @param packed a {@link PackedCoordinate}
+	 * @return 0 if not loaded or above the map
+	 */
+	public int getBlock(long packed) {
+		return getBlock(PackedCoordinate.getX(packed), PackedCoordinate.getY(packed), PackedCoordinate.getZ(packed));
+	}
+
+	/**
+	 *
+	 * @param x grid coordinate
+	 * @param y grid coordinate
+	 * @param z grid coordinate
+	 * @return
+	 */
+	public byte getBlockId(int x, int y, int z) {
+		return (byte) (getBlock(x, y, z) & 255);
+	}
+
+	/**
+	 *
+	 * @param coord not altered
+	 * @return
+	 */
+	public byte getBlockId(Coordinate coord) {
+		return (byte) (getBlock(coord.getX(), coord.getY(), coord.getZ()) & 255);
+	}
+}
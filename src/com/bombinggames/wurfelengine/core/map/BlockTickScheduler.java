@@ -0,0 +1,191 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import java.util.Arrays;
+
+/**
+ * Calls {@link AbstractBlockLogicExtension#update(float)} of logic blocks
+ * which are not polled when their scheduled tick is due. The ticks are kept in
+ * a binary heap ordered by game time, so only the logic blocks with a due
+ * tick cost time. A logic block has at most one scheduled tick, outdated heap
+ * entries are skipped when they reach the top. Invalid logic blocks with a due
+ * tick are removed from their chunk.<br>
+ * Not thread safe, use on the main thread.
+ *
+ * @author Benedikt Vogler
+ * @see AbstractBlockLogicExtension#scheduleTick(float)
+ */
+public class BlockTickScheduler {
+
+	/**
+	 * game time in ms
+	 */
+	private double time;
+	private double[] times = new double[16];
+	private AbstractBlockLogicExtension[] logics = new AbstractBlockLogicExtension[16];
+	private int size;
+	private boolean updating;
+
+	/**
+	 * Schedules a tick. If the logic block has an earlier tick nothing
+	 * changes. Ticks scheduled during the update run in the next update at
+	 * the earliest.
+	 *
+	 * @param logic
+	 * @param delay game time in ms
+	 */
+	public void schedule(AbstractBlockLogicExtension logic, float delay) {
+		double tickTime = time + Math.max(delay, 0);
+		if (updating && tickTime <= time) {
+			tickTime = Math.nextUp(time);
+		}
+		if (logic.tickTime <= tickTime) {
+			return;
+		}
+		logic.tickTime = tickTime;
+		if (Double.isNaN(logic.lastTick)) {
+			logic.lastTick = time;
+		}
+		push(tickTime, logic);
+	}
+
+	/**
+	 * Advances the game time and updates the logic blocks with a due tick.
+	 * Ticks exceeding the budget are run in the next updates.
+	 *
+	 * @param dt game time in ms
+	 * @param budget the maximum amount of ticks, 0 or less for no limit
+	 * @return the amount of ticks
+	 */
+	public int update(float dt, int budget) {
+		time += dt;
+		updating = true;
+		int ticks = 0;
+		while (size > 0 && times[0] <= time && (budget <= 0 || ticks < budget)) {
+			double tickTime = times[0];
+			AbstractBlockLogicExtension logic = logics[0];
+			pop();
+			if (logic.tickTime != tickTime) {
+				continue;//canceled or rescheduled
+			}
+			logic.tickTime = Double.NaN;
+			if (logic.isValid()) {
+				float tickDt = (float) (time - logic.lastTick);
+				logic.lastTick = time;
+				logic.update(tickDt);
+				ticks++;
+			} else {
+				//not updated by its chunk, so remove it here
+				Chunk chunk = logic.getPosition().getChunk();
+				if (chunk != null) {
+					chunk.removeLogic(logic);
+				}
+			}
+		}
+		updating = false;
+		return ticks;
+	}
+
+	/**
+	 *
+	 * @return the game time of the scheduler in ms
+	 */
+	public double getTime() {
+		return time;
+	}
+
+	/**
+	 *
+	 * @return amount of entries in the queue including outdated ones
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes every tick.
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			logics[i].tickTime = Double.NaN;
+		}
+		Arrays.fill(logics, 0, size, null);
+		size = 0;
+	}
+
+	private void push(double tickTime, AbstractBlockLogicExtension logic) {
+		if (size == times.length) {
+			times = Arrays.copyOf(times, size * 2);
+			logics = Arrays.copyOf(logics, size * 2);
+		}
+		//sift up
+		int i = size++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (times[parent] <= tickTime) {
+				break;
+			}
+			times[i] = times[parent];
+			logics[i] = logics[parent];
+			i = parent;
+		}
+		times[i] = tickTime;
+		logics[i] = logic;
+	}
+
+	private void pop() {
+		size--;
+		double tickTime = times[size];
+		AbstractBlockLogicExtension logic = logics[size];
+		logics[size] = null;
+		if (size == 0) {
+			return;
+		}
+		//sift down the last entry from the top
+		int i = 0;
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < size && times[child + 1] < times[child]) {
+				child++;
+			}
+			if (tickTime <= times[child]) {
+				break;
+			}
+			times[i] = times[child];
+			logics[i] = logics[child];
+			i = child;
+		}
+		times[i] = tickTime;
+		logics[i] = logic;
+	}
+}
@@ -34,22 +34,24 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.ai.msg.MessageManager;
 import com.badlogic.gdx.ai.msg.Telegram;
 import com.badlogic.gdx.ai.msg.Telegraph;
-import com.badlogic.gdx.files.FileHandle;
 import com.bombinggames.wurfelengine.WE;
 import com.bombinggames.wurfelengine.core.Controller;
 import com.bombinggames.wurfelengine.core.Events;
 import com.bombinggames.wurfelengine.core.gameobjects.AbstractEntity;
+import com.bombinggames.wurfelengine.core.gameobjects.EntityCodec;
 import com.bombinggames.wurfelengine.core.map.rendering.RenderCell;
 import com.bombinggames.wurfelengine.core.map.rendering.RenderChunk;
 import com.bombinggames.wurfelengine.core.map.rendering.RenderStorage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InvalidClassException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -74,13 +76,36 @@ public class Chunk implements Telegraph {
 	*/
     private static int blocksZ = 10;
 
+	/**
+	 * Sets the chunk dimensions without a loaded map, e.g. for tools which
+	 * read them from the meta file. A new chunk sets them from the map cvars.
+	 *
+	 * @param blocksX
+	 * @param blocksY must be even
+	 * @param blocksZ
+	 */
+	public static void setDimensions(int blocksX, int blocksY, int blocksZ) {
+		Chunk.blocksX = blocksX;
+		Chunk.blocksY = blocksY;
+		Chunk.blocksZ = blocksZ;
+	}
+
 	/**
 	 * special signs for the save file
 	 */
-	private final static char SIGN_ENTITIES = '|';//124 OR 0x7c
-	private final static char SIGN_COMMAND = '~';//126 OR 0x7e
-	private final static char SIGN_EMTPYLAYER = 'e';//only valid after a command sign
-	private final static char SIGN_ENDBLOCKS = 'b';//only valid after a command sign
+	final static char SIGN_ENTITIES = '|';//124 OR 0x7c
+	final static char SIGN_COMMAND = '~';//126 OR 0x7e
+	final static char SIGN_EMTPYLAYER = 'e';//only valid after a command sign
+	final static char SIGN_ENDBLOCKS = 'b';//only valid after a command sign
+
+	/**
+	 * estimated bytes used by a chunk without the block data
+	 */
+	private final static int CHUNK_OVERHEAD = 256;
+	/**
+	 * estimated bytes used by a logic block
+	 */
+	private final static int LOGIC_OVERHEAD = 64;
 
 	/**
 	 * The amount of blocks in X direction
@@ -160,20 +185,43 @@ public class Chunk implements Telegraph {
 	private final int chunkX, chunkY;
 	
 	/**
-	 * the ids are stored here. A block is defined by three fields. In the last dimension first is id, second value, third is health.
+	 * the ids, values and health are stored here.
 	 */
-    private final byte data[][][];
+    private final ChunkStorage data;
 	
 	/**
-	 * A list containing the logic blocks. Each logic block points to some block in this chunk.
+	 * The logic blocks indexed by their cell. Each logic block points to some block in this chunk.
 	 */
-	private final ArrayList<AbstractBlockLogicExtension> logicBlocks = new ArrayList<>(4);
+	private final LogicBlockRegistry logicBlocks = new LogicBlockRegistry();
 	private boolean modified;
+	/**
+	 * counts the changes of the blocks which are not reported with a
+	 * {@link ChunkChange}, e.g. filling or loading
+	 */
+	private int version;
+	/**
+	 * true if the blocks or the persistent entities differ from the save file
+	 */
+	private boolean dirty;
+	/**
+	 * value of the map's update counter when the chunk was pinned the last time
+	 */
+	private long lastPinned;
 
 	/**
 	 * contains the entities on this chunk
 	 */
 	private ArrayList<AbstractEntity> entitiesinSaveFile;
+	/**
+	 * entities on this chunk in the format of the {@link EntityCodec}, decoded
+	 * when they are retrieved
+	 */
+	private byte[] entityRecords;
+	/**
+	 * the generator which filled this chunk if the entities are not spawned
+	 * yet
+	 */
+	private Generator spawnGenerator;
 	private int topleftX;
 	private int topleftY;
 
@@ -195,23 +243,33 @@ public class Chunk implements Telegraph {
 
 		topleftX = coordX*blocksX;
 		topleftY = coordY*blocksY;
-		data = new byte[blocksX][blocksY][blocksZ*3];
-
-       for (int x = 0; x < blocksX; x++) {
-			for (int y = 0; y < blocksY; y++) {
-				for (int z = 0; z < blocksZ*3; z++) {
-					if (z % 3 == 2) {//every third is health
-						data[x][y][z] = 100;
-					} else {
-						data[x][y][z] = 0;
-					}
-				}
-			}
-		}
+		data = ChunkStorage.create(blocksX, blocksY, blocksZ, WE.getCVars().getValueB("mapPaletteStorage"));//filled with air
 		
 		modified = true;
+		dirty = true;
     }
 
+	/**
+	 * Creates a chunk around existing cells without reading the map settings,
+	 * e.g. for benchmarks. Sets the chunk dimensions from the storage.
+	 *
+	 * @param map can be null if the chunk is not added to a map
+	 * @param coordX
+	 * @param coordY
+	 * @param data
+	 */
+	public Chunk(final Map map, final int coordX, final int coordY, final ChunkStorage data) {
+		this.chunkX = coordX;
+		this.chunkY = coordY;
+		this.map = map;
+		setDimensions(data.getBlocksX(), data.getBlocksY(), data.getBlocksZ());
+		topleftX = coordX * blocksX;
+		topleftY = coordY * blocksY;
+		this.data = data;
+		modified = true;
+		dirty = true;
+	}
+
 	/**
 	 * Creates a chunk by trying to load and if this fails it generates a new
 	 * one.
@@ -241,20 +299,8 @@ public class Chunk implements Telegraph {
 	public void update(float dt) {
 		processModification();
 
-		//update logicblocks
-		for (AbstractBlockLogicExtension logicBlock : logicBlocks) {
-			if (logicBlock.isValid()) {
-				logicBlock.update(dt);
-			}
-		}
-		//check if block at position corespodends to saved, garbage collection
-		logicBlocks.removeIf((AbstractBlockLogicExtension lb) -> {
-			boolean remove = !lb.isValid();
-			if (remove) {
-				lb.dispose();
-			}
-			return remove;
-		});
+		//update logicblocks, removes the ones which do not correspond to the block at their position
+		logicBlocks.update(dt);
 	}
 
 	/**
@@ -272,34 +318,66 @@ public class Chunk implements Telegraph {
 	}
 
    /**
-	 * Fills the chunk's block using a generator.
+	 * Fills the chunk's block using a generator. The entities are spawned
+	 * later on the main thread with {@link #spawnGeneratedEntities()}.
 	 *
 	 * @param generator
 	 */
 	public void fill(final Generator generator) {
 		int left = blocksX * chunkX;
 		int top = blocksY * chunkY;
+		int[] cells = new int[blocksX * blocksY * blocksZ];
+		GenerationTask.generate(
+			generator,
+			left,
+			top,
+			blocksX,
+			blocksY,
+			blocksZ,
+			cells,
+			WE.getCVars().getValueB("mapParallelGeneration")
+		);
+		int i = 0;
 		for (int x = 0; x < blocksX; x++) {
 			for (int y = 0; y < blocksY; y++) {
-				for (int z = 0; z < blocksZ * 3; z += 3) {
-					int generated = generator.generate(
-						left + x,
-						top + y,
-						z
-					);
-					data[x][y][z] = (byte) (generated&255);
-					data[x][y][z + 1] = (byte) ((generated>>8)&255);
-					data[x][y][z + 2] = 100;//health
-					if (data[x][y][z] != 0) {
-						AbstractBlockLogicExtension logic = RenderCell.createLogicInstance(data[x][y][z],
-							data[x][y][z + 1],
+				for (int z = 0; z < blocksZ; z++) {
+					int generated = cells[i++];
+					byte id = (byte) (generated&255);
+					byte value = (byte) ((generated>>8)&255);
+					data.setCell(x, y, z, id, value, (byte) 100);
+					if (id != 0) {
+						AbstractBlockLogicExtension logic = RenderCell.createLogicInstance(id,
+							value,
 							new Coordinate(left + x, top + y, z)
 						);
 						if (logic != null) {
-							logicBlocks.add(logic);
+							logicBlocks.put(data.index(x, y, z), logic);
 						}
 					}
+				}
+			}
+		}
+		spawnGenerator = generator;
+		modified = true;
+		version++;
+	}
 
+	/**
+	 * Lets the generator which filled this chunk spawn its entities. Call on
+	 * the main thread after {@link #fill(Generator)}. Does nothing if there
+	 * is nothing to spawn.
+	 */
+	public void spawnGeneratedEntities() {
+		Generator generator = spawnGenerator;
+		if (generator == null) {
+			return;
+		}
+		spawnGenerator = null;
+		int left = blocksX * chunkX;
+		int top = blocksY * chunkY;
+		for (int x = 0; x < blocksX; x++) {
+			for (int y = 0; y < blocksY; y++) {
+				for (int z = 0; z < blocksZ; z++) {
 					generator.spawnEntities(
 						left + x,
 						top + y,
@@ -308,11 +386,11 @@ public class Chunk implements Telegraph {
 				}
 			}
 		}
-		modified = true;
 	}
 
 	/**
-	 * copies something
+	 * Loads the chunk from the map root. Save slots are overlays of the map,
+	 * so the chunk is only written into the save slot when it changes.
 	 * @param path
 	 * @param saveSlot
 	 * @param coordX
@@ -320,139 +398,85 @@ public class Chunk implements Telegraph {
 	 * @return
 	 */
 	public boolean restoreFromRoot(final File path, int saveSlot, int coordX, int coordY){
-		FileHandle chunkInRoot = Gdx.files.absolute(path+"/chunk"+coordX+","+coordY+"."+CHUNKFILESUFFIX);
-		if (chunkInRoot.exists() && !chunkInRoot.isDirectory()){
-			chunkInRoot.copyTo(Gdx.files.absolute(path+"/save"+saveSlot+"/chunk"+coordX+","+coordY+"."+CHUNKFILESUFFIX));
-			load(path, saveSlot, coordX, coordY);
-		} else {
-			Gdx.app.log("Chunk","Restoring:" + chunkInRoot +" failed.");
-			return false;
+		try {
+			byte[] file = ChunkFiles.read(path, coordX, coordY);
+			if (file != null && load(file, path, coordX, coordY)) {
+				return true;
+			}
+		} catch (IOException ex) {
+			Gdx.app.error("Chunk", "Reading of chunk " + path + "/" + coordX + "," + coordY + " failed: " + ex);
 		}
-		return true;
+		Gdx.app.debug("Chunk","Chunk " + coordX + "," + coordY + " is not in the map.");
+		return false;
 	}
 
 	/**
-	 *
-	 * @param fis
-	 * @return -1 if eof, if sucessuf read then {@link #SIGN_ENDBLOCKS}
-	 * @throws IOException
+	 * Creates the logic blocks for every block which has logic.
 	 */
-	private byte loadBlocks(FileInputStream fis) throws IOException{
-		byte[][][] data = this.data;
-		int z = 0;
-		int x = 0;
-		int y = 0;
-		byte id = -1;//undefined
-
-		byte bChar;
-		boolean command = false;
-		//read a byte for the blocks
-		do {
-			bChar = (byte) fis.read();//read while not eof
-			if (bChar == -1) return bChar;
-			boolean skip = false;
-
-			if (bChar == SIGN_COMMAND) {
-				command = true;
-			} else {
-				if (command) {
-					command = false;
-					if (bChar == SIGN_EMTPYLAYER) {
-						for (x = 0; x < blocksX; x++) {
-							for (y = 0; y < blocksY; y++) {
-								data[x][y][z * 3] = 0;//id
-								data[x][y][z * 3 + 1] = 0;//value
-								data[x][y][z * 3 + 2] = 100;//health
-							}
-						}
-						skip = true;
-					}
-
-					if (bChar == SIGN_ENDBLOCKS || bChar == -1) {
-						return bChar;
-					}
-				}
+	private void createLogicBlocks() {
+		int cells = data.getLayerSize() * blocksZ;
+		for (int i = 0; i < cells; i++) {
+			int cell = data.getCell(i);
+			byte id = (byte) cell;
+			if (id != 0) {
+				createLogicBlock(i, id, (byte) (cell >> 8));
+			}
+		}
+	}
 
-				if (!skip) {
-					try {
-						//fill layer block by block
-						if (id == -1) {
-							id = bChar;
-							
-							if (id == 0) {
-								data[x][y][z * 3] = id;
-								data[x][y][z * 3 + 1] = 0;//value
-								data[x][y][z * 3 + 2] = 100;//health
-								id = -1;
-								x++;
-								if (x == blocksX) {
-									y++;
-									x = 0;
-								}
-								if (y == blocksY) {
-									x = 0;
-									y = 0;
-									z++;
-								}
-							}
-						} else {
-							data[x][y][z * 3] = id;
-							data[x][y][z * 3 + 1] = bChar;
-							data[x][y][z * 3 + 2] = 100;//health
-							//if has logicblock then add logicblock
-							if (id != 0) {
-								if (RenderCell.hasLogic(id, bChar)) {
-									AbstractBlockLogicExtension logic = RenderCell.createLogicInstance(
-										id,
-										bChar,
-										new Coordinate(
-											chunkX * blocksX + x,
-											chunkY * blocksY + y,
-											z
-										)
-									);
-									logicBlocks.add(logic);
-								}
-							}
-							x++;
-							if (x == blocksX) {
-								y++;
-								x = 0;
-							}
-							if (y == blocksY) {
-								x = 0;
-								y = 0;
-								z++;
-							}
-							id = -1;
-						}
-					} catch (ArrayIndexOutOfBoundsException ex) {
-						Gdx.app.error("Chunk", "too much blocks loaded:" + x + "," + y + "," + z + ". Map file corrrupt?");
-					}
-				}
+	/**
+	 * Creates the logic block of a cell if the block has logic.
+	 *
+	 * @param index cell index in the storage
+	 * @param id
+	 * @param value
+	 */
+	private void createLogicBlock(int index, byte id, byte value) {
+		if (RenderCell.hasLogic(id, value)) {
+			int rest = index % data.getLayerSize();
+			AbstractBlockLogicExtension logic = RenderCell.createLogicInstance(
+				id,
+				value,
+				new Coordinate(
+					topleftX + rest % blocksX,
+					topleftY + rest / blocksX,
+					index / data.getLayerSize()
+				)
+			);
+			if (logic != null) {
+				logicBlocks.put(index, logic);
 			}
-		} while (bChar != -1);
-		return bChar;
+		}
 	}
 
 	/**
 	 * fills entitie cache
 	 *
-	 * @param fis
+	 * @param in
 	 * @param path
+	 * @param legacy if true the stream starts with the command signs and a byte
+	 * count, used before version 5
 	 */
-	private void loadEntities(FileInputStream fis, File path) {
+	private void loadEntities(InputStream in, File path, boolean legacy) {
 		//ends with a sign for logic or entitiesinSaveFile or eof
-		try (ObjectInputStream ois = new ObjectInputStream(fis)) {
-			byte bChar = ois.readByte();
-			if (bChar == SIGN_COMMAND) {
-				bChar = ois.readByte();
+		try (ObjectInputStream ois = new ObjectInputStream(in)) {
+			int entCount;
+			if (legacy) {
+				byte bChar = ois.readByte();
+				if (bChar == SIGN_COMMAND) {
+					bChar = ois.readByte();
+				}
+				if (bChar != SIGN_ENTITIES) {
+					return;
+				}
+				entCount = ois.readByte(); //amount of entities
+			} else {
+				entCount = ois.readInt();
 			}
 
-			if (bChar == SIGN_ENTITIES && WE.getCVars().getValueB("loadEntities")) {
+			if (WE.getCVars().getValueB("loadEntities")) {
 				try {
 					//loading entitiesinSaveFile
-					byte entCount = ois.readByte(); //amount of entities
 					if (entCount > 0 && entCount < 10000) {//upper limit
 						Gdx.app.debug("Chunk", "Loading " + entCount + " entities.");
 						entitiesinSaveFile = new ArrayList<>(entCount);
@@ -470,7 +494,6 @@ public class Chunk implements Telegraph {
 					} else if (entCount < 0) {
 						Gdx.app.error("Chunk", "Loading of entities in chunk" + path + "/" + chunkX + "," + chunkY + " failed. File is corrupt.");
 					}
-					ois.close();
 				} catch (IOException ex) {
 					Gdx.app.error("Chunk", "Loading of entities in chunk" + path + "/" + chunkX + "," + chunkY + " failed: " + ex);
 				} catch (java.lang.NoClassDefFoundError ex) {
@@ -486,127 +509,226 @@ public class Chunk implements Telegraph {
 		}
 	}
 
+	/**
+	 * Reads the sections of a chunk file in the current format.
+	 *
+	 * @param payload
+	 * @param path
+	 * @throws IOException
+	 */
+	private void loadSections(ByteBuffer payload, File path) throws IOException {
+		boolean hasLogicSection = false;
+		ByteBuffer section;
+		while ((section = ChunkFormat.nextSection(payload)) != null) {
+			switch (ChunkFormat.getType(section)) {
+				case ChunkFormat.SECTION_BLOCKS:
+					ChunkFormat.readBlocks(section, data);
+					break;
+				case ChunkFormat.SECTION_HEALTH:
+					ChunkFormat.readHealth(section, data);
+					break;
+				case ChunkFormat.SECTION_LOGIC:
+					hasLogicSection = true;
+					for (int cell : ChunkFormat.readLogic(section)) {
+						if (cell >= 0 && cell < data.getLayerSize() * blocksZ) {
+							int block = data.getCell(cell);
+							createLogicBlock(cell, (byte) block, (byte) (block >> 8));
+						}
+					}
+					break;
+				case ChunkFormat.SECTION_ENTITY_RECORDS:
+					entityRecords = Arrays.copyOfRange(
+						section.array(),
+						section.arrayOffset() + section.position(),
+						section.arrayOffset() + section.limit()
+					);
+					break;
+				case ChunkFormat.SECTION_ENTITIES:
+					loadEntities(
+						new ByteArrayInputStream(section.array(), section.arrayOffset() + section.position(), section.remaining()),
+						path,
+						false
+					);
+					break;
+				default:
+					//unknown section from a newer version, skip
+			}
+		}
+		if (!hasLogicSection) {
+			createLogicBlocks();
+		}
+	}
+
     /**
-     * Tries to load a chunk from disk.
+     * Tries to load a chunk from disk. Reads the file in one go.
      */
     private boolean load(final File path, int saveSlot, int coordX, int coordY) {
+		try {
+			byte[] file = ChunkFiles.read(getSaveDirectory(path, saveSlot), coordX, coordY);
+			if (file != null) {
+				Gdx.app.debug("Chunk","Loading Chunk: "+ coordX + ", "+ coordY);
+				return load(file, path, coordX, coordY);
+			}
+		} catch (IOException ex){
+			Gdx.app.error("Chunk","Reading of chunk " +path+"/"+coordX+","+coordY + " failed: "+ex);
+			return false;
+		}
+		Gdx.app.debug("Chunk","Chunk "+coordX+","+coordY+" is not in save slot "+saveSlot+". Reading it from the map.");
+		return restoreFromRoot(path, saveSlot, coordX, coordY);
+    }
 
-		//FileHandle path = Gdx.files.internal("/map/chunk"+coordX+","+chunkY+"."+CHUNKFILESUFFIX);
-		FileHandle savepath = Gdx.files.absolute(path+"/save"+saveSlot+"/chunk"+coordX+","+coordY+"."+CHUNKFILESUFFIX);
-
-		if (savepath.exists()) {
-			Gdx.app.debug("Chunk","Loading Chunk: "+ coordX + ", "+ coordY);
-			//Reading map files test
-			try {
-				FileInputStream fis = new FileInputStream(savepath.file());
-
-				byte bChar = loadBlocks(fis);
-				//if (bChar == SIGN_ENDBLOCKS)
-					//Gdx.app.debug("Chunk","Loaded blocks sucessfull");
-
-				if (fis.available() > 0) {//not eof
-					loadEntities(fis, path);
+	/**
+	 * Parses the content of a chunk file.
+	 *
+	 * @param file
+	 * @param path the map directory
+	 * @param coordX
+	 * @param coordY
+	 * @return
+	 */
+	private boolean load(byte[] file, final File path, int coordX, int coordY) {
+		try {
+			if (ChunkFormat.isCurrentFormat(file)) {
+				loadSections(ChunkFormat.readPayload(file, blocksX, blocksY, blocksZ), path);
+				dirty = false;
+			} else {
+				//old format, migrated by saving it again
+				int end = ChunkFormat.readLegacyBlocks(file, data);
+				createLogicBlocks();
+				if (end < file.length) {//not eof
+					loadEntities(new ByteArrayInputStream(file, end, file.length - end), path, true);
 				}
-
-				modified = true;
-				return true;
-
-			} catch (IOException ex){
-				Gdx.app.error("Chunk","Loading of chunk " +path+"/"+coordX+","+coordY + " failed. Chunk or meta file corrupt: "+ex);
+				dirty = true;
 			}
-		} else {
-			Gdx.app.log("Chunk",savepath+" could not be found on disk. Trying to restore chunk.");
-			if (restoreFromRoot(path, saveSlot, coordX, coordY))
-				load(path, saveSlot, coordX, coordY);
-		}
 
-        return false;
-    }
+			modified = true;
+			version++;
+			return true;
+
+		} catch (IOException ex){
+			Gdx.app.error("Chunk","Loading of chunk " +path+"/"+coordX+","+coordY + " failed. Chunk or meta file corrupt: "+ex);
+			data.clear();
+			logicBlocks.clear();
+			entitiesinSaveFile = null;
+		}
+		return false;
+	}
 
 	/**
 	 * Returns entitiesinSaveFile spawned on this chunk. Can only called once.
+	 * Creates the entities so call it on the main thread.
 	 * @return list of entitiesinSaveFile on this chunk, can be null if empty
 	 */
 	public ArrayList<AbstractEntity> retrieveEntities() {
 		ArrayList<AbstractEntity> tmp = entitiesinSaveFile;
 		entitiesinSaveFile = null;//clear this reference to help gc
+		if (entityRecords != null) {
+			if (WE.getCVars().getValueB("loadEntities")) {
+				try {
+					ArrayList<AbstractEntity> decoded = EntityCodec.read(entityRecords);
+					Gdx.app.debug("Chunk", "Loaded " + decoded.size() + " entities.");
+					if (tmp == null) {
+						tmp = decoded;
+					} else {
+						tmp.addAll(decoded);
+					}
+				} catch (IOException ex) {
+					Gdx.app.error("Chunk", "Loading of entities in chunk " + chunkX + "," + chunkY + " failed: " + ex);
+				}
+			}
+			entityRecords = null;
+		}
 		return tmp;
 	}
 
 
     /**
-     * Save this chunk on storage.
+     * Save this chunk on storage. Blocks until written.
      * @param path the map name on storage
 	 * @param saveSlot
 
      * @return
      * @throws java.io.IOException
+	 * @see ChunkSaveService
      */
     public boolean save(File path, int saveSlot) throws IOException {
         if (path == null) return false;
         Gdx.app.log("Chunk","Saving "+chunkX + ","+ chunkY +".");
-		File savepath = new File(path + "/save" + saveSlot + "/chunk" + chunkX + "," + chunkY + "." + CHUNKFILESUFFIX);
-
-        savepath.createNewFile();
-
-		FileOutputStream fos = new FileOutputStream(savepath);
-		for (byte z = 0; z < blocksZ; z++) {
-			//check if layer is empty
-			boolean dirty = false;
-			for (int x = 0; x < blocksX; x++) {
-				for (int y = 0; y < blocksY; y++) {
-					if (data[x][y][z*3] != 0) {
-						dirty = true;
-					}
-				}
-			}
-			if (dirty) {
-				for (int y = 0; y < blocksY; y++) {
-					for (int x = 0; x < blocksX; x++) {
-						if (data[x][y][z * 3] == 0) {
-							fos.write(0);//value would be redundand
-						} else {
-							fos.write(new byte[]{data[x][y][z * 3], data[x][y][z * 3 + 1]});
-						}
-					}
-				}
-			} else {
-				fos.write(new byte[]{SIGN_COMMAND, SIGN_EMTPYLAYER});
-			}
-		}
-		fos.write(new byte[]{SIGN_COMMAND, SIGN_ENDBLOCKS});
-		fos.flush();
-
-		ArrayList<AbstractEntity> entities = map.getEntitiesOnChunkSavedOnly(chunkX, chunkY);
-
-		if (entities.size() > 0){
-			try (ObjectOutputStream fileOut = new ObjectOutputStream(fos)) {
-				//save entitiesinSaveFile
-				if (entities.size() > 0) {
-					fileOut.write(new byte[]{SIGN_COMMAND, SIGN_ENTITIES, (byte) entities.size()});
-					for (AbstractEntity ent : entities){
-						Gdx.app.debug("Chunk", "Saving entity:"+ent.getName());
-						try {
-							fileOut.writeObject(ent);
-						} catch(java.io.NotSerializableException ex){
-							Gdx.app.error("Chunk", "Something is not NotSerializable: "+ex.getMessage()+":"+ex.toString());
-						}
-					}
-				}
-				fileOut.close();
-			} catch (IOException ex){
-			  throw ex;
-			}
-		}
-
+		createSnapshot(saveSlot == map.getCurrentSaveSlot()).write(
+			getSaveDirectory(path, saveSlot),
+			WE.getCVars().getValueB("mapRegionFiles")
+		);
 		return true;
     }
 
+	/**
+	 * Copies the blocks and serializes the persistent entities so that they
+	 * can be written on another thread. Marks the chunk as saved.
+	 *
+	 * @return
+	 * @throws IOException if the serialization of the entities failed
+	 */
+	public ChunkSnapshot createSnapshot() throws IOException {
+		return createSnapshot(true);
+	}
+
+	/**
+	 * Copies the blocks and serializes the persistent entities so that they
+	 * can be written on another thread.
+	 *
+	 * @param markSaved true if the snapshot is written into the current save
+	 * slot
+	 * @return
+	 * @throws IOException if the serialization of the entities failed
+	 */
+	public ChunkSnapshot createSnapshot(boolean markSaved) throws IOException {
+		byte[] entityData = EntityCodec.write(map.getEntitiesOnChunkSavedOnly(chunkX, chunkY));
+
+		int[] logicCells = logicBlocks.getValidCells();
+
+		if (markSaved) {
+			dirty = false;
+		}
+		return new ChunkSnapshot(
+			chunkX,
+			chunkY,
+			data,
+			logicCells,
+			entityData,
+			WE.getCVars().getValueB("mapCompression")
+		);
+	}
+
+	/**
+	 * Get the single file of a chunk. The chunk may also be stored in a region
+	 * file instead.
+	 *
+	 * @param path the map directory
+	 * @param saveSlot
+	 * @param chunkX
+	 * @param chunkY
+	 * @return
+	 * @see ChunkFiles
+	 */
+	public static File getSaveFile(File path, int saveSlot, int chunkX, int chunkY) {
+		return ChunkFiles.getSingleFile(getSaveDirectory(path, saveSlot), chunkX, chunkY);
+	}
+
+	/**
+	 *
+	 * @param path the map directory
+	 * @param saveSlot
+	 * @return the directory of the save slot
+	 */
+	public static File getSaveDirectory(File path, int saveSlot) {
+		return new File(path, "save" + saveSlot);
+	}
+
 	/**
      * Returns the data of the chunk
-     * @return
+     * @return not copy safe
      */
-    public byte[][][] getData() {
+    public ChunkStorage getData() {
         return data;
     }
 
@@ -655,10 +777,10 @@ public class Chunk implements Telegraph {
 		for (int z = 0; z < blocksZ*3; z+=3) {
 			for (int y = 0; y < blocksY; y++) {
 				for (int x = 0; x < blocksX; x++) {
-					if (data[x][y][z]==0)
+					if (data.getId(x, y, z / 3) == 0)
 						strg += "  ";
 					else
-						strg += data[x][y][z] + " ";
+						strg += data.getId(x, y, z / 3) + " ";
 				}
 				strg += "\n";
 			}
@@ -706,20 +828,15 @@ public class Chunk implements Telegraph {
 	public void setBlock(RenderCell rblock) {
 		int xIndex = rblock.getPosition().getX()-topleftX;
 		int yIndex = rblock.getPosition().getY()-topleftY;
-		int z = rblock.getPosition().getZ()*3;
+		int z = rblock.getPosition().getZ();
 		if (z >= 0){
-			data[xIndex][yIndex][z] = rblock.getId();
-			data[xIndex][yIndex][z+1] = rblock.getValue();
-			data[xIndex][yIndex][z+2] = rblock.getHealth();
+			data.setCell(xIndex, yIndex, z, rblock.getId(), rblock.getValue(), rblock.getHealth());
 			modified = true;
+			dirty = true;
 		}
 		
 		//get corresponding logic and update
-		if (rblock.getId() != 0) {
-			AbstractBlockLogicExtension logic = RenderCell.createLogicInstance(rblock.getId(), rblock.getValue(), rblock.getPosition());
-			if (logic != null)
-				logicBlocks.add(logic);
-		}
+		setLogic(xIndex, yIndex, z, rblock.getId(), rblock.getValue(), rblock.getPosition());
 	}
 
 	/**
@@ -735,20 +852,15 @@ public class Chunk implements Telegraph {
 	public void setBlock(Coordinate coord, byte id, byte value, byte health) {
 		int xIndex = coord.getX() - topleftX;
 		int yIndex = coord.getY() - topleftY;
-		int z = coord.getZ()*3;
+		int z = coord.getZ();
 		if (z >= 0){
-			data[xIndex][yIndex][z] = id;
-			data[xIndex][yIndex][z+1] = value;
-			data[xIndex][yIndex][z+2] = health;
+			data.setCell(xIndex, yIndex, z, id, value, health);
 			modified = true;
+			dirty = true;
 		}
 		
 		//get corresponding logic and update
-		if (id != 0) {
-			AbstractBlockLogicExtension logic = RenderCell.createLogicInstance(id, value, coord);
-			if (logic != null)
-				logicBlocks.add(logic);
-		}
+		setLogic(xIndex, yIndex, z, id, value, coord);
 	}
 	
 	/**
@@ -762,20 +874,15 @@ public class Chunk implements Telegraph {
 	public void setBlock(Coordinate coord, byte id, byte value) {
 		int xIndex = coord.getX() - topleftX;
 		int yIndex = coord.getY() - topleftY;
-		int z = coord.getZ()*3;
+		int z = coord.getZ();
 		if (z >= 0){
-			data[xIndex][yIndex][z] = id;
-			data[xIndex][yIndex][z+1] = value;
-			data[xIndex][yIndex][z+2] = 100;
+			data.setCell(xIndex, yIndex, z, id, value, (byte) 100);
 			modified = true;
+			dirty = true;
 		}
 		
 		//get corresponding logic and update
-		if (id != 0) {
-			AbstractBlockLogicExtension logic = RenderCell.createLogicInstance(id, value, coord);
-			if (logic != null)
-				logicBlocks.add(logic);
-		}
+		setLogic(xIndex, yIndex, z, id, value, coord);
 	}
 	
 	/**
@@ -788,19 +895,41 @@ public class Chunk implements Telegraph {
 		public void setBlock(Coordinate coord, byte id) {
 		int xIndex = coord.getX() - topleftX;
 		int yIndex = coord.getY() - topleftY;
-		int z = coord.getZ()*3;
+		int z = coord.getZ();
 		if (z >= 0){
-			data[xIndex][yIndex][z] = id;
-			data[xIndex][yIndex][z+1] = 0;
-			data[xIndex][yIndex][z+2] = 100;
+			data.setCell(xIndex, yIndex, z, id, (byte) 0, (byte) 100);
 			modified = true;
+			dirty = true;
 		}
 		
 		//get corresponding logic and update
+		setLogic(xIndex, yIndex, z, id, (byte) 0, coord);
+	}
+
+	/**
+	 * Replaces the logic of a cell with the logic of the new block. If the new
+	 * block has no logic the old logic is removed.
+	 *
+	 * @param xIndex
+	 * @param yIndex
+	 * @param z
+	 * @param id the new block
+	 * @param value the new block
+	 * @param coord position of the cell, gets copied
+	 */
+	private void setLogic(int xIndex, int yIndex, int z, byte id, byte value, Coordinate coord) {
+		if (z < 0 || z >= blocksZ) {
+			return;
+		}
+		int cell = data.index(xIndex, yIndex, z);
+		AbstractBlockLogicExtension logic = null;
 		if (id != 0) {
-			AbstractBlockLogicExtension logic = RenderCell.createLogicInstance(id, (byte) 0, coord);
-			if (logic != null)
-				logicBlocks.add(logic);
+			logic = RenderCell.createLogicInstance(id, value, coord.cpy());
+		}
+		if (logic != null) {
+			logicBlocks.put(cell, logic);
+		} else {
+			logicBlocks.remove(cell);
 		}
 	}
 	
@@ -812,12 +941,12 @@ public class Chunk implements Telegraph {
 	public void setValue(Coordinate coord, byte value) {
 		int xIndex = coord.getX() - topleftX;
 		int yIndex = coord.getY() - topleftY;
-		int z = coord.getZ()*3;
+		int z = coord.getZ();
 		if (z >= 0) {
 			//check if actually changed
-			if (data[xIndex][yIndex][z+1] != value) {
-				data[xIndex][yIndex][z+1] = value;
+			if (data.setValue(xIndex, yIndex, z, value)) {
 				modified = true;
+				dirty = true;
 			}
 		}
 	}
@@ -831,11 +960,11 @@ public class Chunk implements Telegraph {
 		MessageManager.getInstance().dispatchMessage(Events.blockDamaged.getId(), coord);
 		int xIndex = coord.getX() - topleftX;
 		int yIndex = coord.getY() - topleftY;
-		int z = coord.getZ()*3;
+		int z = coord.getZ();
 		if (z >= 0) {
-			if (data[xIndex][yIndex][z+2] != health) {
-				data[xIndex][yIndex][z+2] = health;
+			if (data.setHealth(xIndex, yIndex, z, health)) {
 				modified = true;
+				dirty = true;
 			}
 		}
 	}
@@ -845,7 +974,20 @@ public class Chunk implements Telegraph {
 	 * @param block
 	 */
 	protected void addLogic(AbstractBlockLogicExtension block) {
-		logicBlocks.add(block);
+		Coordinate pos = block.getPosition();
+		if (pos.getZ() >= 0 && pos.getZ() < blocksZ) {
+			logicBlocks.put(data.index(pos.getX() - topleftX, pos.getY() - topleftY, pos.getZ()), block);
+		}
+	}
+
+	/**
+	 * Schedules a tick for every logic block which is not polled. Call when
+	 * the chunk is added to the map.
+	 *
+	 * @param scheduler
+	 */
+	void scheduleLogicTicks(BlockTickScheduler scheduler) {
+		logicBlocks.scheduleTicks(scheduler);
 	}
 
 	/**
@@ -855,23 +997,48 @@ public class Chunk implements Telegraph {
 	 * @return can return null
 	 */
 	public AbstractBlockLogicExtension getLogic(Coordinate coord) {
-		if (coord.getBlockId() != 0) {
-			//find the logicBlock
-			for (AbstractBlockLogicExtension logicBlock : logicBlocks) {
-				if (logicBlock.getPosition().equals(coord) && logicBlock.isValid()) {
-					return logicBlock;
-				}
-			}
+		AbstractBlockLogicExtension logicBlock = getLogicUnchecked(coord);
+		if (logicBlock != null && logicBlock.isValid()) {
+			return logicBlock;
 		}
 		return null;
 	}
 
+	/**
+	 * Get the logic block registered at a cell, also if it is not valid
+	 * anymore.
+	 *
+	 * @param coord
+	 * @return can return null
+	 */
+	AbstractBlockLogicExtension getLogicUnchecked(Coordinate coord) {
+		int z = coord.getZ();
+		if (z < 0 || z >= blocksZ) {
+			return null;
+		}
+		return logicBlocks.get(data.index(coord.getX() - topleftX, coord.getY() - topleftY, z));
+	}
+
+	/**
+	 * Removes and disposes a logic block if it is still registered at its
+	 * cell.
+	 *
+	 * @param logic
+	 */
+	void removeLogic(AbstractBlockLogicExtension logic) {
+		Coordinate pos = logic.getPosition();
+		if (getLogicUnchecked(pos) == logic) {
+			logicBlocks.remove(data.index(pos.getX() - topleftX, pos.getY() - topleftY, pos.getZ()));
+		}
+	}
+
 	/**
 	 * disposes the chunk
 	 *
 	 * @param path if null, does not save the file
 	 */
 	public void dispose(File path) {
+		logicBlocks.cancelTicks();
 		//try saving
 		if (path != null) {
 			try {
@@ -923,7 +1090,7 @@ public class Chunk implements Telegraph {
 		}
 		int xIndex = x - topleftX;
 		int yIndex = y - topleftY;
-		return data[xIndex][yIndex][z * 3];
+		return data.getId(xIndex, yIndex, z);
 	}
 
 	/**
@@ -939,7 +1106,7 @@ public class Chunk implements Telegraph {
 		}
 		int xIndex = x - topleftX;
 		int yIndex = y - topleftY;
-		return data[xIndex][yIndex][z * 3 + 1];
+		return data.getValue(xIndex, yIndex, z);
 	}
 
 	/**
@@ -955,7 +1122,7 @@ public class Chunk implements Telegraph {
 		}
 		int xIndex = x - topleftX;
 		int yIndex = y - topleftY;
-		return data[xIndex][yIndex][z * 3 + 2];
+		return data.getHealth(xIndex, yIndex, z);
 	}
 
 	/**
@@ -972,7 +1139,7 @@ public class Chunk implements Telegraph {
 		}
 		int xIndex = x - topleftX;
 		int yIndex = y - topleftY;
-		return data[xIndex][yIndex][z * 3] + (data[xIndex][yIndex][z * 3 + 1] << 8) + (data[xIndex][yIndex][z * 3 + 2] << 16);
+		return data.getCell(xIndex, yIndex, z);
 	}
 
 	/**
@@ -986,6 +1153,72 @@ public class Chunk implements Telegraph {
 		if (z >= Chunk.blocksZ) {
 			return 0;
 		}
-		return data[x][y][z * 3] + (data[x][y][z * 3 + 1] << 8) + (data[x][y][z * 3 + 2] << 16);
+		return data.getCell(x, y, z);
+	}
+
+	/**
+	 * Estimated amount of memory used by this chunk. Dominated by the block
+	 * data.
+	 *
+	 * @return bytes
+	 */
+	public long getMemoryUsage() {
+		return data.getMemoryUsage() + CHUNK_OVERHEAD + logicBlocks.size() * LOGIC_OVERHEAD;
+	}
+
+	/**
+	 * Check if the save file is outdated. A chunk needs saving if the blocks
+	 * changed or if a persistent entity spawned, moved or was removed on it.
+	 *
+	 * @return
+	 * @see #setEntitiesChanged()
+	 */
+	public boolean needsSave() {
+		return dirty;
+	}
+
+	/**
+	 *
+	 * @return true if the blocks or the persistent entities differ from the
+	 * save file
+	 */
+	public boolean isDirty() {
+		return dirty;
+	}
+
+	/**
+	 * Marks the chunk for saving because a persistent entity spawned, moved or
+	 * was removed on it.
+	 */
+	public void setEntitiesChanged() {
+		dirty = true;
+	}
+
+	/**
+	 * Changes when the blocks change without a {@link ChunkChange}, e.g. when
+	 * the chunk is filled. Views compare it to know if they must rebuild.
+	 *
+	 * @return
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Keeps the chunk in memory for this and the next map update.
+	 *
+	 * @param updateCount the map's update counter
+	 * @see Map#pinChunk(int, int)
+	 */
+	void pin(long updateCount) {
+		lastPinned = updateCount;
+	}
+
+	/**
+	 *
+	 * @return the map's update counter when the chunk was pinned the last time
+	 */
+	long getLastPinned() {
+		return lastPinned;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+/**
+ * The blocks of a chunk which changed. Extra information of the message
+ * {@link com.bombinggames.wurfelengine.core.Events#blocksChanged}. The bounds
+ * are grid coordinates and inclusive.
+ *
+ * @author Benedikt Vogler
+ * @see Map#beginEdits()
+ */
+public class ChunkChange {
+
+	private final Chunk chunk;
+	private int minX, minY, minZ;
+	private int maxX, maxY, maxZ;
+	private int edits;
+
+	/**
+	 *
+	 * @param chunk the changed chunk
+	 * @param x first changed cell
+	 * @param y first changed cell
+	 * @param z first changed cell
+	 */
+	public ChunkChange(Chunk chunk, int x, int y, int z) {
+		this.chunk = chunk;
+		minX = maxX = x;
+		minY = maxY = y;
+		minZ = maxZ = z;
+		edits = 1;
+	}
+
+	/**
+	 * Grows the bounds so that they contain the cell.
+	 *
+	 * @param x
+	 * @param y
+	 * @param z
+	 */
+	void add(int x, int y, int z) {
+		if (x < minX) minX = x;
+		if (x > maxX) maxX = x;
+		if (y < minY) minY = y;
+		if (y > maxY) maxY = y;
+		if (z < minZ) minZ = z;
+		if (z > maxZ) maxZ = z;
+		edits++;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public Chunk getChunk() {
+		return chunk;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getMinX() {
+		return minX;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getMinY() {
+		return minY;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getMinZ() {
+		return minZ;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getMaxY() {
+		return maxY;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getMaxZ() {
+		return maxZ;
+	}
+
+	/**
+	 *
+	 * @return amount of coalesced edits
+	 */
+	public int getEdits() {
+		return edits;
+	}
+
+	/**
+	 *
+	 * @param coord
+	 * @return true if the coordinate is inside the bounds
+	 */
+	public boolean contains(Coordinate coord) {
+		return coord.getX() >= minX && coord.getX() <= maxX
+			&& coord.getY() >= minY && coord.getY() <= maxY
+			&& coord.getZ() >= minZ && coord.getZ() <= maxZ;
+	}
+
+	@Override
+	public String toString() {
+		return "ChunkChange{" + chunk.getChunkX() + "," + chunk.getChunkY()
+			+ " [" + minX + "," + minY + "," + minZ + "]-[" + maxX + "," + maxY + "," + maxZ + "], " + edits + " edits}";
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the file content of a chunk in a directory. A chunk is either stored
+ * in a {@link RegionFile} or in a single file <i>chunkX,Y.wec</i>. Writing
+ * into a region deletes the single file, so a single file is always newer and
+ * takes precedence.
+ *
+ * @author Benedikt Vogler
+ */
+public final class ChunkFiles {
+
+	private static final Pattern CHUNK_FILE = Pattern.compile("chunk(-?\\d+),(-?\\d+)\\." + Chunk.CHUNKFILESUFFIX);
+
+	private ChunkFiles() {
+	}
+
+	/**
+	 * Reads the content of a chunk file.
+	 *
+	 * @param directory a save slot or the map root
+	 * @param chunkX
+	 * @param chunkY
+	 * @return null if there is no file for this chunk
+	 * @throws IOException
+	 */
+	public static byte[] read(File directory, int chunkX, int chunkY) throws IOException {
+		File single = getSingleFile(directory, chunkX, chunkY);
+		if (single.isFile()) {
+			try {
+				return Files.readAllBytes(single.toPath());
+			} catch (NoSuchFileException ex) {
+				//moved into a region in the meantime
+			}
+		}
+		RegionFile region = RegionFile.get(directory, chunkX, chunkY, false);
+		if (region != null) {
+			return region.read(chunkX, chunkY);
+		}
+		return null;
+	}
+
+	/**
+	 *
+	 * @param directory a save slot or the map root
+	 * @param chunkX
+	 * @param chunkY
+	 * @return true if there is a file for this chunk
+	 * @throws IOException
+	 */
+	public static boolean exists(File directory, int chunkX, int chunkY) throws IOException {
+		RegionFile region = RegionFile.get(directory, chunkX, chunkY, false);
+		return (region != null && region.hasChunk(chunkX, chunkY))
+			|| getSingleFile(directory, chunkX, chunkY).isFile();
+	}
+
+	/**
+	 * Writes the content of a chunk file.
+	 *
+	 * @param directory a save slot or the map root
+	 * @param chunkX
+	 * @param chunkY
+	 * @param content
+	 * @param regions if true writes into a region file, else into a single
+	 * file which is replaced atomically
+	 * @throws IOException
+	 */
+	public static void write(File directory, int chunkX, int chunkY, byte[] content, boolean regions) throws IOException {
+		if (regions) {
+			RegionFile.get(directory, chunkX, chunkY, true).write(chunkX, chunkY, content);
+			//the single file is outdated now
+			Files.deleteIfExists(getSingleFile(directory, chunkX, chunkY).toPath());
+		} else {
+			File target = getSingleFile(directory, chunkX, chunkY);
+			File tmp = new File(target.getPath() + ".tmp");
+			try (OutputStream out = new FileOutputStream(tmp)) {
+				out.write(content);
+			}
+			try {
+				Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException ex) {
+				Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param directory a save slot or the map root
+	 * @param chunkX
+	 * @param chunkY
+	 * @return the file of the chunk when it is not stored in a region
+	 */
+	public static File getSingleFile(File directory, int chunkX, int chunkY) {
+		return new File(directory, "chunk" + chunkX + "," + chunkY + "." + Chunk.CHUNKFILESUFFIX);
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @return true if the file is a single chunk file or a region file
+	 */
+	public static boolean isChunkFile(File file) {
+		String name = file.getName();
+		return CHUNK_FILE.matcher(name).matches() || name.endsWith("." + RegionFile.SUFFIX);
+	}
+
+	/**
+	 * Moves every single chunk file of a directory into region files. The
+	 * content is copied as it is, so old formats stay readable.
+	 *
+	 * @param directory a save slot or the map root
+	 * @return the amount of converted chunks
+	 * @throws IOException
+	 */
+	public static int convertToRegions(File directory) throws IOException {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return 0;
+		}
+		int count = 0;
+		for (File file : files) {
+			Matcher matcher = CHUNK_FILE.matcher(file.getName());
+			if (file.isFile() && matcher.matches()) {
+				int chunkX = Integer.parseInt(matcher.group(1));
+				int chunkY = Integer.parseInt(matcher.group(2));
+				RegionFile.get(directory, chunkX, chunkY, true).write(chunkX, chunkY, Files.readAllBytes(file.toPath()));
+				Files.delete(file.toPath());
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,496 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import com.bombinggames.wurfelengine.core.gameobjects.EntityCodec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Reads and writes the chunk files (.wec). Since {@link Map#MAPVERSION} 5 a
+ * chunk file looks like this (big endian):
+ * <pre>
+ * magic "~WEC"
+ * short version
+ * short blocksX, short blocksY, short blocksZ
+ * int chunkX, int chunkY
+ * byte compression (0 none, 1 deflate)
+ * int raw payload length, int stored payload length
+ * int CRC32 of the raw payload
+ * payload: sections, each is byte type, int length, content
+ * </pre> Unknown sections are skipped. Files without the magic are read with
+ * the old format of version 4 and are written in the new format when saved the
+ * next time.
+ *
+ * @author Benedikt Vogler
+ */
+public final class ChunkFormat {
+
+	/**
+	 * the current version of the chunk file
+	 */
+	public static final short VERSION = 5;
+	private static final byte[] MAGIC = {'~', 'W', 'E', 'C'};
+	private static final int HEADER_SIZE = 33;
+	private static final int SECTION_HEADER_SIZE = 5;
+	/**
+	 * the largest entity section which is read, limits what a corrupt header
+	 * can make the reader allocate
+	 */
+	private static final int MAX_ENTITIES_LENGTH = 16 << 20;
+
+	/**
+	 * ids of every cell followed by the values of every cell
+	 */
+	public static final byte SECTION_BLOCKS = 1;
+	/**
+	 * int count, then per damaged cell int index and byte health
+	 */
+	public static final byte SECTION_HEALTH = 2;
+	/**
+	 * int count, then the int index of every logic block. Optional, without it
+	 * every block is checked for logic when loaded.
+	 */
+	public static final byte SECTION_LOGIC = 3;
+	/**
+	 * the entities with java serialization, only read
+	 */
+	public static final byte SECTION_ENTITIES = 4;
+	/**
+	 * the entities written by the {@link EntityCodec}
+	 */
+	public static final byte SECTION_ENTITY_RECORDS = 5;
+
+	private static final byte COMPRESSION_NONE = 0;
+	private static final byte COMPRESSION_DEFLATE = 1;
+
+	private ChunkFormat() {
+	}
+
+	/**
+	 * Encodes a chunk in the current format.
+	 *
+	 * @param snapshot
+	 * @return the whole file
+	 */
+	public static byte[] write(ChunkSnapshot snapshot) {
+		byte[] ids = snapshot.getIds();
+		int[] damaged = snapshot.getDamagedCells();
+		int[] logic = snapshot.getLogicCells();
+		byte[] entities = snapshot.getEntities();
+
+		int rawLength = SECTION_HEADER_SIZE + ids.length * 2
+			+ SECTION_HEADER_SIZE + 4 + damaged.length * 5;
+		if (logic != null) {
+			rawLength += SECTION_HEADER_SIZE + 4 + logic.length * 4;
+		}
+		if (entities != null) {
+			rawLength += SECTION_HEADER_SIZE + entities.length;
+		}
+		ByteBuffer payload = ByteBuffer.allocate(rawLength);
+		payload.put(SECTION_BLOCKS).putInt(ids.length * 2);
+		payload.put(ids).put(snapshot.getValues());
+
+		payload.put(SECTION_HEALTH).putInt(4 + damaged.length * 5).putInt(damaged.length);
+		byte[] health = snapshot.getDamagedHealth();
+		for (int i = 0; i < damaged.length; i++) {
+			payload.putInt(damaged[i]).put(health[i]);
+		}
+
+		if (logic != null) {//without the section the loader looks for logic blocks
+			payload.put(SECTION_LOGIC).putInt(4 + logic.length * 4).putInt(logic.length);
+			for (int cell : logic) {
+				payload.putInt(cell);
+			}
+		}
+
+		if (entities != null) {
+			payload.put(SECTION_ENTITY_RECORDS).putInt(entities.length).put(entities);
+		}
+
+		byte[] raw = payload.array();
+		CRC32 crc = new CRC32();
+		crc.update(raw, 0, rawLength);
+
+		byte[] stored = raw;
+		int storedLength = rawLength;
+		byte compression = COMPRESSION_NONE;
+		if (snapshot.isCompressed()) {
+			Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			deflater.setInput(raw, 0, rawLength);
+			deflater.finish();
+			byte[] compressed = new byte[rawLength + 64];
+			int length = 0;
+			while (!deflater.finished() && length < compressed.length) {
+				length += deflater.deflate(compressed, length, compressed.length - length);
+			}
+			boolean finished = deflater.finished();
+			deflater.end();
+			if (finished && length < rawLength) {
+				stored = compressed;
+				storedLength = length;
+				compression = COMPRESSION_DEFLATE;
+			}
+		}
+
+		ByteBuffer file = ByteBuffer.allocate(HEADER_SIZE + storedLength);
+		file.put(MAGIC);
+		file.putShort(VERSION);
+		file.putShort((short) snapshot.getBlocksX());
+		file.putShort((short) snapshot.getBlocksY());
+		file.putShort((short) snapshot.getBlocksZ());
+		file.putInt(snapshot.getChunkX());
+		file.putInt(snapshot.getChunkY());
+		file.put(compression);
+		file.putInt(rawLength);
+		file.putInt(storedLength);
+		file.putInt((int) crc.getValue());
+		file.put(stored, 0, storedLength);
+		return file.array();
+	}
+
+	/**
+	 *
+	 * @param file content of a chunk file
+	 * @return true if the file starts with the magic of the format version 5
+	 * or newer
+	 */
+	public static boolean isCurrentFormat(byte[] file) {
+		if (file.length < HEADER_SIZE) {
+			return false;
+		}
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (file[i] != MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks the header, decompresses and verifies the payload.
+	 *
+	 * @param file content of a chunk file in the current format
+	 * @param blocksX expected dimension
+	 * @param blocksY expected dimension
+	 * @param blocksZ expected dimension
+	 * @return the payload, positioned at the first section
+	 * @throws IOException if the file is corrupt or does not fit
+	 */
+	public static ByteBuffer readPayload(byte[] file, int blocksX, int blocksY, int blocksZ) throws IOException {
+		if (!isCurrentFormat(file)) {
+			throw new IOException("Not a chunk file of version " + VERSION);
+		}
+		ByteBuffer header = ByteBuffer.wrap(file);
+		header.position(MAGIC.length);
+		short version = header.getShort();
+		if (version > VERSION) {
+			throw new IOException("Chunk file version " + version + " is newer than " + VERSION);
+		}
+		int fileX = header.getShort();
+		int fileY = header.getShort();
+		int fileZ = header.getShort();
+		if (fileX != blocksX || fileY != blocksY || fileZ != blocksZ) {
+			throw new IOException("Chunk dimensions " + fileX + "x" + fileY + "x" + fileZ + " do not match the map " + blocksX + "x" + blocksY + "x" + blocksZ);
+		}
+		header.getInt();//chunkX
+		header.getInt();//chunkY
+		byte compression = header.get();
+		int rawLength = header.getInt();
+		int storedLength = header.getInt();
+		int checksum = header.getInt();
+		if (storedLength < 0 || rawLength < 0 || HEADER_SIZE + storedLength > file.length) {
+			throw new IOException("Chunk file is truncated");
+		}
+		if (rawLength > getMaxPayloadLength(blocksX, blocksY, blocksZ)) {
+			throw new IOException("Chunk payload length " + rawLength + " is too large");
+		}
+
+		byte[] raw;
+		int offset;
+		if (compression == COMPRESSION_NONE) {
+			if (rawLength != storedLength) {
+				throw new IOException("Chunk payload has the wrong length");
+			}
+			raw = file;
+			offset = HEADER_SIZE;
+		} else if (compression == COMPRESSION_DEFLATE) {
+			raw = new byte[rawLength];
+			offset = 0;
+			Inflater inflater = new Inflater();
+			try {
+				inflater.setInput(file, HEADER_SIZE, storedLength);
+				int length = inflater.inflate(raw);
+				if (length != rawLength || !inflater.finished()) {
+					throw new IOException("Chunk payload has the wrong length");
+				}
+			} catch (DataFormatException ex) {
+				throw new IOException("Chunk payload is corrupt", ex);
+			} finally {
+				inflater.end();
+			}
+		} else {
+			throw new IOException("Unknown compression " + compression);
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(raw, offset, rawLength);
+		if ((int) crc.getValue() != checksum) {
+			throw new IOException("Chunk checksum mismatch");
+		}
+		return ByteBuffer.wrap(raw, offset, rawLength).slice();
+	}
+
+	/**
+	 * The largest payload a chunk file can have: every section with every
+	 * cell damaged and a logic block.
+	 *
+	 * @param blocksX
+	 * @param blocksY
+	 * @param blocksZ
+	 * @return bytes
+	 */
+	private static long getMaxPayloadLength(int blocksX, int blocksY, int blocksZ) {
+		long cells = (long) blocksX * blocksY * blocksZ;
+		return SECTION_HEADER_SIZE + cells * 2
+			+ SECTION_HEADER_SIZE + 4 + cells * 5
+			+ SECTION_HEADER_SIZE + 4 + cells * 4
+			+ SECTION_HEADER_SIZE + MAX_ENTITIES_LENGTH;
+	}
+
+	/**
+	 * Moves to the next section.
+	 *
+	 * @param payload positioned at a section header or at the end
+	 * @return the content of the next section, positioned at the start, null if
+	 * there is no section left. Get the type with {@link #getType(ByteBuffer)}
+	 * @throws IOException if a section is truncated
+	 */
+	public static ByteBuffer nextSection(ByteBuffer payload) throws IOException {
+		if (payload.remaining() < SECTION_HEADER_SIZE) {
+			return null;
+		}
+		int start = payload.position();
+		payload.get();//type
+		int length = payload.getInt();
+		if (length < 0 || length > payload.remaining()) {
+			throw new IOException("Chunk section is truncated");
+		}
+		ByteBuffer section = payload.duplicate();
+		section.position(start);
+		section.limit(start + SECTION_HEADER_SIZE + length);
+		section = section.slice();
+		section.position(SECTION_HEADER_SIZE);
+		payload.position(payload.position() + length);
+		return section;
+	}
+
+	/**
+	 *
+	 * @param section returned by {@link #nextSection(ByteBuffer) }
+	 * @return the type of the section
+	 */
+	public static byte getType(ByteBuffer section) {
+		return section.get(0);
+	}
+
+	/**
+	 * Reads the {@link #SECTION_BLOCKS}. Every cell gets full health.
+	 *
+	 * @param section
+	 * @param storage the target
+	 * @throws IOException if the section is too small
+	 */
+	public static void readBlocks(ByteBuffer section, ChunkStorage storage) throws IOException {
+		int layerSize = storage.getLayerSize();
+		int cells = layerSize * storage.getBlocksZ();
+		if (section.remaining() < cells * 2) {
+			throw new IOException("Block section is too small");
+		}
+		byte[] ids = new byte[layerSize];
+		byte[] values = new byte[layerSize];
+		int idStart = section.position();
+		int valueStart = idStart + cells;
+		for (int z = 0; z < storage.getBlocksZ(); z++) {
+			section.position(idStart + z * layerSize);
+			section.get(ids);
+			section.position(valueStart + z * layerSize);
+			section.get(values);
+			storage.setLayer(z, ids, values);
+		}
+	}
+
+	/**
+	 * Reads the {@link #SECTION_HEALTH}.
+	 *
+	 * @param section
+	 * @param storage the target
+	 * @throws IOException if an index is outside the chunk
+	 */
+	public static void readHealth(ByteBuffer section, ChunkStorage storage) throws IOException {
+		int count = section.getInt();
+		int cells = storage.getLayerSize() * storage.getBlocksZ();
+		for (int i = 0; i < count; i++) {
+			int cell = section.getInt();
+			byte health = section.get();
+			if (cell < 0 || cell >= cells) {
+				throw new IOException("Damaged cell " + cell + " is outside the chunk");
+			}
+			int z = cell / storage.getLayerSize();
+			int rest = cell % storage.getLayerSize();
+			storage.setHealth(rest % storage.getBlocksX(), rest / storage.getBlocksX(), z, health);
+		}
+	}
+
+	/**
+	 * Reads the {@link #SECTION_LOGIC}.
+	 *
+	 * @param section
+	 * @return the cell indices of the logic blocks
+	 */
+	public static int[] readLogic(ByteBuffer section) {
+		int[] cells = new int[section.getInt()];
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = section.getInt();
+		}
+		return cells;
+	}
+
+	/**
+	 * Encodes a chunk in the old format of version 4. Only used to compare the
+	 * formats.
+	 *
+	 * @param snapshot
+	 * @return the whole file without entities
+	 */
+	public static byte[] writeLegacy(ChunkSnapshot snapshot) {
+		byte[] ids = snapshot.getIds();
+		byte[] values = snapshot.getValues();
+		int layerSize = snapshot.getBlocksX() * snapshot.getBlocksY();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(ids.length);
+		for (int z = 0; z < snapshot.getBlocksZ(); z++) {
+			int start = z * layerSize;
+			boolean empty = true;
+			for (int i = start; i < start + layerSize; i++) {
+				if (ids[i] != 0) {
+					empty = false;
+					break;
+				}
+			}
+			if (empty) {
+				out.write(Chunk.SIGN_COMMAND);
+				out.write(Chunk.SIGN_EMTPYLAYER);
+			} else {
+				for (int i = start; i < start + layerSize; i++) {
+					out.write(ids[i]);
+					if (ids[i] != 0) {//value of air would be redundand
+						out.write(values[i]);
+					}
+				}
+			}
+		}
+		out.write(Chunk.SIGN_COMMAND);
+		out.write(Chunk.SIGN_ENDBLOCKS);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Reads the blocks of a file in the old format of version 4. Cells after
+	 * the end of the chunk are ignored.
+	 *
+	 * @param file content of the file
+	 * @param storage the target
+	 * @return the position after the blocks
+	 */
+	public static int readLegacyBlocks(byte[] file, ChunkStorage storage) {
+		int blocksX = storage.getBlocksX();
+		int blocksY = storage.getBlocksY();
+		int blocksZ = storage.getBlocksZ();
+		int x = 0;
+		int y = 0;
+		int z = 0;
+		byte id = -1;//undefined
+		boolean command = false;
+		int pos = 0;
+		while (pos < file.length) {
+			byte bChar = file[pos++];
+			if (bChar == Chunk.SIGN_COMMAND) {
+				command = true;
+				continue;
+			}
+			if (command) {
+				command = false;
+				if (bChar == Chunk.SIGN_EMTPYLAYER) {
+					if (z < blocksZ) {
+						storage.clearLayer(z);
+					}
+					x = 0;
+					y = 0;
+					z++;
+					continue;
+				}
+				if (bChar == Chunk.SIGN_ENDBLOCKS) {
+					return pos;
+				}
+			}
+
+			//fill layer block by block
+			if (id == -1 && bChar != 0) {
+				id = bChar;//value follows
+				continue;
+			}
+			if (z < blocksZ) {
+				if (id == -1) {
+					storage.setCell(x, y, z, (byte) 0, (byte) 0, (byte) 100);
+				} else {
+					storage.setCell(x, y, z, id, bChar, (byte) 100);
+				}
+			}
+			id = -1;
+			x++;
+			if (x == blocksX) {
+				y++;
+				x = 0;
+			}
+			if (y == blocksY) {
+				x = 0;
+				y = 0;
+				z++;
+			}
+		}
+		return pos;
+	}
+}
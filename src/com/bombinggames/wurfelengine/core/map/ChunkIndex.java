@@ -0,0 +1,256 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import java.util.Arrays;
+
+/**
+ * Sparse index of chunks. A hash map with open addressing (linear probing)
+ * from the packed chunk coordinate {@link #key(int, int)} to the chunk, so the
+ * map has no bounds and only uses memory for loaded chunks. Lookups do not
+ * allocate. The chunk found last is cached because most lookups hit the same
+ * chunk as the one before.<br>
+ * Not thread safe, use on the main thread.
+ *
+ * @author Benedikt Vogler
+ * @param <T> the stored chunk type
+ */
+public class ChunkIndex<T> {
+
+	private static final float LOAD_FACTOR = 0.5f;
+
+	/**
+	 * Packs a chunk coordinate into a long.
+	 *
+	 * @param chunkX
+	 * @param chunkY
+	 * @return unique key for a chunk
+	 */
+	public static long key(int chunkX, int chunkY) {
+		return ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+	}
+
+	private long[] keys;
+	/**
+	 * null marks a free slot
+	 */
+	private Object[] chunks;
+	private int mask;
+	private int shift;
+	private int size;
+	private int threshold;
+	/**
+	 * the slot of the last found chunk. Storing the slot instead of the
+	 * chunk avoids the more expensive reference store on a miss.
+	 */
+	private int lastSlot;
+	/**
+	 * counts the added and removed chunks
+	 */
+	private int modCount;
+
+	/**
+	 *
+	 * @param expectedChunks amount of chunks which fit without growing
+	 */
+	public ChunkIndex(int expectedChunks) {
+		int capacity = Integer.highestOneBit(Math.max(4, (int) Math.ceil(expectedChunks / LOAD_FACTOR)) - 1) << 1;
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		chunks = new Object[capacity];
+		mask = capacity - 1;
+		lastSlot = 0;
+		shift = 64 - Integer.numberOfTrailingZeros(capacity);
+		threshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return the first slot to probe
+	 */
+	private int slot(long key) {
+		//fibonacci hashing, the high bits are the best mixed
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+	}
+
+	/**
+	 *
+	 * @param chunkX
+	 * @param chunkY
+	 * @return null if not loaded
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int chunkX, int chunkY) {
+		long key = key(chunkX, chunkY);
+		Object[] chunks = this.chunks;
+		long[] keys = this.keys;
+		int i = lastSlot;
+		if (keys[i] == key && chunks[i] != null) {
+			return (T) chunks[i];
+		}
+		i = slot(key);
+		Object chunk;
+		while ((chunk = chunks[i]) != null) {
+			if (keys[i] == key) {
+				lastSlot = i;
+				return (T) chunk;
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Adds a chunk. Replaces the chunk with the same coordinate.
+	 *
+	 * @param chunkX
+	 * @param chunkY
+	 * @param chunk not null
+	 * @return the replaced chunk, can be null
+	 */
+	@SuppressWarnings("unchecked")
+	public T put(int chunkX, int chunkY, T chunk) {
+		long key = key(chunkX, chunkY);
+		int i = slot(key);
+		while (chunks[i] != null) {
+			if (keys[i] == key) {
+				T old = (T) chunks[i];
+				chunks[i] = chunk;
+				modCount++;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		chunks[i] = chunk;
+		modCount++;
+		if (++size > threshold) {
+			grow();
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the chunk at a coordinate.
+	 *
+	 * @param chunkX
+	 * @param chunkY
+	 * @return the removed chunk, null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public T remove(int chunkX, int chunkY) {
+		long key = key(chunkX, chunkY);
+		int i = slot(key);
+		while (chunks[i] != null) {
+			if (keys[i] == key) {
+				T old = (T) chunks[i];
+				closeGap(i);
+				size--;
+				modCount++;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Moves the following entries of the probe sequence back into a free
+	 * slot so that no tombstones are needed.
+	 *
+	 * @param gap the freed slot
+	 */
+	private void closeGap(int gap) {
+		int i = gap;
+		while (true) {
+			chunks[gap] = null;
+			int home;
+			do {
+				i = (i + 1) & mask;
+				if (chunks[i] == null) {
+					return;
+				}
+				home = slot(keys[i]);
+				//stay if the home slot lies cyclically in (gap, i]
+			} while (gap <= i ? (gap < home && home <= i) : (gap < home || home <= i));
+			keys[gap] = keys[i];
+			chunks[gap] = chunks[i];
+			gap = i;
+		}
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		Object[] oldChunks = chunks;
+		allocate(oldKeys.length << 1);
+		for (int j = 0; j < oldChunks.length; j++) {
+			if (oldChunks[j] != null) {
+				int i = slot(oldKeys[j]);
+				while (chunks[i] != null) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[j];
+				chunks[i] = oldChunks[j];
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return amount of chunks
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Changes every time a chunk is added, replaced or removed. Can be used
+	 * to find out if a cached chunk is still indexed.
+	 *
+	 * @return
+	 */
+	public int getModCount() {
+		return modCount;
+	}
+
+	/**
+	 * Removes every chunk.
+	 */
+	public void clear() {
+		Arrays.fill(chunks, null);
+		size = 0;
+		modCount++;
+	}
+}
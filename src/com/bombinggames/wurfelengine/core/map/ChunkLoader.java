@@ -33,6 +33,7 @@ package com.bombinggames.wurfelengine.core.map;
 import java.io.File;
 
 /**
+ * Loads or generates one chunk. Executed by the {@link ChunkLoadingService}.
  *
  * @author Benedikt Vogler
  */
@@ -43,6 +44,12 @@ public class ChunkLoader implements Runnable{
 	private final int coordY;
 	private final int coordX;
 	private final Map map;
+	/**
+	 * times in ns
+	 */
+	private final long requestTime;
+	private long startTime, endTime;
+	private boolean cancelled;
 
 	/**
 	 *
@@ -58,17 +65,24 @@ public class ChunkLoader implements Runnable{
 		this.coordY = coordY;
 		this.path = path;
 		this.generator = generator;
+		requestTime = System.nanoTime();
 	}
 	
 	
 	@Override
 	public void run() {
+		startTime = System.nanoTime();
+		if (map != null && path != null) {
+			//the file may be written right now
+			map.getSaveService().awaitSaved(Chunk.getSaveFile(path, map.getCurrentSaveSlot(), coordX, coordY));
+		}
 		chunk = new Chunk(map, path, coordX, coordY, generator);
+		endTime = System.nanoTime();
 	}
 
 	/**
 	 * has a chunk if it has finished loading
-	 * @return 
+	 * @return null if not finished, cancelled or failed
 	 */
 	public Chunk getChunk() {
 		return chunk;
@@ -89,5 +103,43 @@ public class ChunkLoader implements Runnable{
 	public int getCoordY() {
 		return coordY;
 	}
-	
+
+	/**
+	 * Marks that this request was removed from the queue before it started.
+	 */
+	void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 *
+	 * @return true if removed from the queue before it started
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Time from the request until the chunk was finished.
+	 *
+	 * @return ns, 0 if not finished
+	 */
+	public long getLatency() {
+		if (endTime == 0) {
+			return 0;
+		}
+		return endTime - requestTime;
+	}
+
+	/**
+	 * Time spent loading or generating.
+	 *
+	 * @return ns, 0 if not finished
+	 */
+	public long getLoadingTime() {
+		if (endTime == 0) {
+			return 0;
+		}
+		return endTime - startTime;
+	}
 }
@@ -0,0 +1,420 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import com.badlogic.gdx.Gdx;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Loads chunks with a fixed amount of worker threads. Requests which are
+ * nearest to a pinned area (e.g. a camera) are loaded first. Requests which
+ * are too far away are cancelled before they start.<br>
+ * The waiting requests are kept in a binary heap ordered by their distance to
+ * the focus, which is computed once per request and again for every request
+ * when the focus changes.<br>
+ * Finished requests are put into a lock free queue which is drained by the
+ * main thread via {@link #poll() }.
+ *
+ * @author Benedikt Vogler
+ */
+public class ChunkLoadingService {
+
+	/**
+	 * guards the heap of the waiting requests, the focus and inFlight
+	 */
+	private final Object lock = new Object();
+	private ChunkLoader[] pending = new ChunkLoader[32];
+	/**
+	 * distance of the waiting request to the focus
+	 */
+	private int[] distances = new int[32];
+	/**
+	 * submission order of the waiting request, the older one wins on ties
+	 */
+	private long[] sequence = new long[32];
+	private int size;
+	private long submitted;
+	/**
+	 * upper bound of the distances of the waiting requests
+	 */
+	private int farthest;
+	private final ConcurrentLinkedQueue<ChunkLoader> completed = new ConcurrentLinkedQueue<>();
+	private final Thread[] workers;
+	private volatile boolean running = true;
+	/**
+	 * chunk coordinates (x,y pairs) of the areas which should be loaded first
+	 */
+	private int[] focus = new int[0];
+	private int inFlight;
+
+	private long finishedCount;
+	private long lastLatency;
+	private long maxLatency;
+	private double averageLatency;
+
+	/**
+	 *
+	 * @param threads amount of worker threads, if &lt;= 0 uses one less than
+	 * available processors
+	 */
+	public ChunkLoadingService(int threads) {
+		if (threads <= 0) {
+			threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		}
+		workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread(this::work, "ChunkLoader " + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Add a request to the queue.
+	 *
+	 * @param loader
+	 */
+	public void submit(ChunkLoader loader) {
+		synchronized (lock) {
+			int dist = getDistance(focus, loader);
+			if (dist > farthest) {
+				farthest = dist;
+			}
+			push(loader, dist, submitted++);
+			lock.notify();
+		}
+	}
+
+	/**
+	 * Set the areas which should be loaded first. Re-prioritises every waiting
+	 * request, so call it only when the focus changed.
+	 *
+	 * @param centers chunk coordinates as x,y pairs, must not be changed
+	 * afterwards
+	 */
+	public void setFocus(int[] centers) {
+		synchronized (lock) {
+			focus = centers;
+			farthest = 0;
+			for (int i = 0; i < size; i++) {
+				distances[i] = getDistance(centers, pending[i]);
+				if (distances[i] > farthest) {
+					farthest = distances[i];
+				}
+			}
+			heapify();
+		}
+	}
+
+	/**
+	 * Cancels every waiting request further away than the radius from every
+	 * focus point. Cancelled requests are returned by {@link #poll() }. Does
+	 * nothing if there is no focus. Only scans the requests if one of them
+	 * can be out of range, so it is cheap to call every frame.
+	 *
+	 * @param radius in chunks
+	 */
+	public void cancelOutOfRange(int radius) {
+		synchronized (lock) {
+			if (focus.length == 0 || farthest <= radius) {
+				return;
+			}
+			int kept = 0;
+			for (int i = 0; i < size; i++) {
+				if (distances[i] > radius) {
+					pending[i].cancel();
+					completed.add(pending[i]);
+				} else {
+					pending[kept] = pending[i];
+					distances[kept] = distances[i];
+					sequence[kept] = sequence[i];
+					kept++;
+				}
+			}
+			Arrays.fill(pending, kept, size, null);
+			size = kept;
+			farthest = radius;
+			heapify();
+		}
+	}
+
+	/**
+	 * Get a finished or cancelled request. Should be called by the main thread.
+	 *
+	 * @return null if none
+	 */
+	public ChunkLoader poll() {
+		ChunkLoader loader = completed.poll();
+		if (loader != null && !loader.isCancelled()) {
+			long latency = loader.getLatency();
+			finishedCount++;
+			lastLatency = latency;
+			if (latency > maxLatency) {
+				maxLatency = latency;
+			}
+			averageLatency = finishedCount == 1 ? latency : averageLatency * 0.9 + latency * 0.1;
+		}
+		return loader;
+	}
+
+	private void work() {
+		while (running) {
+			ChunkLoader loader;
+			synchronized (lock) {
+				while (running && size == 0) {
+					try {
+						lock.wait();
+					} catch (InterruptedException ex) {
+						return;
+					}
+				}
+				if (!running) {
+					return;
+				}
+				loader = pop();
+				inFlight++;
+			}
+			try {
+				loader.run();
+			} catch (RuntimeException ex) {
+				Gdx.app.error("ChunkLoadingService", "Loading chunk " + loader.getCoordX() + "," + loader.getCoordY() + " failed: " + ex);
+			} finally {
+				synchronized (lock) {
+					inFlight--;
+				}
+				completed.add(loader);
+			}
+		}
+	}
+
+	/**
+	 * Must hold the lock.
+	 *
+	 * @param a heap index
+	 * @param b heap index
+	 * @return true if a is nearer to the focus, or older on ties
+	 */
+	private boolean isBefore(int a, int b) {
+		return distances[a] < distances[b]
+			|| (distances[a] == distances[b] && sequence[a] < sequence[b]);
+	}
+
+	/**
+	 * Must hold the lock.
+	 *
+	 * @param loader
+	 * @param dist
+	 * @param seq
+	 */
+	private void push(ChunkLoader loader, int dist, long seq) {
+		if (size == pending.length) {
+			pending = Arrays.copyOf(pending, size * 2);
+			distances = Arrays.copyOf(distances, size * 2);
+			sequence = Arrays.copyOf(sequence, size * 2);
+		}
+		pending[size] = loader;
+		distances[size] = dist;
+		sequence[size] = seq;
+		//sift up
+		int i = size++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!isBefore(i, parent)) {
+				break;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	/**
+	 * Must hold the lock and the heap must not be empty.
+	 *
+	 * @return the request nearest to a center, the oldest on ties
+	 */
+	private ChunkLoader pop() {
+		ChunkLoader top = pending[0];
+		size--;
+		swap(0, size);
+		pending[size] = null;
+		siftDown(0);
+		return top;
+	}
+
+	/**
+	 * Restores the heap order after the distances changed. Must hold the lock.
+	 */
+	private void heapify() {
+		for (int i = (size >>> 1) - 1; i >= 0; i--) {
+			siftDown(i);
+		}
+	}
+
+	/**
+	 * Must hold the lock.
+	 *
+	 * @param i heap index
+	 */
+	private void siftDown(int i) {
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < size && isBefore(child + 1, child)) {
+				child++;
+			}
+			if (!isBefore(child, i)) {
+				break;
+			}
+			swap(i, child);
+			i = child;
+		}
+	}
+
+	/**
+	 * Must hold the lock.
+	 *
+	 * @param a heap index
+	 * @param b heap index
+	 */
+	private void swap(int a, int b) {
+		ChunkLoader loader = pending[a];
+		pending[a] = pending[b];
+		pending[b] = loader;
+		int dist = distances[a];
+		distances[a] = distances[b];
+		distances[b] = dist;
+		long seq = sequence[a];
+		sequence[a] = sequence[b];
+		sequence[b] = seq;
+	}
+
+	/**
+	 *
+	 * @param centers
+	 * @param loader
+	 * @return chebyshev distance in chunks to the nearest center, 0 if there
+	 * is no center
+	 */
+	private static int getDistance(int[] centers, ChunkLoader loader) {
+		if (centers.length == 0) {
+			return 0;
+		}
+		int min = Integer.MAX_VALUE;
+		for (int i = 0; i < centers.length; i += 2) {
+			int dist = Math.max(
+				Math.abs(centers[i] - loader.getCoordX()),
+				Math.abs(centers[i + 1] - loader.getCoordY())
+			);
+			if (dist < min) {
+				min = dist;
+			}
+		}
+		return min;
+	}
+
+	/**
+	 *
+	 * @return amount of requests waiting for a worker
+	 */
+	public int getQueueDepth() {
+		synchronized (lock) {
+			return size;
+		}
+	}
+
+	/**
+	 *
+	 * @return amount of requests currently loading
+	 */
+	public int getInFlight() {
+		synchronized (lock) {
+			return inFlight;
+		}
+	}
+
+	/**
+	 *
+	 * @return amount of worker threads
+	 */
+	public int getThreadCount() {
+		return workers.length;
+	}
+
+	/**
+	 *
+	 * @return amount of finished requests
+	 */
+	public long getFinishedCount() {
+		return finishedCount;
+	}
+
+	/**
+	 * Latency from request to the finished chunk of the last polled chunk.
+	 *
+	 * @return ns
+	 */
+	public long getLastLatency() {
+		return lastLatency;
+	}
+
+	/**
+	 * Exponential moving average of the latency from request to the finished
+	 * chunk.
+	 *
+	 * @return ns
+	 */
+	public long getAverageLatency() {
+		return (long) averageLatency;
+	}
+
+	/**
+	 *
+	 * @return highest latency since start in ns
+	 */
+	public long getMaxLatency() {
+		return maxLatency;
+	}
+
+	/**
+	 * Stops the workers. Running requests finish but their results are
+	 * dropped.
+	 */
+	public void dispose() {
+		running = false;
+		synchronized (lock) {
+			Arrays.fill(pending, 0, size, null);
+			size = 0;
+			lock.notifyAll();
+		}
+		completed.clear();
+	}
+}
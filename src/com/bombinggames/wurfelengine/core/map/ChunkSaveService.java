@@ -0,0 +1,191 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import com.badlogic.gdx.Gdx;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes chunk snapshots on a background thread. If a chunk is saved again
+ * before the older snapshot was written only the newest one is written.
+ *
+ * @author Benedikt Vogler
+ */
+public class ChunkSaveService {
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor((Runnable r) -> {
+		Thread thread = new Thread(r, "ChunkSaver");
+		thread.setDaemon(true);
+		return thread;
+	});
+	/**
+	 * newest snapshot of every file which is not written yet
+	 */
+	private final ConcurrentHashMap<File, ChunkSnapshot> pending = new ConcurrentHashMap<>(32);
+	private volatile long bytesWritten;
+	private volatile long filesWritten;
+	private volatile long failures;
+
+	/**
+	 * Queues a snapshot for writing.
+	 *
+	 * @param snapshot
+	 * @param directory the save slot
+	 * @param regions if true the chunk is stored in a region file
+	 * @see ChunkFiles
+	 */
+	public void save(ChunkSnapshot snapshot, File directory, boolean regions) {
+		//the single file name identifies the chunk, also when it is stored in a region
+		File target = ChunkFiles.getSingleFile(directory, snapshot.getChunkX(), snapshot.getChunkY());
+		pending.put(target, snapshot);
+		executor.execute(() -> write(snapshot, target, directory, regions));
+	}
+
+	private void write(ChunkSnapshot snapshot, File target, File directory, boolean regions) {
+		if (pending.get(target) != snapshot) {
+			return;//a newer one is queued
+		}
+		try {
+			bytesWritten += snapshot.write(directory, regions);
+			filesWritten++;
+		} catch (IOException ex) {
+			failures++;
+			Gdx.app.error("ChunkSaveService", "Saving chunk " + snapshot.getChunkX() + "," + snapshot.getChunkY() + " failed: " + ex);
+		} finally {
+			synchronized (pending) {
+				pending.remove(target, snapshot);
+				pending.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param target
+	 * @return true if the file will be written
+	 */
+	public boolean isPending(File target) {
+		return pending.containsKey(target);
+	}
+
+	/**
+	 * Blocks until the file is written. Call this before reading a chunk file.
+	 *
+	 * @param target
+	 */
+	public void awaitSaved(File target) {
+		synchronized (pending) {
+			while (pending.containsKey(target)) {
+				try {
+					pending.wait();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs a task on the saving thread after every snapshot queued until now
+	 * is written.
+	 *
+	 * @param task
+	 */
+	public void execute(Runnable task) {
+		executor.execute(task);
+	}
+
+	/**
+	 * Blocks until every queued snapshot is written.
+	 */
+	public void flush() {
+		synchronized (pending) {
+			while (!pending.isEmpty()) {
+				try {
+					pending.wait();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return amount of files waiting to be written
+	 */
+	public int getQueueDepth() {
+		return pending.size();
+	}
+
+	/**
+	 *
+	 * @return total bytes written
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 *
+	 * @return total files written
+	 */
+	public long getFilesWritten() {
+		return filesWritten;
+	}
+
+	/**
+	 *
+	 * @return amount of snapshots which could not be written
+	 */
+	public long getFailures() {
+		return failures;
+	}
+
+	/**
+	 * Writes everything queued and stops the thread.
+	 */
+	public void dispose() {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
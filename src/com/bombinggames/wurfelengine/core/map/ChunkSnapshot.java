@@ -0,0 +1,243 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import com.badlogic.gdx.utils.ByteArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.bombinggames.wurfelengine.core.gameobjects.EntityCodec;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An immutable copy of the content of a chunk which can be written on another
+ * thread while the chunk keeps changing.
+ *
+ * @author Benedikt Vogler
+ * @see Chunk#createSnapshot()
+ * @see ChunkFormat
+ */
+public class ChunkSnapshot {
+
+	private final int chunkX, chunkY;
+	private final int blocksX, blocksY, blocksZ;
+	/**
+	 * layer by layer, row by row
+	 */
+	private final byte[] ids, values;
+	/**
+	 * cell indices and health of the cells with health below 100
+	 */
+	private final int[] damagedCells;
+	private final byte[] damagedHealth;
+	/**
+	 * cell indices of the logic blocks
+	 */
+	private final int[] logicCells;
+	/**
+	 * entities written by the {@link EntityCodec}, can be null
+	 */
+	private final byte[] entities;
+	private final boolean compress;
+
+	/**
+	 * Copies the content of a storage.
+	 *
+	 * @param chunkX
+	 * @param chunkY
+	 * @param storage copied
+	 * @param logicCells cell indices of the logic blocks, not copied, null if
+	 * unknown so that the loading chunk looks for them
+	 * @param entities entities written by the {@link EntityCodec}, not copied,
+	 * can be null
+	 * @param compress true if the payload should be compressed when written
+	 */
+	public ChunkSnapshot(int chunkX, int chunkY, ChunkStorage storage, int[] logicCells, byte[] entities, boolean compress) {
+		this.chunkX = chunkX;
+		this.chunkY = chunkY;
+		blocksX = storage.getBlocksX();
+		blocksY = storage.getBlocksY();
+		blocksZ = storage.getBlocksZ();
+		int layerSize = storage.getLayerSize();
+		int cells = layerSize * blocksZ;
+		ids = new byte[cells];
+		values = new byte[cells];
+		byte[] layerIds = new byte[layerSize];
+		byte[] layerValues = new byte[layerSize];
+		for (int z = 0; z < blocksZ; z++) {
+			storage.getLayer(z, layerIds, layerValues);
+			System.arraycopy(layerIds, 0, ids, z * layerSize, layerSize);
+			System.arraycopy(layerValues, 0, values, z * layerSize, layerSize);
+		}
+
+		IntArray damaged = new IntArray(false, 8);
+		ByteArray health = new ByteArray(false, 8);
+		for (int i = 0; i < cells; i++) {
+			byte cellHealth = (byte) (storage.getCell(i) >> 16);
+			if (cellHealth != 100) {
+				damaged.add(i);
+				health.add(cellHealth);
+			}
+		}
+		damagedCells = damaged.toArray();
+		damagedHealth = health.toArray();
+		this.logicCells = logicCells;
+		this.entities = entities;
+		this.compress = compress;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getChunkX() {
+		return chunkX;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getChunkY() {
+		return chunkY;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getBlocksX() {
+		return blocksX;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getBlocksY() {
+		return blocksY;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getBlocksZ() {
+		return blocksZ;
+	}
+
+	/**
+	 * Not copy safe.
+	 *
+	 * @return ids layer by layer, row by row
+	 */
+	byte[] getIds() {
+		return ids;
+	}
+
+	/**
+	 * Not copy safe.
+	 *
+	 * @return values layer by layer, row by row
+	 */
+	byte[] getValues() {
+		return values;
+	}
+
+	/**
+	 * Not copy safe.
+	 *
+	 * @return
+	 */
+	int[] getDamagedCells() {
+		return damagedCells;
+	}
+
+	/**
+	 * Not copy safe.
+	 *
+	 * @return
+	 */
+	byte[] getDamagedHealth() {
+		return damagedHealth;
+	}
+
+	/**
+	 * Not copy safe.
+	 *
+	 * @return null if unknown
+	 */
+	int[] getLogicCells() {
+		return logicCells;
+	}
+
+	/**
+	 * Not copy safe.
+	 *
+	 * @return can be null
+	 */
+	byte[] getEntities() {
+		return entities;
+	}
+
+	/**
+	 *
+	 * @return true if the payload is compressed when written
+	 */
+	public boolean isCompressed() {
+		return compress;
+	}
+
+	/**
+	 * Writes the chunk in the current chunk file format.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void write(OutputStream out) throws IOException {
+		out.write(ChunkFormat.write(this));
+	}
+
+	/**
+	 * Writes the chunk file into a directory.
+	 *
+	 * @param directory the save slot
+	 * @param regions if true the chunk is stored in a {@link RegionFile}
+	 * @return bytes written
+	 * @throws IOException
+	 * @see ChunkFiles#write(File, int, int, byte[], boolean)
+	 */
+	public long write(File directory, boolean regions) throws IOException {
+		byte[] file = ChunkFormat.write(this);
+		ChunkFiles.write(directory, chunkX, chunkY, file, regions);
+		return file.length;
+	}
+}
@@ -0,0 +1,291 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+/**
+ * Stores id, value and health of every cell of a chunk. Positions are index
+ * positions inside the chunk. A storage is not thread safe.
+ *
+ * @author Benedikt Vogler
+ * @see FlatChunkStorage
+ * @see PaletteChunkStorage
+ */
+public abstract class ChunkStorage {
+
+	/**
+	 * estimated size of an object header in bytes
+	 */
+	protected static final int OBJECT_HEADER = 16;
+	/**
+	 * estimated size of an array header in bytes
+	 */
+	protected static final int ARRAY_HEADER = 16;
+
+	/**
+	 * Creates an empty storage.
+	 *
+	 * @param blocksX index space in x
+	 * @param blocksY index space in y
+	 * @param blocksZ index space in z
+	 * @param palette if true uses a {@link PaletteChunkStorage} else a
+	 * {@link FlatChunkStorage}
+	 * @return storage filled with air
+	 */
+	public static ChunkStorage create(int blocksX, int blocksY, int blocksZ, boolean palette) {
+		if (palette) {
+			return new PaletteChunkStorage(blocksX, blocksY, blocksZ);
+		} else {
+			return new FlatChunkStorage(blocksX, blocksY, blocksZ);
+		}
+	}
+
+	/**
+	 * dimensions
+	 */
+	protected final int blocksX, blocksY, blocksZ;
+	/**
+	 * amount of cells in one layer
+	 */
+	protected final int layerSize;
+
+	/**
+	 *
+	 * @param blocksX index space in x
+	 * @param blocksY index space in y
+	 * @param blocksZ index space in z
+	 */
+	protected ChunkStorage(int blocksX, int blocksY, int blocksZ) {
+		this.blocksX = blocksX;
+		this.blocksY = blocksY;
+		this.blocksZ = blocksZ;
+		layerSize = blocksX * blocksY;
+	}
+
+	/**
+	 * Get the position of a cell. The cells are ordered layer by layer and each
+	 * layer row by row, so a layer is a continuous range and a column has a
+	 * constant stride.
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @return
+	 */
+	public final int index(int x, int y, int z) {
+		return (z * blocksY + y) * blocksX + x;
+	}
+
+	/**
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @return
+	 */
+	public abstract byte getId(int x, int y, int z);
+
+	/**
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @return
+	 */
+	public abstract byte getValue(int x, int y, int z);
+
+	/**
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @return
+	 */
+	public abstract byte getHealth(int x, int y, int z);
+
+	/**
+	 * Get id, value and health packed in one int.
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @return first byte id, second byte value, third byte health
+	 */
+	public final int getCell(int x, int y, int z) {
+		return getCell(index(x, y, z));
+	}
+
+	/**
+	 * Get id, value and health packed in one int.
+	 *
+	 * @param index position of the cell
+	 * @return first byte id, second byte value, third byte health
+	 * @see #index(int, int, int)
+	 */
+	public abstract int getCell(int index);
+
+	/**
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @param id
+	 * @param value
+	 * @param health
+	 */
+	public abstract void setCell(int x, int y, int z, byte id, byte value, byte health);
+
+	/**
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @param value
+	 * @return true if the value changed
+	 */
+	public abstract boolean setValue(int x, int y, int z, byte value);
+
+	/**
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @param health
+	 * @return true if the health changed
+	 */
+	public abstract boolean setHealth(int x, int y, int z, byte health);
+
+	/**
+	 * Fills everything with air with full health.
+	 */
+	public abstract void clear();
+
+	/**
+	 * Fills a layer with air with full health.
+	 *
+	 * @param z index
+	 */
+	public abstract void clearLayer(int z);
+
+	/**
+	 * O(layer size)
+	 *
+	 * @param z index
+	 * @return true if the layer contains only air
+	 */
+	public abstract boolean isLayerEmpty(int z);
+
+	/**
+	 * Copies ids and values of a layer. The arrays are ordered row by row.
+	 *
+	 * @param z index
+	 * @param ids must have at least the size of a layer
+	 * @param values must have at least the size of a layer, can be null
+	 */
+	public abstract void getLayer(int z, byte[] ids, byte[] values);
+
+	/**
+	 * Overwrites ids and values of a layer. Health is reset to 100.
+	 *
+	 * @param z index
+	 * @param ids ordered row by row
+	 * @param values ordered row by row
+	 */
+	public abstract void setLayer(int z, byte[] ids, byte[] values);
+
+	/**
+	 * Copies ids and values of a column from bottom to top.
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param ids must have at least the size of blocksZ
+	 * @param values must have at least the size of blocksZ, can be null
+	 */
+	public abstract void getColumn(int x, int y, byte[] ids, byte[] values);
+
+	/**
+	 * Overwrites ids and values of a column from bottom to top. Health is reset
+	 * to 100.
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param ids
+	 * @param values
+	 */
+	public abstract void setColumn(int x, int y, byte[] ids, byte[] values);
+
+	/**
+	 * Finds the topmost non-air cell in a column.
+	 *
+	 * @param x index
+	 * @param y index
+	 * @return -1 if the column is empty
+	 */
+	public abstract int getTopZ(int x, int y);
+
+	/**
+	 * Estimates the amount of heap used by this storage.
+	 *
+	 * @return in bytes
+	 */
+	public abstract long getMemoryUsage();
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getBlocksX() {
+		return blocksX;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getBlocksY() {
+		return blocksY;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getBlocksZ() {
+		return blocksZ;
+	}
+
+	/**
+	 *
+	 * @return amount of cells in one layer
+	 */
+	public int getLayerSize() {
+		return layerSize;
+	}
+}
@@ -33,7 +33,6 @@ package com.bombinggames.wurfelengine.core.map;
 import com.badlogic.gdx.ai.msg.MessageManager;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.math.Vector3;
-import com.bombinggames.wurfelengine.WE;
 import com.bombinggames.wurfelengine.core.Camera;
 import com.bombinggames.wurfelengine.core.Controller;
 import com.bombinggames.wurfelengine.core.Events;
@@ -281,7 +280,7 @@ public class Coordinate implements Position {
 	 */
 	public int getBlock() {
 		if (z < 0) {
-			return (byte) WE.getCVars().getValueI("groundBlockID");
+			return Controller.getMap().getBlockAccessor().getGroundBlock();
 		} else if (z >= Chunk.getBlocksZ()) {
 			return 0;
 		} else {
@@ -293,7 +292,7 @@ public class Coordinate implements Position {
 	@Override
 	public byte getBlockId() {
 		if (z < 0) {
-			return (byte) WE.getCVars().getValueI("groundBlockID");
+			return (byte) Controller.getMap().getBlockAccessor().getGroundBlock();
 		} else if (z >= Chunk.getBlocksZ()) {
 			return 0;
 		} else {
@@ -330,6 +329,16 @@ public class Coordinate implements Position {
 		return new Coordinate(this);
 	}
 
+	/**
+	 * Avoids a new instance.
+	 *
+	 * @return this coordinate as packed long
+	 * @see PackedCoordinate
+	 */
+	public long pack() {
+		return PackedCoordinate.pack(x, y, z);
+	}
+
 	@Override
 	public boolean isInMemoryAreaXY() {
 		return Controller.getMap().getChunkContaining(this) != null;
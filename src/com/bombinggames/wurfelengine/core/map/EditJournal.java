@@ -0,0 +1,410 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.LongMap;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An append-only journal of the block edits in a save slot. Every edit is
+ * written before it is applied, so that edits which are not in the chunk files
+ * yet survive a crash. When the map is saved the journal is checkpointed: a new
+ * journal file is started and the older ones are deleted after the chunk files
+ * are written. On load the journal is replayed on the chunks when they are
+ * added to the map.<br>
+ * The edits since the last checkpoint can be undone.
+ *
+ * @author Benedikt Vogler
+ */
+public class EditJournal {
+
+	/**
+	 * the file suffix of journal files
+	 */
+	public static final String SUFFIX = "wej";
+	private static final byte[] MAGIC = {'W', 'E', 'J', '1'};
+	private static final Pattern JOURNAL_FILE = Pattern.compile("journal(\\d+)\\." + SUFFIX);
+	/**
+	 * kind, x, y, z, old block, new block
+	 */
+	private static final int RECORD_SIZE = 21;
+	private static final byte EDIT = 0;
+	private static final byte UNDO = 1;
+	/**
+	 * an edit copied by a checkpoint, can not be undone
+	 */
+	private static final byte CARRIED = 2;
+
+	private final File directory;
+	private final ChunkSaveService saveService;
+	private int generation;
+	/**
+	 * opened with the first write
+	 */
+	private FileChannel channel;
+	/**
+	 * the length of the current file at the start of the session or the last
+	 * checkpoint
+	 */
+	private long sessionStart;
+	private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 256);
+	private int records;
+	/**
+	 * x, y, z, old block and new block of every edit which can be undone
+	 */
+	private final IntArray history = new IntArray(64);
+	/**
+	 * the edits which are not applied on a chunk yet, x, y, z and block per
+	 * edit. Key is {@link ChunkIndex#key(int, int)}.
+	 */
+	private final LongMap<IntArray> replay = new LongMap<>(16);
+
+	/**
+	 * Opens the journal of a save slot and reads the edits which are not in the
+	 * chunk files.
+	 *
+	 * @param directory the save slot
+	 * @param saveService the service writing the chunks of this save slot
+	 */
+	public EditJournal(File directory, ChunkSaveService saveService) {
+		this.directory = directory;
+		this.saveService = saveService;
+		int[] generations = getGenerations();
+		for (int gen : generations) {
+			read(getFile(gen));
+		}
+		if (generations.length > 0) {
+			generation = generations[generations.length - 1] + 1;
+			Gdx.app.log("EditJournal", "Read " + records + " edits from " + generations.length + " journal files.");
+		}
+	}
+
+	private File getFile(int gen) {
+		return new File(directory, "journal" + gen + "." + SUFFIX);
+	}
+
+	/**
+	 *
+	 * @return the generations of the journal files on disk, ascending
+	 */
+	private int[] getGenerations() {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return new int[0];
+		}
+		IntArray generations = new IntArray(files.length);
+		for (File file : files) {
+			Matcher matcher = JOURNAL_FILE.matcher(file.getName());
+			if (matcher.matches()) {
+				generations.add(Integer.parseInt(matcher.group(1)));
+			}
+		}
+		int[] result = generations.toArray();
+		Arrays.sort(result);
+		return result;
+	}
+
+	/**
+	 * Reads a journal file. A partly written record at the end is ignored.
+	 *
+	 * @param file
+	 */
+	private void read(File file) {
+		byte[] content;
+		try {
+			content = Files.readAllBytes(file.toPath());
+		} catch (IOException ex) {
+			Gdx.app.error("EditJournal", "Reading " + file + " failed: " + ex);
+			return;
+		}
+		if (content.length < MAGIC.length || !Arrays.equals(MAGIC, Arrays.copyOf(content, MAGIC.length))) {
+			Gdx.app.error("EditJournal", file + " is no journal file.");
+			return;
+		}
+		ByteBuffer in = ByteBuffer.wrap(content, MAGIC.length, content.length - MAGIC.length);
+		while (in.remaining() >= RECORD_SIZE) {
+			byte kind = in.get();
+			int x = in.getInt();
+			int y = in.getInt();
+			int z = in.getInt();
+			int oldBlock = in.getInt();
+			int newBlock = in.getInt();
+			if (kind == UNDO) {
+				if (history.size >= 5) {
+					history.size -= 5;
+				}
+			} else if (kind == EDIT) {
+				addHistory(x, y, z, oldBlock, newBlock);
+			}
+			addReplay(x, y, z, newBlock);
+			records++;
+		}
+	}
+
+	/**
+	 * Queues an edit for a chunk which is not loaded.
+	 *
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @param block
+	 */
+	void addReplay(int x, int y, int z, int block) {
+		long key = ChunkIndex.key(Math.floorDiv(x, Chunk.getBlocksX()), Math.floorDiv(y, Chunk.getBlocksY()));
+		IntArray edits = replay.get(key);
+		if (edits == null) {
+			edits = new IntArray(16);
+			replay.put(key, edits);
+		}
+		edits.ensureCapacity(4);
+		edits.add(x);
+		edits.add(y);
+		edits.add(z);
+		edits.add(block);
+	}
+
+	private void addHistory(int x, int y, int z, int oldBlock, int newBlock) {
+		history.ensureCapacity(5);
+		history.add(x);
+		history.add(y);
+		history.add(z);
+		history.add(oldBlock);
+		history.add(newBlock);
+	}
+
+	/**
+	 * Records an edit before it is applied.
+	 *
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @param oldBlock id, value and health before the edit
+	 * @param newBlock id, value and health after the edit
+	 */
+	public void append(int x, int y, int z, int oldBlock, int newBlock) {
+		if (oldBlock == newBlock) {
+			return;
+		}
+		write(EDIT, x, y, z, oldBlock, newBlock);
+		addHistory(x, y, z, oldBlock, newBlock);
+	}
+
+	private void write(byte kind, int x, int y, int z, int oldBlock, int newBlock) {
+		if (buffer.remaining() < RECORD_SIZE) {
+			flush();
+		}
+		buffer.put(kind).putInt(x).putInt(y).putInt(z).putInt(oldBlock).putInt(newBlock);
+		records++;
+	}
+
+	/**
+	 * Hands the buffered edits to the operating system. Called every update.
+	 */
+	public void flush() {
+		if (buffer.position() == 0) {
+			return;
+		}
+		buffer.flip();
+		try {
+			if (channel == null) {
+				open();
+			}
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} catch (IOException ex) {
+			Gdx.app.error("EditJournal", "Writing the journal failed: " + ex);
+		}
+		buffer.clear();
+	}
+
+	private void open() throws IOException {
+		directory.mkdirs();
+		channel = FileChannel.open(
+			getFile(generation).toPath(),
+			StandardOpenOption.CREATE,
+			StandardOpenOption.WRITE,
+			StandardOpenOption.APPEND
+		);
+		if (channel.size() == 0) {
+			channel.write(ByteBuffer.wrap(MAGIC));
+		}
+		if (sessionStart == 0) {
+			sessionStart = channel.size();
+		}
+	}
+
+	private void close() {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException ex) {
+				Gdx.app.error("EditJournal", "Closing the journal failed: " + ex);
+			}
+			channel = null;
+		}
+	}
+
+	/**
+	 * Applies the journaled edits of a chunk which was just added to the map.
+	 *
+	 * @param chunk
+	 */
+	public void replay(Chunk chunk) {
+		IntArray edits = replay.remove(ChunkIndex.key(chunk.getChunkX(), chunk.getChunkY()));
+		if (edits == null) {
+			return;
+		}
+		Coordinate coord = new Coordinate(0, 0, 0);
+		for (int i = 0; i < edits.size; i += 4) {
+			coord.set(edits.items[i], edits.items[i + 1], edits.items[i + 2]);
+			int block = edits.items[i + 3];
+			chunk.setBlock(coord, (byte) (block & 255), (byte) ((block >> 8) & 255), (byte) ((block >> 16) & 255));
+		}
+		Gdx.app.debug("EditJournal", "Replayed " + edits.size / 4 + " edits on chunk " + chunk.getChunkX() + "," + chunk.getChunkY() + ".");
+	}
+
+	/**
+	 * Call after every changed chunk is queued for saving. Starts a new journal
+	 * file and deletes the older ones when the chunks are written. The edits
+	 * of chunks which are not loaded are copied into the new file.
+	 */
+	public void checkpoint() {
+		flush();
+		close();
+		int oldGeneration = generation;
+		generation++;
+		records = 0;
+		history.clear();
+		sessionStart = 0;
+		for (LongMap.Entry<IntArray> entry : replay.entries()) {
+			IntArray edits = entry.value;
+			for (int i = 0; i < edits.size; i += 4) {
+				write(CARRIED, edits.items[i], edits.items[i + 1], edits.items[i + 2], edits.items[i + 3], edits.items[i + 3]);
+			}
+		}
+		records = 0;
+		if (buffer.position() > 0) {
+			flush();
+			sessionStart = getPosition();
+		}
+		long failures = saveService.getFailures();
+		saveService.execute(() -> {
+			if (saveService.getFailures() != failures) {
+				Gdx.app.error("EditJournal", "Chunks could not be saved. Keeping the journal.");
+				return;
+			}
+			for (int gen : getGenerations()) {
+				if (gen <= oldGeneration) {
+					getFile(gen).delete();
+				}
+			}
+		});
+	}
+
+	private long getPosition() {
+		try {
+			return channel == null ? 0 : channel.size();
+		} catch (IOException ex) {
+			return 0;
+		}
+	}
+
+	/**
+	 *
+	 * @return amount of edits since the last checkpoint
+	 */
+	public int getRecordCount() {
+		return records;
+	}
+
+	/**
+	 *
+	 * @return true if there are edits which can be undone
+	 */
+	public boolean canUndo() {
+		return history.size > 0;
+	}
+
+	/**
+	 * Removes the last edit from the history and records that it was undone.
+	 *
+	 * @param edit is filled with x, y, z, old block and new block, length 5
+	 * @return false if there is nothing to undo
+	 */
+	public boolean undo(int[] edit) {
+		if (history.size == 0) {
+			return false;
+		}
+		history.size -= 5;
+		System.arraycopy(history.items, history.size, edit, 0, 5);
+		write(UNDO, edit[0], edit[1], edit[2], edit[4], edit[3]);
+		return true;
+	}
+
+	/**
+	 * Closes the journal. The edits stay on disk until the next checkpoint.
+	 */
+	public void dispose() {
+		flush();
+		close();
+	}
+
+	/**
+	 * Closes the journal and removes the edits which were made since the
+	 * journal was opened or the last checkpoint.
+	 */
+	public void discard() {
+		buffer.clear();
+		try {
+			if (channel != null) {
+				channel.truncate(sessionStart);
+				if (sessionStart <= MAGIC.length) {
+					close();
+					Files.deleteIfExists(getFile(generation).toPath());
+				}
+			}
+		} catch (IOException ex) {
+			Gdx.app.error("EditJournal", "Discarding the journal failed: " + ex);
+		}
+		close();
+	}
+}
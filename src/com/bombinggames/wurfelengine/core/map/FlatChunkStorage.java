@@ -0,0 +1,191 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import java.util.Arrays;
+
+/**
+ * Stores the cells of a chunk in one contiguous array. The array is divided
+ * into three planes: first the ids, then the values and then the health.
+ *
+ * @author Benedikt Vogler
+ */
+public class FlatChunkStorage extends ChunkStorage {
+
+	/**
+	 * amount of cells in one plane
+	 */
+	private final int planeSize;
+	/**
+	 * id plane, value plane, health plane
+	 */
+	private final byte[] data;
+
+	/**
+	 * Creates a storage filled with air with full health.
+	 *
+	 * @param blocksX index space in x
+	 * @param blocksY index space in y
+	 * @param blocksZ index space in z
+	 */
+	public FlatChunkStorage(int blocksX, int blocksY, int blocksZ) {
+		super(blocksX, blocksY, blocksZ);
+		planeSize = layerSize * blocksZ;
+		data = new byte[planeSize * 3];
+		clear();
+	}
+
+	@Override
+	public byte getId(int x, int y, int z) {
+		return data[index(x, y, z)];
+	}
+
+	@Override
+	public byte getValue(int x, int y, int z) {
+		return data[planeSize + index(x, y, z)];
+	}
+
+	@Override
+	public byte getHealth(int x, int y, int z) {
+		return data[2 * planeSize + index(x, y, z)];
+	}
+
+	@Override
+	public int getCell(int index) {
+		return data[index] + (data[planeSize + index] << 8) + (data[2 * planeSize + index] << 16);
+	}
+
+	@Override
+	public void setCell(int x, int y, int z, byte id, byte value, byte health) {
+		int i = index(x, y, z);
+		data[i] = id;
+		data[planeSize + i] = value;
+		data[2 * planeSize + i] = health;
+	}
+
+	@Override
+	public boolean setValue(int x, int y, int z, byte value) {
+		int i = planeSize + index(x, y, z);
+		if (data[i] == value) {
+			return false;
+		}
+		data[i] = value;
+		return true;
+	}
+
+	@Override
+	public boolean setHealth(int x, int y, int z, byte health) {
+		int i = 2 * planeSize + index(x, y, z);
+		if (data[i] == health) {
+			return false;
+		}
+		data[i] = health;
+		return true;
+	}
+
+	@Override
+	public final void clear() {
+		Arrays.fill(data, 0, 2 * planeSize, (byte) 0);
+		Arrays.fill(data, 2 * planeSize, 3 * planeSize, (byte) 100);
+	}
+
+	@Override
+	public void clearLayer(int z) {
+		int start = z * layerSize;
+		Arrays.fill(data, start, start + layerSize, (byte) 0);
+		Arrays.fill(data, planeSize + start, planeSize + start + layerSize, (byte) 0);
+		Arrays.fill(data, 2 * planeSize + start, 2 * planeSize + start + layerSize, (byte) 100);
+	}
+
+	@Override
+	public boolean isLayerEmpty(int z) {
+		for (int i = z * layerSize, end = i + layerSize; i < end; i++) {
+			if (data[i] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void getLayer(int z, byte[] ids, byte[] values) {
+		int start = z * layerSize;
+		System.arraycopy(data, start, ids, 0, layerSize);
+		if (values != null) {
+			System.arraycopy(data, planeSize + start, values, 0, layerSize);
+		}
+	}
+
+	@Override
+	public void setLayer(int z, byte[] ids, byte[] values) {
+		int start = z * layerSize;
+		System.arraycopy(ids, 0, data, start, layerSize);
+		System.arraycopy(values, 0, data, planeSize + start, layerSize);
+		Arrays.fill(data, 2 * planeSize + start, 2 * planeSize + start + layerSize, (byte) 100);
+	}
+
+	@Override
+	public void getColumn(int x, int y, byte[] ids, byte[] values) {
+		int i = index(x, y, 0);
+		for (int z = 0; z < blocksZ; z++, i += layerSize) {
+			ids[z] = data[i];
+			if (values != null) {
+				values[z] = data[planeSize + i];
+			}
+		}
+	}
+
+	@Override
+	public void setColumn(int x, int y, byte[] ids, byte[] values) {
+		int i = index(x, y, 0);
+		for (int z = 0; z < blocksZ; z++, i += layerSize) {
+			data[i] = ids[z];
+			data[planeSize + i] = values[z];
+			data[2 * planeSize + i] = 100;
+		}
+	}
+
+	@Override
+	public int getTopZ(int x, int y) {
+		int i = index(x, y, blocksZ - 1);
+		for (int z = blocksZ - 1; z >= 0; z--, i -= layerSize) {
+			if (data[i] != 0) {
+				return z;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public long getMemoryUsage() {
+		return data.length + ARRAY_HEADER + OBJECT_HEADER;
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Asks a generator for the blocks of a chunk column by column using
+ * {@link Generator#generateColumn(int, int, int[], int, int)}. The columns are
+ * split across a {@link ForkJoinPool} if the generator is thread safe. The
+ * result does not depend on the splitting.
+ *
+ * @author Benedikt Vogler
+ * @see Generator#isThreadSafe()
+ */
+public final class GenerationTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+	/**
+	 * amount of columns below which a task is not split any further
+	 */
+	private static final int THRESHOLD = 32;
+
+	/**
+	 * Fills an array with the generated blocks of a chunk.
+	 *
+	 * @param generator
+	 * @param left the x coordinate of the first column
+	 * @param top the y coordinate of the first column
+	 * @param blocksX
+	 * @param blocksY
+	 * @param blocksZ
+	 * @param cells the result, index is (x * blocksY + y) * blocksZ + z
+	 * @param parallel if true uses the common fork join pool when the
+	 * generator is thread safe
+	 */
+	public static void generate(Generator generator, int left, int top, int blocksX, int blocksY, int blocksZ, int[] cells, boolean parallel) {
+		GenerationTask task = new GenerationTask(generator, left, top, blocksY, blocksZ, cells, 0, blocksX * blocksY);
+		if (parallel && generator.isThreadSafe()) {
+			ForkJoinPool.commonPool().invoke(task);
+		} else if (generator.isThreadSafe()) {
+			task.generateColumns();
+		} else {
+			synchronized (generator) {
+				task.generateColumns();
+			}
+		}
+	}
+
+	private final Generator generator;
+	private final int left, top, blocksY, blocksZ;
+	private final int[] cells;
+	/**
+	 * column range, column index is x * blocksY + y
+	 */
+	private final int from, to;
+
+	private GenerationTask(Generator generator, int left, int top, int blocksY, int blocksZ, int[] cells, int from, int to) {
+		this.generator = generator;
+		this.left = left;
+		this.top = top;
+		this.blocksY = blocksY;
+		this.blocksZ = blocksZ;
+		this.cells = cells;
+		this.from = from;
+		this.to = to;
+	}
+
+	@Override
+	protected void compute() {
+		if (to - from > THRESHOLD) {
+			int middle = (from + to) >>> 1;
+			invokeAll(
+				new GenerationTask(generator, left, top, blocksY, blocksZ, cells, from, middle),
+				new GenerationTask(generator, left, top, blocksY, blocksZ, cells, middle, to)
+			);
+		} else {
+			generateColumns();
+		}
+	}
+
+	/**
+	 * Generates the columns of the range on the calling thread without
+	 * splitting.
+	 */
+	private void generateColumns() {
+		for (int column = from; column < to; column++) {
+			generator.generateColumn(
+				left + column / blocksY,
+				top + column % blocksY,
+				cells,
+				column * blocksZ,
+				blocksZ
+			);
+		}
+	}
+}
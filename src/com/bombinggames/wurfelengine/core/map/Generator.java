@@ -31,7 +31,13 @@
 package com.bombinggames.wurfelengine.core.map;
 
 /**
- * An interface for a map generator.
+ * An interface for a map generator.<br>
+ * Chunks are generated on loading threads, several at the same time. If
+ * {@link #isThreadSafe()} returns true {@link #generate(int, int, int)} is
+ * also called in parallel for the cells of one chunk, so it must only depend
+ * on the coordinates and on state which does not change after construction.
+ * Other generators are called by one thread at a time.
+ * {@link #spawnEntities(int, int, int)} is always called on the main thread.
  *
  * @author Benedikt Vogler
  */
@@ -48,13 +54,42 @@ public interface Generator {
 	 */
 	public abstract int generate(int x, int y, int z);
 
+	/**
+	 * Generates a whole column. Override it if the blocks of a column share
+	 * work, e.g. a terrain height. Must give the same blocks as
+	 * {@link #generate(int, int, int)}.
+	 *
+	 * @param x absolute coord
+	 * @param y absolute coord
+	 * @param column filled with the blocks from z=0 upwards, format like
+	 * {@link #generate(int, int, int)}
+	 * @param offset index of z=0 in the array
+	 * @param height amount of blocks in the column
+	 */
+	public default void generateColumn(int x, int y, int[] column, int offset, int height) {
+		for (int z = 0; z < height; z++) {
+			column[offset + z] = generate(x, y, z);
+		}
+	}
+
 	/**
 	 * Define which entities should appear at which coordinate. This method
-	 * should spawn them.
+	 * should spawn them. Called on the main thread when the generated chunk is
+	 * added to the map.
 	 *
 	 * @param x
 	 * @param y
 	 * @param z
 	 */
 	public abstract void spawnEntities(int x, int y, int z);
+
+	/**
+	 * Can {@link #generate(int, int, int)} be called from several threads at
+	 * the same time?
+	 *
+	 * @return false by default
+	 */
+	public default boolean isThreadSafe() {
+		return false;
+	}
 }
@@ -39,8 +39,8 @@ import com.bombinggames.wurfelengine.core.map.Generator;
  * @author Benedikt Vogler
  */
 public class IslandGenerator implements Generator {
-    private int mountainX;
-    private int mountainY;
+    private final int mountainX;
+    private final int mountainY;
 
     /**
      *
@@ -55,9 +55,36 @@ public class IslandGenerator implements Generator {
 
     @Override
     public int generate(int x, int y, int z) {  
+        return generate(z, getHeight(x, y));
+    }
+
+	@Override
+	public void generateColumn(int x, int y, int[] column, int offset, int height) {
+		int mountainHeight = getHeight(x, y);
+		for (int z = 0; z < height; z++) {
+			column[offset + z] = generate(z, mountainHeight);
+		}
+	}
+
+	/**
+	 *
+	 * @param x
+	 * @param y
+	 * @return the height of the mountain at this column
+	 */
+	private int getHeight(int x, int y) {
+		return Chunk.getBlocksZ()-1- Math.abs(mountainY-y)- Math.abs(mountainX-x);
+	}
+
+	/**
+	 *
+	 * @param z
+	 * @param height the height of the mountain
+	 * @return
+	 */
+    private int generate(int z, int height) {
         if (z==0) return (byte)8;
         
-        int height = Chunk.getBlocksZ()-1- Math.abs(mountainY-y)- Math.abs(mountainX-x);
         if (height>0 && z<height){//part of mountain?
             if (height-1 == z && z>2)
                 return (byte)1;//grass on top
@@ -80,4 +107,9 @@ public class IslandGenerator implements Generator {
 	@Override
 	public void spawnEntities(int x, int y, int z) {
 	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
 }
@@ -40,7 +40,11 @@ import java.util.NoSuchElementException;
  * A map iterator which loops only over the chunks covered by the camera (0-8).
  *
  * @author Benedikt Vogler
+ * @deprecated the camera no longer visits every cell. Use
+ * {@link RenderChunk#getDepthOrder()} or {@link RenderChunk#getIterator(int, int)}.
+ * Will be removed in a future version.
  */
+@Deprecated
 public class CameraSpaceIterator {
 
 	/**
@@ -0,0 +1,265 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.IntMap;
+import java.util.Arrays;
+
+/**
+ * The logic blocks of a chunk, indexed by the cell index in the
+ * {@link ChunkStorage}. There is at most one logic block per cell, setting a
+ * new one replaces the old one. The polled logic blocks are additionally
+ * stored in a dense array for the update loop, the others are updated by the
+ * {@link BlockTickScheduler}, which also removes them when they became
+ * invalid. Removals during the update are deferred until
+ * the loop is finished so that a logic block can change the blocks of its
+ * chunk.<br>
+ * Not thread safe.
+ *
+ * @author Benedikt Vogler
+ */
+class LogicBlockRegistry {
+
+	/**
+	 * cell index to logic block
+	 */
+	private final IntMap<AbstractBlockLogicExtension> logics = new IntMap<>(8);
+	/**
+	 * cell index to position in the dense array of the polled logic blocks
+	 */
+	private final IntIntMap slots = new IntIntMap(8);
+	private int[] cells = new int[4];
+	/**
+	 * null marks a slot removed during the update
+	 */
+	private AbstractBlockLogicExtension[] polled = new AbstractBlockLogicExtension[4];
+	private int size;
+	private boolean updating;
+	private boolean holes;
+	/**
+	 * removed during the update, disposed after it
+	 */
+	private final Array<AbstractBlockLogicExtension> released = new Array<>(false, 4);
+
+	/**
+	 *
+	 * @param cell cell index
+	 * @return can return null
+	 */
+	AbstractBlockLogicExtension get(int cell) {
+		return logics.get(cell);
+	}
+
+	/**
+	 * Sets the logic of a cell. A different logic block at this cell is
+	 * disposed.
+	 *
+	 * @param cell cell index
+	 * @param logic not null
+	 */
+	void put(int cell, AbstractBlockLogicExtension logic) {
+		AbstractBlockLogicExtension old = logics.put(cell, logic);
+		if (old == logic) {
+			return;
+		}
+		if (old != null) {
+			removePolled(cell);
+			release(old);
+		}
+		if (logic.isPolled()) {
+			if (size == polled.length) {
+				polled = Arrays.copyOf(polled, size * 2);
+				cells = Arrays.copyOf(cells, size * 2);
+			}
+			cells[size] = cell;
+			polled[size] = logic;
+			slots.put(cell, size);
+			size++;
+		}
+	}
+
+	/**
+	 * Removes and disposes the logic of a cell.
+	 *
+	 * @param cell cell index
+	 */
+	void remove(int cell) {
+		AbstractBlockLogicExtension old = logics.remove(cell);
+		if (old != null) {
+			removePolled(cell);
+			release(old);
+		}
+	}
+
+	/**
+	 *
+	 * @param cell cell index
+	 */
+	private void removePolled(int cell) {
+		int slot = slots.remove(cell, -1);
+		if (slot < 0) {
+			return;
+		}
+		if (updating) {
+			polled[slot] = null;
+			holes = true;
+		} else {
+			//move last into the gap
+			size--;
+			if (slot != size) {
+				cells[slot] = cells[size];
+				polled[slot] = polled[size];
+				slots.put(cells[slot], slot);
+			}
+			polled[size] = null;
+		}
+	}
+
+	/**
+	 * Updates every valid polled logic block and removes the invalid ones.
+	 *
+	 * @param dt
+	 */
+	void update(float dt) {
+		updating = true;
+		//logic blocks added during the update are updated in the next frame
+		int count = size;
+		for (int i = 0; i < count; i++) {
+			AbstractBlockLogicExtension logic = polled[i];
+			if (logic != null) {
+				if (logic.isValid()) {
+					logic.update(dt);
+				} else {
+					remove(cells[i]);
+				}
+			}
+		}
+		updating = false;
+		if (holes) {
+			compact();
+		}
+		for (AbstractBlockLogicExtension logic : released) {
+			logic.dispose();
+		}
+		released.clear();
+	}
+
+	/**
+	 *
+	 * @param logic
+	 */
+	private void release(AbstractBlockLogicExtension logic) {
+		logic.cancelTick();
+		if (updating) {
+			released.add(logic);
+		} else {
+			logic.dispose();
+		}
+	}
+
+	/**
+	 * removes the slots marked as removed
+	 */
+	private void compact() {
+		int newSize = 0;
+		for (int i = 0; i < size; i++) {
+			if (polled[i] != null) {
+				if (i != newSize) {
+					cells[newSize] = cells[i];
+					polled[newSize] = polled[i];
+					slots.put(cells[newSize], newSize);
+				}
+				newSize++;
+			}
+		}
+		Arrays.fill(polled, newSize, size, null);
+		size = newSize;
+		holes = false;
+	}
+
+	/**
+	 * Schedules a tick for every logic block which is not polled.
+	 *
+	 * @param scheduler
+	 */
+	void scheduleTicks(BlockTickScheduler scheduler) {
+		for (AbstractBlockLogicExtension logic : logics.values()) {
+			if (!logic.isPolled()) {
+				scheduler.schedule(logic, 0);
+			}
+		}
+	}
+
+	/**
+	 * Removes the scheduled ticks of every logic block.
+	 */
+	void cancelTicks() {
+		for (AbstractBlockLogicExtension logic : logics.values()) {
+			logic.cancelTick();
+		}
+	}
+
+	/**
+	 *
+	 * @return amount of logic blocks
+	 */
+	int size() {
+		return logics.size;
+	}
+
+	/**
+	 *
+	 * @return the cell indices of the valid logic blocks
+	 */
+	int[] getValidCells() {
+		int[] valid = new int[logics.size];
+		int count = 0;
+		for (IntMap.Entry<AbstractBlockLogicExtension> entry : logics.entries()) {
+			if (entry.value.isValid()) {
+				valid[count++] = entry.key;
+			}
+		}
+		return Arrays.copyOf(valid, count);
+	}
+
+	/**
+	 * Removes every logic block without disposing them.
+	 */
+	void clear() {
+		logics.clear();
+		slots.clear();
+		Arrays.fill(polled, 0, size, null);
+		size = 0;
+		holes = false;
+	}
+}
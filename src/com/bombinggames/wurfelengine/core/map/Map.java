@@ -39,6 +39,8 @@ import com.badlogic.gdx.ai.pfa.indexed.IndexedAStarPathFinder;
 import com.badlogic.gdx.ai.pfa.indexed.IndexedGraph;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.LongMap;
 import com.bombinggames.wurfelengine.WE;
 import com.bombinggames.wurfelengine.core.Controller;
 import com.bombinggames.wurfelengine.core.Events;
@@ -53,6 +55,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -70,7 +73,7 @@ public class Map implements IndexedGraph<PfNode> {
 	/**
 	 *
 	 */
-	public final static Integer MAPVERSION = 4;
+	public final static Integer MAPVERSION = 5;
 
 	/**
 	 *
@@ -102,9 +105,13 @@ public class Map implements IndexedGraph<PfNode> {
 	}
 
 	/**
+	 * Creates a save slot as an overlay of the map. Only the meta files are
+	 * copied. Chunks which are not saved in the slot are read from the map
+	 * root, saving writes them into the slot.
 	 *
 	 * @param path the directory of the map
 	 * @param slot
+	 * @see Chunk#restoreFromRoot(File, int, int, int)
 	 */
 	public static void createSaveSlot(File path, int slot) {
 		FileHandle pathHandle = Gdx.files.absolute(path + "/save" + slot + "/");
@@ -115,7 +122,7 @@ public class Map implements IndexedGraph<PfNode> {
 		FileHandle root = Gdx.files.absolute(path.getAbsolutePath());
 		FileHandle[] childen = root.list();
 		for (FileHandle file : childen) {
-			if (!file.isDirectory()) {
+			if (!file.isDirectory() && !ChunkFiles.isChunkFile(file.file())) {
 				file.copyTo(pathHandle);
 			}
 		}
@@ -140,6 +147,11 @@ public class Map implements IndexedGraph<PfNode> {
 	 * every entity on the map is stored in this field
 	 */
 	private final ArrayList<AbstractEntity> entityList = new ArrayList<>(40);
+	/**
+	 * the last known position of every spawned persistent entity, used to
+	 * find the chunks whose entities changed
+	 */
+	private final IdentityHashMap<AbstractEntity, Point> entityPositions = new IdentityHashMap<>(40);
 	private boolean modified = true;
 	/**
 	 * observer pattern
@@ -149,19 +161,67 @@ public class Map implements IndexedGraph<PfNode> {
 	private int activeSaveSlot;
 
 	/**
-	 * Stores the data of the map.
+	 * the loaded chunks by coordinate
 	 */
-	private Chunk[][] data;
+	private final ChunkIndex<Chunk> data;
 	/**
 	 * contains evey chunk which was loaded
 	 */
 	private ArrayList<Chunk> loadedChunks;
 	
-	private final ArrayList<ChunkLoader> loadingRunnables = new ArrayList<>(9);
 	/**
-	 * the amount of chunks in memory in one dimension
+	 * requested chunks which are not added yet, key is {@link ChunkIndex#key(int, int) }
 	 */
-	private final int chunkDim;
+	private final LongMap<ChunkLoader> loadingRequests = new LongMap<>(32);
+	private final ChunkLoadingService loadingService;
+	private final ChunkSaveService saveService = new ChunkSaveService();
+	/**
+	 * journal of the active save slot, null if disabled
+	 */
+	private EditJournal journal;
+	/**
+	 * depth of the nested edit transactions, changes are coalesced while
+	 * above 0
+	 */
+	private int editDepth;
+	/**
+	 * changes of the open transaction, key is {@link ChunkIndex#key(int, int) }
+	 */
+	private final LongMap<ChunkChange> pendingChanges = new LongMap<>(8);
+	/**
+	 * updates the logic blocks which are not polled
+	 */
+	private final BlockTickScheduler tickScheduler = new BlockTickScheduler();
+	/**
+	 * used to find the logic blocks next to a changed cell
+	 */
+	private final Coordinate wakeCoord = new Coordinate(0, 0, 0);
+	/**
+	 * cursor used by the block getters
+	 */
+	private final BlockAccessor blockAccessor;
+	/**
+	 * time since the last autosave in ms
+	 */
+	private float autosaveTimer;
+	/**
+	 * counts the calls of {@link #update(float) }. Used for pinning.
+	 */
+	private long updateCount;
+	/**
+	 * chunk coordinates (x,y pairs) of the pinned areas of this and the last
+	 * update
+	 */
+	private IntArray pinCenters = new IntArray(8), lastPinCenters = new IntArray(8);
+	/**
+	 * the pinned areas last passed to the loading service
+	 */
+	private final IntArray loadingFocus = new IntArray(8);
+	private final ArrayList<Chunk> evictionCandidates = new ArrayList<>(20);
+	/**
+	 * every n-th update the memory is checked even if no chunk was added
+	 */
+	private static final int EVICTION_CHECK_INTERVAL = 60;
 
 	/**
 	 * Loads a map using the default generator.
@@ -186,14 +246,11 @@ public class Map implements IndexedGraph<PfNode> {
 	public Map(final File name, Generator generator, int saveSlot) throws IOException {
 		this.directory = name;
 		this.generator = generator;
-		//init data array
-		chunkDim = WE.getCVars().getValueI("mapIndexSpaceSize");
-		data = new Chunk[chunkDim][];
-		for (int i = 0; i < data.length; i++) {
-			data[i] = new Chunk[chunkDim / 2];//to have a quadratic map
-		}
 		int maxChunks = WE.getCVars().getValueI("mapMaxMemoryUse") / (Chunk.getBlocksX()*Chunk.getBlocksY()*Chunk.getBlocksZ()*3); //
 		loadedChunks = new ArrayList<>(maxChunks);
+		data = new ChunkIndex<>(64);
+		blockAccessor = new BlockAccessor(this);
+		loadingService = new ChunkLoadingService(WE.getCVars().getValueI("mapLoadingThreads"));
 		WE.getCVars().get("loadedMap").setValue(name.getName());
 		
 		//load map cvars
@@ -215,17 +272,59 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @param dt time in ms
 	 */
 	public void update(float dt) {
+		int autosaveInterval = WE.getCVars().getValueI("mapAutosaveInterval");
+		if (autosaveInterval > 0) {
+			autosaveTimer += dt;
+			if (autosaveTimer >= autosaveInterval * 1000f) {
+				autosaveTimer = 0;
+				save(activeSaveSlot);
+			}
+		}
+
 		dt *= WE.getCVars().getValueF("timespeed");//apply game speed
+		updateCount++;
+		IntArray tmp = lastPinCenters;
+		lastPinCenters = pinCenters;
+		pinCenters = tmp;
+		pinCenters.clear();
+
+		//load the chunks near the pinned areas first
+		if (lastPinCenters.size > 0) {
+			if (!lastPinCenters.equals(loadingFocus)) {
+				loadingFocus.clear();
+				loadingFocus.addAll(lastPinCenters);
+				loadingService.setFocus(loadingFocus.toArray());
+			}
+			loadingService.cancelOutOfRange(WE.getCVars().getValueI("mapLoadingCancelRadius"));
+		}
 
 		//add parralell loaded chunks serial to avoid conflicts
-		for (int i = 0; i < loadingRunnables.size(); i++) {
-			ChunkLoader runnable = loadingRunnables.get(i);
-			if (runnable.getChunk() != null) {
-				loadedChunks.add(runnable.getChunk());
-				data[runnable.getCoordX()+chunkDim/2][runnable.getCoordY()+chunkDim/4] = runnable.getChunk();
-				addEntities(runnable.getChunk().retrieveEntities());
+		boolean chunksAdded = false;
+		ChunkLoader loader;
+		while ((loader = loadingService.poll()) != null) {
+			loadingRequests.remove(ChunkIndex.key(loader.getCoordX(), loader.getCoordY()));
+			Chunk chunk = loader.getChunk();
+			if (chunk != null) {
+				chunk.pin(updateCount);//give it a chance to get pinned
+				chunksAdded = true;
+				loadedChunks.add(chunk);
+				data.put(chunk.getChunkX(), chunk.getChunkY(), chunk);
+				if (journal != null) {
+					journal.replay(chunk);
+				}
+				ArrayList<AbstractEntity> retrieved = chunk.retrieveEntities();
+				addEntities(retrieved);
+				if (retrieved != null) {
+					//the entities are in the save file already
+					for (AbstractEntity ent : retrieved) {
+						if (ent.hasPosition() && ent.isSavedPersistent()) {
+							entityPositions.put(ent, new Point(ent.getPosition()));
+						}
+					}
+				}
+				chunk.spawnGeneratedEntities();
+				chunk.scheduleLogicTicks(tickScheduler);
 				setModified();
-				loadingRunnables.remove(i);
 			}
 		}
 		
@@ -234,6 +333,7 @@ public class Map implements IndexedGraph<PfNode> {
 				chunk.update(dt);
 			}
 		}
+		tickScheduler.update(dt, WE.getCVars().getValueI("mapTickBudget"));
 
 		//update every entity
 		//old style for loop because allows modification during loop
@@ -248,10 +348,26 @@ public class Map implements IndexedGraph<PfNode> {
 			} else {
 				entity.update(dt);
 			}
+			if (entity.isPinningChunks() && entity.hasPosition()) {
+				Coordinate coord = entity.getPosition().toCoord();
+				pinChunks(coord.getChunkX(), coord.getChunkY(), 1);
+			}
+		}
+		updateEntityPositions();
+
+		if (chunksAdded || updateCount % EVICTION_CHECK_INTERVAL == 0) {
+			evictChunks();
 		}
 
 		//remove not spawned objects from list
 		entityList.removeIf((AbstractEntity entity) -> !entity.hasPosition());
+
+		if (journal != null) {
+			if (journal.getRecordCount() >= WE.getCVars().getValueI("mapJournalCheckpoint")) {
+				save(activeSaveSlot);
+			}
+			journal.flush();
+		}
 	}
 
 	/**
@@ -270,6 +386,139 @@ public class Map implements IndexedGraph<PfNode> {
 		modificationCheck();
 	}
 
+	/**
+	 * Keeps the chunks in a square around a chunk in memory. A pin lasts for
+	 * this and the next update so it must be renewed every frame, e.g. by a
+	 * camera or an entity.
+	 *
+	 * @param chunkX center chunk
+	 * @param chunkY center chunk
+	 * @param radius 0 pins only the center
+	 */
+	public void pinChunks(int chunkX, int chunkY, int radius) {
+		pinCenters.add(chunkX);
+		pinCenters.add(chunkY);
+		for (int x = chunkX - radius; x <= chunkX + radius; x++) {
+			for (int y = chunkY - radius; y <= chunkY + radius; y++) {
+				Chunk chunk = getChunk(x, y);
+				if (chunk != null) {
+					chunk.pin(updateCount);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Keeps a chunk in memory for this and the next update.
+	 *
+	 * @param chunkX
+	 * @param chunkY
+	 * @see #pinChunks(int, int, int)
+	 */
+	public void pinChunk(int chunkX, int chunkY) {
+		pinChunks(chunkX, chunkY, 0);
+	}
+
+	/**
+	 *
+	 * @param chunk
+	 * @return true if the chunk is pinned and can not be evicted
+	 */
+	public boolean isPinned(Chunk chunk) {
+		return chunk.getLastPinned() >= updateCount - 1;
+	}
+
+	/**
+	 * Unloads chunks which are not pinned until the memory use is below the
+	 * cvar "mapMaxMemoryUse". Chunks which were pinned least recently go
+	 * first. Ties are broken by the distance to the nearest pinned area.
+	 */
+	private void evictChunks() {
+		long budget = WE.getCVars().getValueI("mapMaxMemoryUse");
+		long usage = getMemoryUsage();
+		if (usage <= budget) {
+			return;
+		}
+
+		evictionCandidates.clear();
+		for (Chunk chunk : loadedChunks) {
+			if (!isPinned(chunk)) {
+				evictionCandidates.add(chunk);
+			}
+		}
+		evictionCandidates.sort((Chunk a, Chunk b) -> {
+			int result = Long.compare(a.getLastPinned(), b.getLastPinned());
+			if (result != 0) {
+				return result;
+			}
+			return Integer.compare(getDistanceToPins(b), getDistanceToPins(a));
+		});
+
+		int evicted = 0;
+		for (Chunk chunk : evictionCandidates) {
+			if (usage <= budget) {
+				break;
+			}
+			usage -= chunk.getMemoryUsage();
+			unloadChunk(chunk);
+			evicted++;
+		}
+		evictionCandidates.clear();
+		if (usage > budget) {
+			Gdx.app.debug("Map", "Pinned chunks exceed mapMaxMemoryUse: " + usage + " bytes");
+		}
+		if (evicted > 0) {
+			Gdx.app.debug("Map", "Evicted " + evicted + " chunks.");
+		}
+	}
+
+	/**
+	 * Chebyshev distance in chunks to the nearest pinned area.
+	 *
+	 * @param chunk
+	 * @return
+	 */
+	private int getDistanceToPins(Chunk chunk) {
+		return Math.min(getDistanceToPins(pinCenters, chunk), getDistanceToPins(lastPinCenters, chunk));
+	}
+
+	private static int getDistanceToPins(IntArray centers, Chunk chunk) {
+		int min = Integer.MAX_VALUE;
+		for (int i = 0; i < centers.size; i += 2) {
+			int dist = Math.max(
+				Math.abs(centers.get(i) - chunk.getChunkX()),
+				Math.abs(centers.get(i + 1) - chunk.getChunkY())
+			);
+			if (dist < min) {
+				min = dist;
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * Removes a chunk from memory. Saves it if needed and removes the entities
+	 * on it from the map.
+	 *
+	 * @param chunk
+	 */
+	public void unloadChunk(Chunk chunk) {
+		if (chunk.needsSave()) {
+			try {
+				saveService.save(
+					chunk.createSnapshot(),
+					Chunk.getSaveDirectory(getPath(), activeSaveSlot),
+					WE.getCVars().getValueB("mapRegionFiles")
+				);
+			} catch (IOException ex) {
+				Logger.getLogger(Map.class.getName()).log(Level.SEVERE, null, ex);
+			}
+		}
+		chunk.dispose(null);
+		data.remove(chunk.getChunkX(), chunk.getChunkY());
+		loadedChunks.remove(chunk);
+	}
+
 	/**
 	 * loads a chunk from disk if not already loaded.
 	 *
@@ -280,9 +529,8 @@ public class Map implements IndexedGraph<PfNode> {
 		if (Map.this.getChunk(chunkX, chunkY) == null) {
 			if (!isLoading(chunkX, chunkY)) {
 				ChunkLoader cl = new ChunkLoader(this, getPath(), chunkX, chunkY, getGenerator());
-				loadingRunnables.add(cl);
-				Thread thread = new Thread(cl, "loadChunk "+chunkX+","+chunkY);
-				thread.start();
+				loadingRequests.put(ChunkIndex.key(chunkX, chunkY), cl);
+				loadingService.submit(cl);
 			}
 		}
 	}
@@ -296,11 +544,10 @@ public class Map implements IndexedGraph<PfNode> {
 		loadChunk(coord.getChunkX(), coord.getChunkY());
 	}
 	/**
-	 * Get the data of the map.
-	 * From range in X [-chunkDim/2,chunkDim/2]
+	 * Get the index of the loaded chunks. The map has no bounds.
 	 * @return
 	 */
-	public Chunk[][] getData() {
+	public ChunkIndex<Chunk> getData() {
 		return data;
 	}
 	
@@ -312,6 +559,20 @@ public class Map implements IndexedGraph<PfNode> {
 		return loadedChunks;
 	}
 
+	/**
+	 * Estimated memory used by every loaded chunk. Compare with the cvar
+	 * "mapMaxMemoryUse".
+	 *
+	 * @return bytes
+	 */
+	public long getMemoryUsage() {
+		long sum = 0;
+		for (Chunk chunk : loadedChunks) {
+			sum += chunk.getMemoryUsage();
+		}
+		return sum;
+	}
+
 	/**
 	 * Returns a block without checking the parameters first. Good for debugging
 	 * and also faster. O(n)
@@ -335,6 +596,25 @@ public class Map implements IndexedGraph<PfNode> {
 		return (byte) (getBlock(coord) & 255);
 	}
 
+	/**
+	 *
+	 * @param packed a {@link PackedCoordinate}
+	 * @return
+	 */
+	public byte getBlockId(long packed) {
+		return (byte) (getBlock(packed) & 255);
+	}
+
+	/**
+	 * id, value and health
+	 *
+	 * @param packed a {@link PackedCoordinate}
+	 * @return
+	 */
+	public int getBlock(long packed) {
+		return blockAccessor.getBlock(packed);
+	}
+
 	/**
 	 * id, value and health
 	 *
@@ -342,15 +622,7 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @return
 	 */
 	public int getBlock(Coordinate coord) {
-		if (coord.getZ() < 0) {
-			return (byte) WE.getCVars().getValueI("groundBlockID");
-		}
-		Chunk chunk = getChunkContaining(coord);
-		if (chunk == null) {
-			return 0;
-		} else {
-			return chunk.getBlock(coord.getX(), coord.getY(), coord.getZ());//find chunk in x coord
-		}
+		return blockAccessor.getBlock(coord.getX(), coord.getY(), coord.getZ());
 	}
 
 	/**
@@ -361,15 +633,18 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @return
 	 */
 	public int getBlock(int x, int y, int z) {
-		if (z < 0) {
-			return (byte) WE.getCVars().getValueI("groundBlockID");
-		}
-		Chunk chunk = getChunkContaining(x, y);
-		if (chunk == null) {
-			return 0;
-		} else {
-			return chunk.getBlock(x, y, z);//find chunk in x coord
-		}
+		return blockAccessor.getBlock(x, y, z);
+	}
+
+	/**
+	 * The cursor used by the block getters of the map. Use it on the main
+	 * thread to read many cells next to each other. Other threads need an own
+	 * {@link BlockAccessor}.
+	 *
+	 * @return
+	 */
+	public BlockAccessor getBlockAccessor() {
+		return blockAccessor;
 	}
 
 	/**
@@ -390,7 +665,10 @@ public class Map implements IndexedGraph<PfNode> {
 	 * #setBlock(com.bombinggames.wurfelengine.core.map.rendering.RenderCell)
 	 */
 	public void setBlock(final RenderCell block) {
-		getChunkContaining(block.getPosition()).setBlock(block);
+		Chunk chunk = getChunkContaining(block.getPosition());
+		recordEdit(chunk, block.getPosition(), (block.getId() & 255) | ((block.getValue() & 255) << 8) | ((block.getHealth() & 255) << 16));
+		chunk.setBlock(block);
+		blockChanged(chunk, block.getPosition());
 	}
 
 	/**
@@ -405,7 +683,9 @@ public class Map implements IndexedGraph<PfNode> {
 	public void setBlock(Coordinate coord, byte id) {
 		Chunk chunk = getChunkContaining(coord);
 		if (chunk != null) {
+			recordEdit(chunk, coord, (id & 255) | (100 << 16));
 			chunk.setBlock(coord, id);
+			blockChanged(chunk, coord);
 		}
 	}
 	
@@ -417,7 +697,9 @@ public class Map implements IndexedGraph<PfNode> {
 	public void setBlock(Coordinate coord, int block) {
 		Chunk chunk = getChunkContaining(coord);
 		if (chunk != null) {
+			recordEdit(chunk, coord, block & 0xFFFFFF);
 			chunk.setBlock(coord, (byte) (block & 255), (byte) ((block >> 8) & 255), (byte) ((block >> 16) & 255));
+			blockChanged(chunk, coord);
 		}
 	}
 
@@ -430,7 +712,9 @@ public class Map implements IndexedGraph<PfNode> {
 	public void setBlock(Coordinate coord, byte id, byte value) {
 		Chunk chunk = getChunkContaining(coord);
 		if (chunk != null) {
+			recordEdit(chunk, coord, (id & 255) | ((value & 255) << 8) | (100 << 16));
 			chunk.setBlock(coord, id, value);
+			blockChanged(chunk, coord);
 		}
 	}
 
@@ -440,7 +724,13 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @param value
 	 */
 	public void setValue(Coordinate coord, byte value) {
-		getChunkContaining(coord).setValue(coord, value);//call to map
+		Chunk chunk = getChunkContaining(coord);
+		if (journal != null) {
+			int block = packBlock(chunk.getBlock(coord.getX(), coord.getY(), coord.getZ()));
+			recordEdit(chunk, coord, (block & 0xFF00FF) | ((value & 255) << 8));
+		}
+		chunk.setValue(coord, value);//call to map
+		blockChanged(chunk, coord);
 		//call to update RenderStorage
 		GameView view = WE.getGameplay().getView();
 		if (view != null) {//only update RS if can access it
@@ -458,7 +748,202 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @param health
 	 */
 	public void setHealth(Coordinate coord, byte health) {
-		getChunkContaining(coord).setHealth(coord, health);
+		Chunk chunk = getChunkContaining(coord);
+		if (journal != null) {
+			int block = packBlock(chunk.getBlock(coord.getX(), coord.getY(), coord.getZ()));
+			recordEdit(chunk, coord, (block & 0xFFFF) | ((health & 255) << 16));
+		}
+		chunk.setHealth(coord, health);
+		blockChanged(chunk, coord);
+	}
+
+	/**
+	 * Writes an edit into the journal before it is applied.
+	 *
+	 * @param chunk the chunk containing the coordinate
+	 * @param coord
+	 * @param newBlock id, value and health after the edit
+	 */
+	private void recordEdit(Chunk chunk, Coordinate coord, int newBlock) {
+		int z = coord.getZ();
+		if (journal != null && z >= 0 && z < Chunk.getBlocksZ()) {
+			journal.append(
+				coord.getX(),
+				coord.getY(),
+				z,
+				packBlock(chunk.getBlock(coord.getX(), coord.getY(), z)),
+				newBlock
+			);
+		}
+	}
+
+	/**
+	 * The chunks add up the signed bytes of a cell. The journal stores every
+	 * byte unsigned so that equal cells are equal ints.
+	 *
+	 * @param block id, value and health as returned by the chunk
+	 * @return id, value and health each masked to one byte
+	 */
+	private static int packBlock(int block) {
+		byte id = (byte) block;
+		byte value = (byte) ((block - id) >> 8);
+		byte health = (byte) ((block - id - (value << 8)) >> 16);
+		return (id & 255) | ((value & 255) << 8) | ((health & 255) << 16);
+	}
+
+	/**
+	 * Schedules a tick for the logic blocks which are not polled at a changed
+	 * cell and the cells next to it.
+	 *
+	 * @param coord the changed cell, not altered
+	 */
+	private void wakeLogic(Coordinate coord) {
+		wakeCoord.set(coord.getX(), coord.getY(), coord.getZ());
+		wakeLogicAt(wakeCoord);
+		wakeLogicAt(wakeCoord.add(0, 0, 1));
+		wakeLogicAt(wakeCoord.add(0, 0, -2));
+		wakeCoord.add(0, 0, 1);
+		for (int side = 0; side < 8; side++) {
+			wakeLogicAt(wakeCoord.goToNeighbour(side));
+			wakeCoord.goToNeighbour((side + 4) % 8);//go back to center
+		}
+	}
+
+	/**
+	 *
+	 * @param coord
+	 */
+	private void wakeLogicAt(Coordinate coord) {
+		Chunk chunk = getChunkContaining(coord);
+		if (chunk != null) {
+			//invalid ones too so that the scheduler removes them
+			AbstractBlockLogicExtension logic = chunk.getLogicUnchecked(coord);
+			if (logic != null && !logic.isPolled()) {
+				tickScheduler.schedule(logic, 0);
+			}
+		}
+	}
+
+	/**
+	 * Reports a changed cell. Sends {@link Events#blocksChanged} at once or
+	 * adds the cell to the changes of the open transaction.
+	 *
+	 * @param chunk the chunk containing the coordinate
+	 * @param coord
+	 */
+	private void blockChanged(Chunk chunk, Coordinate coord) {
+		int z = coord.getZ();
+		if (z < 0 || z >= Chunk.getBlocksZ()) {
+			return;
+		}
+		wakeLogic(coord);
+		if (editDepth == 0) {
+			MessageManager.getInstance().dispatchMessage(
+				Events.blocksChanged.getId(),
+				new ChunkChange(chunk, coord.getX(), coord.getY(), z)
+			);
+		} else {
+			long key = ChunkIndex.key(chunk.getChunkX(), chunk.getChunkY());
+			ChunkChange change = pendingChanges.get(key);
+			if (change == null) {
+				pendingChanges.put(key, new ChunkChange(chunk, coord.getX(), coord.getY(), z));
+			} else {
+				change.add(coord.getX(), coord.getY(), z);
+			}
+		}
+	}
+
+	/**
+	 * Starts a transaction of block edits. The edits are applied at once so
+	 * that they can be read, but the change messages are coalesced until
+	 * {@link #commitEdits()} sends one {@link Events#blocksChanged} message per
+	 * changed chunk with the bounds of the changes. Transactions can be
+	 * nested, the outermost commit sends the messages.
+	 *
+	 * @see #edit(Runnable)
+	 */
+	public void beginEdits() {
+		editDepth++;
+	}
+
+	/**
+	 * Ends a transaction started with {@link #beginEdits()}.
+	 */
+	public void commitEdits() {
+		if (editDepth == 0) {
+			throw new IllegalStateException("No edit transaction to commit.");
+		}
+		editDepth--;
+		if (editDepth == 0 && pendingChanges.size > 0) {
+			//copy so that listeners can edit again
+			ArrayList<ChunkChange> changes = new ArrayList<>(pendingChanges.size);
+			for (ChunkChange change : pendingChanges.values()) {
+				changes.add(change);
+			}
+			pendingChanges.clear();
+			for (ChunkChange change : changes) {
+				MessageManager.getInstance().dispatchMessage(Events.blocksChanged.getId(), change);
+			}
+		}
+	}
+
+	/**
+	 * Runs block edits in a transaction.
+	 *
+	 * @param edits
+	 * @see #beginEdits()
+	 */
+	public void edit(Runnable edits) {
+		beginEdits();
+		try {
+			edits.run();
+		} finally {
+			commitEdits();
+		}
+	}
+
+	/**
+	 *
+	 * @return true if a transaction is open
+	 */
+	public boolean isEditing() {
+		return editDepth > 0;
+	}
+
+	/**
+	 * Reverts the last block edit of the journal. Edits can be undone until
+	 * the map is saved, also after a restart.
+	 *
+	 * @return false if there is nothing to undo
+	 * @see EditJournal
+	 */
+	public boolean undoEdit() {
+		if (journal == null) {
+			return false;
+		}
+		int[] edit = new int[5];
+		if (!journal.undo(edit)) {
+			return false;
+		}
+		Coordinate coord = new Coordinate(edit[0], edit[1], edit[2]);
+		Chunk chunk = getChunkContaining(coord);
+		int block = edit[3];
+		if (chunk != null) {
+			chunk.setBlock(coord, (byte) (block & 255), (byte) ((block >> 8) & 255), (byte) ((block >> 16) & 255));
+			blockChanged(chunk, coord);
+			setModified();
+		} else {
+			journal.addReplay(edit[0], edit[1], edit[2], block);
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 * @return the journal of the block edits, null if disabled
+	 */
+	public EditJournal getJournal() {
+		return journal;
 	}
 
 	/**
@@ -468,7 +953,7 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @return can return null if not loaded
 	 */
 	public Chunk getChunkContaining(final Coordinate coord) {
-		return data[Math.floorDiv(coord.getX(), Chunk.getBlocksX()) + chunkDim / 2][Math.floorDiv(coord.getY(), Chunk.getBlocksY()) + chunkDim / 4];
+		return data.get(Math.floorDiv(coord.getX(), Chunk.getBlocksX()), Math.floorDiv(coord.getY(), Chunk.getBlocksY()));
 	}
 
 	/**
@@ -479,7 +964,17 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @return can return null if not loaded
 	 */
 	public Chunk getChunkContaining(int x, int y) {
-		return data[Math.floorDiv(x, Chunk.getBlocksX()) + chunkDim / 2][Math.floorDiv(y, Chunk.getBlocksY()) + chunkDim / 4];
+		return data.get(Math.floorDiv(x, Chunk.getBlocksX()), Math.floorDiv(y, Chunk.getBlocksY()));
+	}
+
+	/**
+	 * get the chunk where the coordinates are on
+	 *
+	 * @param packed a {@link PackedCoordinate}
+	 * @return can return null if not loaded
+	 */
+	public Chunk getChunkContaining(long packed) {
+		return data.get(PackedCoordinate.getChunkX(packed), PackedCoordinate.getChunkY(packed));
 	}
 	
 	/**
@@ -529,15 +1024,14 @@ public class Map implements IndexedGraph<PfNode> {
 	}
 
 	/**
-	 * get the chunk with the given chunk coords. <br>Runtime: O(c) c: amount of
-	 * chunks -&gt; O(1)
+	 * get the chunk with the given chunk coords. <br>Runtime: O(1)
 	 *
 	 * @param chunkX
 	 * @param chunkY
 	 * @return if not in memory return null
 	 */
 	public Chunk getChunk(int chunkX, int chunkY) {
-		return data[chunkX+chunkDim/2][chunkY+chunkDim/4];
+		return data.get(chunkX, chunkY);
 	}
 
 	/**
@@ -601,26 +1095,52 @@ public class Map implements IndexedGraph<PfNode> {
 	}
 
 	/**
-	 * saves every chunk on the map
+	 * Saves every chunk on the map which changed. The chunks are copied and
+	 * written in the background.
 	 *
 	 * @param saveSlot
-	 * @return
+	 * @return false if a chunk could not be copied
+	 * @see #getSaveService()
 	 */
 	public boolean save(int saveSlot) {
+		long start = System.nanoTime();
+		int count = 0;
+		boolean regions = WE.getCVars().getValueB("mapRegionFiles");
 		for (Chunk chunk : loadedChunks) {
-			try {
-				chunk.save(
-					getPath(),
-					saveSlot
-				);
-			} catch (IOException ex) {
-				Logger.getLogger(Map.class.getName()).log(Level.SEVERE, null, ex);
-				return false;
+			//when saving into another slot every chunk must be written
+			if (saveSlot != activeSaveSlot || chunk.needsSave()) {
+				try {
+					saveService.save(
+						chunk.createSnapshot(saveSlot == activeSaveSlot),
+						Chunk.getSaveDirectory(getPath(), saveSlot),
+						regions
+					);
+					count++;
+				} catch (IOException ex) {
+					Logger.getLogger(Map.class.getName()).log(Level.SEVERE, null, ex);
+					return false;
+				}
 			}
 		}
+		if (saveSlot == activeSaveSlot && journal != null) {
+			journal.checkpoint();
+		}
+		//chunk files are written in the current format
+		if (saveSlot == activeSaveSlot && WE.getCVarsSave().getValueI("MapVersion") < MAPVERSION) {
+			WE.getCVarsSave().get("MapVersion").setValue(MAPVERSION);
+		}
+		Gdx.app.debug("Map", "Queued " + count + " chunks for saving in " + (System.nanoTime() - start) / 1000 + " µs.");
 		return true;
 	}
 
+	/**
+	 *
+	 * @return the service writing the chunk files
+	 */
+	public ChunkSaveService getSaveService() {
+		return saveService;
+	}
+
 	/**
 	 * save every chunk using the current active save slot. Saves position of
 	 * the sun and moon at origin.
@@ -633,6 +1153,14 @@ public class Map implements IndexedGraph<PfNode> {
 		return save(activeSaveSlot);
 	}
 
+	/**
+	 *
+	 * @return the scheduler updating the logic blocks which are not polled
+	 */
+	public BlockTickScheduler getTickScheduler() {
+		return tickScheduler;
+	}
+
 	/**
 	 *
 	 * @param coord
@@ -664,7 +1192,15 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @param slot slot number
 	 */
 	public void useSaveSlot(int slot) {
+		if (journal != null) {
+			journal.dispose();
+		}
 		this.activeSaveSlot = slot;
+		if (WE.getCVars().getValueB("mapJournal")) {
+			journal = new EditJournal(Chunk.getSaveDirectory(directory, slot), saveService);
+		} else {
+			journal = null;
+		}
 		WE.getCVarsMap().get("currentSaveSlot").setValue(slot);
 		//load save cvars
 		WE.getCVarsMap().setSaveCVars(
@@ -833,6 +1369,48 @@ public class Map implements IndexedGraph<PfNode> {
 	public void disposeEntities() {
 		entityList.forEach((AbstractEntity e) -> e.dispose());
 		entityList.clear();
+		entityPositions.clear();
+	}
+
+	/**
+	 * Marks the chunks for saving where a persistent entity spawned, moved to,
+	 * moved from or was removed. Must be called before the entities without a
+	 * position are removed from the list.
+	 */
+	private void updateEntityPositions() {
+		for (AbstractEntity ent : entityList) {
+			Point last = entityPositions.get(ent);
+			if (ent.hasPosition() && ent.isSavedPersistent()) {
+				Point pos = ent.getPosition();
+				if (last == null) {
+					setEntitiesChanged(pos);
+					entityPositions.put(ent, new Point(pos));
+				} else if (last.x != pos.x || last.y != pos.y || last.z != pos.z) {
+					setEntitiesChanged(last);
+					setEntitiesChanged(pos);
+					last.set(pos);
+				}
+			} else if (last != null) {
+				setEntitiesChanged(last);
+				entityPositions.remove(ent);
+			}
+		}
+	}
+
+	/**
+	 * Marks the chunk containing the point for saving if it is loaded.
+	 *
+	 * @param pos
+	 * @see #getEntitiesOnChunkSavedOnly(int, int)
+	 */
+	private void setEntitiesChanged(Point pos) {
+		Chunk chunk = data.get(
+			(int) Math.floor(pos.x / Chunk.getGameWidth()),
+			(int) Math.floor(pos.y / Chunk.getGameDepth())
+		);
+		if (chunk != null) {
+			chunk.setEntitiesChanged();
+		}
 	}
 
 	/**
@@ -950,12 +1528,15 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @return 
 	 */
 	public boolean isLoading(int chunkX, int chunkY) {
-		for (ChunkLoader lR : loadingRunnables) {
-			if (lR.getCoordX() == chunkX && lR.getCoordY() == chunkY) {
-				return true;
-			}
-		}
-		return false;
+		return loadingRequests.containsKey(ChunkIndex.key(chunkX, chunkY));
+	}
+
+	/**
+	 *
+	 * @return the service loading the chunks, with statistics
+	 */
+	public ChunkLoadingService getLoadingService() {
+		return loadingService;
 	}
 	
 	/**
@@ -964,11 +1545,22 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @param save
 	 */
 	public void dispose(boolean save) {
+		loadingService.dispose();
+		loadingRequests.clear();
+		if (save) {
+			save(activeSaveSlot);
+		}
 		for (Chunk chunk : loadedChunks) {
+			chunk.dispose(null);
+		}
+		tickScheduler.clear();
+		saveService.dispose();//wait until everything is written
+		RegionFile.closeAll(null);
+		if (journal != null) {
 			if (save) {
-				chunk.dispose(getPath());
+				journal.dispose();
 			} else {
-				chunk.dispose(null);
+				journal.discard();
 			}
 		}
 		disposeEntities();
@@ -0,0 +1,245 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import com.bombinggames.wurfelengine.core.map.rendering.RenderCell;
+
+/**
+ * A {@link Coordinate} packed into a long so that hot code can work with
+ * coordinates without creating objects. Bits 38-63 store x, bits 12-37 y and
+ * bits 0-11 z, each as two's complement. So x and y must be in
+ * [-33554432, 33554431] and z in [-2048, 2047].<br>
+ * Only static helpers, the packed value is the coordinate.
+ *
+ * @author Benedikt Vogler
+ * @see Coordinate#pack()
+ */
+public final class PackedCoordinate {
+
+	private static final int Y_SHIFT = 12;
+	private static final int X_SHIFT = 38;
+	private static final long Z_MASK = (1L << Y_SHIFT) - 1;
+	private static final long Y_MASK = ((1L << (X_SHIFT - Y_SHIFT)) - 1) << Y_SHIFT;
+
+	private PackedCoordinate() {
+	}
+
+	/**
+	 *
+	 * @param x grid coordinate
+	 * @param y grid coordinate
+	 * @param z grid coordinate
+	 * @return the packed coordinate
+	 */
+	public static long pack(int x, int y, int z) {
+		return ((long) x << X_SHIFT)
+			| (((long) y << Y_SHIFT) & Y_MASK)
+			| (z & Z_MASK);
+	}
+
+	/**
+	 *
+	 * @param coord not altered
+	 * @return the packed coordinate
+	 */
+	public static long pack(Coordinate coord) {
+		return pack(coord.getX(), coord.getY(), coord.getZ());
+	}
+
+	/**
+	 * Packs the coordinate containing a point. Same as
+	 * {@link Point#toCoord()} without the new instance.
+	 *
+	 * @param x game space
+	 * @param y game space
+	 * @param z game space
+	 * @return the packed coordinate
+	 */
+	public static long fromPoint(float x, float y, float z) {
+		return neighbour(
+			pack(
+				Math.floorDiv((int) x, RenderCell.GAME_DIAGLENGTH),
+				Math.floorDiv((int) y, RenderCell.GAME_DIAGLENGTH) * 2 + 1,
+				Math.floorDiv((int) z, RenderCell.GAME_EDGELENGTH)
+			),
+			Coordinate.getNeighbourSide(
+				x % RenderCell.GAME_DIAGLENGTH,
+				y % RenderCell.GAME_DIAGLENGTH
+			)
+		);
+	}
+
+	/**
+	 *
+	 * @param point not altered
+	 * @return the packed coordinate containing the point
+	 */
+	public static long fromPoint(Point point) {
+		return fromPoint(point.getX(), point.getY(), point.getZ());
+	}
+
+	/**
+	 *
+	 * @param packed
+	 * @return grid coordinate
+	 */
+	public static int getX(long packed) {
+		return (int) (packed >> X_SHIFT);
+	}
+
+	/**
+	 *
+	 * @param packed
+	 * @return grid coordinate
+	 */
+	public static int getY(long packed) {
+		return (int) ((packed << (64 - X_SHIFT)) >> (64 - X_SHIFT + Y_SHIFT));
+	}
+
+	/**
+	 *
+	 * @param packed
+	 * @return grid coordinate
+	 */
+	public static int getZ(long packed) {
+		return (int) ((packed << (64 - Y_SHIFT)) >> (64 - Y_SHIFT));
+	}
+
+	/**
+	 * Writes a packed coordinate into a coordinate object.
+	 *
+	 * @param packed
+	 * @param target gets altered
+	 * @return the target
+	 */
+	public static Coordinate unpack(long packed, Coordinate target) {
+		return target.set(getX(packed), getY(packed), getZ(packed));
+	}
+
+	/**
+	 *
+	 * @param packed
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return the packed coordinate moved by the vector
+	 */
+	public static long add(long packed, int x, int y, int z) {
+		return pack(getX(packed) + x, getY(packed) + y, getZ(packed) + z);
+	}
+
+	/**
+	 * The neighbour in the staggered rows, same as
+	 * {@link Coordinate#goToNeighbour(int)}. 8 is the coordinate itself.
+	 *
+	 * @param packed
+	 * @param neighbourSide 0-8
+	 * @return the packed neighbour
+	 */
+	public static long neighbour(long packed, int neighbourSide) {
+		int x = getX(packed);
+		int y = getY(packed);
+		switch (neighbourSide) {
+			case 0:
+				y -= 2;
+				break;
+			case 1:
+				x += y % 2 == 0 ? 0 : 1;
+				y--;
+				break;
+			case 2:
+				x++;
+				break;
+			case 3:
+				x += y % 2 == 0 ? 0 : 1;
+				y++;
+				break;
+			case 4:
+				y += 2;
+				break;
+			case 5:
+				x -= y % 2 == 0 ? 1 : 0;
+				y++;
+				break;
+			case 6:
+				x--;
+				break;
+			case 7:
+				x -= y % 2 == 0 ? 1 : 0;
+				y--;
+				break;
+			default:
+				return packed;
+		}
+		return pack(x, y, getZ(packed));
+	}
+
+	/**
+	 *
+	 * @param packed
+	 * @return the x coordinate of the chunk containing the coordinate
+	 */
+	public static int getChunkX(long packed) {
+		return Math.floorDiv(getX(packed), Chunk.getBlocksX());
+	}
+
+	/**
+	 *
+	 * @param packed
+	 * @return the y coordinate of the chunk containing the coordinate
+	 */
+	public static int getChunkY(long packed) {
+		return Math.floorDiv(getY(packed), Chunk.getBlocksY());
+	}
+
+	/**
+	 * The index of the cell in the {@link ChunkStorage} of the chunk
+	 * containing the coordinate.
+	 *
+	 * @param packed z must be inside the chunk
+	 * @return cell index
+	 */
+	public static int getLocalIndex(long packed) {
+		int blocksX = Chunk.getBlocksX();
+		int blocksY = Chunk.getBlocksY();
+		return (getZ(packed) * blocksY + Math.floorMod(getY(packed), blocksY)) * blocksX
+			+ Math.floorMod(getX(packed), blocksX);
+	}
+
+	/**
+	 *
+	 * @param packed
+	 * @return e.g. "3,-2,5"
+	 */
+	public static String toString(long packed) {
+		return getX(packed) + "," + getY(packed) + "," + getZ(packed);
+	}
+}
@@ -0,0 +1,450 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import com.badlogic.gdx.utils.IntIntMap;
+
+/**
+ * A storage which saves every different combination of id and value once in a
+ * palette. Each cell only stores the index into the palette. The indices are
+ * bit packed into longs. The bit width starts at zero (only air) and grows when
+ * new blocks appear.<br>
+ * Health is almost always 100, so only damaged cells are stored in a sparse
+ * side table.
+ *
+ * @author Benedikt Vogler
+ */
+public class PaletteChunkStorage extends ChunkStorage {
+
+	/**
+	 * up to this palette size the palette is searched linearly
+	 */
+	private static final int LINEAR_LOOKUP = 16;
+	/**
+	 * maximum bit width. Enough for every combination of id and value.
+	 */
+	private static final int MAX_BITS = 16;
+
+	/**
+	 * the amount of cells
+	 */
+	private final int cells;
+	/**
+	 * first byte id, second byte value. The first entry is always air.
+	 */
+	private int[] palette = new int[1];
+	private int paletteSize = 1;
+	/**
+	 * maps palette entries to palette indices. Only used for big palettes.
+	 */
+	private IntIntMap paletteLookup;
+	/**
+	 * bits per cell. Either 0, 1, 2, 4, 8 or 16 so that no index is split
+	 * between two words.
+	 */
+	private int bits;
+	/**
+	 * log2 of the amount of cells in one word
+	 */
+	private int cellsPerWordLog;
+	private long mask;
+	/**
+	 * packed palette indices, null if every cell is air
+	 */
+	private long[] words;
+	/**
+	 * cell index to health. Contains only cells where the health is not 100.
+	 * Null if empty.
+	 */
+	private IntIntMap damaged;
+
+	/**
+	 * Creates a storage filled with air with full health.
+	 *
+	 * @param blocksX index space in x
+	 * @param blocksY index space in y
+	 * @param blocksZ index space in z
+	 */
+	public PaletteChunkStorage(int blocksX, int blocksY, int blocksZ) {
+		super(blocksX, blocksY, blocksZ);
+		cells = layerSize * blocksZ;
+	}
+
+	/**
+	 * Get the palette index of a cell.
+	 *
+	 * @param i cell index
+	 * @return
+	 */
+	private int getPaletteIndex(int i) {
+		if (bits == 0) {
+			return 0;
+		}
+		return (int) ((words[i >>> cellsPerWordLog] >>> ((i & ((1 << cellsPerWordLog) - 1)) * bits)) & mask);
+	}
+
+	/**
+	 * Set the palette index of a cell. The index must fit into the current bit
+	 * width.
+	 *
+	 * @param i cell index
+	 * @param p palette index
+	 */
+	private void setPaletteIndex(int i, int p) {
+		if (bits == 0) {
+			return;//only air can be stored, p is always 0
+		}
+		int w = i >>> cellsPerWordLog;
+		int offset = (i & ((1 << cellsPerWordLog) - 1)) * bits;
+		words[w] = (words[w] & ~(mask << offset)) | ((long) p << offset);
+	}
+
+	/**
+	 * Finds the palette index of an entry. Adds the entry if it is not in the
+	 * palette.
+	 *
+	 * @param id
+	 * @param value
+	 * @return
+	 */
+	private int getOrAdd(byte id, byte value) {
+		int entry = (id & 255) | ((value & 255) << 8);
+		if (paletteLookup == null) {
+			for (int p = 0; p < paletteSize; p++) {
+				if (palette[p] == entry) {
+					return p;
+				}
+			}
+		} else {
+			int p = paletteLookup.get(entry, -1);
+			if (p >= 0) {
+				return p;
+			}
+		}
+
+		//not found, add it
+		if (paletteSize >= 1 << bits) {
+			compact();
+			//grow if compacting did not free enough space
+			if (paletteSize >= (1 << bits) - ((1 << bits) >> 2)) {
+				repack(bits == 0 ? 1 : bits << 1);
+			}
+		}
+		if (paletteSize == palette.length) {
+			int[] newPalette = new int[palette.length << 1];
+			System.arraycopy(palette, 0, newPalette, 0, paletteSize);
+			palette = newPalette;
+		}
+		int p = paletteSize;
+		palette[p] = entry;
+		paletteSize++;
+		if (paletteLookup != null) {
+			paletteLookup.put(entry, p);
+		} else if (paletteSize > LINEAR_LOOKUP) {
+			paletteLookup = new IntIntMap(paletteSize * 2);
+			for (int i = 0; i < paletteSize; i++) {
+				paletteLookup.put(palette[i], i);
+			}
+		}
+		return p;
+	}
+
+	/**
+	 * Changes the bit width and copies every index.
+	 *
+	 * @param newBits
+	 */
+	private void repack(int newBits) {
+		if (newBits > MAX_BITS) {
+			throw new IllegalStateException("Palette overflow");
+		}
+		if (newBits == bits) {
+			return;
+		}
+		int oldBits = bits;
+		long[] oldWords = words;
+		int oldCellsPerWordLog = cellsPerWordLog;
+		long oldMask = mask;
+
+		bits = newBits;
+		if (newBits == 0) {
+			words = null;
+			cellsPerWordLog = 0;
+			mask = 0;
+		} else {
+			cellsPerWordLog = Integer.numberOfTrailingZeros(64 / newBits);
+			mask = (1L << newBits) - 1;
+			words = new long[(cells + (1 << cellsPerWordLog) - 1) >>> cellsPerWordLog];
+			if (oldBits > 0) {
+				for (int i = 0; i < cells; i++) {
+					int p = (int) ((oldWords[i >>> oldCellsPerWordLog] >>> ((i & ((1 << oldCellsPerWordLog) - 1)) * oldBits)) & oldMask);
+					setPaletteIndex(i, p);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes unused entries from the palette and shrinks the bit width if
+	 * possible. O(cells)
+	 */
+	public void compact() {
+		int[] newIndex = new int[paletteSize];//0 means unused
+		for (int i = 0; i < cells; i++) {
+			newIndex[getPaletteIndex(i)] = 1;
+		}
+		//air stays at 0
+		int newSize = 1;
+		newIndex[0] = 0;
+		for (int p = 1; p < paletteSize; p++) {
+			if (newIndex[p] != 0) {
+				newIndex[p] = newSize;
+				palette[newSize] = palette[p];
+				newSize++;
+			} else {
+				newIndex[p] = -1;
+			}
+		}
+		if (newSize == paletteSize) {
+			return;
+		}
+		for (int i = 0; i < cells; i++) {
+			setPaletteIndex(i, newIndex[getPaletteIndex(i)]);
+		}
+		paletteSize = newSize;
+		if (paletteLookup != null) {
+			paletteLookup.clear();
+			for (int p = 0; p < paletteSize; p++) {
+				paletteLookup.put(palette[p], p);
+			}
+		}
+		//shrink
+		int neededBits = 0;
+		while ((1 << neededBits) < paletteSize) {
+			neededBits = neededBits == 0 ? 1 : neededBits << 1;
+		}
+		if (neededBits < bits) {
+			repack(neededBits);
+		}
+	}
+
+	private byte getHealthAt(int i) {
+		if (damaged == null) {
+			return 100;
+		}
+		return (byte) damaged.get(i, 100);
+	}
+
+	private void setHealthAt(int i, byte health) {
+		if (health == 100) {
+			if (damaged != null) {
+				damaged.remove(i, 100);
+				if (damaged.size == 0) {
+					damaged = null;
+				}
+			}
+		} else {
+			if (damaged == null) {
+				damaged = new IntIntMap(8);
+			}
+			damaged.put(i, health);
+		}
+	}
+
+	@Override
+	public byte getId(int x, int y, int z) {
+		return (byte) palette[getPaletteIndex(index(x, y, z))];
+	}
+
+	@Override
+	public byte getValue(int x, int y, int z) {
+		return (byte) (palette[getPaletteIndex(index(x, y, z))] >> 8);
+	}
+
+	@Override
+	public byte getHealth(int x, int y, int z) {
+		return getHealthAt(index(x, y, z));
+	}
+
+	@Override
+	public int getCell(int index) {
+		int entry = palette[getPaletteIndex(index)];
+		return (byte) entry + ((byte) (entry >> 8) << 8) + (getHealthAt(index) << 16);
+	}
+
+	@Override
+	public void setCell(int x, int y, int z, byte id, byte value, byte health) {
+		int i = index(x, y, z);
+		setPaletteIndex(i, getOrAdd(id, value));
+		setHealthAt(i, health);
+	}
+
+	@Override
+	public boolean setValue(int x, int y, int z, byte value) {
+		int i = index(x, y, z);
+		int entry = palette[getPaletteIndex(i)];
+		if ((byte) (entry >> 8) == value) {
+			return false;
+		}
+		setPaletteIndex(i, getOrAdd((byte) entry, value));
+		return true;
+	}
+
+	@Override
+	public boolean setHealth(int x, int y, int z, byte health) {
+		int i = index(x, y, z);
+		if (getHealthAt(i) == health) {
+			return false;
+		}
+		setHealthAt(i, health);
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		palette = new int[1];
+		paletteSize = 1;
+		paletteLookup = null;
+		damaged = null;
+		repack(0);
+	}
+
+	@Override
+	public void clearLayer(int z) {
+		for (int i = z * layerSize, end = i + layerSize; i < end; i++) {
+			setPaletteIndex(i, 0);
+			if (damaged != null) {
+				setHealthAt(i, (byte) 100);
+			}
+		}
+	}
+
+	@Override
+	public boolean isLayerEmpty(int z) {
+		if (bits == 0) {
+			return true;
+		}
+		for (int i = z * layerSize, end = i + layerSize; i < end; i++) {
+			if ((palette[getPaletteIndex(i)] & 255) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void getLayer(int z, byte[] ids, byte[] values) {
+		for (int i = z * layerSize, j = 0; j < layerSize; i++, j++) {
+			int entry = palette[getPaletteIndex(i)];
+			ids[j] = (byte) entry;
+			if (values != null) {
+				values[j] = (byte) (entry >> 8);
+			}
+		}
+	}
+
+	@Override
+	public void setLayer(int z, byte[] ids, byte[] values) {
+		for (int i = z * layerSize, j = 0; j < layerSize; i++, j++) {
+			setPaletteIndex(i, getOrAdd(ids[j], values[j]));
+			if (damaged != null) {
+				setHealthAt(i, (byte) 100);
+			}
+		}
+	}
+
+	@Override
+	public void getColumn(int x, int y, byte[] ids, byte[] values) {
+		int i = index(x, y, 0);
+		for (int z = 0; z < blocksZ; z++, i += layerSize) {
+			int entry = palette[getPaletteIndex(i)];
+			ids[z] = (byte) entry;
+			if (values != null) {
+				values[z] = (byte) (entry >> 8);
+			}
+		}
+	}
+
+	@Override
+	public void setColumn(int x, int y, byte[] ids, byte[] values) {
+		int i = index(x, y, 0);
+		for (int z = 0; z < blocksZ; z++, i += layerSize) {
+			setPaletteIndex(i, getOrAdd(ids[z], values[z]));
+			if (damaged != null) {
+				setHealthAt(i, (byte) 100);
+			}
+		}
+	}
+
+	@Override
+	public int getTopZ(int x, int y) {
+		int i = index(x, y, blocksZ - 1);
+		for (int z = blocksZ - 1; z >= 0; z--, i -= layerSize) {
+			if ((palette[getPaletteIndex(i)] & 255) != 0) {
+				return z;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public long getMemoryUsage() {
+		long size = OBJECT_HEADER + ARRAY_HEADER + palette.length * 4;
+		if (words != null) {
+			size += ARRAY_HEADER + words.length * 8;
+		}
+		//hash maps use two int tables with some free space
+		if (paletteLookup != null) {
+			size += OBJECT_HEADER + 2 * ARRAY_HEADER + paletteLookup.size * 16;
+		}
+		if (damaged != null) {
+			size += OBJECT_HEADER + 2 * ARRAY_HEADER + damaged.size * 16;
+		}
+		return size;
+	}
+
+	/**
+	 * Get the amount of different blocks in the palette.
+	 *
+	 * @return
+	 */
+	public int getPaletteSize() {
+		return paletteSize;
+	}
+
+	/**
+	 *
+	 * @return bits used per cell
+	 */
+	public int getBitsPerCell() {
+		return bits;
+	}
+}
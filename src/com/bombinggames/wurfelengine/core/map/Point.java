@@ -32,7 +32,6 @@ package com.bombinggames.wurfelengine.core.map;
 
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
-import com.bombinggames.wurfelengine.WE;
 import com.bombinggames.wurfelengine.core.Camera;
 import com.bombinggames.wurfelengine.core.Controller;
 import com.bombinggames.wurfelengine.core.GameView;
@@ -213,8 +212,9 @@ public class Point extends Vector3 implements Position {
 			return 0;
 		}
 		
+		BlockAccessor blocks = Controller.getMap().getBlockAccessor();
 		if (z < 0) {
-			return (byte) WE.getCVars().getValueI("groundBlockID");
+			return blocks.getGroundBlock();
 		}
 
 		//bloated in-place code to avoid heap call with toCoord()
@@ -255,7 +255,7 @@ public class Point extends Vector3 implements Position {
 				break;
 		}
 
-		return Controller.getMap().getBlock(xCoord, yCoord, (int) (z / RenderCell.GAME_EDGELENGTH));
+		return blocks.getBlock(xCoord, yCoord, (int) (z / RenderCell.GAME_EDGELENGTH));
 	}
     
 	/**
@@ -523,6 +523,7 @@ public class Point extends Vector3 implements Position {
 		
 		Coordinate isectC = toCoord();
 		Point isectP = new Point(0, 0, 0);
+		BlockAccessor blocks = Controller.getMap().getBlockAccessor();
 		//curent coordinate position
         int curX = isectC.getX();
         int curY = isectC.getY();
@@ -555,7 +556,7 @@ public class Point extends Vector3 implements Position {
 				||
 				(curZ*RenderCell.GAME_EDGELENGTH < view.getRenderStorage().getZRenderingLimit() && !view.getRenderStorage().isClipped(isectC))
 			) {
-				byte id = Controller.getMap().getBlockId(isectC);
+				byte id = blocks.getBlockId(isectC);
 				if (
 					id != 0
 					&& (hitCondition == null || hitCondition.test(id))
@@ -661,6 +662,7 @@ public class Point extends Vector3 implements Position {
 		Point traverseP = cpy();
 		dir.cpy().nor().scl(3);
 		Coordinate isectC = traverseP.toCoord();
+		BlockAccessor blocks = Controller.getMap().getBlockAccessor();
 		int lastCoordX = 0;
 		int lastCoordY = 0;
 		int lastCoordZ = 0;
@@ -685,7 +687,7 @@ public class Point extends Vector3 implements Position {
 				||
 				(lastCoordZ*RenderCell.GAME_EDGELENGTH < view.getRenderStorage().getZRenderingLimit() && !view.getRenderStorage().isClipped(isectC))
 			) {
-				byte id = isectC.getBlockId();
+				byte id = blocks.getBlockId(isectC);
 				if (
 					id != 0
 					&& (hitCondition == null || hitCondition.test(id))
@@ -0,0 +1,332 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates a rectangle of chunks and writes them into a map directory without
+ * loading them into a {@link Map}. Every worker thread generates one chunk at a
+ * time and drops it after writing, so the memory use does not depend on the
+ * size of the rectangle. Needs no GL context.<br>
+ * Chunks which are already stored are skipped. Entities spawned by the
+ * generator are not written because they need a running map.
+ *
+ * @author Benedikt Vogler
+ * @see GenerationTask
+ */
+public class Pregenerator {
+
+	/**
+	 * Gets informed about the progress. Called from the worker threads.
+	 */
+	@FunctionalInterface
+	public interface Listener {
+
+		/**
+		 *
+		 * @param done chunks which are written or skipped
+		 * @param total
+		 */
+		public void progress(long done, long total);
+	}
+
+	private final File directory;
+	private final Generator generator;
+	private final int blocksX, blocksY, blocksZ;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private boolean regions;
+	private boolean compress = true;
+	private final AtomicBoolean cancelled = new AtomicBoolean();
+
+	/**
+	 *
+	 * @param directory the map directory or the directory of a save slot
+	 * @param generator
+	 * @param blocksX chunk size
+	 * @param blocksY chunk size
+	 * @param blocksZ chunk size
+	 */
+	public Pregenerator(File directory, Generator generator, int blocksX, int blocksY, int blocksZ) {
+		this.directory = directory;
+		this.generator = generator;
+		this.blocksX = blocksX;
+		this.blocksY = blocksY;
+		this.blocksZ = blocksZ;
+	}
+
+	/**
+	 *
+	 * @param threads worker threads, default is one per core
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 *
+	 * @param regions if true the chunks are stored in {@link RegionFile}s
+	 */
+	public void setRegions(boolean regions) {
+		this.regions = regions;
+	}
+
+	/**
+	 *
+	 * @param compress if true the chunk files are compressed, default is true
+	 */
+	public void setCompression(boolean compress) {
+		this.compress = compress;
+	}
+
+	/**
+	 * Stops a running {@link #run} after the chunks currently being generated.
+	 */
+	public void cancel() {
+		cancelled.set(true);
+	}
+
+	/**
+	 * Generates and writes every chunk in the rectangle. Blocks until done.
+	 *
+	 * @param left chunk coordinate, inclusive
+	 * @param top chunk coordinate, inclusive
+	 * @param right chunk coordinate, inclusive
+	 * @param bottom chunk coordinate, inclusive
+	 * @param listener can be null
+	 * @return
+	 * @throws InterruptedException if the calling thread got interrupted
+	 */
+	public Result run(int left, int top, int right, int bottom, Listener listener) throws InterruptedException {
+		long width = Math.max(0, (long) right - left + 1);
+		long total = width * Math.max(0, (long) bottom - top + 1);
+		AtomicLong next = new AtomicLong();
+		AtomicLong done = new AtomicLong();
+		Result result = new Result(total);
+		cancelled.set(false);
+		directory.mkdirs();
+
+		Runtime runtime = Runtime.getRuntime();
+		long start = System.nanoTime();
+		ArrayList<Thread> workers = new ArrayList<>(threads);
+		for (int t = 0; t < Math.min(threads, Math.max(1, total)); t++) {
+			Thread worker = new Thread(() -> {
+				ChunkStorage storage = ChunkStorage.create(blocksX, blocksY, blocksZ, false);
+				int[] cells = new int[blocksX * blocksY * blocksZ];
+				long i;
+				while (!cancelled.get() && (i = next.getAndIncrement()) < total) {
+					int chunkX = (int) (left + i % width);
+					int chunkY = (int) (top + i / width);
+					try {
+						if (ChunkFiles.exists(directory, chunkX, chunkY)) {
+							result.skipped.incrementAndGet();
+						} else {
+							result.bytes.addAndGet(generate(chunkX, chunkY, storage, cells));
+							result.generated.incrementAndGet();
+						}
+					} catch (IOException | RuntimeException ex) {
+						result.addFailure(chunkX + "," + chunkY + ": " + ex);
+					}
+					result.peakHeap.accumulateAndGet(runtime.totalMemory() - runtime.freeMemory(), Math::max);
+					long count = done.incrementAndGet();
+					if (listener != null) {
+						listener.progress(count, total);
+					}
+				}
+			}, "Pregenerator " + t);
+			worker.setDaemon(true);
+			workers.add(worker);
+			worker.start();
+		}
+		try {
+			for (Thread worker : workers) {
+				worker.join();
+			}
+		} catch (InterruptedException ex) {
+			cancel();
+			throw ex;
+		}
+		result.nanos = System.nanoTime() - start;
+		result.cancelled = cancelled.get();
+		return result;
+	}
+
+	/**
+	 * Generates one chunk and writes it.
+	 *
+	 * @param chunkX
+	 * @param chunkY
+	 * @param storage reused by the worker
+	 * @param cells reused by the worker
+	 * @return bytes written
+	 * @throws IOException
+	 */
+	private long generate(int chunkX, int chunkY, ChunkStorage storage, int[] cells) throws IOException {
+		GenerationTask.generate(
+			generator,
+			chunkX * blocksX,
+			chunkY * blocksY,
+			blocksX,
+			blocksY,
+			blocksZ,
+			cells,
+			false//the workers already use every core
+		);
+		int i = 0;
+		for (int x = 0; x < blocksX; x++) {
+			for (int y = 0; y < blocksY; y++) {
+				for (int z = 0; z < blocksZ; z++) {
+					int generated = cells[i++];
+					storage.setCell(x, y, z, (byte) (generated & 255), (byte) ((generated >> 8) & 255), (byte) 100);
+				}
+			}
+		}
+		//the logic blocks are unknown without the game's block factory, the chunk looks for them when loaded
+		return new ChunkSnapshot(chunkX, chunkY, storage, null, null, compress).write(directory, regions);
+	}
+
+	/**
+	 * Statistics of a run.
+	 */
+	public static class Result {
+
+		private final long total;
+		private final AtomicLong generated = new AtomicLong();
+		private final AtomicLong skipped = new AtomicLong();
+		private final AtomicLong bytes = new AtomicLong();
+		private final AtomicLong peakHeap = new AtomicLong();
+		private final ArrayList<String> failures = new ArrayList<>(0);
+		private long nanos;
+		private boolean cancelled;
+
+		private Result(long total) {
+			this.total = total;
+		}
+
+		private synchronized void addFailure(String failure) {
+			failures.add(failure);
+		}
+
+		/**
+		 *
+		 * @return chunks in the rectangle
+		 */
+		public long getTotal() {
+			return total;
+		}
+
+		/**
+		 *
+		 * @return generated and written chunks
+		 */
+		public long getGenerated() {
+			return generated.get();
+		}
+
+		/**
+		 *
+		 * @return chunks which were already stored
+		 */
+		public long getSkipped() {
+			return skipped.get();
+		}
+
+		/**
+		 *
+		 * @return
+		 */
+		public long getBytesWritten() {
+			return bytes.get();
+		}
+
+		/**
+		 *
+		 * @return highest used heap seen after a chunk in bytes
+		 */
+		public long getPeakHeap() {
+			return peakHeap.get();
+		}
+
+		/**
+		 *
+		 * @return
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+
+		/**
+		 *
+		 * @return generated chunks per second
+		 */
+		public double getChunksPerSecond() {
+			return nanos == 0 ? 0 : generated.get() * 1e9 / nanos;
+		}
+
+		/**
+		 *
+		 * @return the chunks which could not be written
+		 */
+		public synchronized ArrayList<String> getFailures() {
+			return new ArrayList<>(failures);
+		}
+
+		/**
+		 *
+		 * @return
+		 */
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+				Locale.ROOT,
+				"%s%d of %d chunks generated, %d skipped, %d failed in %.1f s%n%.1f chunks/s, %.2f MB written, peak heap %.1f MB",
+				cancelled ? "Cancelled. " : "",
+				generated.get(),
+				total,
+				skipped.get(),
+				failures.size(),
+				nanos / 1e9,
+				getChunksPerSecond(),
+				bytes.get() / (1024.0 * 1024.0),
+				peakHeap.get() / (1024.0 * 1024.0)
+			);
+		}
+	}
+}
@@ -0,0 +1,329 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Stores the files of a square of {@link #GRID}x{@link #GRID} chunks in one
+ * file. The head of the file is a table with the sector offset and byte length
+ * of every chunk. The chunks are stored in sectors of {@link #SECTOR_SIZE}
+ * bytes. Free sectors are reused.<br>
+ * A chunk is always written into free sectors and forced to the disk before
+ * the table entry is changed, so the old version stays readable until the new
+ * one is complete, also after a crash.
+ * <br>
+ * Reads go through a memory mapped buffer. The instances are cached per file
+ * and thread safe.
+ *
+ * @author Benedikt Vogler
+ */
+public class RegionFile {
+
+	/**
+	 * chunks per side of a region
+	 */
+	public static final int GRID = 16;
+	/**
+	 * the file suffix of region files
+	 */
+	public static final String SUFFIX = "wer";
+	private static final int SECTOR_SIZE = 512;
+	private static final byte[] MAGIC = {'W', 'E', 'R', 'F'};
+	private static final int VERSION = 1;
+	/**
+	 * magic, version, grid, sector size
+	 */
+	private static final int HEADER_SIZE = 16;
+	private static final int TABLE_SIZE = GRID * GRID * 8;
+	private static final int FIRST_SECTOR = (HEADER_SIZE + TABLE_SIZE + SECTOR_SIZE - 1) / SECTOR_SIZE;
+
+	private static final HashMap<File, RegionFile> OPEN = new HashMap<>(8);
+
+	/**
+	 * Get the region file containing a chunk. Opens it if needed.
+	 *
+	 * @param directory the directory containing the region files
+	 * @param chunkX
+	 * @param chunkY
+	 * @param create if true creates the file if it does not exist
+	 * @return null if it does not exist and should not be created
+	 * @throws IOException
+	 */
+	public static RegionFile get(File directory, int chunkX, int chunkY, boolean create) throws IOException {
+		File file = getFile(directory, chunkX, chunkY);
+		synchronized (OPEN) {
+			RegionFile region = OPEN.get(file);
+			if (region == null) {
+				if (!create && !file.exists()) {
+					return null;
+				}
+				region = new RegionFile(file);
+				OPEN.put(file, region);
+			}
+			return region;
+		}
+	}
+
+	/**
+	 *
+	 * @param directory the directory containing the region files
+	 * @param chunkX
+	 * @param chunkY
+	 * @return the file of the region containing the chunk
+	 */
+	public static File getFile(File directory, int chunkX, int chunkY) {
+		return new File(
+			directory,
+			"region" + Math.floorDiv(chunkX, GRID) + "," + Math.floorDiv(chunkY, GRID) + "." + SUFFIX
+		);
+	}
+
+	/**
+	 * Closes every open region file in a directory, e.g. before the files are
+	 * copied.
+	 *
+	 * @param directory if null closes every region file
+	 */
+	public static void closeAll(File directory) {
+		synchronized (OPEN) {
+			Iterator<RegionFile> it = OPEN.values().iterator();
+			while (it.hasNext()) {
+				RegionFile region = it.next();
+				if (directory == null || region.file.getParentFile().equals(directory)) {
+					region.close();
+					it.remove();
+				}
+			}
+		}
+	}
+
+	private final File file;
+	private final FileChannel channel;
+	/**
+	 * sector offsets of the chunks, 0 if not stored
+	 */
+	private final int[] offsets = new int[GRID * GRID];
+	/**
+	 * byte lengths of the chunks
+	 */
+	private final int[] lengths = new int[GRID * GRID];
+	private final BitSet usedSectors = new BitSet();
+	/**
+	 * the amount of sectors in the file
+	 */
+	private int sectorCount;
+	private MappedByteBuffer mapped;
+
+	/**
+	 * Opens or creates a region file.
+	 *
+	 * @param file
+	 * @throws IOException if the file is no region file
+	 */
+	private RegionFile(File file) throws IOException {
+		this.file = file;
+		channel = FileChannel.open(
+			file.toPath(),
+			StandardOpenOption.READ,
+			StandardOpenOption.WRITE,
+			StandardOpenOption.CREATE
+		);
+		if (channel.size() == 0) {
+			ByteBuffer header = ByteBuffer.allocate(FIRST_SECTOR * SECTOR_SIZE);
+			header.put(MAGIC).putInt(VERSION).putInt(GRID).putInt(SECTOR_SIZE);
+			header.rewind();
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+		} else {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + TABLE_SIZE);
+			while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+			}
+			header.flip();
+			for (byte b : MAGIC) {
+				if (header.remaining() == 0 || header.get() != b) {
+					channel.close();
+					throw new IOException(file + " is no region file.");
+				}
+			}
+			header.getInt();//version
+			if (header.getInt() != GRID || header.getInt() != SECTOR_SIZE) {
+				channel.close();
+				throw new IOException(file + " has an unsupported layout.");
+			}
+			for (int i = 0; i < GRID * GRID; i++) {
+				offsets[i] = header.getInt();
+				lengths[i] = header.getInt();
+				if (offsets[i] != 0) {
+					usedSectors.set(offsets[i], offsets[i] + getSectors(lengths[i]));
+				}
+			}
+		}
+		usedSectors.set(0, FIRST_SECTOR);
+		sectorCount = (int) Math.max(FIRST_SECTOR, (channel.size() + SECTOR_SIZE - 1) / SECTOR_SIZE);
+	}
+
+	private static int getSectors(int length) {
+		return (length + SECTOR_SIZE - 1) / SECTOR_SIZE;
+	}
+
+	private static int getEntry(int chunkX, int chunkY) {
+		return Math.floorMod(chunkX, GRID) + Math.floorMod(chunkY, GRID) * GRID;
+	}
+
+	/**
+	 *
+	 * @param chunkX
+	 * @param chunkY
+	 * @return true if the chunk is stored in this region
+	 */
+	public synchronized boolean hasChunk(int chunkX, int chunkY) {
+		return offsets[getEntry(chunkX, chunkY)] != 0;
+	}
+
+	/**
+	 * Reads a chunk from the mapped file.
+	 *
+	 * @param chunkX
+	 * @param chunkY
+	 * @return the content of the chunk, null if not stored
+	 * @throws IOException
+	 */
+	public synchronized byte[] read(int chunkX, int chunkY) throws IOException {
+		int entry = getEntry(chunkX, chunkY);
+		if (offsets[entry] == 0) {
+			return null;
+		}
+		long start = (long) offsets[entry] * SECTOR_SIZE;
+		int length = lengths[entry];
+		if (mapped == null || start + length > mapped.capacity()) {
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (start + length > mapped.capacity()) {
+			throw new IOException("Chunk " + chunkX + "," + chunkY + " is outside of " + file);
+		}
+		byte[] content = new byte[length];
+		ByteBuffer view = mapped.duplicate();
+		view.position((int) start);
+		view.get(content);
+		return content;
+	}
+
+	/**
+	 * Writes a chunk into free sectors and then points the table to it. Both
+	 * are forced to the disk before the old sectors are reused.
+	 *
+	 * @param chunkX
+	 * @param chunkY
+	 * @param content the content of the chunk
+	 * @throws IOException
+	 */
+	public synchronized void write(int chunkX, int chunkY, byte[] content) throws IOException {
+		int entry = getEntry(chunkX, chunkY);
+		int sectors = getSectors(content.length);
+
+		//first fit
+		int offset = usedSectors.nextClearBit(FIRST_SECTOR);
+		while (offset < sectorCount) {
+			int end = usedSectors.nextSetBit(offset);
+			if (end < 0 || end - offset >= sectors) {
+				break;
+			}
+			offset = usedSectors.nextClearBit(end);
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(content);
+		long position = (long) offset * SECTOR_SIZE;
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, position + buffer.position());
+		}
+		//the table must not point to sectors which are not written yet
+		channel.force(false);
+
+		ByteBuffer tableEntry = ByteBuffer.allocate(8);
+		tableEntry.putInt(offset).putInt(content.length);
+		tableEntry.flip();
+		while (tableEntry.hasRemaining()) {
+			channel.write(tableEntry, HEADER_SIZE + entry * 8 + tableEntry.position());
+		}
+		//the old sectors must not be overwritten while the table points to them
+		channel.force(false);
+
+		//free the old sectors
+		if (offsets[entry] != 0) {
+			usedSectors.clear(offsets[entry], offsets[entry] + getSectors(lengths[entry]));
+		}
+		usedSectors.set(offset, offset + sectors);
+		offsets[entry] = offset;
+		lengths[entry] = content.length;
+		sectorCount = Math.max(sectorCount, offset + sectors);
+	}
+
+	/**
+	 *
+	 * @return the amount of stored chunks
+	 */
+	public synchronized int getChunkCount() {
+		int count = 0;
+		for (int offset : offsets) {
+			if (offset != 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 *
+	 * @return the file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	private synchronized void close() {
+		mapped = null;
+		try {
+			channel.close();
+		} catch (IOException ex) {
+			//already closed
+		}
+	}
+}
@@ -0,0 +1,421 @@
+/*
+ * If this software is used for a game the official „Wurfel Engine“ logo or its name must be visible in an intro screen or main menu.
+ *
+ * Copyright 2016 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors 
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map.rendering;
+
+import com.badlogic.gdx.utils.Array;
+import com.bombinggames.wurfelengine.core.Camera;
+import com.bombinggames.wurfelengine.core.gameobjects.AbstractEntity;
+import com.bombinggames.wurfelengine.core.gameobjects.Renderable;
+import com.bombinggames.wurfelengine.core.map.Chunk;
+import com.bombinggames.wurfelengine.core.map.Position;
+import java.util.Arrays;
+
+/**
+ * Builds the list of objects a camera renders in the order of rendering,
+ * called the "depthlist". The chunks and entities are collected on the main
+ * thread. {@link #build() } only reads them and writes into this builder so
+ * the lists of multiple cameras can be built in parallel. Only the cells in
+ * the depth order of a chunk are candidates, of those
+ * {@link Renderable#shouldBeRendered(Camera)} decides, possibly on a worker
+ * thread.
+ *
+ * @author Benedikt Vogler
+ * @see RenderChunk#getDepthOrder()
+ */
+public class DepthListBuilder {
+
+	/**
+	 * checks if the projected position is inside the view frustum
+	 *
+	 * @param pos
+	 * @param x center of the view in view space
+	 * @param y center of the view in view space
+	 * @param widthProj width of the projection
+	 * @param heightProj height of the projection
+	 * @return
+	 */
+	public static boolean inViewFrustum(Position pos, float x, float y, int widthProj, int heightProj) {
+		int vspY = pos.getViewSpcY();
+		if (!(
+				(y + (heightProj>>1))
+				>
+				(vspY - (RenderCell.VIEW_HEIGHT<<1))//bottom of sprite
+			&&
+				(vspY + RenderCell.VIEW_HEIGHT2 + RenderCell.VIEW_DEPTH)//top of sprite
+				>
+				y - (heightProj>>1))
+		)
+			return false;
+		int dist = (int) (pos.getViewSpcX()-x); //left side of sprite
+		//left and right check in one clause by using distance via squaring
+		return dist * dist < ( (widthProj >> 1) + RenderCell.VIEW_WIDTH2) * ((widthProj >> 1) + RenderCell.VIEW_WIDTH2);
+	}
+
+	/**
+	 * can be null
+	 */
+	private Camera camera;
+	private float x, y;
+	private int widthProj, heightProj;
+	private float zRenderingLimit;
+	private int maxSprites;
+
+	/**
+	 * the result, reused every frame
+	 */
+	private Renderable[] depthlist = new Renderable[1024];
+	private int size;
+	/**
+	 * entities with a covering cell, sorted by {@link #entKeys} in the build
+	 */
+	private AbstractEntity[] ents = new AbstractEntity[32];
+	/**
+	 * the depth key of the covering cell of {@link #ents}
+	 */
+	private int[] entKeys = new int[32];
+	/**
+	 * the depth of {@link #ents}
+	 */
+	private float[] entDepths = new float[32];
+	private int entCount;
+	/**
+	 * entities without a covering cell, rendered at the end
+	 */
+	private final Array<AbstractEntity> appendix = new Array<>(false, 16);
+	/**
+	 * the depth orders of the chunks which are merged
+	 */
+	private RenderCell[][] orders = new RenderCell[9][];
+	/**
+	 * the row ranges of {@link #orders}
+	 */
+	private int[][] rows = new int[9][];
+	/**
+	 * the amount of cells per layer of {@link #orders}
+	 */
+	private int[][] layers = new int[9][];
+	/**
+	 * the top left y coordinate of the chunks
+	 */
+	private int[] tops = new int[9];
+	/**
+	 * the visible depth keys of every chunk, inclusive
+	 */
+	private int[] keysFrom = new int[9], keysTo = new int[9];
+	private int chunks;
+	private long buildTime;
+
+	/**
+	 * Starts collecting the content of a new list.
+	 *
+	 * @param camera passed to {@link Renderable#shouldBeRendered(Camera)} of
+	 * the entities, can be null
+	 * @param x center of the view in view space
+	 * @param y center of the view in view space
+	 * @param widthProj width of the projection
+	 * @param heightProj height of the projection
+	 * @param zRenderingLimit game space
+	 * @param maxSprites the maximum length of the list without the entities
+	 * which have no covering cell
+	 */
+	public void begin(Camera camera, float x, float y, int widthProj, int heightProj, float zRenderingLimit, int maxSprites) {
+		this.camera = camera;
+		this.x = x;
+		this.y = y;
+		this.widthProj = widthProj;
+		this.heightProj = heightProj;
+		this.zRenderingLimit = zRenderingLimit;
+		this.maxSprites = maxSprites;
+		entCount = 0;
+		appendix.clear();
+		chunks = 0;
+	}
+
+	/**
+	 * Adds the cells of a chunk. Must be called on the main thread because
+	 * the depth order may be rebuilt.
+	 *
+	 * @param chunk
+	 */
+	public void addChunk(RenderChunk chunk) {
+		if (chunks == orders.length) {
+			orders = Arrays.copyOf(orders, chunks * 2);
+			rows = Arrays.copyOf(rows, chunks * 2);
+			layers = Arrays.copyOf(layers, chunks * 2);
+			tops = Arrays.copyOf(tops, chunks * 2);
+			keysFrom = Arrays.copyOf(keysFrom, chunks * 2);
+			keysTo = Arrays.copyOf(keysTo, chunks * 2);
+		}
+		orders[chunks] = chunk.getDepthOrder();
+		rows[chunks] = chunk.getDepthRows();
+		layers[chunks] = chunk.getDepthLayers();
+		tops[chunks] = chunk.getTopLeftCoordinateY();
+		chunks++;
+	}
+
+	/**
+	 * Adds an entity which is rendered before the cell covering it.
+	 *
+	 * @param ent
+	 * @param depthKey the {@link RenderChunk#getDepthKey(int, int) } of the
+	 * cell covering the entity
+	 */
+	public void addEntity(AbstractEntity ent, int depthKey) {
+		if (entCount == ents.length) {
+			ents = Arrays.copyOf(ents, entCount * 2);
+			entKeys = Arrays.copyOf(entKeys, entCount * 2);
+			entDepths = Arrays.copyOf(entDepths, entCount * 2);
+		}
+		ents[entCount] = ent;
+		entKeys[entCount] = depthKey;
+		entDepths[entCount] = ent.getDepth();
+		entCount++;
+	}
+
+	/**
+	 * Adds an entity which has no covering cell. It is rendered at the end.
+	 *
+	 * @param ent
+	 */
+	public void addUnsorted(AbstractEntity ent) {
+		appendix.add(ent);
+	}
+
+	/**
+	 * Sorts the entities and merges them with the visible rows of the
+	 * chunks. Only the rows inside the view and below the z rendering limit
+	 * are visited. Only reads the collected objects so it can run on another
+	 * thread than the main thread.
+	 */
+	public void build() {
+		long start = System.nanoTime();
+		int lastSize = size;
+		size = 0;
+		sortEntities();
+
+		int blocksY = Chunk.getBlocksY();
+		int blocksZ = Chunk.getBlocksZ();
+		//layers below the rendering limit
+		int layerEnd = 0;
+		while (layerEnd < blocksZ && layerEnd * RenderCell.GAME_EDGELENGTH < zRenderingLimit) {
+			layerEnd++;
+		}
+		//view space bounds of the rows, see inViewFrustum
+		float top = y + (heightProj >> 1) + (RenderCell.VIEW_HEIGHT << 1);
+		float bottom = y - (heightProj >> 1) - RenderCell.VIEW_HEIGHT2 - RenderCell.VIEW_DEPTH;
+		int radius = (widthProj >> 1) + RenderCell.VIEW_WIDTH2;
+
+		//find the range of depth keys with visible rows in every chunk
+		int keyFrom = Integer.MAX_VALUE;
+		int keyTo = Integer.MIN_VALUE;
+		for (int i = 0; i < chunks; i++) {
+			int rowFrom = -1;
+			int rowTo = -1;
+			if (layerEnd > 0) {
+				for (int row = 0; row < blocksY; row++) {
+					int vspY = -(tops[i] + row) * RenderCell.VIEW_DEPTH2;
+					if (vspY < top && vspY + (layerEnd - 1) * RenderCell.VIEW_HEIGHT > bottom) {
+						if (rowFrom < 0) {
+							rowFrom = row;
+						}
+						rowTo = row;
+					}
+				}
+			}
+			if (rowFrom < 0) {
+				//nothing visible
+				keysFrom[i] = 0;
+				keysTo[i] = -1;
+			} else {
+				keysFrom[i] = RenderChunk.getDepthKey(tops[i] + rowFrom, 0);
+				keysTo[i] = RenderChunk.getDepthKey(tops[i] + rowTo, layerEnd - 1);
+				keyFrom = Math.min(keyFrom, keysFrom[i]);
+				keyTo = Math.max(keyTo, keysTo[i]);
+			}
+		}
+
+		int ent = 0;
+		for (int key = keyFrom; key <= keyTo; key++) {
+			//an entity is rendered before the cells with the key of the cell covering it
+			ent = addEntities(ent, key);
+			for (int i = 0; i < chunks; i++) {
+				if (key < keysFrom[i] || key > keysTo[i]) {
+					continue;
+				}
+				RenderCell[] order = orders[i];
+				int[] chunkRows = rows[i];
+				int[] chunkLayers = layers[i];
+				//every fifth layer has a row with this key because key = 5y + 4z
+				for (int z = Math.floorMod(4 * key, 5); z < layerEnd; z += 5) {
+					int row = (key - 4 * z) / 5 - tops[i];
+					if (row < 0) {
+						break;//lower rows have higher layers
+					}
+					if (row >= blocksY || chunkLayers[z] == 0) {
+						continue;
+					}
+					int rowIndex = (row * blocksZ + z) * 2;
+					int from = chunkRows[rowIndex];
+					int to = chunkRows[rowIndex + 1];
+					if (from == to) {
+						continue;
+					}
+					int vspY = order[from].getPosition().getViewSpcY();
+					if (!(vspY > bottom && vspY < top)) {
+						continue;
+					}
+					//the first cell right of the left border
+					int lo = from;
+					int hi = to;
+					while (lo < hi) {
+						int mid = (lo + hi) >>> 1;
+						if (order[mid].getPosition().getViewSpcX() - x > -radius) {
+							hi = mid;
+						} else {
+							lo = mid + 1;
+						}
+					}
+					for (int c = lo; c < to && size < maxSprites; c++) {
+						RenderCell cell = order[c];
+						int dist = (int) (cell.getPosition().getViewSpcX() - x);
+						if (dist >= radius) {
+							break;//right of the right border
+						}
+						if (dist * dist < radius * radius
+							&& (camera == null ? !cell.isHidden() : cell.shouldBeRendered(camera))) {
+							add(cell);
+						}
+					}
+				}
+			}
+		}
+		addEntities(ent, Integer.MAX_VALUE);
+		for (int i = 0; i < chunks; i++) {
+			orders[i] = null;
+			rows[i] = null;
+			layers[i] = null;
+		}
+		//render every entity which has no parent block at the end of the list
+		for (int i = 0; i < appendix.size; i++) {
+			add(appendix.get(i));
+		}
+		appendix.clear();
+		if (size < lastSize) {
+			//release the objects of the last build
+			Arrays.fill(depthlist, size, lastSize, null);
+		}
+		buildTime = System.nanoTime() - start;
+	}
+
+	/**
+	 * Adds the sorted entities up to a depth key.
+	 *
+	 * @param ent index of the first entity which is not added yet
+	 * @param key inclusive
+	 * @return index of the first entity which is not added yet
+	 */
+	private int addEntities(int ent, int key) {
+		while (ent < entCount && entKeys[ent] <= key) {
+			AbstractEntity entity = ents[ent];
+			if (entity.shouldBeRendered(camera)
+				&& entity.getPosition().getZPoint() < zRenderingLimit
+				&& size < maxSprites) {
+				add(entity);
+			}
+			ents[ent] = null;
+			ent++;
+		}
+		return ent;
+	}
+
+	/**
+	 * Sorts the entities by the depth key of their covering cell and then by
+	 * their depth. Insertion sort because the entities are few and mostly
+	 * in the order of the last frame.
+	 */
+	private void sortEntities() {
+		AbstractEntity[] ents = this.ents;
+		int[] keys = entKeys;
+		float[] depths = entDepths;
+		for (int i = 1; i < entCount; i++) {
+			AbstractEntity ent = ents[i];
+			int key = keys[i];
+			float depth = depths[i];
+			int j = i - 1;
+			while (j >= 0 && (keys[j] > key || keys[j] == key && depths[j] > depth)) {
+				ents[j + 1] = ents[j];
+				keys[j + 1] = keys[j];
+				depths[j + 1] = depths[j];
+				j--;
+			}
+			ents[j + 1] = ent;
+			keys[j + 1] = key;
+			depths[j + 1] = depth;
+		}
+	}
+
+	/**
+	 * Adds an object at the end of the depthlist.
+	 *
+	 * @param n
+	 */
+	private void add(Renderable n) {
+		if (size == depthlist.length) {
+			depthlist = Arrays.copyOf(depthlist, size * 2);
+		}
+		depthlist[size++] = n;
+	}
+
+	/**
+	 *
+	 * @return the objects in the order of rendering, valid up to
+	 * {@link #size() }. Not copy safe.
+	 */
+	public Renderable[] getDepthList() {
+		return depthlist;
+	}
+
+	/**
+	 *
+	 * @return amount of objects in the depthlist
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 * @return duration of the last {@link #build() } in ns
+	 */
+	public long getBuildTime() {
+		return buildTime;
+	}
+}
@@ -32,7 +32,6 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas.AtlasRegion;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
-import com.bombinggames.wurfelengine.WE;
 import com.bombinggames.wurfelengine.core.Camera;
 import com.bombinggames.wurfelengine.core.Controller;
 import com.bombinggames.wurfelengine.core.GameView;
@@ -44,8 +43,10 @@ import com.bombinggames.wurfelengine.core.map.AbstractBlockLogicExtension;
 import com.bombinggames.wurfelengine.core.map.Chunk;
 import com.bombinggames.wurfelengine.core.map.Coordinate;
 import com.bombinggames.wurfelengine.core.map.CustomBlocks;
+import com.bombinggames.wurfelengine.core.map.PackedCoordinate;
 import com.bombinggames.wurfelengine.core.map.Point;
 import com.bombinggames.wurfelengine.core.map.Position;
+import java.util.Arrays;
 import java.util.LinkedList;
 
 /**
@@ -66,10 +67,6 @@ public class RenderCell extends AbstractGameObject {
     private static final Color[][] COLORLIST = new Color[RenderCell.OBJECTTYPESNUM][RenderCell.VALUESNUM];
 	private static boolean fogEnabled;
 	private static boolean staticShade;
-	/**
-	 * frame number of last rebuild
-	 */
-	private static long rebuildCoverList = 0;
 	private static SimpleEntity destruct = new SimpleEntity((byte) 3,(byte) 0);
 	private static Color tmpColor = new Color();
 	
@@ -452,10 +449,15 @@ public class RenderCell extends AbstractGameObject {
 	}
 	
 	/**
-	 * set the timestamp when the content changed. This causes every field wich contains the covered neighbors to be rebuild.
+	 * Did set the timestamp when the content changed to rebuild the covered
+	 * neighbors. Does nothing because {@link #getCovered(RenderStorage)}
+	 * rebuilds them on every call.
+	 *
+	 * @deprecated the depthlist no longer asks for the covered objects. Will
+	 * be removed in a future version.
 	 */
+	@Deprecated
 	public static void rebuildCoverList() {
-		RenderCell.rebuildCoverList = WE.getGameplay().getFrameNum();
 	}
 
    /**
@@ -557,20 +559,14 @@ public class RenderCell extends AbstractGameObject {
 	 */
 	private byte clipping;
 	/**
-	 * Stores references to neighbor blocks which are covered. For topological sort.
-	 */
-	private final LinkedList<AbstractGameObject> covered = new LinkedList<>();
-	/**
-	 * for topological sort. At the end contains both entities and blocks
+	 * the entities in this cell, created when needed
+	 * @see #addCoveredEnts(AbstractEntity)
 	 */
-	private final LinkedList<AbstractGameObject> coveredEnts = new LinkedList<>();
+	private AbstractEntity[] coveredEnts;
+	private int coveredEntsSize;
 	private SideSprite site1;
 	private SideSprite site3;
 	private SideSprite site2;
-	/**
-	 * frame number to avoid multiple calculations in one frame
-	 */
-	private long lastRebuild;
 	
 	/**
 	 * For direct creation. You should use the factory method instead.
@@ -1328,14 +1324,13 @@ public class RenderCell extends AbstractGameObject {
 	}
 
 	/**
-	 * adds the entitiy into a cell
+	 * Air and clipped cells are not in the depth order of a chunk, so they
+	 * are never asked even if an override would render them.
 	 *
-	 * @param ent
+	 * @param camera
+	 * @return
+	 * @see RenderChunk#getDepthOrder()
 	 */
-	public void addCoveredEnts(AbstractEntity ent) {
-		coveredEnts.add(ent);
-	}
-
 	@Override
 	public boolean shouldBeRendered(Camera camera) {
 		return id != 0
@@ -1344,96 +1339,124 @@ public class RenderCell extends AbstractGameObject {
 				&& camera.inViewFrustum(coord);
 	}
 
-	@Override
-	public LinkedList<AbstractGameObject> getCovered(RenderStorage rs) {
-		if (lastRebuild < rebuildCoverList) {//only rebuild once per frame
-			rebuildCovered(rs);
-		}
-		if (!coveredEnts.isEmpty()) {
-			//sort valid in order of depth
-			coveredEnts.sort((AbstractGameObject o1, AbstractGameObject o2) -> {
-				float d1 = o1.getDepth();
-				float d2 = o2.getDepth();
-				if (d1 > d2) {
-					return 1;
-				} else {
-					if (d1 == d2) {
-						return 0;
-					}
-					return -1;
-				}
-			});
-			coveredEnts.addAll(covered);
-			return coveredEnts;
+	/**
+	 * adds the entitiy into a cell
+	 *
+	 * @param ent
+	 * @deprecated the depthlist no longer asks for the covered objects. Will
+	 * be removed in a future version.
+	 */
+	@Deprecated
+	public void addCoveredEnts(AbstractEntity ent) {
+		if (coveredEnts == null) {
+			coveredEnts = new AbstractEntity[4];
+		} else if (coveredEntsSize == coveredEnts.length) {
+			coveredEnts = Arrays.copyOf(coveredEnts, coveredEntsSize * 2);
 		}
-		return covered;
+		coveredEnts[coveredEntsSize++] = ent;
 	}
-	
+
 	/**
-	 * Rebuilds the list of covered cells by this cell.
-	 * @param rs 
+	 * The entities added with {@link #addCoveredEnts(AbstractEntity)} sorted
+	 * by depth, then the covered neighbor cells. The list is a new one on every
+	 * call.
+	 *
+	 * @param rs
+	 * @return
+	 * @deprecated the depthlist is sorted by
+	 * {@link RenderChunk#getDepthKey(int, int)} and no longer asks for the
+	 * covered objects. Will be removed in a future version.
 	 */
-	private void rebuildCovered(RenderStorage rs) {
-		LinkedList<AbstractGameObject> covered = this.covered;
-		covered.clear();
-		Coordinate nghb = getPosition();
+	@Deprecated
+	@Override
+	public LinkedList<AbstractGameObject> getCovered(RenderStorage rs) {
+		LinkedList<AbstractGameObject> covered = new LinkedList<>();
+		//sort valid in order of depth, insertion sort because there are only a few
+		AbstractEntity[] ents = coveredEnts;
+		for (int i = 1; i < coveredEntsSize; i++) {
+			AbstractEntity ent = ents[i];
+			float depth = ent.getDepth();
+			int j = i - 1;
+			while (j >= 0 && ents[j].getDepth() > depth) {
+				ents[j + 1] = ents[j];
+				j--;
+			}
+			ents[j + 1] = ent;
+		}
+		for (int i = 0; i < coveredEntsSize; i++) {
+			covered.add(ents[i]);
+		}
+
+		long nghb = getPosition().pack();
 		RenderCell block;
-		if (nghb.getZ() > 0) {
-			block = rs.getCell(nghb.add(0, 0, -1));//go down
+		if (PackedCoordinate.getZ(nghb) > 0) {
+			nghb = PackedCoordinate.add(nghb, 0, 0, -1);//go down
+			block = rs.getCell(nghb);
 			if (block != null) {
 				covered.add(block);
 			}
 			//back right
-			block = rs.getCell(nghb.goToNeighbour(1));
+			nghb = PackedCoordinate.neighbour(nghb, 1);
+			block = rs.getCell(nghb);
 			if (block != null) {
 				covered.add(block);
 			}
 			//back left
-			block = rs.getCell(nghb.goToNeighbour(6));
+			nghb = PackedCoordinate.neighbour(nghb, 6);
+			block = rs.getCell(nghb);
 			if (block != null) {
 				covered.add(block);
 			}
 			//back
-			block = rs.getCell(nghb.goToNeighbour(1));
+			nghb = PackedCoordinate.neighbour(nghb, 1);
+			block = rs.getCell(nghb);
 			if (block != null) {
 				covered.add(block);
 			}
-			nghb.add(0, 2, 1);//go back to origin
+			nghb = PackedCoordinate.add(nghb, 0, 2, 1);//go back to origin
 		}
-		block = rs.getCell(nghb.goToNeighbour(0));//back
+		nghb = PackedCoordinate.neighbour(nghb, 0);//back
+		block = rs.getCell(nghb);
 		if (block != null) {
 			covered.add(block);
 		}
-		block = rs.getCell(nghb.goToNeighbour(3));//back right
+		nghb = PackedCoordinate.neighbour(nghb, 3);//back right
+		block = rs.getCell(nghb);
 		if (block != null) {
 			covered.add(block);
 		}
 
-		block = rs.getCell(nghb.goToNeighbour(6));//back left
+		nghb = PackedCoordinate.neighbour(nghb, 6);//back left
+		block = rs.getCell(nghb);
 		if (block != null) {
 			covered.add(block);
 		}
-		if (nghb.getZ() < Chunk.getBlocksZ() - 1) {
-			block = rs.getCell(nghb.add(0, 0, 1));//back left above
+		if (PackedCoordinate.getZ(nghb) < Chunk.getBlocksZ() - 1) {
+			nghb = PackedCoordinate.add(nghb, 0, 0, 1);//back left above
+			block = rs.getCell(nghb);
 			if (block != null) {
 				covered.add(block);
 			}
-			block = rs.getCell(nghb.goToNeighbour(2));//back right above
+			nghb = PackedCoordinate.neighbour(nghb, 2);//back right above
+			block = rs.getCell(nghb);
 			if (block != null) {
 				covered.add(block);
 			}
-			nghb.add(-1, 0, -1);//back to back left
 		}
-
-		nghb.goToNeighbour(3);//return to origin
-		lastRebuild = WE.getGameplay().getFrameNum();
+		return covered;
 	}
 
 	/**
 	 *
+	 * @deprecated the depthlist no longer asks for the covered objects. Will
+	 * be removed in a future version.
 	 */
+	@Deprecated
 	public void clearCoveredEnts() {
-		coveredEnts.clear();
+		if (coveredEntsSize > 0) {
+			Arrays.fill(coveredEnts, 0, coveredEntsSize, null);
+			coveredEntsSize = 0;
+		}
 	}
 
 	/**
@@ -33,6 +33,7 @@ package com.bombinggames.wurfelengine.core.map.rendering;
 import com.badlogic.gdx.utils.Pool;
 import com.bombinggames.wurfelengine.core.gameobjects.Side;
 import com.bombinggames.wurfelengine.core.map.Chunk;
+import com.bombinggames.wurfelengine.core.map.ChunkStorage;
 import com.bombinggames.wurfelengine.core.map.Iterators.DataIterator;
 
 /**
@@ -61,10 +62,56 @@ public class RenderChunk {
 	public static void clearPool(){
 		DATAPOOL.clear();
 	}
+
+	/**
+	 * The position of a cell in the draw order. Every cell covers only cells
+	 * with a smaller key: the cells below, the cells in the rows behind and the
+	 * cells one row behind and one layer above. A row weighs more than a
+	 * layer but less than one and a half layers so that an entity fits
+	 * between the cell above it and the cell in front two layers below.
+	 * <br>
+	 * The order respects every relation of the former
+	 * {@link RenderCell#getCovered(RenderStorage)} but it is not the order
+	 * of the former depth-first search. Objects which do not cover each other
+	 * can be drawn in a different order.
+	 *
+	 * @param y grid coordinate
+	 * @param z grid coordinate
+	 * @return cells with a lower key are drawn first
+	 */
+	public static int getDepthKey(int y, int z) {
+		return 5 * y + 4 * z;
+	}
 	
 	private final RenderCell data[][][];
 	private Chunk chunk;
 	private boolean cameraAccess;
+	/**
+	 * buffers used when reading a column from the chunk
+	 */
+	private byte[] columnIds, columnValues;
+	/**
+	 * the {@link Chunk#getVersion()} of the content
+	 */
+	private int version;
+	/**
+	 * bit mask of the loaded neighbour chunks when the ambient occlusion and
+	 * clipping were calculated
+	 */
+	private int neighbours;
+	/**
+	 * the cells which can be drawn sorted by {@link #getDepthKey(int, int) },
+	 * null if it must be rebuilt
+	 */
+	private RenderCell[] depthOrder;
+	/**
+	 * the range of every row in {@link #depthOrder}
+	 */
+	private int[] depthRows;
+	/**
+	 * amount of cells in {@link #depthOrder} per layer
+	 */
+	private int[] depthLayers;
 
 	/**
 	 * With init
@@ -94,20 +141,47 @@ public class RenderChunk {
 	 * @param rS
 	 */
 	public void initData(RenderStorage rS) {
+		version = chunk.getVersion();
+		initCells(0, 0, 0, Chunk.getBlocksX() - 1, Chunk.getBlocksY() - 1, Chunk.getBlocksZ() - 1);
+	}
+
+	/**
+	 * fills the render cells in a part of the chunk with the according data
+	 * from the map
+	 *
+	 * @param minX index, inclusive
+	 * @param minY index, inclusive
+	 * @param minZ index, inclusive
+	 * @param maxX index, inclusive
+	 * @param maxY index, inclusive
+	 * @param maxZ index, inclusive
+	 */
+	public void initCells(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		invalidateDepthOrder();
 		int tlX = chunk.getTopLeftCoordinateX();
 		int tlY = chunk.getTopLeftCoordinateY();
 
-		//fill every data cell
 		int blocksZ = Chunk.getBlocksZ();
-		int blocksX = Chunk.getBlocksX();
-		int blocksY = Chunk.getBlocksY();
-		for (int xInd = 0; xInd < blocksX; xInd++) {
-			for (int yInd = 0; yInd < blocksY; yInd++) {
-				for (int z = 0; z < blocksZ; z++) {
+		minX = Math.max(minX, 0);
+		minY = Math.max(minY, 0);
+		minZ = Math.max(minZ, 0);
+		maxX = Math.min(maxX, Chunk.getBlocksX() - 1);
+		maxY = Math.min(maxY, Chunk.getBlocksY() - 1);
+		maxZ = Math.min(maxZ, blocksZ - 1);
+		ChunkStorage storage = chunk.getData();
+		if (columnIds == null || columnIds.length != blocksZ) {
+			columnIds = new byte[blocksZ];
+			columnValues = new byte[blocksZ];
+		}
+		byte[] ids = columnIds;
+		byte[] values = columnValues;
+		for (int xInd = minX; xInd <= maxX; xInd++) {
+			for (int yInd = minY; yInd <= maxY; yInd++) {
+				storage.getColumn(xInd, yInd, ids, values);
+				for (int z = minZ; z <= maxZ; z++) {
 					//update only if cell changed
-					int block = chunk.getCellByIndex(xInd, yInd, z);
-					if (data[xInd][yInd][z] == null || (block & 255) != data[xInd][yInd][z].getId()) {
-						data[xInd][yInd][z] = RenderCell.getRenderCell((byte) (block & 255), (byte) ((block >> 8) & 255));
+					if (data[xInd][yInd][z] == null || ids[z] != data[xInd][yInd][z].getId()) {
+						data[xInd][yInd][z] = RenderCell.getRenderCell(ids[z], values[z]);
 					}
 					
 					data[xInd][yInd][z].getPosition().set(
@@ -116,6 +190,9 @@ public class RenderChunk {
 						z
 					);
 					data[xInd][yInd][z].setUnclipped();
+				}
+				//shading depends on the cells above so the column must be complete
+				for (int z = minZ; z <= maxZ; z++) {
 					resetShadingFor(xInd, yInd, z);
 				}
 			}
@@ -136,14 +213,44 @@ public class RenderChunk {
 		return data[x - chunk.getTopLeftCoordinateX()][y - chunk.getTopLeftCoordinateY()][z];
 	}
 
-	RenderCell[][][] getData() {
+	/**
+	 *
+	 * @return not copy safe
+	 */
+	public RenderCell[][][] getData() {
 		return data;
 	}
 
+	/**
+	 *
+	 * @return true if the chunk changed in a way which was not reported with
+	 * a {@link com.bombinggames.wurfelengine.core.map.ChunkChange}
+	 */
+	public boolean isOutdated() {
+		return version != chunk.getVersion();
+	}
+
+	/**
+	 *
+	 * @return bit mask of the loaded neighbour chunks at the last calculation
+	 */
+	int getNeighbours() {
+		return neighbours;
+	}
+
+	/**
+	 *
+	 * @param neighbours bit mask of the loaded neighbour chunks
+	 */
+	void setNeighbours(int neighbours) {
+		this.neighbours = neighbours;
+	}
+
 	/**
 	 *
 	 */
 	protected void resetClipping() {
+		invalidateDepthOrder();
 		int blocksZ = Chunk.getBlocksZ();
 		int blocksX = Chunk.getBlocksX();
 		int blocksY = Chunk.getBlocksY();
@@ -214,6 +321,104 @@ public class RenderChunk {
 		return chunk.getTopLeftCoordinateY();
 	}
 
+	/**
+	 * The cells must be sorted again, e.g. because they or their clipping
+	 * changed.
+	 */
+	void invalidateDepthOrder() {
+		depthOrder = null;
+	}
+
+	/**
+	 * The cells which are not air or clipped in the order they must be drawn.
+	 * Built when it is needed after the cells or their clipping changed. The
+	 * cells of a row are next to each other and sorted by x. Rows with the
+	 * same key are sorted by z.
+	 *
+	 * @return not copy safe
+	 * @see #getDepthRows()
+	 */
+	public RenderCell[] getDepthOrder() {
+		if (depthOrder == null) {
+			rebuildDepthOrder();
+		}
+		return depthOrder;
+	}
+
+	/**
+	 * The range of every row in {@link #getDepthOrder() }. The row with the
+	 * chunk relative coordinates y and z starts at index
+	 * <code>2 * (y * blocksZ + z)</code> and ends exclusive at the index after
+	 * that.
+	 *
+	 * @return not copy safe
+	 */
+	public int[] getDepthRows() {
+		if (depthOrder == null) {
+			rebuildDepthOrder();
+		}
+		return depthRows;
+	}
+
+	/**
+	 * The amount of cells per layer in {@link #getDepthOrder() }.
+	 *
+	 * @return not copy safe, index is z
+	 */
+	public int[] getDepthLayers() {
+		if (depthOrder == null) {
+			rebuildDepthOrder();
+		}
+		return depthLayers;
+	}
+
+	/**
+	 * Sorts the cells with a counting sort over the depth keys.
+	 */
+	private void rebuildDepthOrder() {
+		int blocksX = Chunk.getBlocksX();
+		int blocksY = Chunk.getBlocksY();
+		int blocksZ = Chunk.getBlocksZ();
+		int[] start = new int[getDepthKey(blocksY - 1, blocksZ - 1) + 2];
+		int[] layers = new int[blocksZ];
+		int size = 0;
+		for (int x = 0; x < blocksX; x++) {
+			for (int y = 0; y < blocksY; y++) {
+				for (int z = 0; z < blocksZ; z++) {
+					RenderCell cell = data[x][y][z];
+					if (cell != null && cell.getId() != 0 && !cell.isClipped()) {
+						start[getDepthKey(y, z) + 1]++;
+						layers[z]++;
+						size++;
+					}
+				}
+			}
+		}
+		for (int i = 1; i < start.length; i++) {
+			start[i] += start[i - 1];
+		}
+		RenderCell[] order = new RenderCell[size];
+		int[] rows = new int[blocksY * blocksZ * 2];
+		//x innermost so that every row is continuous and sorted by x
+		for (int z = 0; z < blocksZ; z++) {
+			for (int y = 0; y < blocksY; y++) {
+				int key = getDepthKey(y, z);
+				int row = (y * blocksZ + z) * 2;
+				rows[row] = start[key];
+				for (int x = 0; x < blocksX; x++) {
+					RenderCell cell = data[x][y][z];
+					if (cell != null && cell.getId() != 0 && !cell.isClipped()) {
+						order[start[key]++] = cell;
+					}
+				}
+				rows[row + 1] = start[key];
+			}
+		}
+		depthRows = rows;
+		depthLayers = layers;
+		depthOrder = order;
+	}
+
 	/**
 	 * Returns an iterator which iterates over the data in this chunk.
 	 *
@@ -229,6 +434,15 @@ public class RenderChunk {
 		);
 	}
 
+	/**
+	 * Get the map chunk which is displayed by this render chunk.
+	 *
+	 * @return
+	 */
+	public Chunk getChunk() {
+		return chunk;
+	}
+
 	/**
 	 *
 	 * @return
@@ -274,9 +488,13 @@ public class RenderChunk {
 	}
 
 	/**
-	 *
+	 * Returns the cells to the pool. The render chunk can not be used
+	 * afterwards.
 	 */
-	protected void dispose() {
+	public void dispose() {
+		depthOrder = null;
+		depthRows = null;
+		depthLayers = null;
 		DATAPOOL.free(data);
 	}
 
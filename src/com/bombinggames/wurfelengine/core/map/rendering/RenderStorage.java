@@ -39,11 +39,15 @@ import com.bombinggames.wurfelengine.core.Controller;
 import com.bombinggames.wurfelengine.core.Events;
 import com.bombinggames.wurfelengine.core.lightengine.AmbientOcclusionCalculator;
 import com.bombinggames.wurfelengine.core.map.Chunk;
+import com.bombinggames.wurfelengine.core.map.ChunkChange;
+import com.bombinggames.wurfelengine.core.map.ChunkIndex;
 import com.bombinggames.wurfelengine.core.map.Coordinate;
-import com.bombinggames.wurfelengine.core.map.Iterators.DataIterator;
+import com.bombinggames.wurfelengine.core.map.Map;
+import com.bombinggames.wurfelengine.core.map.PackedCoordinate;
 import com.bombinggames.wurfelengine.core.map.Point;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -57,11 +61,15 @@ public class RenderStorage implements Telegraph  {
 	 * Stores the data of the map.
 	 */
 	private final LinkedList<RenderChunk> data = new LinkedList<>();
-	private final List<Camera> cameraContainer;
 	/**
-	 * index means camera
+	 * the chunks of {@link #data} by chunk coordinate
+	 */
+	private final ChunkIndex<RenderChunk> index = new ChunkIndex<>(16);
+	/**
+	 * the chunk found last, most lookups hit the same chunk again
 	 */
-	private final ArrayList<Integer> lastCenterX, lastCenterY;
+	private RenderChunk lastChunk;
+	private final List<Camera> cameraContainer;
 	/**
 	 * a list of Blocks marked as dirty. Dirty blocks are reshaded.
 	 */
@@ -73,8 +81,6 @@ public class RenderStorage implements Telegraph  {
 	 */
 	public RenderStorage() {
 		this.cameraContainer = new ArrayList<>(1);
-		lastCenterX = new ArrayList<>(1);
-		lastCenterY = new ArrayList<>(1);
 	}
 	
 	/**
@@ -122,24 +128,22 @@ public class RenderStorage implements Telegraph  {
 						checkChunk(camera.getCenterChunkX() + x, camera.getCenterChunkY() + y);
 					}
 				}
-				//check if center changed
-				if (lastCenterX.get(i) == null || lastCenterX.get(i) != camera.getCenterChunkX() || lastCenterY.get(i) != camera.getCenterChunkY()) {
-					//update the last center
-					lastCenterX.set(i, camera.getCenterChunkX());
-					lastCenterY.set(i, camera.getCenterChunkY());
-					//rebuild
-					RenderCell.rebuildCoverList();
-				}
 			}
 		}
 		
 		//remove chunks which are not used
-		data.forEach(chunk -> {
+		Iterator<RenderChunk> iterator = data.iterator();
+		while (iterator.hasNext()) {
+			RenderChunk chunk = iterator.next();
 			if (!chunk.cameraAccess()) {
+				index.remove(chunk.getChunkX(), chunk.getChunkY());
+				if (chunk == lastChunk) {
+					lastChunk = null;
+				}
 				chunk.dispose();
+				iterator.remove();
 			}
-		});
-		data.removeIf(chunk -> !chunk.cameraAccess());
+		}
 	}
 	
 	/**
@@ -158,7 +162,9 @@ public class RenderStorage implements Telegraph  {
 				//get chunk from pool if possible
 				rChunk = new RenderChunk(this, mapChunk);
 				data.add(rChunk);
+				index.put(x, y, rChunk);
 				rChunk.setCameraAccess(true);
+				rChunk.setNeighbours(getNeighbourMask(Controller.getMap(), x, y));
 				AmbientOcclusionCalculator.calcAO(rChunk);
 				hiddenSurfaceDetection(rChunk);
 
@@ -175,6 +181,15 @@ public class RenderStorage implements Telegraph  {
 				if (neighbor != null) {
 					hiddenSurfaceDetection(neighbor);
 				}
+				//the border cells look at the next row which can be in the diagonal chunk
+				neighbor = getChunk(x - 1, y - 1);
+				if (neighbor != null) {
+					hiddenSurfaceDetection(neighbor);
+				}
+				neighbor = getChunk(x + 1, y - 1);
+				if (neighbor != null) {
+					hiddenSurfaceDetection(neighbor);
+				}
 			}
 		} else {
 			rChunk.setCameraAccess(true);
@@ -222,10 +237,148 @@ public class RenderStorage implements Telegraph  {
 			rChunk.initData(rS);
 		});
 		dataclone.forEach((RenderChunk rChunk) -> {
+			rChunk.setNeighbours(getNeighbourMask(Controller.getMap(), rChunk.getChunkX(), rChunk.getChunkY()));
 			AmbientOcclusionCalculator.calcAO(rChunk);
 			hiddenSurfaceDetection(rChunk);
 		});			
 	}
+
+	/**
+	 * Updates only the RenderChunks whose map chunk was replaced, reloaded or
+	 * got new neighbours since the last update. Their neighbours get a new
+	 * ambient occlusion and clipping because it depends on the border cells.
+	 * Block edits are reported with {@link Events#blocksChanged} and do not
+	 * need this.
+	 */
+	public void refreshOutdatedChunks() {
+		Map map = Controller.getMap();
+		ArrayList<RenderChunk> changed = new ArrayList<>(4);
+		for (RenderChunk rChunk : data) {
+			Chunk mapChunk = map.getChunk(rChunk.getChunkX(), rChunk.getChunkY());
+			if (mapChunk == null) {
+				continue;//removed at next update
+			}
+			if (mapChunk != rChunk.getChunk()) {
+				rChunk.init(this, mapChunk);
+				changed.add(rChunk);
+			} else if (rChunk.isOutdated()) {
+				rChunk.initData(this);
+				changed.add(rChunk);
+			}
+		}
+		
+		for (RenderChunk rChunk : data) {
+			int neighbours = getNeighbourMask(map, rChunk.getChunkX(), rChunk.getChunkY());
+			boolean update = neighbours != rChunk.getNeighbours();
+			for (int i = 0; i < changed.size() && !update; i++) {
+				RenderChunk other = changed.get(i);
+				update = Math.abs(other.getChunkX() - rChunk.getChunkX()) <= 1
+					&& Math.abs(other.getChunkY() - rChunk.getChunkY()) <= 1;
+			}
+			if (update) {
+				rChunk.setNeighbours(neighbours);
+				AmbientOcclusionCalculator.calcAO(rChunk);
+				hiddenSurfaceDetection(rChunk);
+			}
+		}
+	}
+
+	/**
+	 * Updates the cells which changed and their neighbourhood. The
+	 * neighbourhood is everything which can be influenced by the cells: x±1
+	 * and y±2 for the ambient occlusion and clipping, three layers below
+	 * because of the drop shadows and one layer above.
+	 *
+	 * @param change the changed cells
+	 */
+	public void refresh(ChunkChange change) {
+		Chunk mapChunk = change.getChunk();
+		RenderChunk rChunk = getChunk(mapChunk.getChunkX(), mapChunk.getChunkY());
+		if (rChunk == null || rChunk.getChunk() != mapChunk || rChunk.isOutdated()) {
+			return;//not loaded or needs a complete update
+		}
+		int left = rChunk.getTopLeftCoordinateX();
+		int top = rChunk.getTopLeftCoordinateY();
+		rChunk.initCells(
+			change.getMinX() - left,
+			change.getMinY() - top,
+			change.getMinZ(),
+			change.getMaxX() - left,
+			change.getMaxY() - top,
+			change.getMaxZ()
+		);
+		refreshRegion(
+			change.getMinX() - 1,
+			change.getMinY() - 2,
+			change.getMinZ() - 3,
+			change.getMaxX() + 1,
+			change.getMaxY() + 2,
+			change.getMaxZ() + 1
+		);
+	}
+
+	/**
+	 * Recalculates shading, ambient occlusion and clipping in a region. The
+	 * region may span multiple chunks.
+	 *
+	 * @param minX coordinate, inclusive
+	 * @param minY coordinate, inclusive
+	 * @param minZ coordinate, inclusive
+	 * @param maxX coordinate, inclusive
+	 * @param maxY coordinate, inclusive
+	 * @param maxZ coordinate, inclusive
+	 */
+	public void refreshRegion(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		int blocksX = Chunk.getBlocksX();
+		int blocksY = Chunk.getBlocksY();
+		minZ = Math.max(minZ, 0);
+		maxZ = Math.min(maxZ, Chunk.getBlocksZ() - 1);
+		for (int chunkX = Math.floorDiv(minX, blocksX); chunkX <= Math.floorDiv(maxX, blocksX); chunkX++) {
+			for (int chunkY = Math.floorDiv(minY, blocksY); chunkY <= Math.floorDiv(maxY, blocksY); chunkY++) {
+				RenderChunk rChunk = getChunk(chunkX, chunkY);
+				if (rChunk != null) {
+					int left = rChunk.getTopLeftCoordinateX();
+					int top = rChunk.getTopLeftCoordinateY();
+					int minXInd = Math.max(minX - left, 0);
+					int minYInd = Math.max(minY - top, 0);
+					int maxXInd = Math.min(maxX - left, blocksX - 1);
+					int maxYInd = Math.min(maxY - top, blocksY - 1);
+					for (int x = minXInd; x <= maxXInd; x++) {
+						for (int y = minYInd; y <= maxYInd; y++) {
+							for (int z = minZ; z <= maxZ; z++) {
+								rChunk.resetShadingFor(x, y, z);
+							}
+						}
+					}
+					AmbientOcclusionCalculator.calcAO(rChunk, minXInd, minYInd, minZ, maxXInd, maxYInd, maxZ);
+					hiddenSurfaceDetection(rChunk, minXInd, minYInd, minZ, maxXInd, maxYInd, maxZ);
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param map
+	 * @param chunkX
+	 * @param chunkY
+	 * @return bit mask of the eight neighbour chunks which are loaded in the map
+	 */
+	private static int getNeighbourMask(Map map, int chunkX, int chunkY) {
+		int mask = 0;
+		int bit = 0;
+		for (int x = -1; x <= 1; x++) {
+			for (int y = -1; y <= 1; y++) {
+				if (x != 0 || y != 0) {
+					if (map.getChunk(chunkX + x, chunkY + y) != null) {
+						mask |= 1 << bit;
+					}
+					bit++;
+				}
+			}
+		}
+		return mask;
+	}
 	
 	/**
 	 * get the chunk where the coordinates are on.
@@ -234,45 +387,50 @@ public class RenderStorage implements Telegraph  {
 	 * @return can return null if not loaded
 	 */
 	public RenderChunk getChunk(final Coordinate coord) {
-		int left, top;
-		//loop over storage
-		for (RenderChunk chunk : data) {
-			left = chunk.getTopLeftCoordinateX();
-			top = chunk.getTopLeftCoordinateY();
-			//check if coordinates are inside the chunk
-			if (left <= coord.getX()
-				&& coord.getX() < left + Chunk.getBlocksX()
-				&& top <= coord.getY()
-				&& coord.getY() < top + Chunk.getBlocksY()
+		return getChunkContaining(coord.getX(), coord.getY());
+	}
+
+	/**
+	 * get the chunk where the coordinates are on. O(1)
+	 *
+	 * @param x coordinate
+	 * @param y coordinate
+	 * @return can return null if not loaded
+	 */
+	private RenderChunk getChunkContaining(final int x, final int y) {
+		RenderChunk chunk = lastChunk;
+		if (chunk != null) {
+			int left = chunk.getTopLeftCoordinateX();
+			int top = chunk.getTopLeftCoordinateY();
+			if (x >= left
+				&& x < left + Chunk.getBlocksX()
+				&& y >= top
+				&& y < top + Chunk.getBlocksY()
 			) {
-				data.addFirst(data.removeLast());
 				return chunk;
 			}
 		}
-		return null;//not found
+		chunk = index.get(Math.floorDiv(x, Chunk.getBlocksX()), Math.floorDiv(y, Chunk.getBlocksY()));
+		if (chunk != null) {
+			lastChunk = chunk;
+		}
+		return chunk;
 	}
 
 	/**
-	 * Get the chunk with the given chunk coords from the active pool. <br>Runtime: O(c) c: amount of
-	 * chunks -&gt; O(1)
+	 * Get the chunk with the given chunk coords from the active pool. O(1)
 	 *
 	 * @param chunkX
 	 * @param chunkY
 	 * @return if not in memory returns null
 	 */
 	public RenderChunk getChunk(int chunkX, int chunkY) {
-		for (RenderChunk chunk : data) {
-			if (chunkX == chunk.getChunkX()
-				&& chunkY == chunk.getChunkY()) {
-				return chunk;
-			}
-		}
-		return null;//not found
+		return index.get(chunkX, chunkY);
 	}
 
 	/**
 	 * Returns a block without checking the parameters first. Good for debugging
-	 * and also faster. O(n)
+	 * and also faster. O(1)
 	 *
 	 * @param x coordinate
 	 * @param y coordinate
@@ -283,23 +441,7 @@ public class RenderStorage implements Telegraph  {
 		if (z < 0) {
 			return getNewGroundCellInstance();
 		}
-		RenderChunk chunkWithBlock = null;
-		int left, top;
-		//loop over storage
-		for (RenderChunk chunk : data) {
-			left = chunk.getTopLeftCoordinateX();
-			top = chunk.getTopLeftCoordinateY();
-			//check if coordinates are inside the chunk
-			if ( x >= left
-				&& x < left + Chunk.getBlocksX()
-				&& y >= top
-				&& y < top + Chunk.getBlocksY()
-			) {
-				data.addFirst(data.removeLast());//move in front to speed up lookup
-				chunkWithBlock = chunk;
-				break;
-			}
-		}
+		RenderChunk chunkWithBlock = getChunkContaining(x, y);
 		if (chunkWithBlock == null) {
 			return null;
 		} else {
@@ -325,6 +467,20 @@ public class RenderStorage implements Telegraph  {
 		}
 	}
 	
+	/**
+	 * If the cell can not be found returns null pointer.
+	 *
+	 * @param packed a {@link PackedCoordinate}
+	 * @return
+	 */
+	public RenderCell getCell(final long packed) {
+		int z = PackedCoordinate.getZ(packed);
+		if (z < 0) {
+			return null;
+		}
+		return getCell(PackedCoordinate.getX(packed), PackedCoordinate.getY(packed), z);
+	}
+
 		/**
 	 * If the block can not be found returns null pointer.
 	 *
@@ -386,68 +542,76 @@ public class RenderStorage implements Telegraph  {
 	 * @param chunk
 	 */
 	public void hiddenSurfaceDetection(final RenderChunk chunk) {
+		hiddenSurfaceDetection(chunk, 0, 0, 0, Chunk.getBlocksX() - 1, Chunk.getBlocksY() - 1, Chunk.getBlocksZ() - 1);
+	}
+
+	/**
+	 * performs a simple clipping check by looking at the direct neighbours in
+	 * a part of a chunk.
+	 *
+	 * @param chunk
+	 * @param minX index, inclusive
+	 * @param minY index, inclusive
+	 * @param minZ index, inclusive
+	 * @param maxX index, inclusive
+	 * @param maxY index, inclusive
+	 * @param maxZ index, inclusive
+	 */
+	public void hiddenSurfaceDetection(final RenderChunk chunk, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
 		if (chunk == null) {
 			throw new IllegalArgumentException();
 		}
+		chunk.invalidateDepthOrder();
 		RenderCell[][][] chunkData = chunk.getData();
+		int blocksZ = Chunk.getBlocksZ();
+		//cells above the rendering limit are not checked
+		int limitZ = Math.min(Math.max((int) (zRenderingLimit / RenderCell.GAME_EDGELENGTH), 1), blocksZ - 1);
+		minX = Math.max(minX, 0);
+		minY = Math.max(minY, 0);
+		minZ = Math.max(minZ, 0);
+		maxX = Math.min(maxX, Chunk.getBlocksX() - 1);
+		maxY = Math.min(maxY, Chunk.getBlocksY() - 1);
+		maxZ = Math.min(maxZ, blocksZ - 1);
 
-		chunk.resetClipping();
-
-		//loop over floor for ground level
-		//DataIterator floorIterator = chunk.getIterator(0, 0);
-//		while (floorIterator.hasNext()) {
-//			if (((Block) floorIterator.next()).hidingPastBlock())
-//				chunk.getCell(
-//					floorIterator.getCurrentIndex()[0],
-//					floorIterator.getCurrentIndex()[1],
-//					chunkY)setClippedTop(
-//					floorIterator.getCurrentIndex()[0],
-//					floorIterator.getCurrentIndex()[1],
-//					-1
-//				);
-//		}
-		//iterate over chunk
-		DataIterator<RenderCell> dataIter = new DataIterator<>(
-			chunkData,
-			0,
-			(int) (zRenderingLimit/RenderCell.GAME_EDGELENGTH)
-		);
-
-		while (dataIter.hasNext()) {
-			RenderCell current = dataIter.next();//next is the current block
-
-			if (current != null) {
-				//calculate index position relative to camera border
-				final int x = dataIter.getCurrentIndex()[0];
-				final int y = dataIter.getCurrentIndex()[1];
-				final int z = dataIter.getCurrentIndex()[2];
+		for (int x = minX; x <= maxX; x++) {
+			for (int y = minY; y <= maxY; y++) {
+				for (int z = minZ; z <= maxZ; z++) {
+					RenderCell current = chunkData[x][y][z];
+					if (current == null) {
+						continue;
+					}
+					current.setUnclipped();
+					if (z > limitZ) {
+						continue;
+					}
 
-				//left side
-				//get neighbour block
-				RenderCell neighbour = getCellByIndex(chunk, x - ((y % 2 == 0) ? 1 : 0), y + 1, z);//next row can be shifted right(?)
+					//left side
+					//get neighbour block
+					RenderCell neighbour = getCellByIndex(chunk, x - ((y % 2 == 0) ? 1 : 0), y + 1, z);//next row can be shifted right(?)
 
-				if (neighbour != null
-					&& (neighbour.hidingPastBlock() || (neighbour.isLiquid() && current.isLiquid()))) {
-					current.setClippedLeft();
-				}
+					if (neighbour != null
+						&& (neighbour.hidingPastBlock() || (neighbour.isLiquid() && current.isLiquid()))) {
+						current.setClippedLeft();
+					}
 
-				//right side
-				//get neighbour block
-				neighbour = getCellByIndex(chunk, x + ((y % 2 == 0) ? 0 : 1), y + 1, z);//next row is shifted right
+					//right side
+					//get neighbour block
+					neighbour = getCellByIndex(chunk, x + ((y % 2 == 0) ? 0 : 1), y + 1, z);//next row is shifted right
 
-				if (neighbour != null
-					&& (neighbour.hidingPastBlock() || (neighbour.isLiquid() && current.isLiquid()))) {
-					current.setClippedRight();
-				}
+					if (neighbour != null
+						&& (neighbour.hidingPastBlock() || (neighbour.isLiquid() && current.isLiquid()))) {
+						current.setClippedRight();
+					}
 
-				//check top
-				if (z < Chunk.getBlocksZ() - 1) {
-					neighbour = getCellByIndex(chunk, x, y + 2, z + 1);
-					if ((chunkData[x][y][z + 1] != null
-						&& (chunkData[x][y][z + 1].hidingPastBlock()
-						|| chunkData[x][y][z + 1].isLiquid() && current.isLiquid()))
-						|| (neighbour != null && neighbour.hidingPastBlock())) {
-						current.setClippedTop();
+					//check top
+					if (z < blocksZ - 1) {
+						neighbour = getCellByIndex(chunk, x, y + 2, z + 1);
+						if ((chunkData[x][y][z + 1] != null
+							&& (chunkData[x][y][z + 1].hidingPastBlock()
+							|| chunkData[x][y][z + 1].isLiquid() && current.isLiquid()))
+							|| (neighbour != null && neighbour.hidingPastBlock())) {
+							current.setClippedTop();
+						}
 					}
 				}
 			}
@@ -481,7 +645,7 @@ public class RenderStorage implements Telegraph  {
 
 	/**
 	 *
-	 * @return
+	 * @return do not add or remove chunks
 	 */
 	public LinkedList<RenderChunk> getData() {
 		return data;
@@ -494,8 +658,6 @@ public class RenderStorage implements Telegraph  {
 	public void addCamera(Camera camera) {
 		if (!cameraContainer.contains(camera)) {//avoid duplicates
 			this.cameraContainer.add(camera);
-			lastCenterX.add(null);
-			lastCenterY.add(null);
 		}
 	}
 	
@@ -534,6 +696,7 @@ public class RenderStorage implements Telegraph  {
 	 * @param height game space
 	 */
 	public void setZRenderingLimit(float height) {
+		float oldLimit = zRenderingLimit;
 		zRenderingLimit = height;
 		if (height >= Chunk.getGameHeight()) {
 			zRenderingLimit = Float.POSITIVE_INFINITY;
@@ -541,13 +704,23 @@ public class RenderStorage implements Telegraph  {
 		if (zRenderingLimit < 0) {
 			zRenderingLimit = 0;
 		}
+		if (oldLimit != zRenderingLimit) {
+			//clipping depends on the limit
+			for (RenderChunk chunk : data) {
+				hiddenSurfaceDetection(chunk);
+			}
+		}
 	}
 	
 	@Override
 	public boolean handleMessage(Telegram msg) {
 		if (msg.message == Events.mapChanged.getId()) {
-			reinitChunks();//coould be optimized by only updating blocks that changed
-			RenderCell.rebuildCoverList();
+			refreshOutdatedChunks();
+			return true;
+		}
+		
+		if (msg.message == Events.blocksChanged.getId()) {
+			refresh((ChunkChange) msg.extraInfo);
 			return true;
 		}
 		
@@ -560,6 +733,7 @@ public class RenderStorage implements Telegraph  {
 	public void dispose() {
 		RenderChunk.clearPool();
 		MessageManager.getInstance().removeListener(this, Events.mapChanged.getId());
+		MessageManager.getInstance().removeListener(this, Events.blocksChanged.getId());
 	}
 
 }
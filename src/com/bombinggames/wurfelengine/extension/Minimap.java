@@ -46,6 +46,7 @@ import com.bombinggames.wurfelengine.core.GameView;
 import com.bombinggames.wurfelengine.core.gameobjects.AbstractEntity;
 import com.bombinggames.wurfelengine.core.map.rendering.RenderCell;
 import com.bombinggames.wurfelengine.core.map.Chunk;
+import com.bombinggames.wurfelengine.core.map.ChunkStorage;
 import com.bombinggames.wurfelengine.core.map.Map;
 import com.bombinggames.wurfelengine.core.map.Point;
 import com.bombinggames.wurfelengine.core.map.rendering.RenderCell;
@@ -128,14 +129,14 @@ public class Minimap implements Telegraph {
         
         maximumZ = 0;
         int[][] topTileZ = new int[Chunk.getBlocksX()][Chunk.getBlocksY()];
+        //the minimap shows the chunk at the origin
+        Chunk originChunk = Controller.getMap().getChunk(0, 0);
+        ChunkStorage storage = originChunk == null ? null : originChunk.getData();
         
         //fing top tile
         for (int x = 0; x < mapdata.length; x++) {
             for (int y = 0; y < mapdata[x].length; y++) {
-                int z = Chunk.getBlocksZ() -1;//start at top
-                while ( z>-1 && Controller.getMap().getBlockId(x, y, z)==0 ) {
-                    z--;//find topmost block in row
-                }
+                int z = storage == null ? -1 : storage.getTopZ(x, y);//find topmost block in row
 
                 topTileZ[x][y] = z;
                 if (z>maximumZ)
@@ -150,7 +151,7 @@ public class Minimap implements Telegraph {
                 if (topTileZ[x][y]<0)//ground floor
                     mapdata[x][y] = RenderCell.getRepresentingColor((byte) WE.getCVars().getValueI("groundblockinstance"),(byte) 0);
                 else {
-                    int block = Controller.getMap().getBlock(x, y, topTileZ[x][y]);
+                    int block = storage.getCell(x, y, topTileZ[x][y]);
                     if ((block&255) !=0)
                         mapdata[x][y] = RenderCell.getRepresentingColor((byte)(block&255), (byte)((block>>8)&255));
                     else 
@@ -720,14 +720,19 @@ public class EditorView extends GameView implements Telegraph {
 				bottom = from.getY();
 			}
 
-			for (int x = left; x <= right; x++) {
-				for (int y = top; y <= bottom; y++) {
-					getMap().setBlock(
-						new Coordinate(x, y, from.getZ()),
-						((BlockTable) toolSelection.getActiveTable()).getIdOfSelection(),
-						toolSelection.getActiveTable().getValue()
-					);
+			getMap().beginEdits();
+			try {
+				for (int x = left; x <= right; x++) {
+					for (int y = top; y <= bottom; y++) {
+						getMap().setBlock(
+							new Coordinate(x, y, from.getZ()),
+							((BlockTable) toolSelection.getActiveTable()).getIdOfSelection(),
+							toolSelection.getActiveTable().getValue()
+						);
+					}
 				}
+			} finally {
+				getMap().commitEdits();
 			}
 		}
 